@@ -0,0 +1,38 @@
+package com.phenix.xmlfcp7.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lance les benchmarks avec le profiler GC (taux d'allocation) en plus des
+ * options JMH données en ligne de commande.<br>
+ * Exemple : {@code java -jar target/benchmarks.jar RenduTimeline -p pistes=64}
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class Benchmarks {
+
+    /**
+     * Pas d'instance.
+     */
+    private Benchmarks() {
+    }
+
+    /**
+     * Lance les benchmarks.
+     *
+     * @param args Options JMH (filtre des benchmarks, paramètres, etc).
+     * @throws Exception Options invalides ou échec d'un benchmark.
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
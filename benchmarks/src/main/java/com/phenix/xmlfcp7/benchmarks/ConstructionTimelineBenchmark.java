@@ -0,0 +1,91 @@
+package com.phenix.xmlfcp7.benchmarks;
+
+import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.MediaVideo;
+import com.phenix.xmlfcp7.Timeline;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construction d'une timeline avec {@link Timeline#addMedia(int,
+ * com.phenix.xmlfcp7.Media, Timecode, Timecode) addMedia}, dans l'ordre de la
+ * timeline ou dans le désordre.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConstructionTimelineBenchmark {
+
+    /**
+     * Nombre de clips.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int clips;
+
+    /**
+     * Nombre de pistes.
+     */
+    @Param({"1", "8", "64"})
+    public int pistes;
+
+    /**
+     * Si les clips sont ajoutés dans le désordre.
+     */
+    @Param({"false", "true"})
+    public boolean melange;
+
+    /**
+     * Ordre d'ajout des clips.
+     */
+    private int[] ordre;
+
+    /**
+     * Les médias utilisés par les clips.
+     */
+    private MediaVideo[] videos;
+
+    /**
+     * Prépare l'ordre d'ajout et les médias.
+     */
+    @Setup
+    public void preparer() {
+        this.ordre = Donnees.ordre(this.clips, this.melange, 42);
+        this.videos = new MediaVideo[Donnees.NOMBRE_FICHIERS];
+
+        for (int i = 0; i < this.videos.length; i++) {
+            this.videos[i] = Donnees.video(i);
+        }
+    }
+
+    /**
+     * Ajoute tous les clips à une nouvelle timeline.
+     *
+     * @return La timeline.
+     */
+    @Benchmark
+    public Timeline addMedia() {
+        Timeline timeline = new Timeline("bench", Donnees.FRAMERATE, new Timecode(0, Donnees.FRAMERATE));
+
+        for (int k : this.ordre) {
+            int debut = (k / this.pistes) * Donnees.DUREE_CLIP;
+            timeline.addMedia((k % this.pistes) + 1, this.videos[k % this.videos.length], new Timecode(debut, Donnees.FRAMERATE), new Timecode(debut + Donnees.DUREE_CLIP - 1, Donnees.FRAMERATE));
+        }
+
+        return timeline;
+    }
+}
@@ -0,0 +1,186 @@
+package com.phenix.xmlfcp7.benchmarks;
+
+import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.Dossier;
+import com.phenix.xmlfcp7.Marqueur;
+import com.phenix.xmlfcp7.MediaAudio;
+import com.phenix.xmlfcp7.MediaVideo;
+import com.phenix.xmlfcp7.Timeline;
+import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import java.util.Random;
+
+/**
+ * Génère les projets utilisés par les benchmarks.<br>
+ * Les clips font 10 images et sont répartis en colonnes sur les pistes : le
+ * clip {@code k} est sur la piste {@code (k % pistes) + 1}, à l'image
+ * {@code (k / pistes) * 10}.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class Donnees {
+
+    /**
+     * Framerate des projets.
+     */
+    static final int FRAMERATE = 25;
+
+    /**
+     * Durée d'un clip en image.
+     */
+    static final int DUREE_CLIP = 10;
+
+    /**
+     * Nombre de fichiers différents utilisés par les clips.
+     */
+    static final int NOMBRE_FICHIERS = 100;
+
+    /**
+     * Pas d'instance.
+     */
+    private Donnees() {
+    }
+
+    /**
+     * Crée un média audio.
+     *
+     * @param numero Numéro du fichier.
+     * @return Le média.
+     */
+    static MediaAudio audio(int numero) {
+        MediaAudio audio = new MediaAudio("son" + numero + ".wav");
+        audio.setLocalisation("file://localhost/bench/son" + numero + ".wav");
+        audio.setStart(new Timecode(0, FRAMERATE));
+        audio.setIn(new Timecode(0, FRAMERATE));
+        audio.setOut(new Timecode(DUREE_CLIP - 1, FRAMERATE));
+        audio.setNombreCanaux(2);
+        return audio;
+    }
+
+    /**
+     * Crée une arborescence de dossiers : chaque dossier a {@code largeur}
+     * sous-dossiers vides et un sous-dossier qui continue l'arborescence,
+     * jusqu'à la profondeur voulue. Chaque dossier de l'arborescence contient
+     * une timeline.
+     *
+     * @param profondeur Nombre de niveaux.
+     * @param largeur Nombre de sous-dossiers vides par niveau.
+     * @param clips Nombre de clips de chaque timeline.
+     * @return Le dossier racine.
+     */
+    static Dossier arborescence(int profondeur, int largeur, int clips) {
+        Dossier racine = new Dossier("niveau-0");
+        Dossier dossier = racine;
+
+        for (int niveau = 1; niveau <= profondeur; niveau++) {
+            for (int i = 0; i < largeur; i++) {
+                dossier.addDossier(new Dossier("vide-" + niveau + "-" + i));
+            }
+
+            dossier.addTimeline(timeline("timeline-" + niveau, clips, 1, false, 0));
+
+            Dossier sous_dossier = new Dossier("niveau-" + niveau);
+            dossier.addDossier(sous_dossier);
+            dossier = sous_dossier;
+        }
+
+        return racine;
+    }
+
+    /**
+     * Ajoute des marqueurs sur une timeline, un toutes les 5 images.
+     *
+     * @param timeline La timeline.
+     * @param nombre Nombre de marqueurs.
+     */
+    static void marqueurs(Timeline timeline, int nombre) {
+        CouleurMarqueur[] couleurs = CouleurMarqueur.values();
+        int debut = timeline.getStartTc().toImage();
+
+        for (int i = 0; i < nombre; i++) {
+            Timecode in = new Timecode(debut + i * 5, FRAMERATE);
+            // Un marqueur sur deux a une durée.
+            Timecode out = new Timecode(debut + i * 5 + (i % 2) * 3, FRAMERATE);
+            timeline.addMarqueur(new Marqueur("note " + i, in, out, couleurs[i % couleurs.length], "m" + i));
+        }
+    }
+
+    /**
+     * Retourne l'ordre dans lequel ajouter les clips.
+     *
+     * @param clips Nombre de clips.
+     * @param melange {@code true} pour un ordre aléatoire (toujours le même),
+     * {@code false} pour l'ordre de la timeline.
+     * @param graine Graine de l'ordre aléatoire.
+     * @return Numéros des clips.
+     */
+    static int[] ordre(int clips, boolean melange, long graine) {
+        int[] ordre = new int[clips];
+
+        for (int i = 0; i < clips; i++) {
+            ordre[i] = i;
+        }
+
+        if (melange) {
+            Random aleatoire = new Random(graine);
+
+            for (int i = clips - 1; i > 0; i--) {
+                int j = aleatoire.nextInt(i + 1);
+                int echange = ordre[i];
+                ordre[i] = ordre[j];
+                ordre[j] = echange;
+            }
+        }
+
+        return ordre;
+    }
+
+    /**
+     * Crée une timeline avec autant de clips vidéos que de clips audios.
+     *
+     * @param nom Nom de la timeline.
+     * @param clips Nombre de clips vidéos (et audios).
+     * @param pistes Nombre de pistes vidéos (et audios).
+     * @param melange Si les clips sont ajoutés dans le désordre.
+     * @param graine Graine de l'ordre aléatoire.
+     * @return La timeline.
+     */
+    static Timeline timeline(String nom, int clips, int pistes, boolean melange, long graine) {
+        Timeline timeline = new Timeline(nom, FRAMERATE, new Timecode(0, FRAMERATE));
+        timeline.setDimension(1920, 1080);
+
+        MediaVideo[] videos = new MediaVideo[NOMBRE_FICHIERS];
+        MediaAudio[] audios = new MediaAudio[NOMBRE_FICHIERS];
+
+        for (int i = 0; i < NOMBRE_FICHIERS; i++) {
+            videos[i] = video(i);
+            audios[i] = audio(i);
+        }
+
+        for (int k : ordre(clips, melange, graine)) {
+            int piste = (k % pistes) + 1;
+            int debut = (k / pistes) * DUREE_CLIP;
+            timeline.addMedia(piste, videos[k % NOMBRE_FICHIERS], new Timecode(debut, FRAMERATE), new Timecode(debut + DUREE_CLIP - 1, FRAMERATE));
+            timeline.addMedia(piste, audios[k % NOMBRE_FICHIERS], new Timecode(debut, FRAMERATE), new Timecode(debut + DUREE_CLIP - 1, FRAMERATE));
+        }
+
+        return timeline;
+    }
+
+    /**
+     * Crée un média vidéo.
+     *
+     * @param numero Numéro du fichier.
+     * @return Le média.
+     */
+    static MediaVideo video(int numero) {
+        MediaVideo video = new MediaVideo("rush" + numero + ".mov", FRAMERATE);
+        video.setLocalisation("file://localhost/bench/rush" + numero + ".mov");
+        video.setStart(new Timecode(0, FRAMERATE));
+        video.setIn(new Timecode(0, FRAMERATE));
+        video.setOut(new Timecode(DUREE_CLIP - 1, FRAMERATE));
+        video.setDureeFichier(new Timecode(1000, FRAMERATE));
+        video.setDimension(1920, 1080);
+        video.setNomBobine("A" + numero);
+        return video;
+    }
+}
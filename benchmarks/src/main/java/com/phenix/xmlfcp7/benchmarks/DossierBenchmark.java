@@ -0,0 +1,76 @@
+package com.phenix.xmlfcp7.benchmarks;
+
+import com.phenix.xmlfcp7.Dossier;
+import com.phenix.xmlfcp7.IdAllocator;
+import com.phenix.xmlfcp7.XmlSink;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Écriture d'une arborescence de dossiers profonde.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DossierBenchmark {
+
+    /**
+     * Nombre de niveaux de dossiers.
+     */
+    @Param({"8", "64", "256"})
+    public int profondeur;
+
+    /**
+     * Nombre de sous-dossiers vides par niveau.
+     */
+    @Param({"4"})
+    public int largeur;
+
+    /**
+     * Nombre de clips de la timeline de chaque niveau.
+     */
+    @Param({"0", "10"})
+    public int clips;
+
+    /**
+     * Le dossier racine.
+     */
+    private Dossier dossier;
+
+    /**
+     * Construit l'arborescence.
+     */
+    @Setup
+    public void preparer() {
+        this.dossier = Donnees.arborescence(this.profondeur, this.largeur, this.clips);
+    }
+
+    /**
+     * Écrit l'arborescence.
+     *
+     * @return Nombre de caractères écrits.
+     * @throws IOException Jamais (la sortie est en mémoire).
+     */
+    @Benchmark
+    public long writeTo() throws IOException {
+        Puits puits = new Puits();
+        this.dossier.writeTo(new XmlSink(puits), new IdAllocator());
+        return puits.getLongueur();
+    }
+}
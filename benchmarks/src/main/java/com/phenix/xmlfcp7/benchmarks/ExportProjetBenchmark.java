@@ -0,0 +1,109 @@
+package com.phenix.xmlfcp7.benchmarks;
+
+import com.phenix.xmlfcp7.Timeline;
+import com.phenix.xmlfcp7.XMLFCP7;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Export complet d'un projet ({@link XMLFCP7#close()}) dans un fichier
+ * temporaire.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportProjetBenchmark {
+
+    /**
+     * Nombre de timelines du projet.
+     */
+    @Param({"1", "16", "200"})
+    public int timelines;
+
+    /**
+     * Nombre de clips vidéos (et autant de clips audios) par timeline.
+     */
+    @Param({"1000"})
+    public int clips;
+
+    /**
+     * Si les timelines sont écrites en parallèle.
+     */
+    @Param({"false", "true"})
+    public boolean parallele;
+
+    /**
+     * Les timelines du projet.
+     */
+    private Timeline[] liste_timeline;
+
+    /**
+     * Le fichier généré.
+     */
+    private File fichier;
+
+    /**
+     * Construit les timelines et crée le fichier temporaire.
+     *
+     * @throws IOException Impossible de créer le fichier.
+     */
+    @Setup
+    public void preparer() throws IOException {
+        this.liste_timeline = new Timeline[this.timelines];
+
+        for (int i = 0; i < this.timelines; i++) {
+            this.liste_timeline[i] = Donnees.timeline("timeline-" + i, this.clips, 4, false, i);
+        }
+
+        this.fichier = Files.createTempFile("xmlfcp7-bench", ".xml").toFile();
+    }
+
+    /**
+     * Supprime le fichier temporaire.
+     *
+     * @throws IOException Impossible de supprimer le fichier.
+     */
+    @TearDown
+    public void nettoyer() throws IOException {
+        Files.deleteIfExists(this.fichier.toPath());
+    }
+
+    /**
+     * Exporte le projet (un nouveau projet à chaque fois, pour que les IDs
+     * repartent de zéro).
+     *
+     * @return Taille du fichier.
+     */
+    @Benchmark
+    public long close() {
+        XMLFCP7 xml = new XMLFCP7(this.fichier, XMLFCP7.Mode.ECRITURE);
+        xml.setTitreProjet("bench");
+        xml.setExportParallele(this.parallele);
+
+        for (Timeline timeline : this.liste_timeline) {
+            xml.addTimeline(timeline);
+        }
+
+        xml.close();
+        return this.fichier.length();
+    }
+}
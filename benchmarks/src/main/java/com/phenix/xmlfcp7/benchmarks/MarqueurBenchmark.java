@@ -0,0 +1,79 @@
+package com.phenix.xmlfcp7.benchmarks;
+
+import com.phenix.xmlfcp7.IdAllocator;
+import com.phenix.xmlfcp7.Timeline;
+import com.phenix.xmlfcp7.XMLFCP7;
+import com.phenix.xmlfcp7.XmlSink;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Écriture d'une timeline avec beaucoup de marqueurs.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarqueurBenchmark {
+
+    /**
+     * Nombre de marqueurs.
+     */
+    @Param({"1000", "100000"})
+    public int marqueurs;
+
+    /**
+     * Nombre de clips vidéos (et autant de clips audios).
+     */
+    @Param({"100"})
+    public int clips;
+
+    /**
+     * Logiciel de destination (les couleurs ne sont pas écrites pareil).
+     */
+    @Param({"PREMIERE", "RESOLVE"})
+    public XMLFCP7.Logiciel logiciel;
+
+    /**
+     * La timeline écrite.
+     */
+    private Timeline timeline;
+
+    /**
+     * Construit la timeline et ses marqueurs.
+     */
+    @Setup
+    public void preparer() {
+        this.timeline = Donnees.timeline("bench", this.clips, 2, false, 0);
+        this.timeline.setLogicielDestination(this.logiciel);
+        Donnees.marqueurs(this.timeline, this.marqueurs);
+    }
+
+    /**
+     * Écrit la timeline.
+     *
+     * @return Nombre de caractères écrits.
+     * @throws IOException Jamais (la sortie est en mémoire).
+     */
+    @Benchmark
+    public long writeTo() throws IOException {
+        Puits puits = new Puits();
+        this.timeline.writeTo(new XmlSink(puits), new IdAllocator());
+        return puits.getLongueur();
+    }
+}
@@ -0,0 +1,42 @@
+package com.phenix.xmlfcp7.benchmarks;
+
+/**
+ * Sortie qui ne garde rien de l'XML écrit, seulement sa longueur : on mesure
+ * la génération, pas la copie dans un tampon.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class Puits implements Appendable {
+
+    /**
+     * Nombre de caractères écrits.
+     */
+    private long longueur;
+
+    @Override
+    public Appendable append(CharSequence texte) {
+        this.longueur += (texte == null) ? 4 : texte.length();
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence texte, int debut, int fin) {
+        this.longueur += fin - debut;
+        return this;
+    }
+
+    @Override
+    public Appendable append(char caractere) {
+        this.longueur++;
+        return this;
+    }
+
+    /**
+     * Retourne le nombre de caractères écrits.
+     *
+     * @return Nombre de caractères.
+     */
+    long getLongueur() {
+        return this.longueur;
+    }
+}
@@ -0,0 +1,71 @@
+package com.phenix.xmlfcp7.benchmarks;
+
+import com.phenix.xmlfcp7.IdAllocator;
+import com.phenix.xmlfcp7.Timeline;
+import com.phenix.xmlfcp7.XmlSink;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Écriture de l'XML d'une timeline (clips vidéos et audios), sans écriture
+ * sur disque.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenduTimelineBenchmark {
+
+    /**
+     * Nombre de clips vidéos (et autant de clips audios).
+     */
+    @Param({"1000", "10000", "200000"})
+    public int clips;
+
+    /**
+     * Nombre de pistes.
+     */
+    @Param({"1", "8", "64"})
+    public int pistes;
+
+    /**
+     * La timeline écrite.
+     */
+    private Timeline timeline;
+
+    /**
+     * Construit la timeline.
+     */
+    @Setup
+    public void preparer() {
+        this.timeline = Donnees.timeline("bench", this.clips, this.pistes, false, 0);
+    }
+
+    /**
+     * Écrit la timeline.
+     *
+     * @return Nombre de caractères écrits.
+     * @throws IOException Jamais (la sortie est en mémoire).
+     */
+    @Benchmark
+    public long writeTo() throws IOException {
+        Puits puits = new Puits();
+        this.timeline.writeTo(new XmlSink(puits), new IdAllocator());
+        return puits.getLongueur();
+    }
+}
@@ -0,0 +1,111 @@
+package com.phenix.xmlfcp7;
+
+/**
+ * Un clip à ajouter à une timeline avec {@link Timeline#addAll(java.util.Collection)
+ * addAll} : média, piste demandée, points in et out en image et activé ou
+ * non.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class ClipSpec {
+
+    /**
+     * Le média.
+     */
+    private final Media media;
+
+    /**
+     * Piste demandée (si elle est occupée, le clip ira sur une piste
+     * suivante).
+     */
+    private final int piste;
+
+    /**
+     * Point in en image.
+     */
+    private final long in;
+
+    /**
+     * Point out (inclus) en image.
+     */
+    private final long out;
+
+    /**
+     * Si le clip est activé.
+     */
+    private final boolean active;
+
+    /**
+     * Construit un clip activé.
+     *
+     * @param media Le média.
+     * @param piste Piste demandée.
+     * @param in Point in en image.
+     * @param out Point out (inclus) en image.
+     */
+    public ClipSpec(Media media, int piste, long in, long out) {
+        this(media, piste, in, out, true);
+    }
+
+    /**
+     * Construit un clip.
+     *
+     * @param media Le média.
+     * @param piste Piste demandée.
+     * @param in Point in en image.
+     * @param out Point out (inclus) en image.
+     * @param active Si le clip est activé.
+     */
+    public ClipSpec(Media media, int piste, long in, long out, boolean active) {
+        this.media = media;
+        this.piste = piste;
+        this.in = in;
+        this.out = out;
+        this.active = active;
+    }
+
+    /**
+     * Retourne le point in.
+     *
+     * @return Point in en image.
+     */
+    public long getIn() {
+        return this.in;
+    }
+
+    /**
+     * Retourne le média.
+     *
+     * @return Le média.
+     */
+    public Media getMedia() {
+        return this.media;
+    }
+
+    /**
+     * Retourne le point out.
+     *
+     * @return Point out (inclus) en image.
+     */
+    public long getOut() {
+        return this.out;
+    }
+
+    /**
+     * Retourne la piste demandée.
+     *
+     * @return Numéro de piste.
+     */
+    public int getPiste() {
+        return this.piste;
+    }
+
+    /**
+     * Indique si le clip est activé.
+     *
+     * @return {@code true} si activé.
+     */
+    public boolean isActive() {
+        return this.active;
+    }
+}
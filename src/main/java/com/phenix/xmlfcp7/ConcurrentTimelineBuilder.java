@@ -0,0 +1,389 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.timecode.Timecode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Construit une {@link Timeline} à partir de clips ajoutés par plusieurs
+ * threads en même temps.<br>
+ * Chaque thread écrit dans son propre tampon : son verrou n'est disputé que
+ * pendant {@link #build()}, jamais entre deux threads qui ajoutent. À la
+ * construction ({@link #build()}), les clips de tous les tampons sont triés
+ * (image de début, piste demandée, image de fin, média, activé) puis ajoutés
+ * un par un à la timeline : le placement sur les pistes ne dépend pas de
+ * l'ordre d'exécution des threads. Les médias sont comparés par type, nom du
+ * fichier, nom, localisation, points in, out et start, et framerate, puis,
+ * s'ils sont égaux, par l'XML que l'export écrit d'eux (bobine, effets, champs
+ * des sous-classes, etc) : deux clips égaux pour ce tri s'écrivent de la même
+ * façon.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class ConcurrentTimelineBuilder {
+
+    /**
+     * Les clips ajoutés par un thread.
+     */
+    private static final class Tampon {
+
+        /**
+         * Nombre de clips.
+         */
+        private int taille;
+
+        /**
+         * Piste demandée de chaque clip.
+         */
+        private int[] piste = new int[64];
+
+        /**
+         * Image de début de chaque clip.
+         */
+        private long[] debut = new long[64];
+
+        /**
+         * Image de fin (incluse) de chaque clip.
+         */
+        private long[] fin = new long[64];
+
+        /**
+         * Si chaque clip est activé.
+         */
+        private boolean[] active = new boolean[64];
+
+        /**
+         * Média de chaque clip.
+         */
+        private Media[] media = new Media[64];
+
+        /**
+         * Ajoute un clip.
+         *
+         * @param piste Le numéro de piste.
+         * @param media Le média.
+         * @param debut Image de début.
+         * @param fin Image de fin (incluse).
+         * @param active Si le clip est activé.
+         */
+        private synchronized void ajouter(int piste, Media media, long debut, long fin, boolean active) {
+            if (this.taille == this.piste.length) {
+                int capacite = this.taille * 2;
+                this.piste = Arrays.copyOf(this.piste, capacite);
+                this.debut = Arrays.copyOf(this.debut, capacite);
+                this.fin = Arrays.copyOf(this.fin, capacite);
+                this.active = Arrays.copyOf(this.active, capacite);
+                this.media = Arrays.copyOf(this.media, capacite);
+            }
+
+            this.piste[this.taille] = piste;
+            this.debut[this.taille] = debut;
+            this.fin[this.taille] = fin;
+            this.active[this.taille] = active;
+            this.media[this.taille] = media;
+            this.taille++;
+        }
+    }
+
+    /**
+     * Ordre des médias, qui ne dépend que de leur description.
+     */
+    private static final Comparator<Media> ORDRE_MEDIA = Comparator
+            .comparing((Media media) -> media.getClass().getName())
+            .thenComparing(Media::getNomFichier, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Media::getNom, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Media::getLocalisation, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingLong(Media::getImageIn)
+            .thenComparingLong(Media::getImageOut)
+            .thenComparingLong(Media::getImageStart)
+            .thenComparingInt(Media::getFramerate);
+
+    /**
+     * Le nom de la timeline.
+     */
+    private final String nom;
+
+    /**
+     * Framerate de la timeline.
+     */
+    private final int framerate;
+
+    /**
+     * Le timecode de début de la timeline.
+     */
+    private final Timecode start_tc;
+
+    /**
+     * Tous les tampons créés (un par thread).
+     */
+    private final ConcurrentLinkedQueue<Tampon> tampons = new ConcurrentLinkedQueue<Tampon>();
+
+    /**
+     * Tampon du thread courant.
+     */
+    private final ThreadLocal<Tampon> tampon = ThreadLocal.withInitial(() -> {
+        Tampon nouveau = new Tampon();
+        this.tampons.add(nouveau);
+        return nouveau;
+    });
+
+    /**
+     * Les marqueurs ajoutés.
+     */
+    private final ConcurrentLinkedQueue<Marqueur> marqueurs = new ConcurrentLinkedQueue<Marqueur>();
+
+    /**
+     * Construit un builder de timeline.
+     *
+     * @param nom Nom de la timeline.
+     * @param framerate Framerate de la timeline.
+     */
+    public ConcurrentTimelineBuilder(String nom, int framerate) {
+        this(nom, framerate, new Timecode("00:00:00:00"));
+    }
+
+    /**
+     * Construit un builder de timeline.
+     *
+     * @param nom Nom de la timeline.
+     * @param framerate Framerate de la timeline.
+     * @param start_tc Timecode début de la timeline.
+     */
+    public ConcurrentTimelineBuilder(String nom, int framerate, Timecode start_tc) {
+        this.nom = nom;
+        this.framerate = framerate;
+        this.start_tc = start_tc;
+    }
+
+    /**
+     * Ajoute un marqueur. Peut être appelé par plusieurs threads.
+     *
+     * @param marqueur Le marqueur.
+     */
+    public void addMarqueur(Marqueur marqueur) {
+        this.marqueurs.add(marqueur);
+    }
+
+    /**
+     * Ajoute un média à la piste demandée avec ses points in et out. Peut être
+     * appelé par plusieurs threads.
+     *
+     * @param piste Le numéro de piste.
+     * @param media Le média.
+     */
+    public void addMedia(int piste, Media media) {
+        this.addMedia(piste, media, media.getImageIn(), media.getImageOut(), true);
+    }
+
+    /**
+     * Ajoute un média en précisant la piste, point in et point out en image.
+     * Peut être appelé par plusieurs threads.
+     *
+     * @param piste Le numéro de piste (si elle est occupée, le clip ira sur
+     * une piste suivante, comme avec {@link Timeline#addMedia(int, Media, long, long, boolean)
+     * Timeline.addMedia}).
+     * @param media Le média.
+     * @param in Point in du média en image.
+     * @param out Point out (inclus) du média en image.
+     * @param active Si le média est activé dans la timeline.
+     */
+    public void addMedia(int piste, Media media, long in, long out, boolean active) {
+        this.tampon.get().ajouter(piste, media, in, out, active);
+    }
+
+    /**
+     * Construit la timeline avec tous les clips et marqueurs ajoutés jusque
+     * là. Le résultat ne dépend pas de l'ordre dans lequel les threads ont
+     * ajouté les clips. Peut être appelé plusieurs fois (une nouvelle timeline
+     * à chaque fois).
+     *
+     * @return La timeline.
+     */
+    public Timeline build() {
+        // On rassemble les clips de tous les tampons :
+        int taille = 0;
+        ArrayList<Tampon> copies = new ArrayList<Tampon>();
+
+        for (Tampon tampon : this.tampons) {
+            synchronized (tampon) {
+                Tampon copie = new Tampon();
+                copie.taille = tampon.taille;
+                copie.piste = Arrays.copyOf(tampon.piste, tampon.taille);
+                copie.debut = Arrays.copyOf(tampon.debut, tampon.taille);
+                copie.fin = Arrays.copyOf(tampon.fin, tampon.taille);
+                copie.active = Arrays.copyOf(tampon.active, tampon.taille);
+                copie.media = Arrays.copyOf(tampon.media, tampon.taille);
+                copies.add(copie);
+                taille += copie.taille;
+            }
+        }
+
+        int[] piste = new int[taille];
+        long[] debut = new long[taille];
+        long[] fin = new long[taille];
+        boolean[] active = new boolean[taille];
+        Media[] media = new Media[taille];
+        int position = 0;
+
+        for (Tampon copie : copies) {
+            System.arraycopy(copie.piste, 0, piste, position, copie.taille);
+            System.arraycopy(copie.debut, 0, debut, position, copie.taille);
+            System.arraycopy(copie.fin, 0, fin, position, copie.taille);
+            System.arraycopy(copie.active, 0, active, position, copie.taille);
+            System.arraycopy(copie.media, 0, media, position, copie.taille);
+            position += copie.taille;
+        }
+
+        // Rang de chaque média dans un ordre qui ne dépend que de sa description.
+        IdentityHashMap<Media, Integer> rangs = new IdentityHashMap<Media, Integer>();
+
+        for (Media m : media) {
+            rangs.put(m, 0);
+        }
+
+        ArrayList<Media> distincts = new ArrayList<Media>(rangs.keySet());
+        distincts.sort(ORDRE_MEDIA);
+
+        // Les médias égaux pour ORDRE_MEDIA sont départagés par leur XML.
+        Timeline timeline = new Timeline(this.nom, this.framerate, this.start_tc);
+        IdentityHashMap<Media, String> descriptions = new IdentityHashMap<Media, String>();
+
+        for (int i = 1, premier = 0; i <= distincts.size(); i++) {
+            if (i == distincts.size() || ORDRE_MEDIA.compare(distincts.get(i - 1), distincts.get(i)) != 0) {
+                if (i - premier > 1) {
+                    List<Media> egaux = distincts.subList(premier, i);
+
+                    for (Media m : egaux) {
+                        descriptions.put(m, timeline.decrireClip(m));
+                    }
+
+                    egaux.sort(Comparator.comparing(descriptions::get));
+                }
+
+                premier = i;
+            }
+        }
+
+        for (int i = 1, rang = 0; i < distincts.size(); i++) {
+            Media precedent = distincts.get(i - 1);
+            Media courant = distincts.get(i);
+
+            if (ORDRE_MEDIA.compare(precedent, courant) != 0 || !descriptions.get(precedent).equals(descriptions.get(courant))) {
+                rang++;
+            }
+
+            rangs.put(courant, rang);
+        }
+
+        int[] rang_media = new int[taille];
+
+        for (int i = 0; i < taille; i++) {
+            rang_media[i] = rangs.get(media[i]);
+        }
+
+        // Ordre qui ne dépend que des clips : début, piste, fin, média, activé.
+        int[] ordre = new int[taille];
+
+        for (int i = 0; i < taille; i++) {
+            ordre[i] = i;
+        }
+
+        trier(ordre, new int[taille], 0, taille, piste, debut, fin, rang_media, active);
+
+        ArrayList<ClipSpec> lot = new ArrayList<ClipSpec>(taille);
+
+        for (int i : ordre) {
+            lot.add(new ClipSpec(media[i], piste[i], debut[i], fin[i], active[i]));
+        }
+
+        timeline.addAll(lot);
+
+        // Dans l'ordre de la table des marqueurs : chaque ajout se fait à la fin.
+        ArrayList<Marqueur> liste_marqueur = new ArrayList<Marqueur>(this.marqueurs);
+        liste_marqueur.sort(Marqueur::comparer);
+
+        for (Marqueur marqueur : liste_marqueur) {
+            timeline.addMarqueur(marqueur);
+        }
+
+        return timeline;
+    }
+
+    /**
+     * Compare deux clips : image de début, piste demandée, image de fin, rang
+     * du média puis activé.
+     *
+     * @param i Indice du premier clip.
+     * @param j Indice du second clip.
+     * @param piste Piste demandée de chaque clip.
+     * @param debut Image de début de chaque clip.
+     * @param fin Image de fin de chaque clip.
+     * @param rang_media Rang du média de chaque clip.
+     * @param active Si chaque clip est activé.
+     * @return Négatif, nul ou positif.
+     */
+    private static int comparer(int i, int j, int[] piste, long[] debut, long[] fin, int[] rang_media, boolean[] active) {
+        int comparaison = Long.compare(debut[i], debut[j]);
+
+        if (comparaison == 0) {
+            comparaison = Integer.compare(piste[i], piste[j]);
+        }
+
+        if (comparaison == 0) {
+            comparaison = Long.compare(fin[i], fin[j]);
+        }
+
+        if (comparaison == 0) {
+            comparaison = Integer.compare(rang_media[i], rang_media[j]);
+        }
+
+        if (comparaison == 0) {
+            comparaison = Boolean.compare(active[i], active[j]);
+        }
+
+        return comparaison;
+    }
+
+    /**
+     * Trie une partie d'un tableau d'indices de clips (tri fusion stable, sur
+     * des {@code int} : pas d'objet par clip).
+     *
+     * @param ordre Les indices à trier.
+     * @param tampon Tableau de travail, de la taille de {@code ordre}.
+     * @param bas Premier indice de la partie.
+     * @param haut Indice après le dernier de la partie.
+     * @param piste Piste demandée de chaque clip.
+     * @param debut Image de début de chaque clip.
+     * @param fin Image de fin de chaque clip.
+     * @param rang_media Rang du média de chaque clip.
+     * @param active Si chaque clip est activé.
+     */
+    private static void trier(int[] ordre, int[] tampon, int bas, int haut, int[] piste, long[] debut, long[] fin, int[] rang_media, boolean[] active) {
+        if (haut - bas < 2) {
+            return;
+        }
+
+        int milieu = (bas + haut) >>> 1;
+        trier(ordre, tampon, bas, milieu, piste, debut, fin, rang_media, active);
+        trier(ordre, tampon, milieu, haut, piste, debut, fin, rang_media, active);
+
+        // Les deux moitiés sont déjà dans l'ordre : rien à fusionner.
+        if (comparer(ordre[milieu - 1], ordre[milieu], piste, debut, fin, rang_media, active) <= 0) {
+            return;
+        }
+
+        System.arraycopy(ordre, bas, tampon, bas, haut - bas);
+
+        for (int k = bas, i = bas, j = milieu; k < haut; k++) {
+            if (j >= haut || (i < milieu && comparer(tampon[i], tampon[j], piste, debut, fin, rang_media, active) <= 0)) {
+                ordre[k] = tampon[i++];
+            } else {
+                ordre[k] = tampon[j++];
+            }
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.phenix.xmlfcp7;
 
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import com.phenix.xmlfcp7.enums.PrettyPrint;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 
 /**
  * Dossier du projet.
@@ -9,6 +15,13 @@ import java.util.ArrayList;
  */
 public final class Dossier {
 
+    /**
+     * Taille de la copie (en caractères) au-delà de laquelle elle est coupée
+     * entre deux dossiers (voir {@link #writeTo(XmlSink, IdAllocator)
+     * writeTo}).
+     */
+    private static final int TAILLE_COUPE = 4 * 1024 * 1024;
+
     /**
      * Liste des médias dans le dossier.
      */
@@ -34,6 +47,21 @@ public final class Dossier {
      */
     private CouleurAdobe couleur;
 
+    /**
+     * Logiciel auquel est destiné l'XML des médias du dossier.
+     */
+    private Logiciel logiciel_destination = Logiciel.PREMIERE;
+
+    /**
+     * Augmente à chaque modification du dossier (voir {@link RenduCache}).
+     */
+    private long version;
+
+    /**
+     * XML du dossier rendu au dernier export.
+     */
+    private volatile RenduCache cache;
+
     /**
      * Couleurs d'Adobe.
      */
@@ -84,6 +112,22 @@ public final class Dossier {
             this.valeur = valeur;
         }
 
+        /**
+         * Retourne une couleur selon sa valeur chez Adobe.
+         *
+         * @param valeur Valeur de la couleur chez Adobe.
+         * @return La couleur ou {@code null} si elle n'est pas connue.
+         */
+        public static CouleurAdobe fromValeur(String valeur) {
+            for (CouleurAdobe couleur : values()) {
+                if (couleur.valeur.equals(valeur)) {
+                    return couleur;
+                }
+            }
+
+            return null;
+        }
+
         /**
          *
          * @return
@@ -94,6 +138,62 @@ public final class Dossier {
         }
     }
 
+    /**
+     * Un dossier pendant un parcours de l'arbre, avec le prochain
+     * sous-dossier à visiter.
+     */
+    private static final class Cadre {
+
+        /**
+         * Le dossier.
+         */
+        private final Dossier dossier;
+
+        /**
+         * Indice du prochain sous-dossier à visiter.
+         */
+        private int suivant;
+
+        /**
+         * À l'écriture, profondeur d'indentation du dossier.
+         */
+        private final int profondeur;
+
+        /**
+         * À l'écriture, début du dossier dans la copie ({@code -1} s'il n'y
+         * en a pas).
+         */
+        private int debut;
+
+        /**
+         * À l'écriture, fin (exclue) du dossier dans la copie.
+         */
+        private int fin = -1;
+
+        /**
+         * Construit le cadre d'un dossier à parcourir.
+         *
+         * @param dossier Le dossier.
+         */
+        private Cadre(Dossier dossier) {
+            this.dossier = dossier;
+            this.profondeur = 0;
+            this.debut = -1;
+        }
+
+        /**
+         * Construit le cadre d'un dossier qui va être écrit.
+         *
+         * @param dossier Le dossier.
+         * @param sink Où le dossier va être écrit.
+         */
+        private Cadre(Dossier dossier, XmlSink sink) {
+            this.dossier = dossier;
+            this.profondeur = sink.getProfondeur();
+            this.debut = sink.getPositionCopie();
+        }
+    }
+
     /**
      * Construit un objet Dossier.
      *
@@ -121,7 +221,9 @@ public final class Dossier {
      * @param dossier Dossier à ajouter.
      */
     public void addDossier(Dossier dossier) {
+        dossier.setLogicielDestination(this.logiciel_destination);
         this.liste_dossier.add(dossier);
+        this.version++;
     }
 
     /**
@@ -131,6 +233,7 @@ public final class Dossier {
      */
     public void addMedia(Media media) {
         this.liste_media.add(media);
+        this.version++;
     }
 
     /**
@@ -139,7 +242,36 @@ public final class Dossier {
      * @param timeline La timeline.
      */
     public void addTimeline(Timeline timeline) {
+        timeline.setLogicielDestination(this.logiciel_destination);
         this.liste_timeline.add(timeline);
+        this.version++;
+    }
+
+    /**
+     * Retourne la liste des sous-dossiers.
+     *
+     * @return Liste des sous-dossiers.
+     */
+    public ArrayList<Dossier> getListeDossier() {
+        return this.liste_dossier;
+    }
+
+    /**
+     * Retourne la liste des médias du dossier.
+     *
+     * @return Liste des médias.
+     */
+    public ArrayList<Media> getListeMedia() {
+        return this.liste_media;
+    }
+
+    /**
+     * Retourne la liste des timelines du dossier.
+     *
+     * @return Liste des timelines.
+     */
+    public ArrayList<Timeline> getListeTimeline() {
+        return this.liste_timeline;
     }
 
     /**
@@ -151,6 +283,50 @@ public final class Dossier {
         return this.nom;
     }
 
+    /**
+     * Réserve les masterclips des médias du dossier et les IDs de ses
+     * timelines (sans ses sous-dossiers).
+     *
+     * @param ids Les IDs du projet.
+     */
+    private void reserverContenu(IdAllocator ids) {
+        byte[] masterclips = new byte[this.liste_media.size()];
+
+        for (int i = 0; i < masterclips.length; i++) {
+            masterclips[i] = ids.reserverMasterclip(this.liste_media.get(i));
+        }
+
+        ids.reserver(this, masterclips);
+
+        for (Timeline timeline : this.liste_timeline) {
+            ids.reserver(timeline);
+        }
+    }
+
+    /**
+     * Réserve, dans l'ordre du document, les IDs des timelines du dossier et
+     * de ses sous-dossiers, et les masterclips de ses médias (voir
+     * {@link IdAllocator}).
+     *
+     * @param ids Les IDs du projet.
+     */
+    void reserverIds(IdAllocator ids) {
+        // Parcours en profondeur avec une pile : pas de limite de profondeur.
+        ArrayDeque<Cadre> pile = new ArrayDeque<Cadre>();
+        pile.push(new Cadre(this));
+
+        while (!pile.isEmpty()) {
+            Cadre cadre = pile.peek();
+
+            if (cadre.suivant < cadre.dossier.liste_dossier.size()) {
+                pile.push(new Cadre(cadre.dossier.liste_dossier.get(cadre.suivant++)));
+            } else {
+                pile.pop();
+                cadre.dossier.reserverContenu(ids);
+            }
+        }
+    }
+
     /**
      * Modifie la couleur du dossier.
      *
@@ -158,6 +334,35 @@ public final class Dossier {
      */
     public void setCouleur(CouleurAdobe couleur) {
         this.couleur = couleur;
+        this.version++;
+    }
+
+    /**
+     * Modifie le logiciel auquel est destiné l'XML des médias et des timelines
+     * du dossier et de ses sous-dossiers.
+     *
+     * @param logiciel_destination Le logiciel.
+     */
+    public void setLogicielDestination(Logiciel logiciel_destination) {
+        ArrayDeque<Dossier> pile = new ArrayDeque<Dossier>();
+        pile.push(this);
+
+        while (!pile.isEmpty()) {
+            Dossier dossier = pile.pop();
+
+            if (dossier.logiciel_destination != logiciel_destination) {
+                dossier.logiciel_destination = logiciel_destination;
+                dossier.version++;
+            }
+
+            for (Timeline timeline : dossier.liste_timeline) {
+                timeline.setLogicielDestination(logiciel_destination);
+            }
+
+            for (Dossier sous_dossier : dossier.liste_dossier) {
+                pile.push(sous_dossier);
+            }
+        }
     }
 
     /**
@@ -167,6 +372,92 @@ public final class Dossier {
      */
     public void setNom(String nom) {
         this.nom = nom;
+        this.version++;
+    }
+
+    /**
+     * Retourne tout ce dont dépend le rendu du dossier : sa version, les
+     * signatures de ses sous-dossiers et de ses timelines, l'état de ses
+     * médias et leurs masterclips réservés (voir {@link RenduCache}).<br>
+     * Si c'est la signature du rendu gardé, c'est le tableau de ce rendu qui
+     * est retourné : le dossier parent le compare alors en temps constant.
+     *
+     * @param ids Les IDs du projet, avec les réservations.
+     * @param signatures Signatures déjà calculées des sous-dossiers.
+     * @return La signature, {@code null} si le dossier ou une timeline n'a
+     * pas de réservation.
+     */
+    private Object[] signature(IdAllocator ids, IdentityHashMap<Dossier, Object[]> signatures) {
+        ArrayList<Object> liste = new ArrayList<Object>();
+        liste.add(this.version);
+
+        for (Dossier dossier : this.liste_dossier) {
+            Object[] signature_dossier = signatures.get(dossier);
+
+            if (signature_dossier == null) {
+                return null;
+            }
+
+            liste.add(signature_dossier);
+        }
+
+        byte[] masterclips = ids.getMasterclips(this);
+
+        if (masterclips == null) {
+            return null;
+        }
+
+        liste.add(masterclips);
+
+        for (Media media : this.liste_media) {
+            media.signer(liste);
+            liste.add(ids.getIdMedia(media));
+        }
+
+        for (Timeline timeline : this.liste_timeline) {
+            Object[] signature_timeline = ids.pour(timeline).getSignature();
+
+            if (signature_timeline == null) {
+                return null;
+            }
+
+            liste.add(signature_timeline);
+        }
+
+        Object[] signature = liste.toArray();
+        RenduCache rendu = this.cache;
+
+        if (rendu != null && Arrays.deepEquals(rendu.getSignature(), signature)) {
+            return rendu.getSignature();
+        }
+
+        return signature;
+    }
+
+    /**
+     * Calcule les signatures du dossier et de tous ses sous-dossiers, chacune
+     * une seule fois (les sous-dossiers avant leur parent).
+     *
+     * @param ids Les IDs du projet, avec les réservations.
+     * @return Signature de chaque dossier ({@code null} s'il n'en a pas).
+     */
+    private IdentityHashMap<Dossier, Object[]> signatures(IdAllocator ids) {
+        IdentityHashMap<Dossier, Object[]> signatures = new IdentityHashMap<Dossier, Object[]>();
+        ArrayDeque<Cadre> pile = new ArrayDeque<Cadre>();
+        pile.push(new Cadre(this));
+
+        while (!pile.isEmpty()) {
+            Cadre cadre = pile.peek();
+
+            if (cadre.suivant < cadre.dossier.liste_dossier.size()) {
+                pile.push(new Cadre(cadre.dossier.liste_dossier.get(cadre.suivant++)));
+            } else {
+                pile.pop();
+                signatures.put(cadre.dossier, cadre.dossier.signature(ids, signatures));
+            }
+        }
+
+        return signatures;
     }
 
     /**
@@ -176,32 +467,213 @@ public final class Dossier {
      */
     @Override
     public String toString() {
-        String xml = "<bin>\n"
-                + "<name>" + this.nom + "</name>\n"
-                + "<labels>\n"
-                + "<label2>" + this.couleur + "</label2>\n"
-                + "</labels>\n";
+        return XmlSink.enChaine(this::writeTo);
+    }
 
-        xml += "<children>\n";
+    /**
+     * Écrit l'XML généré pour créer un projet d'un NLE (avec ses propres IDs).
+     *
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeTo(XmlSink sink) throws IOException {
+        IdAllocator ids = new IdAllocator();
+        this.reserverIds(ids);
+        ids.figer();
+        this.writeTo(sink, ids);
+    }
 
-        // Ajout des sous-dossiers :
-        for (Dossier dossier : this.liste_dossier) {
-            xml += dossier.toString();
+    /**
+     * Écrit l'XML généré pour créer un projet d'un NLE.<br>
+     * L'arbre des dossiers est écrit au fil de l'eau, en profondeur, avec une
+     * pile (pas de limite de profondeur). Une seule copie de l'XML est gardée
+     * pour tout l'arbre : le rendu de chaque sous-dossier en est une partie.
+     * Quand la copie devient grande, elle est coupée entre deux dossiers : les
+     * dossiers déjà écrits gardent leur rendu, ceux en cours n'en ont pas. Un
+     * sous-dossier inchangé est écrit tel quel, sans être copié à nouveau :
+     * ses dossiers parents n'ont pas de rendu gardé et sont parcourus à
+     * nouveau à l'export suivant (seul leur propre contenu est réécrit).
+     *
+     * @param sink Où écrire l'XML.
+     * @param ids Les IDs du projet.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeTo(XmlSink sink, IdAllocator ids) throws IOException {
+        IdentityHashMap<Dossier, Object[]> signatures = this.signatures(ids);
+        Object[] signature = signatures.get(this);
+
+        // Sans réservation, pas de signature : rien à réutiliser.
+        if (signature == null) {
+            this.ecrireArbre(sink, ids, signatures, null);
+            return;
         }
 
-        // Ajout des médias :
-        for (Media media : this.liste_media) {
-            xml += ((Media) media).toString();
+        RenduCache rendu = this.cache;
+        String xml_rendu = (rendu != null) ? rendu.getXml(signature, sink) : null;
+
+        if (xml_rendu != null) {
+            rendu.writeTo(sink, xml_rendu);
+            return;
+        }
+
+        ArrayList<Cadre> rendus = new ArrayList<Cadre>();
+        String xml = sink.ecrireCopie(s -> this.ecrireArbre(s, ids, signatures, rendus));
+
+        this.cache = null;
+        garderRendus(xml, rendus, signatures, sink.getMiseEnForme());
+    }
+
+    /**
+     * Écrit le dossier et ses sous-dossiers. Un sous-dossier dont le rendu
+     * gardé est à jour est écrit tel quel.
+     *
+     * @param sink Où écrire l'XML.
+     * @param ids Les IDs du projet.
+     * @param signatures Signature de chaque dossier.
+     * @param rendus Où noter la partie de la copie écrite pour chaque dossier
+     * ({@code null} si on ne garde pas de copie).
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void ecrireArbre(XmlSink sink, IdAllocator ids, IdentityHashMap<Dossier, Object[]> signatures, ArrayList<Cadre> rendus) throws IOException {
+        ArrayDeque<Cadre> pile = new ArrayDeque<Cadre>();
+        pile.push(new Cadre(this, sink));
+        this.ouvrir(sink);
+
+        while (!pile.isEmpty()) {
+            Cadre cadre = pile.peek();
+
+            if (cadre.suivant < cadre.dossier.liste_dossier.size()) {
+                Dossier dossier = cadre.dossier.liste_dossier.get(cadre.suivant++);
+                Object[] signature = signatures.get(dossier);
+                RenduCache rendu = dossier.cache;
+                String xml_rendu = (signature != null && rendu != null) ? rendu.getXml(signature, sink) : null;
+
+                if (xml_rendu != null) {
+                    // Il garde son rendu et n'est pas recopié : les dossiers en cours n'auront pas de rendu.
+                    if (rendus != null) {
+                        couper(sink, pile, signatures, rendus);
+                        rendu.writeHorsCopieTo(sink, xml_rendu);
+                    } else {
+                        rendu.writeTo(sink, xml_rendu);
+                    }
+                } else {
+                    pile.push(new Cadre(dossier, sink));
+                    dossier.ouvrir(sink);
+                }
+            } else {
+                pile.pop();
+                cadre.dossier.fermer(sink, ids);
+                garder(cadre, sink, signatures, rendus);
+            }
+
+            // Copie trop grande (ou abandonnée) : on la coupe ici, entre deux dossiers.
+            if (rendus != null && !pile.isEmpty()) {
+                int position = sink.getPositionCopie();
+
+                if (position < 0 || position > TAILLE_COUPE) {
+                    couper(sink, pile, signatures, rendus);
+                }
+            }
+        }
+    }
+
+    /**
+     * Coupe la copie entre deux dossiers : les dossiers déjà écrits gardent
+     * leur rendu, les dossiers en cours (dans la pile) n'en auront pas.
+     *
+     * @param sink Où l'XML est écrit.
+     * @param pile Les dossiers en cours.
+     * @param signatures Signature de chaque dossier.
+     * @param rendus Partie de la copie écrite pour chaque dossier.
+     */
+    private static void couper(XmlSink sink, ArrayDeque<Cadre> pile, IdentityHashMap<Dossier, Object[]> signatures, ArrayList<Cadre> rendus) {
+        garderRendus(sink.couperCopie(), rendus, signatures, sink.getMiseEnForme());
+
+        for (Cadre ouvert : pile) {
+            ouvert.debut = -1;
+        }
+    }
+
+    /**
+     * Écrit la fin du dossier, après ses sous-dossiers : ses médias, ses
+     * timelines et les balises fermantes.
+     *
+     * @param sink Où écrire l'XML.
+     * @param ids Les IDs du projet.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void fermer(XmlSink sink, IdAllocator ids) throws IOException {
+        // Ajout des médias (les masterclips sont décidés à la réservation) :
+        byte[] masterclips = ids.getMasterclips(this);
+
+        for (int i = 0; i < this.liste_media.size(); i++) {
+            Media media = this.liste_media.get(i);
+            byte masterclip = (masterclips != null) ? masterclips[i] : ids.reserverMasterclip(media);
+
+            if ((masterclip & IdAllocator.MASTERCLIP) != 0) {
+                media.writeMasterclipTo(sink, ids.getIdMedia(media), (masterclip & IdAllocator.FICHIER) != 0, this.logiciel_destination);
+            }
         }
 
         // Ajout des séquences :
         for (Timeline timeline : this.liste_timeline) {
-            xml += timeline.toString();
+            timeline.writeTo(sink, ids);
         }
 
-        xml += "</children>\n"
-                + "</bin>\n";
+        sink.ferme("children");
+        sink.ferme("bin");
+    }
+
+    /**
+     * Note la partie de la copie écrite pour un dossier, s'il a une signature
+     * et si la copie n'a pas été abandonnée.
+     *
+     * @param cadre Le dossier qui vient d'être écrit.
+     * @param sink Où l'XML a été écrit.
+     * @param signatures Signature de chaque dossier.
+     * @param rendus Où noter la partie de la copie ({@code null} si on ne
+     * garde pas de copie).
+     */
+    private static void garder(Cadre cadre, XmlSink sink, IdentityHashMap<Dossier, Object[]> signatures, ArrayList<Cadre> rendus) {
+        cadre.fin = sink.getPositionCopie();
+
+        if (rendus != null && cadre.debut >= 0 && cadre.fin >= 0 && signatures.get(cadre.dossier) != null) {
+            rendus.add(cadre);
+        }
+    }
+
+    /**
+     * Garde le rendu des dossiers écrits dans une copie, puis vide la liste.
+     *
+     * @param xml La copie, {@code null} si elle a été abandonnée (aucun rendu
+     * n'est gardé).
+     * @param rendus Partie de la copie écrite pour chaque dossier.
+     * @param signatures Signature de chaque dossier.
+     * @param mise_en_forme Mise en forme de la copie.
+     */
+    private static void garderRendus(String xml, ArrayList<Cadre> rendus, IdentityHashMap<Dossier, Object[]> signatures, PrettyPrint mise_en_forme) {
+        if (xml != null) {
+            for (Cadre cadre : rendus) {
+                cadre.dossier.cache = new RenduCache(signatures.get(cadre.dossier), cadre.profondeur, mise_en_forme, xml, cadre.debut, cadre.fin);
+            }
+        }
+
+        rendus.clear();
+    }
+
+    /**
+     * Écrit le début du dossier, avant ses sous-dossiers.
+     *
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void ouvrir(XmlSink sink) throws IOException {
+        sink.ouvre("bin");
+        sink.element("name", this.nom);
+        sink.ouvre("labels");
+        sink.element("label2", this.couleur);
+        sink.ferme("labels");
 
-        return xml;
+        sink.ouvre("children");
     }
 }
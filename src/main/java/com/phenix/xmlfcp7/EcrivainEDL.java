@@ -0,0 +1,213 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Écrit une {@link Timeline} en EDL CMX3600, directement depuis ses clips :
+ * une ligne d'événement par clip, au fil de l'eau.<br>
+ * CMX3600 n'a qu'une piste vidéo ({@code V}) et quatre pistes audio
+ * ({@code A}, {@code A2}, {@code A3}, {@code A4}) : seules la piste vidéo
+ * demandée et les pistes audio 1 à 4 sont écrites. Les clips désactivés ne
+ * sont pas écrits. La bobine est {@link Media#getNomBobine() getNomBobine}
+ * (le nom du fichier s'il n'y en a pas), suivie de
+ * {@code * FROM CLIP NAME:}. Les marqueurs deviennent des lignes
+ * {@code * LOC:} après l'événement pendant lequel ils se trouvent.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class EcrivainEDL {
+
+    /**
+     * Nombre de pistes audio d'une EDL CMX3600.
+     */
+    private static final int PISTES_AUDIO = 4;
+
+    /**
+     * La timeline.
+     */
+    private final Timeline timeline;
+
+    /**
+     * Où écrire l'EDL.
+     */
+    private final Appendable sortie;
+
+    /**
+     * Framerate des timecodes.
+     */
+    private final RateInfo rate;
+
+    /**
+     * Construit l'écrivain.
+     *
+     * @param timeline La timeline.
+     * @param sortie Où écrire l'EDL.
+     */
+    EcrivainEDL(Timeline timeline, Appendable sortie) {
+        this.timeline = timeline;
+        this.sortie = sortie;
+        this.rate = timeline.getRate();
+    }
+
+    /**
+     * Retourne le nom de couleur d'un marqueur dans une EDL.
+     *
+     * @param couleur La couleur.
+     * @return Nom de la couleur.
+     */
+    private static String couleur(CouleurMarqueur couleur) {
+        if (couleur == null) {
+            return "GREEN";
+        }
+
+        switch (couleur) {
+            case ROUGE:
+                return "RED";
+            case BLEU:
+                return "BLUE";
+            case ORANGE:
+                return "ORANGE";
+            case JAUNE:
+                return "YELLOW";
+            case BLANC:
+                return "WHITE";
+            default:
+                return "GREEN";
+        }
+    }
+
+    /**
+     * Écrit l'EDL.
+     *
+     * @param piste_video Numéro de la piste vidéo à écrire.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    void ecrire(int piste_video) throws IOException {
+        TableClips video = this.timeline.getClipsVideo();
+        TableClips audio = this.timeline.getClipsAudio();
+
+        // Les clips à écrire : indice dans la table vidéo, ou -1 - indice dans la table audio.
+        ArrayList<Integer> clips = new ArrayList<Integer>(video.getTaille() + audio.getTaille());
+
+        for (int j = (piste_video <= video.getPisteMax()) ? video.getPremierClip(piste_video) : -1; j >= 0; j = video.getClipSuivant(j)) {
+            if (video.isActive(j)) {
+                clips.add(j);
+            }
+        }
+
+        for (int i = 1; i <= Math.min(PISTES_AUDIO, audio.getPisteMax()); i++) {
+            for (int j = audio.getPremierClip(i); j >= 0; j = audio.getClipSuivant(j)) {
+                if (audio.isActive(j)) {
+                    clips.add(-1 - j);
+                }
+            }
+        }
+
+        // Par position dans la timeline, la vidéo avant l'audio, puis par piste.
+        clips.sort(Comparator
+                .comparingLong((Integer clip) -> (clip >= 0) ? video.getDebut(clip) : audio.getDebut(-1 - clip))
+                .thenComparingInt(clip -> (clip >= 0) ? 0 : audio.getPiste(-1 - clip)));
+
+        // Les marqueurs sont déjà triés par image in.
+        TableMarqueurs marqueurs = this.timeline.getMarqueurs();
+        int marqueur = 0;
+
+        this.sortie.append("TITLE: ").append(this.timeline.getNom()).append('\n');
+        this.sortie.append("FCM: ").append(this.rate.isDropFrame() ? "DROP FRAME" : "NON-DROP FRAME").append('\n');
+        this.sortie.append('\n');
+
+        int numero = 0;
+
+        for (int clip : clips) {
+            boolean est_video = clip >= 0;
+            TableClips table = est_video ? video : audio;
+            int indice = est_video ? clip : -1 - clip;
+            long debut = table.getDebut(indice);
+
+            // Les marqueurs avant ce clip suivent l'événement précédent.
+            while (marqueur < marqueurs.getTaille() && marqueurs.getMarqueur(marqueur).getImageIn() < debut) {
+                this.ecrireMarqueur(marqueurs.getMarqueur(marqueur++));
+            }
+
+            int piste = table.getPiste(indice);
+            this.ecrireEvenement(++numero, table.getMedia(indice), est_video ? "V" : (piste == 1) ? "A" : "A" + piste, debut, table.getFin(indice));
+        }
+
+        while (marqueur < marqueurs.getTaille()) {
+            this.ecrireMarqueur(marqueurs.getMarqueur(marqueur++));
+        }
+    }
+
+    /**
+     * Écrit un événement (coupe franche) et le nom de son clip. La durée est
+     * celle du clip dans la timeline (pas celle des points in et out du
+     * média) : la source et l'enregistrement ont la même durée.
+     *
+     * @param numero Numéro de l'événement.
+     * @param media Le média.
+     * @param piste Piste ({@code V}, {@code A}, {@code A2}, etc).
+     * @param debut Première image du clip dans la timeline.
+     * @param fin Dernière image du clip dans la timeline.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void ecrireEvenement(int numero, Media media, String piste, long debut, long fin) throws IOException {
+        String nom_fichier = media.getNomFichier();
+        String nom_clip = (media.getNom() != null) ? media.getNom() : nom_fichier;
+        String bobine = (media.getNomBobine() != null) ? media.getNomBobine() : nom_fichier;
+        long source = media.getImageStart() + media.getImageIn();
+        long duree = fin - debut + 1;
+
+        // Numéro sur au moins trois chiffres.
+        if (numero < 100) {
+            this.sortie.append((numero < 10) ? "00" : "0");
+        }
+
+        this.sortie.append(Integer.toString(numero));
+        this.sortie.append("  ");
+        this.remplir(bobine.replace(' ', '_'), 8);
+        this.sortie.append(' ');
+        this.remplir(piste, 5);
+        this.sortie.append(' ');
+        this.remplir("C", 8);
+        this.sortie.append(' ').append(this.rate.timecode(source));
+        this.sortie.append(' ').append(this.rate.timecode(source + duree));
+        this.sortie.append(' ').append(this.rate.timecode(debut));
+        this.sortie.append(' ').append(this.rate.timecode(fin + 1));
+        this.sortie.append('\n');
+
+        this.sortie.append("* FROM CLIP NAME: ").append(nom_clip).append('\n');
+    }
+
+    /**
+     * Écrit un marqueur ({@code * LOC:}).
+     *
+     * @param marqueur Le marqueur.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void ecrireMarqueur(Marqueur marqueur) throws IOException {
+        String texte = (marqueur.getNote() != null && !marqueur.getNote().isEmpty()) ? marqueur.getNote() : marqueur.getNom();
+
+        this.sortie.append("* LOC: ").append(this.rate.timecode(marqueur.getImageIn()));
+        this.sortie.append(' ');
+        this.remplir(couleur(marqueur.getCouleur()), 7);
+        this.sortie.append(' ').append((texte != null) ? texte.replace('\n', ' ') : "").append('\n');
+    }
+
+    /**
+     * Écrit un texte complété par des espaces.
+     *
+     * @param texte Le texte.
+     * @param largeur Largeur minimum.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void remplir(String texte, int largeur) throws IOException {
+        this.sortie.append(texte);
+
+        for (int i = texte.length(); i < largeur; i++) {
+            this.sortie.append(' ');
+        }
+    }
+}
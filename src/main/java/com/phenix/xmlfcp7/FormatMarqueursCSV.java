@@ -0,0 +1,290 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Format d'un rapport CSV (ou TSV) de marqueurs, par exemple un rapport de
+ * contrôle qualité : séparateur, ligne d'en-tête, colonne de chaque
+ * information et couleur de chaque sévérité (voir
+ * {@link Timeline#importerMarqueurs(java.nio.file.Path, FormatMarqueursCSV)
+ * importerMarqueurs}).<br>
+ * Par défaut : une ligne d'en-tête, puis le timecode (colonne 0), la durée
+ * (1), la sévérité (2), le nom (3) et la note (4). Une colonne à {@code -1}
+ * n'est pas lue.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class FormatMarqueursCSV {
+
+    /**
+     * Séparateur des colonnes.
+     */
+    private final char separateur;
+
+    /**
+     * Si la première ligne est une ligne d'en-tête.
+     */
+    private boolean entete = true;
+
+    /**
+     * Colonne du timecode in.
+     */
+    private int colonne_timecode = 0;
+
+    /**
+     * Colonne de la durée (timecode ou nombre d'images).
+     */
+    private int colonne_duree = 1;
+
+    /**
+     * Colonne de la sévérité.
+     */
+    private int colonne_severite = 2;
+
+    /**
+     * Colonne du nom.
+     */
+    private int colonne_nom = 3;
+
+    /**
+     * Colonne de la note.
+     */
+    private int colonne_note = 4;
+
+    /**
+     * Les sévérités connues (en minuscules).
+     */
+    private final ArrayList<String> severites = new ArrayList<String>();
+
+    /**
+     * Couleur de chaque sévérité connue.
+     */
+    private final ArrayList<CouleurMarqueur> couleurs = new ArrayList<CouleurMarqueur>();
+
+    /**
+     * Couleur d'une sévérité inconnue.
+     */
+    private CouleurMarqueur couleur_defaut;
+
+    /**
+     * Construit un format.
+     *
+     * @param separateur Séparateur des colonnes ({@code ','}, {@code ';'} ou
+     * {@code '\t'} pour un TSV).
+     */
+    public FormatMarqueursCSV(char separateur) {
+        if (separateur == '"' || separateur == '\n' || separateur == '\r') {
+            throw new IllegalArgumentException("Séparateur invalide : " + separateur);
+        }
+
+        this.separateur = separateur;
+    }
+
+    /**
+     * Retourne la colonne de la durée.
+     *
+     * @return Numéro de colonne (à partir de 0), {@code -1} si elle n'est pas
+     * lue.
+     */
+    public int getColonneDuree() {
+        return this.colonne_duree;
+    }
+
+    /**
+     * Retourne la colonne du nom.
+     *
+     * @return Numéro de colonne (à partir de 0), {@code -1} si elle n'est pas
+     * lue.
+     */
+    public int getColonneNom() {
+        return this.colonne_nom;
+    }
+
+    /**
+     * Retourne la colonne de la note.
+     *
+     * @return Numéro de colonne (à partir de 0), {@code -1} si elle n'est pas
+     * lue.
+     */
+    public int getColonneNote() {
+        return this.colonne_note;
+    }
+
+    /**
+     * Retourne la colonne de la sévérité.
+     *
+     * @return Numéro de colonne (à partir de 0), {@code -1} si elle n'est pas
+     * lue.
+     */
+    public int getColonneSeverite() {
+        return this.colonne_severite;
+    }
+
+    /**
+     * Retourne la colonne du timecode in.
+     *
+     * @return Numéro de colonne (à partir de 0).
+     */
+    public int getColonneTimecode() {
+        return this.colonne_timecode;
+    }
+
+    /**
+     * Retourne la couleur d'une sévérité.
+     *
+     * @param texte Le texte qui contient la sévérité.
+     * @param debut Début de la sévérité dans le texte.
+     * @param fin Fin (exclue) de la sévérité dans le texte.
+     * @return La couleur, ou la couleur par défaut si la sévérité n'est pas
+     * connue.
+     */
+    CouleurMarqueur getCouleur(char[] texte, int debut, int fin) {
+        // Peu de sévérités : on les compare une à une, sans créer de chaîne.
+        for (int i = 0; i < this.severites.size(); i++) {
+            String severite = this.severites.get(i);
+
+            if (severite.length() == fin - debut && egaux(severite, texte, debut)) {
+                return this.couleurs.get(i);
+            }
+        }
+
+        return this.couleur_defaut;
+    }
+
+    /**
+     * Retourne la couleur d'une sévérité inconnue.
+     *
+     * @return La couleur ({@code null} : couleur par défaut du logiciel).
+     */
+    public CouleurMarqueur getCouleurDefaut() {
+        return this.couleur_defaut;
+    }
+
+    /**
+     * Retourne le séparateur des colonnes.
+     *
+     * @return Le séparateur.
+     */
+    public char getSeparateur() {
+        return this.separateur;
+    }
+
+    /**
+     * Indique si deux textes sont égaux sans tenir compte de la casse.
+     *
+     * @param severite Sévérité connue (en minuscules).
+     * @param texte Le texte lu.
+     * @param debut Début de la sévérité dans le texte lu.
+     * @return {@code true} s'ils sont égaux.
+     */
+    private static boolean egaux(String severite, char[] texte, int debut) {
+        for (int i = 0; i < severite.length(); i++) {
+            if (Character.toLowerCase(texte[debut + i]) != severite.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Indique si la première ligne est une ligne d'en-tête.
+     *
+     * @return {@code true} si elle est ignorée.
+     */
+    public boolean isEntete() {
+        return this.entete;
+    }
+
+    /**
+     * Modifie la colonne de la durée.
+     *
+     * @param colonne Numéro de colonne (à partir de 0), {@code -1} pour ne
+     * pas la lire (marqueurs d'une image).
+     */
+    public void setColonneDuree(int colonne) {
+        this.colonne_duree = colonne;
+    }
+
+    /**
+     * Modifie la colonne du nom.
+     *
+     * @param colonne Numéro de colonne (à partir de 0), {@code -1} pour ne
+     * pas la lire.
+     */
+    public void setColonneNom(int colonne) {
+        this.colonne_nom = colonne;
+    }
+
+    /**
+     * Modifie la colonne de la note.
+     *
+     * @param colonne Numéro de colonne (à partir de 0), {@code -1} pour ne
+     * pas la lire.
+     */
+    public void setColonneNote(int colonne) {
+        this.colonne_note = colonne;
+    }
+
+    /**
+     * Modifie la colonne de la sévérité.
+     *
+     * @param colonne Numéro de colonne (à partir de 0), {@code -1} pour ne
+     * pas la lire (couleur par défaut pour tous les marqueurs).
+     */
+    public void setColonneSeverite(int colonne) {
+        this.colonne_severite = colonne;
+    }
+
+    /**
+     * Modifie la colonne du timecode in.
+     *
+     * @param colonne Numéro de colonne (à partir de 0).
+     */
+    public void setColonneTimecode(int colonne) {
+        if (colonne < 0) {
+            throw new IllegalArgumentException("La colonne du timecode est obligatoire.");
+        }
+
+        this.colonne_timecode = colonne;
+    }
+
+    /**
+     * Associe une couleur à une sévérité (sans tenir compte de la casse).
+     *
+     * @param severite La sévérité, telle qu'écrite dans le rapport.
+     * @param couleur La couleur des marqueurs de cette sévérité.
+     */
+    public void setCouleur(String severite, CouleurMarqueur couleur) {
+        String cle = severite.toLowerCase(Locale.ROOT);
+        int indice = this.severites.indexOf(cle);
+
+        if (indice >= 0) {
+            this.couleurs.set(indice, couleur);
+        } else {
+            this.severites.add(cle);
+            this.couleurs.add(couleur);
+        }
+    }
+
+    /**
+     * Modifie la couleur d'une sévérité inconnue.
+     *
+     * @param couleur La couleur ({@code null} : couleur par défaut du
+     * logiciel).
+     */
+    public void setCouleurDefaut(CouleurMarqueur couleur) {
+        this.couleur_defaut = couleur;
+    }
+
+    /**
+     * Indique si la première ligne est une ligne d'en-tête.
+     *
+     * @param entete {@code true} pour l'ignorer.
+     */
+    public void setEntete(boolean entete) {
+        this.entete = entete;
+    }
+}
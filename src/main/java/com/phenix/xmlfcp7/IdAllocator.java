@@ -0,0 +1,363 @@
+package com.phenix.xmlfcp7;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+
+/**
+ * Attribue les IDs d'un projet : {@code masterclip-N} / {@code file-N},
+ * {@code clipitem-N} et {@code sequence-N}.<br>
+ * Chaque projet ({@link XMLFCP7}) a le sien : plusieurs projets peuvent être
+ * générés en même temps, sur des threads différents, sans partager d'état.<br>
+ * Tous les IDs sont d'abord réservés dans l'ordre du document
+ * ({@link #reserver(Timeline) reserver}, {@link #reserverMasterclip(Media)
+ * reserverMasterclip}), sur un seul thread : chaque timeline reçoit sa propre
+ * réservation et la numérotation ne dépend pas de l'ordre d'écriture. Puis
+ * l'allocateur est {@link #figer() figé} : il ne fait plus que lire et peut
+ * être partagé par les threads qui écrivent les dossiers et les timelines
+ * (chaque réservation de timeline reste à un seul thread).<br>
+ * Les médias d'un même fichier (voir {@link PoolMedia}) ont le même ID : leur
+ * fichier n'est décrit qu'une fois et leur masterclip n'est écrit qu'une fois
+ * dans le projet.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class IdAllocator {
+
+    /**
+     * Décision de {@link #reserverMasterclip(Media) reserverMasterclip} : le
+     * masterclip du média est écrit.
+     */
+    static final byte MASTERCLIP = 1;
+
+    /**
+     * Décision de {@link #reserverMasterclip(Media) reserverMasterclip} : le
+     * masterclip décrit le fichier en entier.
+     */
+    static final byte FICHIER = 2;
+
+    /**
+     * Allocateur du projet si c'est la réservation d'une timeline,
+     * {@code null} sinon.
+     */
+    private final IdAllocator projet;
+
+    /**
+     * Si l'allocateur est figé : plus rien ne peut être attribué ni réservé.
+     */
+    private boolean fige;
+
+    /**
+     * Dernier ID de média attribué.
+     */
+    private int media;
+
+    /**
+     * Dernier numéro de clipitem attribué.
+     */
+    private int clipitem;
+
+    /**
+     * Dernier numéro de séquence attribué.
+     */
+    private int sequence;
+
+    /**
+     * Média de chaque fichier du projet.
+     */
+    private final PoolMedia fichiers = new PoolMedia();
+
+    /**
+     * ID de chaque média du projet (par média de son fichier).
+     */
+    private final IdentityHashMap<Media, Integer> ids_media = new IdentityHashMap<Media, Integer>();
+
+    /**
+     * IDs de média déjà pris (attribués ou donnés avec {@link Media#setId(int)
+     * setId}).
+     */
+    private final HashSet<Integer> ids_pris = new HashSet<Integer>();
+
+    /**
+     * Médias dont le fichier ({@code <file>}) a déjà été décrit en entier.
+     */
+    private final IdentityHashMap<Media, Boolean> fichiers_ecrits = new IdentityHashMap<Media, Boolean>();
+
+    /**
+     * Médias dont le masterclip a déjà été écrit.
+     */
+    private final IdentityHashMap<Media, Boolean> masterclips_ecrits = new IdentityHashMap<Media, Boolean>();
+
+    /**
+     * Décisions réservées pour les médias de chaque dossier (voir
+     * {@link #reserver(Dossier, byte[]) reserver}).
+     */
+    private final IdentityHashMap<Dossier, byte[]> masterclips_dossiers = new IdentityHashMap<Dossier, byte[]>();
+
+    /**
+     * Réservation de chaque timeline (voir {@link #reserver(Timeline)
+     * reserver}).
+     */
+    private final IdentityHashMap<Timeline, IdAllocator> reservations = new IdentityHashMap<Timeline, IdAllocator>();
+
+    /**
+     * Dans la réservation d'une timeline, tout ce dont dépend son rendu :
+     * numéros réservés, versions de la timeline, de ses marqueurs et de ses
+     * médias (voir {@link RenduCache}).
+     */
+    private Object[] signature;
+
+    /**
+     * Construit l'allocateur d'un projet.
+     */
+    public IdAllocator() {
+        this.projet = null;
+    }
+
+    /**
+     * Construit la réservation d'une timeline.
+     *
+     * @param projet Allocateur du projet.
+     */
+    private IdAllocator(IdAllocator projet) {
+        this.projet = projet;
+    }
+
+    /**
+     * Retourne le média du fichier d'un média (voir {@link PoolMedia}).
+     *
+     * @param media Le média.
+     * @return Le média de son fichier.
+     */
+    private Media canonique(Media media) {
+        // Une réservation ne fait que lire le pool du projet.
+        if (this.projet != null) {
+            Media canonique = this.projet.fichiers.get(media);
+            return (canonique != null) ? canonique : media;
+        }
+
+        Media canonique = this.fichiers.get(media);
+
+        if (canonique != null) {
+            return canonique;
+        }
+
+        this.verifierModifiable(media);
+        return this.fichiers.ajouter(media);
+    }
+
+    /**
+     * Fige l'allocateur du projet, une fois tous les IDs réservés : ensuite il
+     * ne fait plus que lire (IDs des médias, réservations des dossiers et des
+     * timelines) et peut être utilisé par plusieurs threads. Attribuer ou
+     * réserver quoi que ce soit lève alors une
+     * {@link IllegalStateException}.
+     */
+    void figer() {
+        this.fige = true;
+    }
+
+    /**
+     * Retourne l'ID d'un média dans le projet. Si le média a un ID
+     * ({@link Media#setId(int) setId}), c'est celui-là, sinon un nouvel ID lui
+     * est attribué la première fois. Les médias d'un même fichier ont le même
+     * ID (celui du premier).
+     *
+     * @param media Le média.
+     * @return ID du média.
+     */
+    public int getIdMedia(Media media) {
+        Media canonique = this.canonique(media);
+
+        // Les IDs des médias d'une réservation ont déjà été attribués par le projet.
+        if (this.projet != null) {
+            Integer id = this.projet.ids_media.get(canonique);
+
+            if (id == null) {
+                throw new IllegalStateException("Média non réservé : " + media.getNomFichier());
+            }
+
+            return id;
+        }
+
+        Integer id = this.ids_media.get(canonique);
+
+        if (id == null) {
+            this.verifierModifiable(media);
+            id = canonique.getId();
+
+            if (id <= 0) {
+                do {
+                    this.media++;
+                } while (this.ids_pris.contains(this.media));
+
+                id = this.media;
+            }
+
+            this.ids_pris.add(id);
+            this.ids_media.put(canonique, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Retourne les décisions réservées pour les médias d'un dossier.
+     *
+     * @param dossier Le dossier.
+     * @return Une décision par média (voir {@link #reserverMasterclip(Media)
+     * reserverMasterclip}), {@code null} si le dossier n'a pas de
+     * réservation.
+     */
+    byte[] getMasterclips(Dossier dossier) {
+        return this.masterclips_dossiers.get(dossier);
+    }
+
+    /**
+     * Retourne la signature du rendu de la timeline réservée.
+     *
+     * @return La signature, {@code null} si ce n'est pas une réservation.
+     */
+    Object[] getSignature() {
+        return this.signature;
+    }
+
+    /**
+     * Retourne un nouveau numéro de clipitem.
+     *
+     * @return Numéro de clipitem.
+     */
+    public int nouveauClipitem() {
+        this.verifierModifiable(null);
+        return ++this.clipitem;
+    }
+
+    /**
+     * Retourne un nouveau numéro de séquence.
+     *
+     * @return Numéro de séquence.
+     */
+    public int nouvelleSequence() {
+        this.verifierModifiable(null);
+        return ++this.sequence;
+    }
+
+    /**
+     * Indique si c'est la première fois que le fichier d'un média est écrit
+     * dans le projet (il faut alors le décrire en entier, ensuite une
+     * référence {@code <file id="..."/>} suffit). Les médias d'un même
+     * fichier comptent comme un seul.
+     *
+     * @param media Le média.
+     * @return {@code true} la première fois.
+     */
+    public boolean premiereDefinition(Media media) {
+        Media canonique = this.canonique(media);
+
+        // Dans une réservation, on ne garde que les fichiers que la timeline doit décrire.
+        if (this.projet != null) {
+            return this.fichiers_ecrits.remove(canonique) != null;
+        }
+
+        this.verifierModifiable(media);
+        return this.fichiers_ecrits.put(canonique, Boolean.TRUE) == null;
+    }
+
+    /**
+     * Retourne les IDs à utiliser pour écrire une timeline : sa réservation
+     * si elle en a une, sinon cet allocateur.
+     *
+     * @param timeline La timeline.
+     * @return Les IDs de la timeline.
+     */
+    IdAllocator pour(Timeline timeline) {
+        IdAllocator reservation = this.reservations.get(timeline);
+        return (reservation != null) ? reservation : this;
+    }
+
+    /**
+     * Garde les décisions réservées pour les médias d'un dossier, dans
+     * l'ordre de sa liste de médias. Ensuite, le dossier peut être écrit sur
+     * un thread différent.
+     *
+     * @param dossier Le dossier.
+     * @param masterclips Une décision par média (voir
+     * {@link #reserverMasterclip(Media) reserverMasterclip}).
+     */
+    void reserver(Dossier dossier, byte[] masterclips) {
+        this.verifierModifiable(null);
+        this.masterclips_dossiers.put(dossier, masterclips);
+    }
+
+    /**
+     * Réserve les IDs d'une timeline comme si elle était écrite maintenant :
+     * numéro de séquence, numéros de ses clipitems, IDs de ses médias et
+     * fichiers qu'elle doit décrire en entier.<br>
+     * Les réservations doivent être faites dans l'ordre du document, avant
+     * d'écrire quoi que ce soit. Ensuite, chaque timeline peut être écrite sur
+     * un thread différent : les réservations ne font que lire l'état du
+     * projet.
+     *
+     * @param timeline La timeline.
+     */
+    void reserver(Timeline timeline) {
+        this.verifierModifiable(null);
+        IdAllocator reservation = new IdAllocator(this);
+        reservation.sequence = this.sequence++;
+        reservation.clipitem = this.clipitem;
+
+        ArrayList<Object> signature = new ArrayList<Object>();
+        signature.add(reservation.sequence);
+        signature.add(reservation.clipitem);
+
+        timeline.reserverIds(this, reservation, signature);
+        reservation.signature = signature.toArray();
+        this.reservations.put(timeline, reservation);
+    }
+
+    /**
+     * Indique, dans la réservation d'une timeline, qu'elle doit décrire en
+     * entier le fichier d'un média.
+     *
+     * @param media Le média.
+     */
+    void reserverDefinition(Media media) {
+        this.fichiers_ecrits.put(this.canonique(media), Boolean.TRUE);
+    }
+
+    /**
+     * Décide, dans l'ordre du document, comment écrire le masterclip d'un
+     * média : seul le premier média d'un fichier a un masterclip, qui décrit
+     * le fichier en entier s'il ne l'a pas encore été.
+     *
+     * @param media Le média.
+     * @return {@code 0} si le masterclip du fichier est déjà écrit, sinon
+     * {@link #MASTERCLIP}, avec {@link #FICHIER} s'il faut décrire le
+     * fichier.
+     */
+    byte reserverMasterclip(Media media) {
+        this.verifierModifiable(media);
+
+        if (this.masterclips_ecrits.put(this.canonique(media), Boolean.TRUE) != null) {
+            return 0;
+        }
+
+        this.getIdMedia(media);
+
+        return (byte) (MASTERCLIP | (this.premiereDefinition(media) ? FICHIER : 0));
+    }
+
+    /**
+     * Vérifie que l'allocateur n'est pas figé.
+     *
+     * @param media Le média à qui il faudrait attribuer un ID ({@code null}
+     * s'il ne s'agit pas d'un média).
+     */
+    private void verifierModifiable(Media media) {
+        if (this.fige) {
+            throw new IllegalStateException((media != null)
+                    ? "Média non réservé : " + media.getNomFichier()
+                    : "Les IDs du projet sont déjà réservés.");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.phenix.xmlfcp7;
+
+import java.util.Arrays;
+
+/**
+ * Occupation de toutes les pistes (vidéo ou audio) d'une timeline, pour
+ * trouver la première piste libre d'un clip.<br>
+ * Un arbre des minimums garde la dernière image occupée de chaque piste :
+ * la première piste (à partir d'une piste donnée) libre après une image se
+ * trouve en O(log p), p étant le nombre de pistes. Quand les clips sont
+ * ajoutés dans l'ordre de leur début, c'est la réponse exacte. Un clip qui
+ * commence avant un clip déjà ajouté peut tenir dans un trou d'une piste
+ * occupée : les pistes avant celle trouvée sont alors vérifiées une à une
+ * (voir {@link OccupationPiste#estLibre(int, int) estLibre}).
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class IndexPistes {
+
+    /**
+     * Nombre de pistes de départ (une puissance de deux).
+     */
+    private static final int CAPACITE_INITIALE = 16;
+
+    /**
+     * Occupation de chaque piste, par numéro ({@code null} si la piste est
+     * vide).
+     */
+    private OccupationPiste[] pistes = new OccupationPiste[CAPACITE_INITIALE];
+
+    /**
+     * Arbre des minimums de la dernière image occupée de chaque piste
+     * ({@code Integer.MIN_VALUE} pour une piste vide) : la racine est en
+     * {@code 1}, les enfants du nœud {@code i} en {@code 2i} et
+     * {@code 2i + 1}, la piste {@code p} en {@code pistes.length + p}.
+     */
+    private int[] fin_min = arbreVide(CAPACITE_INITIALE);
+
+    /**
+     * Plus grand début des clips déjà ajoutés.
+     */
+    private int debut_max = Integer.MIN_VALUE;
+
+    /**
+     * Construit un arbre dont toutes les pistes sont vides.
+     *
+     * @param capacite Nombre de pistes.
+     * @return L'arbre.
+     */
+    private static int[] arbreVide(int capacite) {
+        int[] arbre = new int[2 * capacite];
+        Arrays.fill(arbre, Integer.MIN_VALUE);
+        return arbre;
+    }
+
+    /**
+     * Agrandit l'index pour qu'il contienne une piste.
+     *
+     * @param piste Le numéro de piste.
+     */
+    private void agrandir(int piste) {
+        int capacite = Integer.highestOneBit(piste) * 2;
+        int ancienne = this.pistes.length;
+        int[] fin_min = arbreVide(capacite);
+        System.arraycopy(this.fin_min, ancienne, fin_min, capacite, ancienne);
+
+        for (int i = capacite - 1; i > 0; i--) {
+            fin_min[i] = Math.min(fin_min[2 * i], fin_min[2 * i + 1]);
+        }
+
+        this.pistes = Arrays.copyOf(this.pistes, capacite);
+        this.fin_min = fin_min;
+    }
+
+    /**
+     * Cherche dans un sous-arbre la première piste, à partir d'une piste
+     * donnée, dont la dernière image occupée est avant une image.
+     *
+     * @param noeud Le nœud du sous-arbre.
+     * @param bas Première piste du sous-arbre.
+     * @param haut Piste après la dernière du sous-arbre.
+     * @param piste Première piste cherchée.
+     * @param image L'image.
+     * @return La piste ou {@code -1} s'il n'y en a pas.
+     */
+    private int chercher(int noeud, int bas, int haut, int piste, int image) {
+        if (haut <= piste || this.fin_min[noeud] >= image) {
+            return -1;
+        }
+
+        if (haut - bas == 1) {
+            return bas;
+        }
+
+        int milieu = (bas + haut) >>> 1;
+        int trouvee = this.chercher(2 * noeud, bas, milieu, piste, image);
+        return (trouvee >= 0) ? trouvee : this.chercher(2 * noeud + 1, milieu, haut, piste, image);
+    }
+
+    /**
+     * Retourne l'occupation d'une piste.
+     *
+     * @param piste Le numéro de piste.
+     * @return L'occupation, {@code null} si la piste est vide.
+     */
+    OccupationPiste get(int piste) {
+        return (piste >= 0 && piste < this.pistes.length) ? this.pistes[piste] : null;
+    }
+
+    /**
+     * Trouve la première piste libre (à partir d'une piste donnée) pour un
+     * intervalle et l'y réserve.
+     *
+     * @param piste Première piste essayée.
+     * @param debut Première image du clip.
+     * @param fin Dernière image du clip.
+     * @return La piste où le clip est placé.
+     * @throws IllegalArgumentException Si le numéro de piste est négatif.
+     */
+    int placer(int piste, int debut, int fin) {
+        if (piste < 0) {
+            throw new IllegalArgumentException("Numéro de piste négatif : " + piste);
+        }
+
+        int premiere = Math.min(debut, fin);
+        int libre = this.premiereLibre(piste, premiere);
+
+        // Le clip commence avant un autre : il peut tenir dans un trou d'une piste occupée.
+        if (premiere < this.debut_max) {
+            for (int p = piste; p < libre; p++) {
+                if (this.pistes[p] == null || this.pistes[p].estLibre(debut, fin)) {
+                    libre = p;
+                    break;
+                }
+            }
+        }
+
+        if (libre >= this.pistes.length) {
+            this.agrandir(libre);
+        }
+
+        OccupationPiste occupation = this.pistes[libre];
+
+        // S'il y a une nouvelle piste, on l'ajoute :
+        if (occupation == null) {
+            occupation = new OccupationPiste();
+            this.pistes[libre] = occupation;
+        }
+
+        occupation.ajouter(debut, fin);
+        this.debut_max = Math.max(this.debut_max, premiere);
+
+        // La dernière image occupée de la piste remonte dans l'arbre.
+        int noeud = this.pistes.length + libre;
+        this.fin_min[noeud] = Math.max(this.fin_min[noeud], Math.max(debut, fin));
+
+        for (noeud >>>= 1; noeud > 0; noeud >>>= 1) {
+            this.fin_min[noeud] = Math.min(this.fin_min[2 * noeud], this.fin_min[2 * noeud + 1]);
+        }
+
+        return libre;
+    }
+
+    /**
+     * Retourne la première piste, à partir d'une piste donnée, vide ou dont
+     * la dernière image occupée est avant une image.
+     *
+     * @param piste Première piste cherchée.
+     * @param image L'image.
+     * @return Le numéro de piste.
+     */
+    private int premiereLibre(int piste, int image) {
+        if (piste >= this.pistes.length) {
+            return piste;
+        }
+
+        int trouvee = this.chercher(1, 0, this.pistes.length, piste, image);
+        return (trouvee >= 0) ? trouvee : this.pistes.length;
+    }
+}
@@ -0,0 +1,440 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Lit une EDL CMX3600 ligne par ligne en une {@link Timeline}.<br>
+ * Chaque ligne d'événement devient un clip par piste (vidéo et/ou audio),
+ * avec un média à lui : une EDL ne décrit pas les fichiers, le média commence
+ * donc au timecode source du clip ({@code start}) et dure exactement le clip.
+ * Le nom de bobine va dans {@link Media#setNomBobine(String) setNomBobine}.
+ * <br>
+ * Seul l'événement en cours est gardé en mémoire : les commentaires
+ * ({@code * FROM CLIP NAME:}, {@code * TO CLIP NAME:},
+ * {@code * SOURCE FILE:}) qui le suivent le complètent, puis il est ajouté à
+ * la timeline dès que l'événement suivant commence.<br>
+ * Les transitions (dissolve, wipe, key) ne sont pas gardées : le clip entrant
+ * est placé sur toute sa durée, le clip sortant de longueur nulle est ignoré.
+ * Les lignes de vitesse ({@code M2}) et les autres commentaires sont
+ * ignorés, la bobine {@code BL} (noir) ne donne pas de clip. Les commentaires
+ * {@code * LOC:} deviennent des {@link Marqueur marqueurs}.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class LecteurEDL {
+
+    /**
+     * Nombre maximum de mots lus sur une ligne.
+     */
+    private static final int MOTS_MAX = 12;
+
+    /**
+     * Une ligne d'événement.
+     */
+    private static final class Ligne {
+
+        /**
+         * Bobine.
+         */
+        private String bobine;
+
+        /**
+         * Pistes ({@code V}, {@code A}, {@code A2}, {@code AA/V}, {@code B},
+         * etc).
+         */
+        private String pistes;
+
+        /**
+         * Timecode source in en image.
+         */
+        private long source_in;
+
+        /**
+         * Timecode source out (exclu) en image.
+         */
+        private long source_out;
+
+        /**
+         * Timecode d'enregistrement in en image.
+         */
+        private long record_in;
+
+        /**
+         * Timecode d'enregistrement out (exclu) en image.
+         */
+        private long record_out;
+
+        /**
+         * Nom du clip ({@code * FROM CLIP NAME:} ou {@code * TO CLIP NAME:}).
+         */
+        private String nom_clip;
+
+        /**
+         * Fichier source ({@code * SOURCE FILE:}).
+         */
+        private String fichier;
+    }
+
+    /**
+     * Le lecteur de lignes.
+     */
+    private final BufferedReader lecteur;
+
+    /**
+     * Nom de la timeline si l'EDL n'a pas de titre.
+     */
+    private final String nom_defaut;
+
+    /**
+     * Framerate des timecodes ({@code FCM:} passe en drop-frame ou non).
+     */
+    private RateInfo rate;
+
+    /**
+     * La timeline créée au premier événement.
+     */
+    private Timeline timeline;
+
+    /**
+     * Titre de l'EDL ({@code TITLE:}).
+     */
+    private String titre;
+
+    /**
+     * Plus petit timecode d'enregistrement : le début de la timeline.
+     */
+    private long debut = Long.MAX_VALUE;
+
+    /**
+     * Lignes de l'événement en cours (deux au plus : le clip sortant et le
+     * clip entrant d'une transition).
+     */
+    private final Ligne[] lignes = {new Ligne(), new Ligne()};
+
+    /**
+     * Nombre de lignes de l'événement en cours.
+     */
+    private int nombre_lignes;
+
+    /**
+     * Numéro de l'événement en cours.
+     */
+    private String numero;
+
+    /**
+     * Mots de la ligne en cours de lecture.
+     */
+    private final String[] mots = new String[MOTS_MAX];
+
+    /**
+     * Construit le lecteur.
+     *
+     * @param lecteur Les lignes de l'EDL.
+     * @param nom_defaut Nom de la timeline si l'EDL n'a pas de titre.
+     * @param rate Framerate de l'EDL (une EDL ne l'indique pas, seulement si
+     * le timecode est drop-frame).
+     */
+    LecteurEDL(BufferedReader lecteur, String nom_defaut, RateInfo rate) {
+        this.lecteur = lecteur;
+        this.nom_defaut = nom_defaut;
+        this.rate = rate;
+    }
+
+    /**
+     * Ajoute les clips d'une ligne d'événement à la timeline.
+     *
+     * @param ligne La ligne.
+     */
+    private void ajouter(Ligne ligne) {
+        // Noir, ou clip sortant d'une transition :
+        if (ligne.bobine.equals("BL") || ligne.source_out <= ligne.source_in || ligne.record_out <= ligne.record_in) {
+            return;
+        }
+
+        this.debut = Math.min(this.debut, ligne.record_in);
+
+        for (String piste : ligne.pistes.split("/")) {
+            if (piste.equals("V")) {
+                this.placer(new MediaVideo(this.nomFichier(ligne)), 1, ligne);
+            } else if (piste.equals("B")) {
+                this.placer(new MediaVideo(this.nomFichier(ligne)), 1, ligne);
+                this.placer(new MediaAudio(this.nomFichier(ligne)), 1, ligne);
+            } else if (piste.equals("AA")) {
+                this.placer(new MediaAudio(this.nomFichier(ligne)), 1, ligne);
+                this.placer(new MediaAudio(this.nomFichier(ligne)), 2, ligne);
+            } else if (piste.startsWith("A")) {
+                int numero = (piste.length() == 1) ? 1 : Integer.parseInt(piste.substring(1));
+                this.placer(new MediaAudio(this.nomFichier(ligne)), numero, ligne);
+            }
+        }
+    }
+
+    /**
+     * Retourne la couleur d'un marqueur {@code * LOC:}.
+     *
+     * @param couleur Nom de la couleur dans l'EDL.
+     * @return La couleur, {@code null} si inconnue.
+     */
+    private static CouleurMarqueur couleur(String couleur) {
+        switch (couleur) {
+            case "RED":
+                return CouleurMarqueur.ROUGE;
+            case "GREEN":
+                return CouleurMarqueur.VERT;
+            case "BLUE":
+                return CouleurMarqueur.BLEU;
+            case "ORANGE":
+                return CouleurMarqueur.ORANGE;
+            case "YELLOW":
+                return CouleurMarqueur.JAUNE;
+            case "WHITE":
+                return CouleurMarqueur.BLANC;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Découpe une ligne en mots (séparés par des espaces).
+     *
+     * @param ligne La ligne.
+     * @return Nombre de mots (au plus {@link #MOTS_MAX}).
+     */
+    private int decouper(String ligne) {
+        int nombre = 0;
+        int i = 0;
+        int longueur = ligne.length();
+
+        while (nombre < MOTS_MAX) {
+            while (i < longueur && Character.isWhitespace(ligne.charAt(i))) {
+                i++;
+            }
+
+            if (i == longueur) {
+                break;
+            }
+
+            int debut_mot = i;
+
+            while (i < longueur && !Character.isWhitespace(ligne.charAt(i))) {
+                i++;
+            }
+
+            this.mots[nombre++] = ligne.substring(debut_mot, i);
+        }
+
+        return nombre;
+    }
+
+    /**
+     * Indique si un mot est un timecode ({@code HH:MM:SS:FF}).
+     *
+     * @param mot Le mot.
+     * @return {@code true} si c'est un timecode.
+     */
+    private static boolean estTimecode(String mot) {
+        if (mot.length() != 11) {
+            return false;
+        }
+
+        for (int i = 0; i < 11; i++) {
+            char c = mot.charAt(i);
+
+            if ((i % 3 == 2) ? (c != ':' && c != ';' && c != '.') : (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Ajoute l'événement en cours à la timeline.
+     */
+    private void finirEvenement() {
+        for (int i = 0; i < this.nombre_lignes; i++) {
+            this.ajouter(this.lignes[i]);
+        }
+
+        this.nombre_lignes = 0;
+        this.numero = null;
+    }
+
+    /**
+     * Retourne la timeline, créée au premier besoin.
+     *
+     * @return La timeline.
+     */
+    private Timeline getTimeline() {
+        if (this.timeline == null) {
+            this.timeline = new Timeline((this.titre != null) ? this.titre : this.nom_defaut, this.rate.getTimebase(), new Timecode(0, this.rate.getTimebase()));
+            this.timeline.setRate(this.rate);
+        }
+
+        return this.timeline;
+    }
+
+    /**
+     * Lit toute l'EDL.
+     *
+     * @return La timeline.
+     * @throws IOException Erreur de lecture.
+     */
+    Timeline lire() throws IOException {
+        String ligne;
+
+        while ((ligne = this.lecteur.readLine()) != null) {
+            int nombre = this.decouper(ligne);
+
+            if (nombre == 0) {
+                continue;
+            }
+
+            String premier = this.mots[0];
+
+            if (premier.equals("TITLE:")) {
+                this.titre = ligne.substring(ligne.indexOf(':') + 1).trim();
+            } else if (premier.equals("FCM:")) {
+                boolean drop_frame = ligne.contains("DROP FRAME") && !ligne.contains("NON-DROP");
+                int timebase = this.rate.getTimebase();
+
+                // Le drop-frame n'existe qu'en 29,97 et 59,94.
+                if (drop_frame && (timebase == 30 || timebase == 60)) {
+                    this.rate = RateInfo.de(timebase, true, true);
+                } else if (!drop_frame) {
+                    this.rate = RateInfo.de(timebase, this.rate.isNtsc(), false);
+                }
+            } else if (premier.startsWith("*")) {
+                this.lireCommentaire(ligne);
+            } else if (nombre >= 8 && Character.isDigit(premier.charAt(0)) && estTimecode(this.mots[nombre - 1])) {
+                this.lireEvenement(nombre);
+            }
+        }
+
+        this.finirEvenement();
+
+        Timeline timeline = this.getTimeline();
+
+        if (this.debut != Long.MAX_VALUE) {
+            timeline.setStart(new Timecode((int) this.debut, this.rate.getTimebase()));
+        }
+
+        return timeline;
+    }
+
+    /**
+     * Lit un commentaire : nom du clip, fichier source ou marqueur.
+     *
+     * @param ligne La ligne.
+     */
+    private void lireCommentaire(String ligne) {
+        String texte = ligne.substring(ligne.indexOf('*') + 1).trim();
+        Ligne derniere = (this.nombre_lignes > 0) ? this.lignes[this.nombre_lignes - 1] : null;
+
+        if (texte.startsWith("FROM CLIP NAME:")) {
+            if (derniere != null) {
+                this.lignes[0].nom_clip = texte.substring(15).trim();
+            }
+        } else if (texte.startsWith("TO CLIP NAME:")) {
+            if (derniere != null) {
+                derniere.nom_clip = texte.substring(13).trim();
+            }
+        } else if (texte.startsWith("SOURCE FILE:")) {
+            if (derniere != null) {
+                derniere.fichier = texte.substring(12).trim();
+            }
+        } else if (texte.startsWith("LOC:")) {
+            int nombre = this.decouper(texte.substring(4));
+
+            if (nombre >= 1 && estTimecode(this.mots[0])) {
+                long position = this.rate.image(this.mots[0]);
+                CouleurMarqueur couleur = (nombre >= 2) ? couleur(this.mots[1]) : null;
+
+                // Le texte du marqueur est ce qui suit le timecode et la couleur.
+                String nom = texte.substring(4).trim().substring(11).trim();
+
+                if (nombre >= 2) {
+                    nom = nom.substring(this.mots[1].length()).trim();
+                }
+
+                Marqueur marqueur = new Marqueur("", position, position, this.rate.getTimebase());
+                marqueur.setNom(nom);
+                marqueur.setCouleur(couleur);
+                this.getTimeline().addMarqueur(marqueur);
+            }
+        }
+    }
+
+    /**
+     * Lit une ligne d'événement :
+     * {@code numéro bobine pistes transition [durée] source_in source_out record_in record_out}.
+     *
+     * @param nombre Nombre de mots de la ligne.
+     */
+    private void lireEvenement(int nombre) {
+        String numero = this.mots[0];
+
+        // Une transition a deux lignes avec le même numéro.
+        if (!numero.equals(this.numero) || this.nombre_lignes == this.lignes.length) {
+            this.finirEvenement();
+            this.numero = numero;
+        }
+
+        Ligne ligne = this.lignes[this.nombre_lignes++];
+        ligne.bobine = this.mots[1];
+        ligne.pistes = this.mots[2];
+        ligne.source_in = this.rate.image(this.mots[nombre - 4]);
+        ligne.source_out = this.rate.image(this.mots[nombre - 3]);
+        ligne.record_in = this.rate.image(this.mots[nombre - 2]);
+        ligne.record_out = this.rate.image(this.mots[nombre - 1]);
+        ligne.nom_clip = null;
+        ligne.fichier = null;
+    }
+
+    /**
+     * Retourne le nom du fichier d'une ligne : fichier source, sinon nom du
+     * clip, sinon bobine.
+     *
+     * @param ligne La ligne.
+     * @return Nom du fichier.
+     */
+    private String nomFichier(Ligne ligne) {
+        if (ligne.fichier != null) {
+            return ligne.fichier;
+        }
+
+        return (ligne.nom_clip != null) ? ligne.nom_clip : ligne.bobine;
+    }
+
+    /**
+     * Place le média d'une ligne sur une piste.
+     *
+     * @param media Le média (nouveau).
+     * @param piste Numéro de piste.
+     * @param ligne La ligne.
+     */
+    private void placer(Media media, int piste, Ligne ligne) {
+        long duree = ligne.source_out - ligne.source_in;
+
+        media.setRate(this.rate);
+        media.setNomBobine(ligne.bobine);
+        media.setImageStart(ligne.source_in);
+        media.setImageIn(0);
+        media.setImageOut(duree - 1);
+
+        if (ligne.nom_clip != null) {
+            media.setNom(ligne.nom_clip);
+        }
+
+        media.setLocalisation(this.nomFichier(ligne));
+
+        if (media instanceof MediaAudio) {
+            ((MediaAudio) media).setNumeroSourceCanal(piste);
+        }
+
+        this.getTimeline().addMedia(piste, media, ligne.record_in, ligne.record_out - 1, true);
+    }
+}
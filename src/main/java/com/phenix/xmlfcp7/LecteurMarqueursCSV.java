@@ -0,0 +1,453 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Lit un rapport CSV (ou TSV) de marqueurs au fil de l'eau, directement dans
+ * la table des marqueurs d'une timeline (voir {@link FormatMarqueursCSV}).<br>
+ * Les lignes sont découpées dans le tampon de lecture, sans copie : seuls le
+ * nom et la note de chaque marqueur deviennent des chaînes. Les timecodes
+ * sont lus chiffre par chiffre. Une colonne entre guillemets peut contenir le
+ * séparateur, des guillemets doublés ({@code ""}) et des retours à la ligne.
+ * Une ligne sans timecode valide (ligne vide, commentaire, etc) est ignorée.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class LecteurMarqueursCSV {
+
+    /**
+     * Taille de départ du tampon de lecture (il grandit si une ligne est plus
+     * longue).
+     */
+    private static final int TAILLE_TAMPON = 64 * 1024;
+
+    /**
+     * Où lire le rapport.
+     */
+    private final Reader lecteur;
+
+    /**
+     * Format du rapport.
+     */
+    private final FormatMarqueursCSV format;
+
+    /**
+     * Framerate des timecodes.
+     */
+    private final RateInfo rate;
+
+    /**
+     * Où ajouter les marqueurs.
+     */
+    private final TableMarqueurs marqueurs;
+
+    /**
+     * Tampon de lecture.
+     */
+    private char[] tampon = new char[TAILLE_TAMPON];
+
+    /**
+     * Début de la prochaine ligne dans le tampon.
+     */
+    private int position;
+
+    /**
+     * Fin des caractères lus dans le tampon.
+     */
+    private int fin;
+
+    /**
+     * Si tout le flux a été lu.
+     */
+    private boolean termine;
+
+    /**
+     * Début de la ligne en cours dans le tampon.
+     */
+    private int debut_ligne;
+
+    /**
+     * Fin (exclue, sans le retour à la ligne) de la ligne en cours.
+     */
+    private int fin_ligne;
+
+    /**
+     * Début de chaque colonne de la ligne en cours ({@code -1} si elle est
+     * absente).
+     */
+    private final int[] debut_colonne;
+
+    /**
+     * Fin (exclue) de chaque colonne de la ligne en cours.
+     */
+    private final int[] fin_colonne;
+
+    /**
+     * Si chaque colonne de la ligne en cours contient des guillemets doublés.
+     */
+    private final boolean[] guillemets_doubles;
+
+    /**
+     * Construit le lecteur.
+     *
+     * @param lecteur Où lire le rapport.
+     * @param format Format du rapport.
+     * @param rate Framerate des timecodes.
+     * @param marqueurs Où ajouter les marqueurs.
+     */
+    LecteurMarqueursCSV(Reader lecteur, FormatMarqueursCSV format, RateInfo rate, TableMarqueurs marqueurs) {
+        this.lecteur = lecteur;
+        this.format = format;
+        this.rate = rate;
+        this.marqueurs = marqueurs;
+
+        int colonnes = 1 + Math.max(Math.max(format.getColonneTimecode(), format.getColonneDuree()),
+                Math.max(format.getColonneSeverite(), Math.max(format.getColonneNom(), format.getColonneNote())));
+
+        this.debut_colonne = new int[colonnes];
+        this.fin_colonne = new int[colonnes];
+        this.guillemets_doubles = new boolean[colonnes];
+    }
+
+    /**
+     * Ajoute le marqueur de la ligne en cours.
+     *
+     * @return {@code false} si la ligne n'a pas de timecode valide.
+     */
+    private boolean ajouter() {
+        this.decouper();
+
+        long in = this.timecode(this.format.getColonneTimecode());
+
+        if (in < 0) {
+            return false;
+        }
+
+        long duree = this.duree(this.format.getColonneDuree());
+        int colonne_severite = this.format.getColonneSeverite();
+
+        CouleurMarqueur couleur = this.estLue(colonne_severite)
+                ? this.format.getCouleur(this.tampon, this.debut_colonne[colonne_severite], this.fin_colonne[colonne_severite])
+                : this.format.getCouleurDefaut();
+
+        this.marqueurs.ajouter(new Marqueur(this.texte(this.format.getColonneNote()), in, (duree > 1) ? in + duree - 1 : in,
+                this.rate.getTimebase(), couleur, this.texte(this.format.getColonneNom())));
+
+        return true;
+    }
+
+    /**
+     * Découpe la ligne en cours en colonnes (seulement les colonnes utiles).
+     */
+    private void decouper() {
+        char separateur = this.format.getSeparateur();
+        int i = this.debut_ligne;
+        int colonne = 0;
+
+        Arrays.fill(this.debut_colonne, -1);
+
+        while (colonne < this.debut_colonne.length && i <= this.fin_ligne) {
+            int debut = i;
+            boolean doubles = false;
+
+            while (debut < this.fin_ligne && this.tampon[debut] == ' ') {
+                debut++;
+            }
+
+            if (debut < this.fin_ligne && this.tampon[debut] == '"') {
+                // Entre guillemets : jusqu'au guillemet fermant (un guillemet doublé n'en est pas un).
+                int j = debut + 1;
+
+                while (j < this.fin_ligne) {
+                    if (this.tampon[j] == '"') {
+                        if (j + 1 < this.fin_ligne && this.tampon[j + 1] == '"') {
+                            doubles = true;
+                            j += 2;
+                            continue;
+                        }
+
+                        break;
+                    }
+
+                    j++;
+                }
+
+                this.debut_colonne[colonne] = debut + 1;
+                this.fin_colonne[colonne] = j;
+
+                i = j + 1;
+
+                while (i < this.fin_ligne && this.tampon[i] != separateur) {
+                    i++;
+                }
+            } else {
+                int j = debut;
+
+                while (j < this.fin_ligne && this.tampon[j] != separateur) {
+                    j++;
+                }
+
+                int fin = j;
+
+                while (fin > debut && this.tampon[fin - 1] == ' ') {
+                    fin--;
+                }
+
+                this.debut_colonne[colonne] = debut;
+                this.fin_colonne[colonne] = fin;
+
+                i = j;
+            }
+
+            this.guillemets_doubles[colonne] = doubles;
+            colonne++;
+            i++;
+        }
+    }
+
+    /**
+     * Lit une durée : un timecode ou un nombre d'images.
+     *
+     * @param colonne La colonne.
+     * @return Durée en image, {@code 0} si la colonne est absente ou
+     * invalide.
+     */
+    private long duree(int colonne) {
+        if (!this.estLue(colonne)) {
+            return 0;
+        }
+
+        long duree = this.timecode(colonne);
+
+        if (duree >= 0) {
+            return duree;
+        }
+
+        int debut = this.debut_colonne[colonne];
+        int fin = this.fin_colonne[colonne];
+        duree = 0;
+
+        for (int i = debut; i < fin; i++) {
+            char c = this.tampon[i];
+
+            if (c < '0' || c > '9' || i - debut >= 18) {
+                return 0;
+            }
+
+            duree = duree * 10 + (c - '0');
+        }
+
+        return duree;
+    }
+
+    /**
+     * Indique si une colonne est lue et présente dans la ligne en cours.
+     *
+     * @param colonne La colonne ({@code -1} si elle n'est pas lue).
+     * @return {@code true} si elle est présente.
+     */
+    private boolean estLue(int colonne) {
+        return colonne >= 0 && this.debut_colonne[colonne] >= 0;
+    }
+
+    /**
+     * Lit toutes les lignes.
+     *
+     * @return Nombre de marqueurs lus.
+     * @throws IOException Erreur de lecture.
+     */
+    int lire() throws IOException {
+        int nombre = 0;
+        boolean premiere = true;
+
+        while (this.ligneSuivante()) {
+            if (premiere) {
+                premiere = false;
+
+                // Marque d'ordre des octets.
+                if (this.debut_ligne < this.fin_ligne && this.tampon[this.debut_ligne] == '\uFEFF') {
+                    this.debut_ligne++;
+                }
+
+                if (this.format.isEntete()) {
+                    continue;
+                }
+            }
+
+            if (this.ajouter()) {
+                nombre++;
+            }
+        }
+
+        return nombre;
+    }
+
+    /**
+     * Trouve la ligne suivante (un retour à la ligne entre guillemets ne la
+     * termine pas), en lisant la suite du flux si besoin.
+     *
+     * @return {@code false} à la fin du flux.
+     * @throws IOException Erreur de lecture.
+     */
+    private boolean ligneSuivante() throws IOException {
+        int i = this.position;
+        boolean entre_guillemets = false;
+
+        while (true) {
+            if (i == this.fin) {
+                if (this.termine) {
+                    if (i == this.position) {
+                        return false;
+                    }
+
+                    // Dernière ligne sans retour à la ligne.
+                    this.debut_ligne = this.position;
+                    this.fin_ligne = i;
+                    this.position = i;
+                    return true;
+                }
+
+                i = this.remplir(i);
+                continue;
+            }
+
+            char c = this.tampon[i];
+
+            if (c == '"') {
+                entre_guillemets = !entre_guillemets;
+            } else if (c == '\n' && !entre_guillemets) {
+                this.debut_ligne = this.position;
+                this.fin_ligne = (i > this.position && this.tampon[i - 1] == '\r') ? i - 1 : i;
+                this.position = i + 1;
+                return true;
+            }
+
+            i++;
+        }
+    }
+
+    /**
+     * Lit la suite du flux : la ligne en cours est déplacée au début du
+     * tampon, qui grandit s'il est plein.
+     *
+     * @param i Position de lecture dans la ligne en cours.
+     * @return La même position après déplacement.
+     * @throws IOException Erreur de lecture.
+     */
+    private int remplir(int i) throws IOException {
+        int decalage = this.position;
+
+        if (decalage > 0) {
+            System.arraycopy(this.tampon, decalage, this.tampon, 0, this.fin - decalage);
+            this.fin -= decalage;
+            this.position = 0;
+            i -= decalage;
+        }
+
+        if (this.fin == this.tampon.length) {
+            this.tampon = Arrays.copyOf(this.tampon, this.tampon.length * 2);
+        }
+
+        int lu = this.lecteur.read(this.tampon, this.fin, this.tampon.length - this.fin);
+
+        if (lu < 0) {
+            this.termine = true;
+        } else {
+            this.fin += lu;
+        }
+
+        return i;
+    }
+
+    /**
+     * Retourne le texte d'une colonne.
+     *
+     * @param colonne La colonne.
+     * @return Le texte, vide si la colonne est absente.
+     */
+    private String texte(int colonne) {
+        if (!this.estLue(colonne)) {
+            return "";
+        }
+
+        int debut = this.debut_colonne[colonne];
+        int fin = this.fin_colonne[colonne];
+
+        if (!this.guillemets_doubles[colonne]) {
+            return new String(this.tampon, debut, fin - debut);
+        }
+
+        StringBuilder texte = new StringBuilder(fin - debut);
+
+        for (int i = debut; i < fin; i++) {
+            texte.append(this.tampon[i]);
+
+            // Un guillemet doublé n'en donne qu'un.
+            if (this.tampon[i] == '"') {
+                i++;
+            }
+        }
+
+        return texte.toString();
+    }
+
+    /**
+     * Lit un timecode ({@code HH:MM:SS:FF}, {@code ;} ou {@code .} acceptés
+     * comme séparateurs).
+     *
+     * @param colonne La colonne.
+     * @return Position en image, {@code -1} si la colonne est absente ou n'est
+     * pas un timecode.
+     */
+    private long timecode(int colonne) {
+        if (!this.estLue(colonne) || this.fin_colonne[colonne] - this.debut_colonne[colonne] != 11) {
+            return -1;
+        }
+
+        int debut = this.debut_colonne[colonne];
+        long heures = 0;
+        long minutes = 0;
+        long secondes = 0;
+        long images = 0;
+
+        for (int champ = 0; champ < 4; champ++) {
+            int i = debut + champ * 3;
+            char dizaine = this.tampon[i];
+            char unite = this.tampon[i + 1];
+
+            if (dizaine < '0' || dizaine > '9' || unite < '0' || unite > '9') {
+                return -1;
+            }
+
+            if (champ < 3) {
+                char separateur = this.tampon[i + 2];
+
+                if (separateur != ':' && separateur != ';' && separateur != '.') {
+                    return -1;
+                }
+            }
+
+            long valeur = (dizaine - '0') * 10 + (unite - '0');
+
+            switch (champ) {
+                case 0:
+                    heures = valeur;
+                    break;
+                case 1:
+                    minutes = valeur;
+                    break;
+                case 2:
+                    secondes = valeur;
+                    break;
+                default:
+                    images = valeur;
+                    break;
+            }
+        }
+
+        return this.rate.image(heures, minutes, secondes, images);
+    }
+}
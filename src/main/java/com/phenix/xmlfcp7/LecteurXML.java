@@ -0,0 +1,1065 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import com.phenix.xmlfcp7.enums.CouleurMedia;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Lit un XML Final Cut Pro 7 (xmeml) en un seul passage, sans construire de
+ * DOM.<br>
+ * Les références {@code <file id>} et {@code masterclipid} sont résolues au
+ * fur et à mesure de la lecture.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class LecteurXML {
+
+    /**
+     * Taille des tampons de lecture et de décompression.
+     */
+    private static final int TAILLE_TAMPON = 64 * 1024;
+
+    /**
+     * Description d'un fichier ({@code <file>}) partagée par tous les clips qui
+     * y font référence.
+     */
+    private static final class Fichier {
+
+        /**
+         * Si la définition complète du fichier a été lue.
+         */
+        private boolean defini;
+
+        /**
+         * Nom du fichier.
+         */
+        private String nom;
+
+        /**
+         * Chemin du fichier.
+         */
+        private String localisation;
+
+        /**
+         * Framerate du fichier.
+         */
+        private int framerate;
+
+        /**
+         * Si le framerate du fichier est NTSC.
+         */
+        private boolean ntsc;
+
+        /**
+         * Durée du fichier en image.
+         */
+        private int duree = -1;
+
+        /**
+         * Timecode de début en image.
+         */
+        private int start = -1;
+
+        /**
+         * Timecode de début sous forme de texte (si pas d'image).
+         */
+        private String start_texte;
+
+        /**
+         * Nom de la bobine.
+         */
+        private String nom_bobine;
+
+        /**
+         * Largeur de l'image.
+         */
+        private int largeur;
+
+        /**
+         * Hauteur de l'image.
+         */
+        private int hauteur;
+
+        /**
+         * Nombre de canaux audio.
+         */
+        private int canaux;
+
+        /**
+         * Médias qui font référence au fichier avant sa définition.
+         */
+        private ArrayList<Media> en_attente;
+
+        /**
+         * Applique la description du fichier au média.
+         *
+         * @param media Le média.
+         */
+        private void appliquer(Media media) {
+            if (!this.defini) {
+                if (this.en_attente == null) {
+                    this.en_attente = new ArrayList<>();
+                }
+                this.en_attente.add(media);
+                return;
+            }
+
+            if (this.nom != null) {
+                media.setNomFichier(this.nom);
+            }
+            media.setLocalisation(this.localisation);
+
+            int framerate = (media.getFramerate() != 0) ? media.getFramerate() : this.framerate;
+
+            if (this.ntsc && framerate == this.framerate) {
+                media.setRate(RateInfo.de(framerate, true, false));
+            }
+
+            if (this.start >= 0) {
+                media.setStart(new Timecode(this.start, framerate));
+            } else if (this.start_texte != null) {
+                media.setStart(new Timecode(this.start_texte, framerate));
+            }
+
+            if (this.duree >= 0) {
+                media.setDureeFichier(new Timecode(this.duree, framerate));
+            }
+
+            media.setNomBobine(this.nom_bobine);
+
+            if (media instanceof MediaVideo) {
+                MediaVideo video = (MediaVideo) media;
+                video.setDimension(this.largeur, this.hauteur);
+                video.setCanaux(this.canaux);
+            } else if (media instanceof MediaAudio) {
+                ((MediaAudio) media).setNombreCanaux(this.canaux);
+            }
+        }
+
+        /**
+         * Indique que la définition du fichier a été lue et l'applique aux
+         * médias en attente.
+         */
+        private void definir() {
+            this.defini = true;
+
+            if (this.en_attente != null) {
+                for (Media media : this.en_attente) {
+                    this.appliquer(media);
+                }
+                this.en_attente = null;
+            }
+        }
+    }
+
+    /**
+     * Un clip lu dans une séquence, en attente du timecode de début de la
+     * séquence (qui se trouve après les pistes).
+     */
+    private static final class Placement {
+
+        /**
+         * Numéro de piste.
+         */
+        private final int piste;
+
+        /**
+         * Le média.
+         */
+        private final Media media;
+
+        /**
+         * Début dans la séquence (relatif au début de la séquence).
+         */
+        private final int debut;
+
+        /**
+         * Fin dans la séquence (relatif au début de la séquence).
+         */
+        private final int fin;
+
+        /**
+         * Si le clip est activé.
+         */
+        private final boolean active;
+
+        /**
+         * Construit un placement.
+         *
+         * @param piste Numéro de piste.
+         * @param media Le média.
+         * @param debut Début dans la séquence.
+         * @param fin Fin dans la séquence.
+         * @param active Si le clip est activé.
+         */
+        private Placement(int piste, Media media, int debut, int fin, boolean active) {
+            this.piste = piste;
+            this.media = media;
+            this.debut = debut;
+            this.fin = fin;
+            this.active = active;
+        }
+    }
+
+    /**
+     * Le lecteur StAX.
+     */
+    private final XMLStreamReader lecteur;
+
+    /**
+     * Nom du projet.
+     */
+    private String titre_projet;
+
+    /**
+     * Dossiers à la racine du projet.
+     */
+    private final ArrayList<Dossier> liste_dossier = new ArrayList<>();
+
+    /**
+     * Médias à la racine du projet.
+     */
+    private final ArrayList<Media> liste_media = new ArrayList<>();
+
+    /**
+     * Timelines à la racine du projet.
+     */
+    private final ArrayList<Timeline> liste_timeline = new ArrayList<>();
+
+    /**
+     * Fichiers par identifiant ({@code <file id>}).
+     */
+    private final HashMap<String, Fichier> fichiers = new HashMap<>();
+
+    /**
+     * Premier média rencontré par {@code masterclipid}.
+     */
+    private final HashMap<String, Media> masterclips = new HashMap<>();
+
+    /**
+     * Fichier de chaque {@code masterclipid}.
+     */
+    private final HashMap<String, Fichier> fichiers_masterclip = new HashMap<>();
+
+    /**
+     * Construit le lecteur.
+     *
+     * @param entree Le flux XML.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    LecteurXML(InputStream entree) throws XMLStreamException {
+        XMLInputFactory fabrique = XMLInputFactory.newInstance();
+        // On ne résout ni la DTD ni les entités externes.
+        fabrique.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        fabrique.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        this.lecteur = fabrique.createXMLStreamReader(entree);
+    }
+
+    /**
+     * Retourne un flux qui décompresse l'entrée si elle est compressée en gzip
+     * (détecté avec les deux premiers octets), l'entrée telle quelle sinon.
+     * Le document est décompressé au fur et à mesure de la lecture.
+     *
+     * @param entree Le flux XML, compressé ou non.
+     * @return Le flux XML décompressé.
+     * @throws IOException Erreur de lecture du flux.
+     */
+    static InputStream decompresser(InputStream entree) throws IOException {
+        BufferedInputStream tampon = new BufferedInputStream(entree, TAILLE_TAMPON);
+        tampon.mark(2);
+        int premier = tampon.read();
+        int second = tampon.read();
+        tampon.reset();
+
+        if (premier == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >>> 8)) {
+            return new GZIPInputStream(tampon, TAILLE_TAMPON);
+        }
+
+        return tampon;
+    }
+
+    /**
+     * Lit tout le document.
+     *
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    void lire() throws XMLStreamException {
+        try {
+            while (this.lecteur.hasNext()) {
+                if (this.lecteur.next() == XMLStreamConstants.START_ELEMENT) {
+                    switch (this.lecteur.getLocalName()) {
+                        case "xmeml":
+                            break;
+                        case "project":
+                            this.lireProjet();
+                            break;
+                        // Un export d'une seule séquence n'a pas de projet.
+                        case "sequence":
+                            this.liste_timeline.add(this.lireSequence());
+                            break;
+                        default:
+                            this.ignorer();
+                    }
+                }
+            }
+        } finally {
+            this.lecteur.close();
+        }
+    }
+
+    /**
+     * Retourne les dossiers à la racine du projet.
+     *
+     * @return Liste des dossiers.
+     */
+    ArrayList<Dossier> getListeDossier() {
+        return this.liste_dossier;
+    }
+
+    /**
+     * Retourne les médias à la racine du projet.
+     *
+     * @return Liste des médias.
+     */
+    ArrayList<Media> getListeMedia() {
+        return this.liste_media;
+    }
+
+    /**
+     * Retourne les timelines à la racine du projet.
+     *
+     * @return Liste des timelines.
+     */
+    ArrayList<Timeline> getListeTimeline() {
+        return this.liste_timeline;
+    }
+
+    /**
+     * Retourne le nom du projet.
+     *
+     * @return Nom du projet.
+     */
+    String getTitreProjet() {
+        return this.titre_projet;
+    }
+
+    /**
+     * Convertit un texte en entier.
+     *
+     * @param texte Le texte.
+     * @param defaut Valeur si le texte n'est pas un entier.
+     * @return L'entier.
+     */
+    private static int entier(String texte, int defaut) {
+        try {
+            return Integer.parseInt(texte.trim());
+        } catch (NumberFormatException exception) {
+            return defaut;
+        }
+    }
+
+    /**
+     * Passe l'élément courant et tous ses enfants.
+     *
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private void ignorer() throws XMLStreamException {
+        int profondeur = 1;
+
+        while (profondeur > 0) {
+            int evenement = this.lecteur.next();
+
+            if (evenement == XMLStreamConstants.START_ELEMENT) {
+                profondeur++;
+            } else if (evenement == XMLStreamConstants.END_ELEMENT) {
+                profondeur--;
+            }
+        }
+    }
+
+    /**
+     * Lit les enfants d'un projet ou d'un dossier.
+     *
+     * @param dossier Le dossier parent ou {@code null} pour la racine du
+     * projet.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private void lireChildren(Dossier dossier) throws XMLStreamException {
+        while (this.suivant()) {
+            switch (this.lecteur.getLocalName()) {
+                case "bin":
+                    Dossier sous_dossier = this.lireDossier();
+                    if (dossier == null) {
+                        this.liste_dossier.add(sous_dossier);
+                    } else {
+                        dossier.addDossier(sous_dossier);
+                    }
+                    break;
+                case "clip":
+                    Media media = this.lireClip();
+                    if (dossier == null) {
+                        this.liste_media.add(media);
+                    } else {
+                        dossier.addMedia(media);
+                    }
+                    break;
+                case "sequence":
+                    Timeline timeline = this.lireSequence();
+                    if (dossier == null) {
+                        this.liste_timeline.add(timeline);
+                    } else {
+                        dossier.addTimeline(timeline);
+                    }
+                    break;
+                default:
+                    this.ignorer();
+            }
+        }
+    }
+
+    /**
+     * Lit un masterclip ({@code <clip>}) du projet.
+     *
+     * @return Le média.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private Media lireClip() throws XMLStreamException {
+        String masterclipid = this.lecteur.getAttributeValue(null, "id");
+        String nom = null;
+        int framerate = 0;
+        Fichier fichier = null;
+        boolean video = false;
+        int profondeur = 1;
+
+        while (profondeur > 0) {
+            int evenement = this.lecteur.next();
+
+            if (evenement == XMLStreamConstants.END_ELEMENT) {
+                profondeur--;
+            } else if (evenement == XMLStreamConstants.START_ELEMENT) {
+                String balise = this.lecteur.getLocalName();
+
+                if (profondeur == 1 && balise.equals("name")) {
+                    nom = this.lecteur.getElementText();
+                } else if (profondeur == 1 && balise.equals("masterclipid")) {
+                    masterclipid = this.lecteur.getElementText().trim();
+                } else if (profondeur == 1 && balise.equals("rate")) {
+                    framerate = this.lireRate().getTimebase();
+                } else if (balise.equals("file")) {
+                    Fichier lu = this.lireFichier();
+                    if (fichier == null) {
+                        fichier = lu;
+                    }
+                } else {
+                    if (balise.equals("video")) {
+                        video = true;
+                    }
+                    profondeur++;
+                }
+            }
+        }
+
+        Media media = video ? new MediaVideo(nom != null ? nom : "", framerate) : new MediaAudio(nom != null ? nom : "");
+        media.setNom(nom);
+
+        if (fichier != null) {
+            fichier.appliquer(media);
+        }
+
+        if (masterclipid != null) {
+            this.resoudreMasterclip(masterclipid, media, fichier);
+        }
+
+        return media;
+    }
+
+    /**
+     * Lit un clip ({@code <clipitem>}) d'une piste.
+     *
+     * @param placements Les clips de la séquence.
+     * @param piste Numéro de la piste.
+     * @param video Si la piste est une piste vidéo.
+     * @param fin_precedente Fin du clip précédent sur la piste.
+     * @return Le placement ajouté ou {@code null} si le clip est ignoré.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private Placement lireClipitem(ArrayList<Placement> placements, int piste, boolean video, int fin_precedente) throws XMLStreamException {
+        String nom = null;
+        String masterclipid = null;
+        boolean active = true;
+        int framerate = 0;
+        int debut = -1;
+        int fin = -1;
+        int in = 0;
+        int out = 0;
+        int numero_canal = 0;
+        String couleur = null;
+        Fichier fichier = null;
+
+        while (this.suivant()) {
+            switch (this.lecteur.getLocalName()) {
+                case "name":
+                    nom = this.lecteur.getElementText();
+                    break;
+                case "masterclipid":
+                    masterclipid = this.lecteur.getElementText().trim();
+                    break;
+                case "enabled":
+                    active = !this.lecteur.getElementText().trim().equalsIgnoreCase("FALSE");
+                    break;
+                case "rate":
+                    framerate = this.lireRate().getTimebase();
+                    break;
+                case "start":
+                    debut = entier(this.lecteur.getElementText(), -1);
+                    break;
+                case "end":
+                    fin = entier(this.lecteur.getElementText(), -1);
+                    break;
+                case "in":
+                    in = entier(this.lecteur.getElementText(), 0);
+                    break;
+                case "out":
+                    out = entier(this.lecteur.getElementText(), 0);
+                    break;
+                case "file":
+                    fichier = this.lireFichier();
+                    break;
+                case "sourcetrack":
+                    while (this.suivant()) {
+                        if (this.lecteur.getLocalName().equals("trackindex")) {
+                            numero_canal = entier(this.lecteur.getElementText(), 0);
+                        } else {
+                            this.ignorer();
+                        }
+                    }
+                    break;
+                case "labels":
+                    while (this.suivant()) {
+                        if (this.lecteur.getLocalName().equals("label2")) {
+                            couleur = this.lecteur.getElementText().trim();
+                        } else {
+                            this.ignorer();
+                        }
+                    }
+                    break;
+                default:
+                    this.ignorer();
+            }
+        }
+
+        // Un début ou une fin à -1 indique une transition : le clip touche le précédent.
+        if (debut < 0) {
+            debut = fin_precedente + 1;
+        }
+        if (fin < 0) {
+            fin = debut + out - in;
+        }
+
+        // Sans fichier, on prend celui du masterclip.
+        if (fichier == null && masterclipid != null) {
+            fichier = this.fichiers_masterclip.get(masterclipid);
+        }
+
+        Media media;
+
+        if (video) {
+            media = new MediaVideo(nom != null ? nom : "", framerate);
+        } else {
+            MediaAudio audio = new MediaAudio(nom != null ? nom : "");
+            if (numero_canal > 0) {
+                audio.setNumeroSourceCanal(numero_canal);
+            }
+            media = audio;
+        }
+
+        media.setNom(nom);
+
+        if (fichier != null) {
+            fichier.appliquer(media);
+        }
+
+        media.setIn(new Timecode(in, framerate));
+        media.setOut(new Timecode(out, framerate));
+
+        if (couleur != null) {
+            CouleurMedia couleur_media = CouleurMedia.fromCouleurPremiere(couleur);
+            if (couleur_media != null) {
+                media.setCouleur(couleur_media);
+            }
+        }
+
+        if (masterclipid != null) {
+            this.resoudreMasterclip(masterclipid, media, fichier);
+        }
+
+        Placement placement = new Placement(piste, media, debut, fin, active);
+        placements.add(placement);
+        return placement;
+    }
+
+    /**
+     * Lit un dossier ({@code <bin>}).
+     *
+     * @return Le dossier.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private Dossier lireDossier() throws XMLStreamException {
+        Dossier dossier = new Dossier("");
+
+        while (this.suivant()) {
+            switch (this.lecteur.getLocalName()) {
+                case "name":
+                    dossier.setNom(this.lecteur.getElementText());
+                    break;
+                case "labels":
+                    while (this.suivant()) {
+                        if (this.lecteur.getLocalName().equals("label2")) {
+                            Dossier.CouleurAdobe couleur = Dossier.CouleurAdobe.fromValeur(this.lecteur.getElementText().trim());
+                            if (couleur != null) {
+                                dossier.setCouleur(couleur);
+                            }
+                        } else {
+                            this.ignorer();
+                        }
+                    }
+                    break;
+                case "children":
+                    this.lireChildren(dossier);
+                    break;
+                default:
+                    this.ignorer();
+            }
+        }
+
+        return dossier;
+    }
+
+    /**
+     * Lit un fichier ({@code <file>}) : soit sa définition, soit une référence
+     * vers un fichier déjà (ou pas encore) défini.
+     *
+     * @return Le fichier.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private Fichier lireFichier() throws XMLStreamException {
+        String id = this.lecteur.getAttributeValue(null, "id");
+        Fichier fichier = (id != null) ? this.fichiers.computeIfAbsent(id, cle -> new Fichier()) : new Fichier();
+        boolean definition = false;
+
+        while (this.suivant()) {
+            definition = true;
+
+            switch (this.lecteur.getLocalName()) {
+                case "name":
+                    fichier.nom = this.lecteur.getElementText();
+                    break;
+                case "pathurl":
+                    fichier.localisation = this.lecteur.getElementText().trim();
+                    break;
+                case "rate":
+                    RateInfo rate = this.lireRate();
+                    fichier.framerate = rate.getTimebase();
+                    fichier.ntsc = rate.isNtsc();
+                    break;
+                case "duration":
+                    fichier.duree = entier(this.lecteur.getElementText(), -1);
+                    break;
+                case "timecode":
+                    while (this.suivant()) {
+                        switch (this.lecteur.getLocalName()) {
+                            case "string":
+                                fichier.start_texte = this.lecteur.getElementText().trim();
+                                break;
+                            case "frame":
+                                fichier.start = entier(this.lecteur.getElementText(), -1);
+                                break;
+                            case "reel":
+                                while (this.suivant()) {
+                                    if (this.lecteur.getLocalName().equals("name")) {
+                                        fichier.nom_bobine = this.lecteur.getElementText();
+                                    } else {
+                                        this.ignorer();
+                                    }
+                                }
+                                break;
+                            default:
+                                this.ignorer();
+                        }
+                    }
+                    break;
+                case "media":
+                    this.lireMediaFichier(fichier);
+                    break;
+                default:
+                    this.ignorer();
+            }
+        }
+
+        if (definition) {
+            fichier.definir();
+        }
+
+        return fichier;
+    }
+
+    /**
+     * Lit une description de canal ({@code <audio>}) ou d'image
+     * ({@code <video>}) d'un fichier.
+     *
+     * @param fichier Le fichier.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private void lireMediaFichier(Fichier fichier) throws XMLStreamException {
+        while (this.suivant()) {
+            switch (this.lecteur.getLocalName()) {
+                case "video":
+                    while (this.suivant()) {
+                        if (this.lecteur.getLocalName().equals("samplecharacteristics")) {
+                            while (this.suivant()) {
+                                switch (this.lecteur.getLocalName()) {
+                                    case "width":
+                                        fichier.largeur = entier(this.lecteur.getElementText(), 0);
+                                        break;
+                                    case "height":
+                                        fichier.hauteur = entier(this.lecteur.getElementText(), 0);
+                                        break;
+                                    default:
+                                        this.ignorer();
+                                }
+                            }
+                        } else {
+                            this.ignorer();
+                        }
+                    }
+                    break;
+                case "audio":
+                    int canaux = 1;
+                    while (this.suivant()) {
+                        if (this.lecteur.getLocalName().equals("channelcount")) {
+                            canaux = entier(this.lecteur.getElementText(), 1);
+                        } else {
+                            this.ignorer();
+                        }
+                    }
+                    fichier.canaux += canaux;
+                    break;
+                default:
+                    this.ignorer();
+            }
+        }
+    }
+
+    /**
+     * Lit un marqueur ({@code <marker>}).
+     *
+     * @return Les valeurs du marqueur (relatives au début de la séquence).
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private Object[] lireMarqueur() throws XMLStreamException {
+        String nom = "";
+        String note = "";
+        int in = 0;
+        int out = -1;
+        CouleurMarqueur couleur = null;
+
+        while (this.suivant()) {
+            switch (this.lecteur.getLocalName()) {
+                case "name":
+                    nom = this.lecteur.getElementText();
+                    break;
+                case "comment":
+                    note = this.lecteur.getElementText();
+                    break;
+                case "in":
+                    in = entier(this.lecteur.getElementText(), 0);
+                    break;
+                case "out":
+                    out = entier(this.lecteur.getElementText(), -1);
+                    break;
+                case "pproColor":
+                    couleur = CouleurMarqueur.fromCouleurPremiere(this.lecteur.getElementText().trim());
+                    break;
+                case "color":
+                    int rouge = 0;
+                    int vert = 0;
+                    int bleu = 0;
+                    while (this.suivant()) {
+                        switch (this.lecteur.getLocalName()) {
+                            case "red":
+                                rouge = entier(this.lecteur.getElementText(), 0);
+                                break;
+                            case "green":
+                                vert = entier(this.lecteur.getElementText(), 0);
+                                break;
+                            case "blue":
+                                bleu = entier(this.lecteur.getElementText(), 0);
+                                break;
+                            default:
+                                this.ignorer();
+                        }
+                    }
+                    couleur = CouleurMarqueur.fromCanaux(rouge, vert, bleu);
+                    break;
+                default:
+                    this.ignorer();
+            }
+        }
+
+        return new Object[]{nom, note, in, out, couleur};
+    }
+
+    /**
+     * Lit un projet ({@code <project>}).
+     *
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private void lireProjet() throws XMLStreamException {
+        while (this.suivant()) {
+            switch (this.lecteur.getLocalName()) {
+                case "name":
+                    this.titre_projet = this.lecteur.getElementText();
+                    break;
+                case "children":
+                    this.lireChildren(null);
+                    break;
+                default:
+                    this.ignorer();
+            }
+        }
+    }
+
+    /**
+     * Lit un framerate ({@code <rate>}).
+     *
+     * @return La base de temps et si c'est du NTSC.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private RateInfo lireRate() throws XMLStreamException {
+        int timebase = 0;
+        boolean ntsc = false;
+
+        while (this.suivant()) {
+            switch (this.lecteur.getLocalName()) {
+                case "timebase":
+                    timebase = entier(this.lecteur.getElementText(), 0);
+                    break;
+                case "ntsc":
+                    ntsc = this.lecteur.getElementText().trim().equalsIgnoreCase("TRUE");
+                    break;
+                default:
+                    this.ignorer();
+            }
+        }
+
+        return RateInfo.de(timebase, ntsc, false);
+    }
+
+    /**
+     * Lit une séquence ({@code <sequence>}).
+     *
+     * @return La timeline.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private Timeline lireSequence() throws XMLStreamException {
+        String nom = "Sans titre";
+        int framerate = 0;
+        boolean ntsc = false;
+        boolean drop_frame = false;
+        int largeur = 0;
+        int hauteur = 0;
+        int start = 0;
+        String start_texte = null;
+        ArrayList<Placement> placements_video = new ArrayList<>();
+        ArrayList<Placement> placements_audio = new ArrayList<>();
+        ArrayList<Object[]> marqueurs = new ArrayList<>();
+
+        while (this.suivant()) {
+            switch (this.lecteur.getLocalName()) {
+                case "name":
+                    nom = this.lecteur.getElementText();
+                    break;
+                case "rate":
+                    RateInfo rate = this.lireRate();
+                    framerate = rate.getTimebase();
+                    ntsc = rate.isNtsc();
+                    break;
+                case "media":
+                    while (this.suivant()) {
+                        String balise = this.lecteur.getLocalName();
+
+                        if (balise.equals("video") || balise.equals("audio")) {
+                            boolean video = balise.equals("video");
+                            int piste = 0;
+
+                            while (this.suivant()) {
+                                switch (this.lecteur.getLocalName()) {
+                                    case "track":
+                                        piste++;
+                                        this.lireTrack(video ? placements_video : placements_audio, piste, video);
+                                        break;
+                                    case "format":
+                                        while (this.suivant()) {
+                                            if (this.lecteur.getLocalName().equals("samplecharacteristics")) {
+                                                while (this.suivant()) {
+                                                    switch (this.lecteur.getLocalName()) {
+                                                        case "width":
+                                                            largeur = entier(this.lecteur.getElementText(), 0);
+                                                            break;
+                                                        case "height":
+                                                            hauteur = entier(this.lecteur.getElementText(), 0);
+                                                            break;
+                                                        default:
+                                                            this.ignorer();
+                                                    }
+                                                }
+                                            } else {
+                                                this.ignorer();
+                                            }
+                                        }
+                                        break;
+                                    default:
+                                        this.ignorer();
+                                }
+                            }
+                        } else {
+                            this.ignorer();
+                        }
+                    }
+                    break;
+                case "timecode":
+                    while (this.suivant()) {
+                        switch (this.lecteur.getLocalName()) {
+                            case "frame":
+                                start = entier(this.lecteur.getElementText(), 0);
+                                break;
+                            case "string":
+                                start_texte = this.lecteur.getElementText().trim();
+                                break;
+                            case "displayformat":
+                                drop_frame = this.lecteur.getElementText().trim().equals("DF");
+                                break;
+                            default:
+                                this.ignorer();
+                        }
+                    }
+                    break;
+                case "marker":
+                    marqueurs.add(this.lireMarqueur());
+                    break;
+                default:
+                    this.ignorer();
+            }
+        }
+
+        // Le timecode de début n'est connu qu'à la fin de la séquence.
+        Timecode start_tc = (start == 0 && start_texte != null) ? new Timecode(start_texte, framerate) : new Timecode(start, framerate);
+        int debut = start_tc.toImage();
+
+        Timeline timeline = new Timeline(nom, framerate, start_tc);
+
+        if (ntsc) {
+            timeline.setRate(RateInfo.de(framerate, true, drop_frame && (framerate == 30 || framerate == 60)));
+        }
+        timeline.setDimension(largeur, hauteur);
+
+        for (Placement placement : placements_video) {
+            timeline.addMedia(placement.piste, placement.media, debut + placement.debut, debut + placement.fin, placement.active);
+        }
+
+        for (Placement placement : placements_audio) {
+            timeline.addMedia(placement.piste, placement.media, debut + placement.debut, debut + placement.fin, placement.active);
+        }
+
+        for (Object[] valeurs : marqueurs) {
+            int in = (Integer) valeurs[2];
+            int out = (Integer) valeurs[3];
+            Marqueur marqueur = new Marqueur((String) valeurs[1], debut + in, (out < 0) ? debut + in : debut + out - 1, framerate);
+            marqueur.setCouleur((CouleurMarqueur) valeurs[4]);
+            marqueur.setNom((String) valeurs[0]);
+            timeline.addMarqueur(marqueur);
+        }
+
+        return timeline;
+    }
+
+    /**
+     * Lit une piste ({@code <track>}) d'une séquence.
+     *
+     * @param placements Les clips de la séquence.
+     * @param piste Numéro de la piste.
+     * @param video Si la piste est une piste vidéo.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private void lireTrack(ArrayList<Placement> placements, int piste, boolean video) throws XMLStreamException {
+        int fin_precedente = -1;
+
+        while (this.suivant()) {
+            if (this.lecteur.getLocalName().equals("clipitem")) {
+                Placement placement = this.lireClipitem(placements, piste, video, fin_precedente);
+                fin_precedente = placement.fin;
+            } else {
+                this.ignorer();
+            }
+        }
+    }
+
+    /**
+     * Résout un {@code masterclipid} : tous les médias d'un même masterclip
+     * partagent l'ID du premier.
+     *
+     * @param masterclipid Le masterclipid.
+     * @param media Le média.
+     * @param fichier Le fichier du média (peut être {@code null}).
+     */
+    private void resoudreMasterclip(String masterclipid, Media media, Fichier fichier) {
+        Media master = this.masterclips.get(masterclipid);
+
+        if (master == null) {
+            int tiret = masterclipid.lastIndexOf('-');
+            int id = entier(masterclipid.substring(tiret + 1), 0);
+            if (id > 0) {
+                media.setId(id);
+            }
+            this.masterclips.put(masterclipid, media);
+        } else {
+            media.setId(master.getId());
+        }
+
+        if (fichier != null) {
+            this.fichiers_masterclip.putIfAbsent(masterclipid, fichier);
+        }
+    }
+
+    /**
+     * Avance jusqu'au prochain élément enfant de l'élément courant.
+     *
+     * @return {@code true} si le lecteur est sur un élément enfant,
+     * {@code false} si on a atteint la fin de l'élément courant.
+     * @throws XMLStreamException Si l'XML n'est pas lisible.
+     */
+    private boolean suivant() throws XMLStreamException {
+        while (this.lecteur.hasNext()) {
+            int evenement = this.lecteur.next();
+
+            if (evenement == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (evenement == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+}
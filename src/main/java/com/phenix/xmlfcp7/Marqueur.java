@@ -1,7 +1,10 @@
 package com.phenix.xmlfcp7;
 
 import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
 import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Marqueur dans un projet d'un NLE.
@@ -21,14 +24,19 @@ public final class Marqueur {
     private String note;
 
     /**
-     * Timecode in.
+     * Valeur du point out quand il n'est pas défini.
      */
-    private Timecode in;
+    private static final long AUCUNE_IMAGE = Long.MIN_VALUE;
 
     /**
-     * Timecode out.
+     * Point in en image.
      */
-    private Timecode out;
+    private long in;
+
+    /**
+     * Point out (inclus) en image.
+     */
+    private long out = AUCUNE_IMAGE;
 
     /**
      * Couleur du marqueur.
@@ -41,9 +49,20 @@ public final class Marqueur {
     private int framerate;
 
     /**
-     * Durée du marqueur.
+     * Augmente à chaque modification du marqueur (voir {@link RenduCache}).
+     */
+    private long version;
+
+    /**
+     * Aucune table.
+     */
+    private static final TableMarqueurs[] AUCUNE_TABLE = new TableMarqueurs[0];
+
+    /**
+     * Les tables qui gardent le marqueur : elles sont triées à nouveau quand
+     * il est modifié (copiées à chaque ajout, pour être lues sans verrou).
      */
-    private Timecode duree;
+    private volatile TableMarqueurs[] tables = AUCUNE_TABLE;
 
     /**
      * Construit un marqueur au début.
@@ -69,8 +88,8 @@ public final class Marqueur {
      */
     public Marqueur(String note, int framerate) {
         this.note = note;
-        this.in = new Timecode("00:00:00:00");
-        this.out = new Timecode();
+        this.in = new Timecode("00:00:00:00").toImage();
+        this.out = new Timecode().toImage();
         this.couleur = null;
         this.nom = "";
         this.framerate = framerate;
@@ -110,7 +129,7 @@ public final class Marqueur {
     }
 
     /**
-     * Construit un marqueur.
+     * Construit un marqueur. Son framerate est celui du timecode in.
      *
      * @param note Description.
      * @param in Timecode in.
@@ -119,13 +138,131 @@ public final class Marqueur {
      * @param nom Nom du marqueur.
      */
     public Marqueur(String note, Timecode in, Timecode out, CouleurMarqueur couleur, String nom) {
+        this.note = note;
+        this.in = in.toImage();
+        this.out = (out != null) ? out.toImage() : AUCUNE_IMAGE;
+        this.framerate = (int) in.getFramerate();
+        this.couleur = couleur;
+        this.nom = nom;
+    }
+
+    /**
+     * Construit un marqueur à partir de positions en image.
+     *
+     * @param note Description.
+     * @param in Point in en image.
+     * @param out Point out (inclus) en image.
+     * @param framerate Framerate (lié au projet).
+     */
+    public Marqueur(String note, long in, long out, int framerate) {
+        this(note, in, out, framerate, null, "");
+    }
+
+    /**
+     * Construit un marqueur complet à partir de positions en image (sans
+     * passer par les modifications, voir {@link TableMarqueurs}).
+     *
+     * @param note Description.
+     * @param in Point in en image.
+     * @param out Point out (inclus) en image.
+     * @param framerate Framerate (lié au projet).
+     * @param couleur Couleur du marqueur.
+     * @param nom Nom du marqueur.
+     */
+    Marqueur(String note, long in, long out, int framerate, CouleurMarqueur couleur, String nom) {
         this.note = note;
         this.in = in;
         this.out = out;
+        this.framerate = framerate;
         this.couleur = couleur;
         this.nom = nom;
     }
 
+    /**
+     * Ajoute une table qui garde le marqueur.
+     *
+     * @param table La table.
+     */
+    synchronized void ajouterTable(TableMarqueurs table) {
+        for (TableMarqueurs autre : this.tables) {
+            if (autre == table) {
+                return;
+            }
+        }
+
+        TableMarqueurs[] tables = Arrays.copyOf(this.tables, this.tables.length + 1);
+        tables[tables.length - 1] = table;
+        this.tables = tables;
+    }
+
+    /**
+     * Compare deux marqueurs : image in, image out, nom, note, couleur puis
+     * framerate. Deux marqueurs sont identiques si la comparaison donne
+     * {@code 0}.
+     *
+     * @param marqueur1 Le premier marqueur.
+     * @param marqueur2 Le second marqueur.
+     * @return Négatif, zéro ou positif comme un {@link java.util.Comparator}.
+     */
+    static int comparer(Marqueur marqueur1, Marqueur marqueur2) {
+        int ordre = Long.compare(marqueur1.in, marqueur2.in);
+
+        if (ordre == 0) {
+            ordre = Long.compare(marqueur1.out, marqueur2.out);
+        }
+
+        if (ordre == 0) {
+            ordre = comparer(marqueur1.nom, marqueur2.nom);
+        }
+
+        if (ordre == 0) {
+            ordre = comparer(marqueur1.note, marqueur2.note);
+        }
+
+        if (ordre == 0) {
+            ordre = Integer.compare((marqueur1.couleur != null) ? marqueur1.couleur.ordinal() : -1, (marqueur2.couleur != null) ? marqueur2.couleur.ordinal() : -1);
+        }
+
+        if (ordre == 0) {
+            ordre = Integer.compare(marqueur1.framerate, marqueur2.framerate);
+        }
+
+        return ordre;
+    }
+
+    /**
+     * Compare deux textes ({@code null} avant tout le reste).
+     *
+     * @param texte1 Le premier texte.
+     * @param texte2 Le second texte.
+     * @return Négatif, zéro ou positif.
+     */
+    private static int comparer(String texte1, String texte2) {
+        if (texte1 == null || texte2 == null) {
+            return (texte1 == null) ? ((texte2 == null) ? 0 : -1) : 1;
+        }
+
+        return texte1.compareTo(texte2);
+    }
+
+    /**
+     * Convertit en image un timecode reçu. Si le marqueur a un framerate, on
+     * l'affecte au timecode, sinon on affecte le framerate du timecode (s'il en
+     * a un) au marqueur.
+     *
+     * @param timecode Le timecode.
+     * @return Position en image.
+     */
+    private long enImage(Timecode timecode) {
+        if (this.framerate != 0) {
+            timecode.setFramerate(this.framerate);
+        } else {
+            this.framerate = (int) timecode.getFramerate();
+        }
+
+        return timecode.toImage();
+    }
+
     /**
      * Retourne la couleur.
      *
@@ -141,8 +278,7 @@ public final class Marqueur {
      * @return Durée.
      */
     public Timecode getDuree() {
-        this.duree = new Timecode((out.toImage() - in.toImage() + 1), this.framerate);
-        return this.duree;
+        return new Timecode((int) this.getImageDuree(), this.framerate);
     }
 
     /**
@@ -160,9 +296,36 @@ public final class Marqueur {
      * @return Timecode in.
      */
     public Timecode getIn() {
+        return new Timecode((int) this.in, this.framerate);
+    }
+
+    /**
+     * Retourne la durée du marqueur en image.
+     *
+     * @return Durée en image.
+     */
+    public long getImageDuree() {
+        return this.getImageOut() - this.in + 1;
+    }
+
+    /**
+     * Retourne le point in en image.
+     *
+     * @return Point in.
+     */
+    public long getImageIn() {
         return this.in;
     }
 
+    /**
+     * Retourne le point out (inclus) en image.
+     *
+     * @return Point out ({@code 0} s'il n'est pas défini).
+     */
+    public long getImageOut() {
+        return (this.out != AUCUNE_IMAGE) ? this.out : 0;
+    }
+
     /**
      * Retourne le nom du marqueur.
      *
@@ -187,7 +350,27 @@ public final class Marqueur {
      * @return Timecode out.
      */
     public Timecode getOut() {
-        return this.out;
+        return (this.out != AUCUNE_IMAGE) ? new Timecode((int) this.out, this.framerate) : null;
+    }
+
+    /**
+     * Retourne la version du marqueur.
+     *
+     * @return Nombre de modifications.
+     */
+    long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Note une modification du marqueur.
+     */
+    private void modifie() {
+        this.version++;
+
+        for (TableMarqueurs table : this.tables) {
+            table.modifie();
+        }
     }
 
     /**
@@ -197,6 +380,7 @@ public final class Marqueur {
      */
     public void setCouleur(CouleurMarqueur couleur) {
         this.couleur = couleur;
+        this.modifie();
     }
 
     /**
@@ -206,6 +390,27 @@ public final class Marqueur {
      */
     public void setFramerate(int framerate) {
         this.framerate = framerate;
+        this.modifie();
+    }
+
+    /**
+     * Modifie le point in en image.
+     *
+     * @param in Point in.
+     */
+    public void setImageIn(long in) {
+        this.in = in;
+        this.modifie();
+    }
+
+    /**
+     * Modifie le point out (inclus) en image.
+     *
+     * @param out Point out.
+     */
+    public void setImageOut(long out) {
+        this.out = out;
+        this.modifie();
     }
 
     /**
@@ -214,13 +419,8 @@ public final class Marqueur {
      * @param in Timecode in.
      */
     public void setIn(Timecode in) {
-        this.in = in;
-        if (this.framerate != 0) {
-            this.in.setFramerate(this.framerate);
-        } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
-        else {
-            this.framerate = (int) this.in.getFramerate();
-        }
+        this.in = this.enImage(in);
+        this.modifie();
     }
 
     /**
@@ -230,6 +430,7 @@ public final class Marqueur {
      */
     public void setNom(String nom) {
         this.nom = nom;
+        this.modifie();
     }
 
     /**
@@ -239,6 +440,7 @@ public final class Marqueur {
      */
     public void setNote(String note) {
         this.note = note;
+        this.modifie();
     }
 
     /**
@@ -247,13 +449,58 @@ public final class Marqueur {
      * @param out Timecode out.
      */
     public void setOut(Timecode out) {
-        this.out = out;
+        this.out = this.enImage(out);
+        this.modifie();
+    }
 
-        if (this.framerate != 0) {
-            this.out.setFramerate(this.framerate);
-        } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
-        else {
-            this.framerate = (int) this.out.getFramerate();
+    /**
+     * Écrit le code XML du marqueur dans une timeline.
+     *
+     * @param sink Où écrire l'XML.
+     * @param start_tc Timecode de début de la timeline.
+     * @param logiciel_destination Logiciel auquel est destiné l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeTo(XmlSink sink, Timecode start_tc, Logiciel logiciel_destination) throws IOException {
+        this.writeTo(sink, start_tc.toImage(), logiciel_destination);
+    }
+
+    /**
+     * Écrit le code XML du marqueur dans une timeline.
+     *
+     * @param sink Où écrire l'XML.
+     * @param debut_timeline Début de la timeline en image.
+     * @param logiciel_destination Logiciel auquel est destiné l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeTo(XmlSink sink, long debut_timeline, Logiciel logiciel_destination) throws IOException {
+        sink.ouvre("marker");
+        sink.element("name", this.nom);
+        sink.element("comment", this.note);
+        sink.element("in", this.in - debut_timeline);
+
+        if (this.out == AUCUNE_IMAGE || this.out == this.in) {
+            sink.element("out", -1);
+        } else {
+            sink.element("out", this.out - debut_timeline + 1);
         }
+
+        if (this.couleur != null) {
+            if (logiciel_destination == Logiciel.PREMIERE) {
+                // Le vert étant le par défaut, on ne l'affiche pas.
+                if (this.couleur != CouleurMarqueur.VERT) {
+                    sink.element("pproColor", this.couleur.getCouleurPremiere());
+                }
+            } else {
+                sink.ouvre("color");
+                sink.element("alpha", this.couleur.getCanalAlpha());
+                sink.element("red", this.couleur.getCanalRouge());
+                sink.element("green", this.couleur.getCanalVert());
+                sink.element("blue", this.couleur.getCanalBleu());
+                sink.ferme("color");
+            }
+        }
+
+        sink.ferme("marker");
     }
 }
@@ -1,11 +1,16 @@
 package com.phenix.xmlfcp7;
 
 import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
 import com.phenix.xmlfcp7.effect.Effect;
 import com.phenix.xmlfcp7.enums.Balayage;
 import com.phenix.xmlfcp7.enums.CouleurMedia;
+import com.phenix.xmlfcp7.enums.PrettyPrint;
 import com.phenix.xmlfcp7.enums.Trame;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Media dans un projet.
@@ -15,9 +20,63 @@ import java.util.ArrayList;
 public class Media {
 
     /**
-     * Durée du fichier qui peut être différent du média dans la timeline.
+     * Un bloc {@code <file>} déjà écrit et ce qui a servi à l'écrire.
+     */
+    private static final class BlocFichier {
+
+        /**
+         * Logiciel de destination.
+         */
+        private final Logiciel logiciel;
+
+        /**
+         * ID du fichier.
+         */
+        private final int id;
+
+        /**
+         * Profondeur (indentation) du bloc.
+         */
+        private final int profondeur;
+
+        /**
+         * Mise en forme du bloc.
+         */
+        private final PrettyPrint mise_en_forme;
+
+        /**
+         * Code XML du bloc.
+         */
+        private final String xml;
+
+        /**
+         * Construit un bloc.
+         *
+         * @param logiciel Logiciel de destination.
+         * @param id ID du fichier.
+         * @param profondeur Profondeur du bloc.
+         * @param mise_en_forme Mise en forme du bloc.
+         * @param xml Code XML du bloc.
+         */
+        private BlocFichier(Logiciel logiciel, int id, int profondeur, PrettyPrint mise_en_forme, String xml) {
+            this.logiciel = logiciel;
+            this.id = id;
+            this.profondeur = profondeur;
+            this.mise_en_forme = mise_en_forme;
+            this.xml = xml;
+        }
+    }
+
+    /**
+     * Valeur des positions qui ne sont pas définies.
+     */
+    private static final long AUCUNE_IMAGE = Long.MIN_VALUE;
+
+    /**
+     * Durée du fichier en image, qui peut être différente du média dans la
+     * timeline.
      */
-    private Timecode duree_fichier;
+    private long duree_fichier = AUCUNE_IMAGE;
 
     /**
      * Framerate du média.
@@ -25,9 +84,14 @@ public class Media {
     private int framerate;
 
     /**
-     * Timecode in.
+     * Framerate du média tel qu'il est écrit (NTSC, drop-frame).
+     */
+    private RateInfo rate;
+
+    /**
+     * Point in en image.
      */
-    private Timecode in;
+    private long in = AUCUNE_IMAGE;
 
     /**
      * Où se trouve le fichier.
@@ -50,14 +114,14 @@ public class Media {
     private String nom_fichier;
 
     /**
-     * Timecode out.
+     * Point out (inclus) en image.
      */
-    private Timecode out;
+    private long out = AUCUNE_IMAGE;
 
     /**
-     * Timecode début du média.
+     * Timecode début du média en image.
      */
-    private Timecode start;
+    private long start = AUCUNE_IMAGE;
 
     /**
      * Balayage.
@@ -70,20 +134,10 @@ public class Media {
     private Trame trame;
 
     /**
-     * Id du média. (?)
-     */
-    private static int id_actuelle = 1;
-
-    /**
-     * Masterclip id.
+     * Masterclip id ({@code 0} si l'ID est attribué par le projet).
      */
     private int id;
 
-    /**
-     * Indique si le média a été utilisé dans une timeline.
-     */
-    private boolean utiliser;
-
     /**
      * Savoir ce qu'est le fichier : un fichier audio, vidéo, image, etc élément
      * qui existe (png, mov, wav, etc) ou un élément généré (mire, décompte,
@@ -101,6 +155,17 @@ public class Media {
      */
     private ArrayList<Effect> liste_effet = new ArrayList<Effect>();
 
+    /**
+     * Dernier bloc {@code <file>} écrit : il est réutilisé tant que le média
+     * n'est pas modifié.
+     */
+    private volatile BlocFichier bloc_fichier;
+
+    /**
+     * Augmente à chaque modification du média (voir {@link RenduCache}).
+     */
+    private long version;
+
     /**
      * Définit un média sur base de son nom de fichier.
      *
@@ -112,9 +177,6 @@ public class Media {
         // Par défaut, balayage progressig (donc aucune trame).
         this.balayage = Balayage.PROGRESSIF;
         this.trame = Trame.AUCUNE;
-
-        id = id_actuelle;
-        id_actuelle++;
     }
 
     /**
@@ -130,9 +192,6 @@ public class Media {
         // Par défaut, balayage progressig (donc aucune trame).
         this.balayage = Balayage.PROGRESSIF;
         this.trame = Trame.AUCUNE;
-
-        id = id_actuelle;
-        id_actuelle++;
     }
 
     /**
@@ -142,15 +201,74 @@ public class Media {
      */
     public void addEffect(Effect effect) {
         this.liste_effet.add(effect);
+        this.modifie();
     }
 
     /**
-     * Savoir si le média a déjà été utilisé.
+     * Écrit la description complète du fichier ({@code <file>}) du média : son
+     * nom, où il se trouve, son framerate, sa durée et son timecode. Les
+     * sous-classes y ajoutent ce qu'elles savent de son contenu
+     * ({@code <media>}).
      *
-     * @return {@code true} si le média a été utilisé dans la timeline.
+     * @param sink Où écrire l'XML.
+     * @param id ID du fichier.
+     * @param logiciel Logiciel auquel est destiné l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
      */
-    public boolean dejaUtilise() {
-        return this.utiliser;
+    void ecrireFichier(XmlSink sink, int id, Logiciel logiciel) throws IOException {
+        this.ecrireEnteteFichier(sink, id);
+        sink.ferme("file");
+    }
+
+    /**
+     * Ouvre la description du fichier ({@code <file>}) et écrit ce qui est
+     * commun à tous les médias : nom, localisation, framerate, durée et
+     * timecode.
+     *
+     * @param sink Où écrire l'XML.
+     * @param id ID du fichier.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    void ecrireEnteteFichier(XmlSink sink, int id) throws IOException {
+        String nom_fichier = (this.nom_fichier != null) ? new File(this.nom_fichier.replace("\\", "/")).getName() : "";
+        RateInfo rate = this.getRate();
+
+        sink.debutBalise("file").attribut("id", "file-", id).finBalise();
+        sink.element("name", nom_fichier);
+        sink.element("pathurl", this.localisation);
+        rate.writeTo(sink);
+        sink.element("duration", this.getImageDureeFichier());
+        sink.ouvre("timecode");
+        rate.writeTo(sink);
+        sink.element("string", this.getTexteStart());
+        sink.element("frame", this.getImageStart());
+        sink.element("displayformat", rate.getDisplayFormat());
+
+        if (this.nom_bobine != null) {
+            sink.ouvre("reel");
+            sink.element("name", this.nom_bobine);
+            sink.ferme("reel");
+        }
+
+        sink.ferme("timecode");
+    }
+
+    /**
+     * Convertit en image un timecode reçu. Si le média a un framerate, on
+     * l'affecte au timecode, sinon on affecte le framerate du timecode (s'il en
+     * a un) au média.
+     *
+     * @param timecode Le timecode.
+     * @return Position en image.
+     */
+    private long enImage(Timecode timecode) {
+        if (this.framerate != 0) {
+            timecode.setFramerate(this.framerate);
+        } else {
+            this.framerate = (int) timecode.getFramerate();
+        }
+
+        return timecode.toImage();
     }
 
     /**
@@ -168,7 +286,7 @@ public class Media {
      * @return Durée.
      */
     public Timecode getDuree() {
-        return new Timecode((this.out.toImage() - this.in.toImage() + 1), this.framerate);
+        return new Timecode((int) this.getImageDuree(), this.framerate);
     }
 
     /**
@@ -178,11 +296,7 @@ public class Media {
      * @return Durée du fichier.
      */
     public Timecode getDureeFichier() {
-        if (this.duree_fichier != null) {
-            return this.duree_fichier;
-        } else {
-            return this.getDuree();
-        }
+        return new Timecode((int) this.getImageDureeFichier(), this.framerate);
     }
 
     /**
@@ -195,21 +309,95 @@ public class Media {
     }
 
     /**
-     * Retourne l'ID du "master-clip".
+     * Retourne l'ID du "master-clip" donné avec {@link #setId(int) setId}.
      *
-     * @return ID.
+     * @return ID ou {@code 0} si c'est le projet qui l'attribue (voir
+     * {@link IdAllocator}).
      */
     public int getId() {
         return this.id;
     }
 
+    /**
+     * Retourne le framerate du média tel qu'il est écrit (voir
+     * {@link #setRate(RateInfo) setRate}).
+     *
+     * @return Le framerate.
+     */
+    public RateInfo getRate() {
+        RateInfo rate = this.rate;
+
+        if (rate == null || rate.getTimebase() != this.framerate) {
+            rate = RateInfo.de(this.framerate);
+            this.rate = rate;
+        }
+
+        return rate;
+    }
+
+    /**
+     * Retourne le timecode de début sous forme de texte, au framerate du
+     * média.
+     *
+     * @return Timecode ou {@code null} s'il n'est pas défini.
+     */
+    String getTexteStart() {
+        return (this.start != AUCUNE_IMAGE) ? this.getRate().timecode(this.start) : null;
+    }
+
     /**
      * Retourne le point in.
      *
      * @return Point in.
      */
     public Timecode getIn() {
-        return this.in;
+        return this.timecode(this.in);
+    }
+
+    /**
+     * Retourne la durée du média en image.
+     *
+     * @return Durée en image.
+     */
+    public long getImageDuree() {
+        return this.getImageOut() - this.getImageIn() + 1;
+    }
+
+    /**
+     * Retourne la durée du fichier en image (peut être différente du média
+     * dans la timeline).
+     *
+     * @return Durée du fichier en image.
+     */
+    public long getImageDureeFichier() {
+        return (this.duree_fichier != AUCUNE_IMAGE) ? this.duree_fichier : this.getImageDuree();
+    }
+
+    /**
+     * Retourne le point in en image.
+     *
+     * @return Point in ({@code 0} s'il n'est pas défini).
+     */
+    public long getImageIn() {
+        return (this.in != AUCUNE_IMAGE) ? this.in : 0;
+    }
+
+    /**
+     * Retourne le point out (inclus) en image.
+     *
+     * @return Point out ({@code 0} s'il n'est pas défini).
+     */
+    public long getImageOut() {
+        return (this.out != AUCUNE_IMAGE) ? this.out : 0;
+    }
+
+    /**
+     * Retourne le timecode début en image.
+     *
+     * @return Timecode début ({@code 0} s'il n'est pas défini).
+     */
+    public long getImageStart() {
+        return (this.start != AUCUNE_IMAGE) ? this.start : 0;
     }
 
     /**
@@ -254,7 +442,7 @@ public class Media {
      * @return Point out.
      */
     public Timecode getOut() {
-        return this.out;
+        return this.timecode(this.out);
     }
 
     /**
@@ -263,7 +451,7 @@ public class Media {
      * @return Timecode début.
      */
     public Timecode getStart() {
-        return this.start;
+        return this.timecode(this.start);
     }
 
     /**
@@ -284,6 +472,23 @@ public class Media {
         return this.type_media;
     }
 
+    /**
+     * Oublie le dernier bloc {@code <file>} écrit : à appeler quand une
+     * information du fichier change.
+     */
+    void invaliderFichier() {
+        this.bloc_fichier = null;
+        this.modifie();
+    }
+
+    /**
+     * Indique que le média a été modifié : les timelines et dossiers qui
+     * l'utilisent seront rendus de nouveau.
+     */
+    void modifie() {
+        this.version++;
+    }
+
     /**
      * Définit le balayage du média.
      *
@@ -294,6 +499,7 @@ public class Media {
     public void setBalayage(Balayage balayage, Trame trame) {
         this.balayage = balayage;
         this.trame = trame;
+        this.invaliderFichier();
     }
 
     /**
@@ -303,6 +509,7 @@ public class Media {
      */
     public void setCouleur(CouleurMedia couleur) {
         this.couleur = couleur;
+        this.modifie();
     }
 
     /**
@@ -311,7 +518,8 @@ public class Media {
      * @param duree_fichier Durée du fichier.
      */
     public void setDureeFichier(Timecode duree_fichier) {
-        this.duree_fichier = duree_fichier;
+        this.duree_fichier = (duree_fichier != null) ? duree_fichier.toImage() : AUCUNE_IMAGE;
+        this.invaliderFichier();
     }
 
     /**
@@ -321,6 +529,37 @@ public class Media {
      */
     public void setId(int id) {
         this.id = id;
+        this.modifie();
+    }
+
+    /**
+     * Définit le point in en image.
+     *
+     * @param in Point in.
+     */
+    public void setImageIn(long in) {
+        this.in = in;
+        this.invaliderFichier();
+    }
+
+    /**
+     * Définit le point out (inclus) en image.
+     *
+     * @param out Point out.
+     */
+    public void setImageOut(long out) {
+        this.out = out;
+        this.invaliderFichier();
+    }
+
+    /**
+     * Définit le timecode de début en image.
+     *
+     * @param start Timecode de début.
+     */
+    public void setImageStart(long start) {
+        this.start = start;
+        this.invaliderFichier();
     }
 
     /**
@@ -329,14 +568,8 @@ public class Media {
      * @param in Point in.
      */
     public void setIn(Timecode in) {
-        this.in = in;
-        // Si média a un framerate, on l'affecte au timecode reçu.
-        if (this.framerate != 0) {
-            this.in.setFramerate(this.framerate);
-        } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
-        else {
-            this.framerate = (int) this.in.getFramerate();
-        }
+        this.in = this.enImage(in);
+        this.invaliderFichier();
     }
 
     /**
@@ -355,6 +588,7 @@ public class Media {
      */
     public void setLocalisation(String localisation) {
         this.localisation = localisation;
+        this.invaliderFichier();
     }
 
     /**
@@ -364,6 +598,7 @@ public class Media {
      */
     public void setNom(String nom) {
         this.nom = nom;
+        this.modifie();
     }
 
     /**
@@ -374,6 +609,7 @@ public class Media {
      */
     public void setNomBobine(String nom_bobine) {
         this.nom_bobine = nom_bobine;
+        this.invaliderFichier();
     }
 
     /**
@@ -383,6 +619,7 @@ public class Media {
      */
     public void setNomFichier(String nom_fichier) {
         this.nom_fichier = nom_fichier;
+        this.invaliderFichier();
     }
 
     /**
@@ -391,13 +628,20 @@ public class Media {
      * @param out Point out.
      */
     public void setOut(Timecode out) {
-        this.out = out;
-        if (this.framerate != 0) {
-            this.out.setFramerate(this.framerate);
-        } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
-        else {
-            this.framerate = (int) this.out.getFramerate();
-        }
+        this.out = this.enImage(out);
+        this.invaliderFichier();
+    }
+
+    /**
+     * Modifie le framerate du média, par exemple {@link RateInfo#IMAGES_23_976}
+     * pour un fichier NTSC.
+     *
+     * @param rate Le framerate.
+     */
+    public void setRate(RateInfo rate) {
+        this.framerate = rate.getTimebase();
+        this.rate = rate;
+        this.invaliderFichier();
     }
 
     /**
@@ -406,12 +650,23 @@ public class Media {
      * @param start Timecode de début.
      */
     public void setStart(Timecode start) {
-        this.start = start;
-        if (this.framerate != 0) {
-            this.start.setFramerate(this.framerate);
-        } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
-        else {
-            this.framerate = (int) this.start.getFramerate();
+        this.start = this.enImage(start);
+        this.invaliderFichier();
+    }
+
+    /**
+     * Ajoute à une signature de rendu ce qui identifie l'état du média : le
+     * média lui-même, sa version et ses effets (voir {@link RenduCache}).
+     *
+     * @param signature La signature.
+     */
+    void signer(List<Object> signature) {
+        signature.add(this);
+        signature.add(this.version);
+
+        for (Effect effet : this.liste_effet) {
+            signature.add(effet);
+            signature.add(effet.getVersion());
         }
     }
 
@@ -422,134 +677,109 @@ public class Media {
      */
     @Override
     public String toString() {
-        String xml = "<clip id=\"masterclip-5\" explodedTracks=\"true\">\n"
-                + "\t\t\t\t\t\t\t\t\t\t<uuid>8712fc3e-6ee7-459f-87d3-1866ff0a68fe</uuid>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<masterclipid>masterclip-5</masterclipid>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<ismasterclip>TRUE</ismasterclip>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<duration>40</duration>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t<timebase>30</timebase>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t<ntsc>TRUE</ntsc>\n"
-                + "\t\t\t\t\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<name>tu_memmerdes.mp3</name>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<media>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t<audio>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t<track>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t<clipitem id=\"clipitem-5\">\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<masterclipid>masterclip-5</masterclipid>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<name>tu_memmerdes.mp3</name>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<timebase>30</timebase>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<ntsc>TRUE</ntsc>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<file id=\"file-5\">\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<name>tu_memmerdes.mp3</name>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<pathurl>file://localhost/C%3a/Users/Edouard/Desktop/tu_memmerdes.mp3</pathurl>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<timebase>30</timebase>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<ntsc>TRUE</ntsc>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<duration>40</duration>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<timecode>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<timebase>30</timebase>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<ntsc>TRUE</ntsc>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<string>00;00;00;00</string>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<frame>0</frame>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<displayformat>DF</displayformat>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</timecode>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<media>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<audio>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<samplecharacteristics>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<depth>16</depth>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<samplerate>48000</samplerate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</samplecharacteristics>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<channelcount>1</channelcount>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<layout>stereo</layout>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<audiochannel>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<sourcechannel>1</sourcechannel>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<channellabel>left</channellabel>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</audiochannel>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</audio>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<audio>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<samplecharacteristics>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<depth>16</depth>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<samplerate>48000</samplerate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</samplecharacteristics>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<channelcount>1</channelcount>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<layout>stereo</layout>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<audiochannel>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<sourcechannel>2</sourcechannel>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<channellabel>right</channellabel>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</audiochannel>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</audio>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t</media>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t</file>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<sourcetrack>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<trackindex>1</trackindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t</sourcetrack>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<link>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<linkclipref>clipitem-6</linkclipref>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<trackindex>1</trackindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<clipindex>1</clipindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t</link>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<link>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<linkclipref>clipitem-7</linkclipref>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<trackindex>2</trackindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<clipindex>1</clipindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t</link>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t</clipitem>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t</track>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t<track>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t<clipitem id=\"clipitem-2\">\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<masterclipid>masterclip-1</masterclipid>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<name>tu_memmerdes.mp3</name>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<timebase>30</timebase>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<ntsc>TRUE</ntsc>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<file id=\"file-5\"/>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<sourcetrack>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<trackindex>2</trackindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t</sourcetrack>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<link>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<linkclipref>clipitem-6</linkclipref>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<trackindex>1</trackindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<clipindex>1</clipindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t</link>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t<link>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<linkclipref>clipitem-7</linkclipref>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<trackindex>2</trackindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t<clipindex>1</clipindex>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t</link>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t\t</clipitem>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t\t</track>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t</audio>\n"
-                + "\t\t\t\t\t\t\t\t\t\t</media>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<logginginfo>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t<description></description>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t<scene></scene>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t<shottake></shottake>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t<lognote></lognote>\n"
-                + "\t\t\t\t\t\t\t\t\t\t</logginginfo>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<labels>\n"
-                + "\t\t\t\t\t\t\t\t\t\t\t<label2>Caribbean</label2>\n"
-                + "\t\t\t\t\t\t\t\t\t\t</labels>\n"
-                + "\t\t\t\t\t\t\t\t\t</clip>";
-        return xml;
-    }
-
-    /**
-     * Indique que le média a été utilisé dans une timeline.
-     */
-    public void utiliser() {
-        this.utiliser = true;
+        return XmlSink.enChaine(this::writeTo);
+    }
+
+    /**
+     * Convertit une position en timecode au framerate du média.
+     *
+     * @param image Position en image.
+     * @return Timecode ou {@code null} si la position n'est pas définie.
+     */
+    private Timecode timecode(long image) {
+        return (image != AUCUNE_IMAGE) ? new Timecode((int) image, this.framerate) : null;
+    }
+
+    /**
+     * Écrit la description complète du fichier ({@code <file>}) du média. Le
+     * bloc écrit est gardé et réutilisé tel quel pour le même logiciel, le
+     * même ID et la même indentation (et mise en forme), tant que le média n'est pas modifié.
+     *
+     * @param sink Où écrire l'XML.
+     * @param id ID du fichier.
+     * @param logiciel Logiciel auquel est destiné l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    void writeFichierTo(XmlSink sink, int id, Logiciel logiciel) throws IOException {
+        BlocFichier bloc = this.bloc_fichier;
+        int profondeur = sink.getProfondeur();
+
+        PrettyPrint mise_en_forme = sink.getMiseEnForme();
+
+        if (bloc == null || bloc.logiciel != logiciel || bloc.id != id || bloc.profondeur != profondeur || bloc.mise_en_forme != mise_en_forme) {
+            bloc = new BlocFichier(logiciel, id, profondeur, mise_en_forme, XmlSink.enChaine(s -> this.ecrireFichier(s, id, logiciel), profondeur, mise_en_forme));
+            this.bloc_fichier = bloc;
+        }
+
+        sink.inclure(bloc.xml);
+    }
+
+    /**
+     * Écrit le masterclip du média ({@code <clip>}) : sa durée, son framerate,
+     * son nom, sa couleur et un clipitem qui décrit son fichier ou y fait
+     * référence.
+     *
+     * @param sink Où écrire l'XML.
+     * @param id ID du média (masterclip et fichier).
+     * @param definition Si le fichier doit être décrit en entier (sinon une
+     * référence {@code <file id="..."/>} suffit).
+     * @param logiciel Logiciel auquel est destiné l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    void writeMasterclipTo(XmlSink sink, int id, boolean definition, Logiciel logiciel) throws IOException {
+        String nom_fichier = (this.nom_fichier != null) ? new File(this.nom_fichier.replace("\\", "/")).getName() : "";
+        String nom_clip = (this.nom != null) ? this.nom : nom_fichier;
+        RateInfo rate = this.getRate();
+
+        sink.debutBalise("clip").attribut("id", "masterclip-", id).attribut("explodedTracks", "true").finBalise();
+        sink.element("masterclipid", "masterclip-" + id);
+        sink.element("ismasterclip", "TRUE");
+        sink.element("duration", this.getImageDureeFichier());
+        rate.writeTo(sink);
+        sink.element("name", nom_clip);
+
+        // Le clipitem du masterclip, sur sa seule piste :
+        String type = (this instanceof MediaAudio) ? "audio" : "video";
+
+        sink.ouvre("media");
+        sink.ouvre(type);
+        sink.ouvre("track");
+        sink.debutBalise("clipitem").attribut("id", "clipitem-masterclip-", id).finBalise();
+        sink.element("masterclipid", "masterclip-" + id);
+        sink.element("name", nom_clip);
+        rate.writeTo(sink);
+
+        // Un élément généré n'a pas de fichier.
+        if (!"genere".equals(this.type_media)) {
+            if (definition) {
+                this.writeFichierTo(sink, id, logiciel);
+            } else {
+                sink.debutBalise("file").attribut("id", "file-", id).finBaliseVide();
+            }
+        }
+
+        sink.ferme("clipitem");
+        sink.ferme("track");
+        sink.ferme(type);
+        sink.ferme("media");
+
+        if (this.couleur != null) {
+            sink.ouvre("labels");
+            sink.element("label2", this.couleur);
+            sink.ferme("labels");
+        }
+
+        sink.ferme("clip");
+    }
+
+    /**
+     * Écrit le masterclip du média, seul (avec ses propres IDs) et destiné à
+     * Adobe Premiere.
+     *
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeTo(XmlSink sink) throws IOException {
+        this.writeMasterclipTo(sink, new IdAllocator().getIdMedia(this), true, Logiciel.PREMIERE);
     }
 }
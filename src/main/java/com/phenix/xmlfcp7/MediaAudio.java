@@ -1,5 +1,9 @@
 package com.phenix.xmlfcp7;
 
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import java.io.File;
+import java.io.IOException;
+
 /**
  * Média de type audio.
  *
@@ -28,6 +32,49 @@ public final class MediaAudio extends Media {
         this.numero_source_canal = 1;
     }
 
+    /**
+     * Écrit la description complète du fichier audio ({@code <file>}).
+     *
+     * @param sink Où écrire l'XML.
+     * @param id ID du fichier.
+     * @param logiciel Logiciel auquel est destiné l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    @Override
+    void ecrireFichier(XmlSink sink, int id, Logiciel logiciel) throws IOException {
+        String nom_fichier = new File(this.getNomFichier().replace("\\", "/")).getName();
+        RateInfo rate = this.getRate();
+
+        sink.debutBalise("file").attribut("id", "file-", id).finBalise();
+        sink.element("name", nom_fichier);
+        sink.element("pathurl", this.getLocalisation());
+        rate.writeTo(sink);
+        sink.element("duration", this.getImageDureeFichier());
+        sink.ouvre("timecode");
+        rate.writeTo(sink);
+        sink.element("string", this.getTexteStart());
+        sink.element("frame", this.getImageStart());
+        sink.element("displayformat", rate.getDisplayFormat());
+        sink.ferme("timecode");
+        sink.ouvre("media");
+
+        for (int i = 0; i < this.getNombreCanaux(); i++) {
+            sink.ouvre("audio");
+            sink.ouvre("samplecharacteristics");
+            sink.element("depth", 16);
+            sink.element("samplerate", 48000);
+            sink.ferme("samplecharacteristics");
+            sink.element("channelcount", 1);
+            sink.ouvre("audiochannel");
+            sink.element("sourcechannel", i + 1);
+            sink.ferme("audiochannel");
+            sink.ferme("audio");
+        }
+
+        sink.ferme("media");
+        sink.ferme("file");
+    }
+
     /**
      * Retourne le nombre de canaux.
      *
@@ -53,6 +100,7 @@ public final class MediaAudio extends Media {
      */
     public void setNombreCanaux(int nombre_canaux) {
         this.nombre_canaux = nombre_canaux;
+        this.invaliderFichier();
     }
 
     /**
@@ -62,5 +110,6 @@ public final class MediaAudio extends Media {
      */
     public void setNumeroSourceCanal(int numero) {
         this.numero_source_canal = numero;
+        this.modifie();
     }
 }
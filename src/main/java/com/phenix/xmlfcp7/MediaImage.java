@@ -1,5 +1,8 @@
 package com.phenix.xmlfcp7;
 
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import java.io.IOException;
+
 /**
  * Média de type image.
  *
@@ -16,4 +19,29 @@ public final class MediaImage extends Media {
         super(nom_fichier);
         this.type_media = "image";
     }
+
+    /**
+     * Écrit la description complète du fichier image ({@code <file>}) : une
+     * seule piste vidéo, sans audio.
+     *
+     * @param sink Où écrire l'XML.
+     * @param id ID du fichier.
+     * @param logiciel Logiciel auquel est destiné l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    @Override
+    void ecrireFichier(XmlSink sink, int id, Logiciel logiciel) throws IOException {
+        this.ecrireEnteteFichier(sink, id);
+        sink.ouvre("media");
+        sink.ouvre("video");
+        sink.ouvre("samplecharacteristics");
+        this.getRate().writeTo(sink);
+        sink.element("anamorphic", "FALSE");
+        sink.element("pixelaspectratio", "square");
+        sink.element("fielddominance", this.getTrame());
+        sink.ferme("samplecharacteristics");
+        sink.ferme("video");
+        sink.ferme("media");
+        sink.ferme("file");
+    }
 }
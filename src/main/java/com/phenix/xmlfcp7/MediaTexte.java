@@ -60,5 +60,6 @@ public final class MediaTexte extends MediaVideo {
      */
     public void setTexte(String texte) {
         this.texte = texte;
+        this.modifie();
     }
 }
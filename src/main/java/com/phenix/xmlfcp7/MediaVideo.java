@@ -2,6 +2,8 @@ package com.phenix.xmlfcp7;
 
 import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
 import com.phenix.xmlfcp7.enums.Alpha;
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Média de type vidéo (image + audio).
@@ -104,6 +106,138 @@ public class MediaVideo extends Media {
         this.alpha = Alpha.NONE;
     }
 
+    /**
+     * Écrit la description des canaux audio d'un fichier.
+     *
+     * @param sink Où écrire l'XML.
+     * @param nb Nombre de canaux.
+     * @param echantillon Fréquence d'échantillonnage.
+     * @param bit Profondeur en bit.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private static void canauxClip(XmlSink sink, int nb, int echantillon, int bit) throws IOException {
+        if (nb == 2) {
+            for (int canal = 1; canal <= 2; canal++) {
+                sink.ouvre("audio");
+                sink.ouvre("samplecharacteristics");
+                sink.element("depth", bit);
+                sink.element("samplerate", echantillon);
+                sink.ferme("samplecharacteristics");
+                sink.element("channelcount", 1);
+                sink.element("layout", "stereo");
+                sink.ouvre("audiochannel");
+                sink.element("sourcechannel", canal);
+                sink.element("channellabel", (canal == 1) ? "left" : "right");
+                sink.ferme("audiochannel");
+                sink.ferme("audio");
+            }
+        } else {
+            sink.ouvre("audio");
+            sink.ouvre("samplecharacteristics");
+            sink.element("depth", bit);
+            sink.element("samplerate", echantillon);
+            sink.ferme("samplecharacteristics");
+            sink.element("channelcount", nb);
+            sink.ferme("audio");
+        }
+    }
+
+    /**
+     * Écrit la description complète du fichier vidéo ({@code <file>}).
+     *
+     * @param sink Où écrire l'XML.
+     * @param id ID du fichier.
+     * @param logiciel Logiciel auquel est destiné l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    @Override
+    void ecrireFichier(XmlSink sink, int id, Logiciel logiciel) throws IOException {
+        String nom_fichier = new File(this.getNomFichier().replace("\\", "/")).getName();
+        RateInfo rate = this.getRate();
+
+        // Si le logiciel est Adobe Premiere :
+        if (logiciel == Logiciel.PREMIERE) {
+            sink.debutBalise("file").attribut("id", "file-", id).finBalise();
+            sink.element("name", nom_fichier);
+            // Où se trouve le fichier.
+            sink.element("pathurl", this.getLocalisation());
+            // Framerate du média.
+            rate.writeTo(sink);
+            // Durée du média.
+            sink.element("duration", this.getImageDureeFichier());
+            sink.ouvre("timecode");
+            // Framerate du média.
+            rate.writeTo(sink);
+            // Timecode de début du média.
+            sink.element("string", this.getTexteStart());
+            // Début du média en nombre d'images.
+            sink.element("frame", this.getImageStart());
+            sink.element("displayformat", rate.getDisplayFormat());
+
+            if (this.getNomBobine() != null) {
+                sink.ouvre("reel");
+                sink.element("name", this.getNomBobine());
+                sink.ferme("reel");
+            }
+
+            sink.ferme("timecode");
+            sink.ouvre("media");
+            sink.ouvre("video");
+            sink.ouvre("samplecharacteristics");
+            // Frame rate du média.
+            rate.writeTo(sink);
+            // largeur du média.
+            sink.element("width", this.getLargeur());
+            // hauteur du média.
+            sink.element("height", this.getHauteur());
+            sink.element("anamorphic", "FALSE");
+            sink.element("pixelaspectratio", "square");
+            sink.element("fielddominance", this.getTrame());
+            sink.ferme("samplecharacteristics");
+            sink.ferme("video");
+        } // Cas de Resolve:
+        else {
+            sink.debutBalise("file").attribut("id", "file-", id).finBalise();
+            sink.element("duration", this.getImageDureeFichier());
+            sink.ouvre("rate");
+            sink.element("timebase", this.getFramerate());
+            sink.element("ntsc", rate.isNtsc() ? "true" : "false");
+            sink.ferme("rate");
+            sink.element("name", nom_fichier);
+            sink.element("pathurl", this.getLocalisation());
+            sink.ouvre("timecode");
+            sink.element("string", this.getTexteStart());
+            sink.element("displayformat", rate.getDisplayFormat());
+            sink.ouvre("rate");
+            sink.element("timebase", this.getFramerate());
+            sink.element("ntsc", rate.isNtsc() ? "true" : "false");
+            sink.ferme("rate");
+
+            if (this.getNomBobine() != null) {
+                sink.ouvre("reel");
+                sink.element("name", this.getNomBobine());
+                sink.ferme("reel");
+            }
+
+            sink.ferme("timecode");
+            sink.ouvre("media");
+            sink.ouvre("video");
+            sink.element("duration", this.getImageDureeFichier());
+            sink.ouvre("samplecharacteristics");
+            sink.element("width", this.getLargeur());
+            sink.element("height", this.getHauteur());
+            sink.ferme("samplecharacteristics");
+            sink.ferme("video");
+        }
+
+        if (this.getCanaux() > 0) {
+            canauxClip(sink, this.getCanaux(), 48000, 16);
+        }
+
+        sink.ferme("media");
+        sink.ferme("file");
+    }
+
     /**
      * Retourne la couche alpha.
      *
@@ -262,6 +396,7 @@ public class MediaVideo extends Media {
      */
     public void setAlpha(Alpha alpha) {
         this.alpha = alpha;
+        this.modifie();
     }
 
     /**
@@ -271,6 +406,7 @@ public class MediaVideo extends Media {
      */
     public void setCanaux(int canaux) {
         this.canaux = canaux;
+        this.invaliderFichier();
     }
 
     /**
@@ -284,6 +420,7 @@ public class MediaVideo extends Media {
         this.x = largeur / 2;
         this.hauteur = hauteur;
         this.y = hauteur / 2;
+        this.invaliderFichier();
     }
 
     /**
@@ -293,6 +430,7 @@ public class MediaVideo extends Media {
      */
     public void setEchelle(int echelle) {
         this.echelle = echelle;
+        this.modifie();
     }
 
     /**
@@ -302,6 +440,7 @@ public class MediaVideo extends Media {
      */
     public void setFreeze(boolean est_freeze) {
         this.est_freeze = est_freeze;
+        this.modifie();
     }
 
     /**
@@ -311,6 +450,7 @@ public class MediaVideo extends Media {
      */
     public void setHorizontal(float horizontal) {
         this.horizontal = horizontal;
+        this.modifie();
     }
 
     /**
@@ -319,7 +459,10 @@ public class MediaVideo extends Media {
      * @param logiciel_destination Logiciel auquel est destiné la timeline.
      */
     public void setLogicielDestination(Logiciel logiciel_destination) {
-        this.logiciel_destination = logiciel_destination;
+        if (this.logiciel_destination != logiciel_destination) {
+            this.logiciel_destination = logiciel_destination;
+            this.modifie();
+        }
     }
 
     /**
@@ -329,6 +472,7 @@ public class MediaVideo extends Media {
      */
     public void setPAR(double par) {
         this.par = par;
+        this.modifie();
     }
 
     /**
@@ -340,6 +484,7 @@ public class MediaVideo extends Media {
     public void setPosition(int x, int y) {
         this.x = x;
         this.y = y;
+        this.modifie();
     }
 
     /**
@@ -349,5 +494,6 @@ public class MediaVideo extends Media {
      */
     public void setVertical(float vertical) {
         this.vertical = vertical;
+        this.modifie();
     }
 }
@@ -0,0 +1,83 @@
+package com.phenix.xmlfcp7;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Occupation d'une piste de timeline : les intervalles (en image, bornes
+ * incluses) déjà pris par des clips.<br>
+ * Les intervalles ne se chevauchent pas, ils sont donc triés par début et par
+ * fin : vérifier qu'un intervalle est libre coûte O(log n), quel que soit
+ * l'ordre dans lequel les clips sont ajoutés.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class OccupationPiste {
+
+    /**
+     * Intervalles occupés : image de début vers image de fin.
+     */
+    private final TreeMap<Integer, Integer> intervalles = new TreeMap<>();
+
+    /**
+     * Plus grande image occupée ({@code Integer.MIN_VALUE} si la piste est
+     * vide) : quand les clips arrivent dans l'ordre, il suffit de la comparer.
+     */
+    private int fin_max = Integer.MIN_VALUE;
+
+    /**
+     * Ajoute un intervalle occupé. Il doit être libre (voir
+     * {@link #estLibre(int, int) estLibre}).
+     *
+     * @param debut Première image.
+     * @param fin Dernière image.
+     */
+    void ajouter(int debut, int fin) {
+        this.intervalles.put(debut, Math.max(debut, fin));
+        this.fin_max = Math.max(this.fin_max, Math.max(debut, fin));
+    }
+
+    /**
+     * Indique si aucun clip n'occupe l'intervalle.
+     *
+     * @param debut Première image.
+     * @param fin Dernière image.
+     * @return {@code true} si l'intervalle est libre.
+     */
+    boolean estLibre(int debut, int fin) {
+        if (Math.min(debut, fin) > this.fin_max) {
+            return true;
+        }
+
+        // Le seul intervalle qui peut chevaucher est le dernier qui commence avant la fin.
+        Map.Entry<Integer, Integer> precedent = this.intervalles.floorEntry(Math.max(debut, fin));
+        return precedent == null || precedent.getValue() < debut;
+    }
+
+    /**
+     * Retourne le nombre d'images occupées entre deux images (incluses).
+     *
+     * @param debut Première image.
+     * @param fin Dernière image.
+     * @return Nombre d'images occupées.
+     */
+    int occupation(int debut, int fin) {
+        if (fin < debut) {
+            return 0;
+        }
+
+        // On part de l'intervalle qui commence avant le début (il peut déborder dedans).
+        Integer depart = this.intervalles.floorKey(debut);
+        int total = 0;
+
+        for (Map.Entry<Integer, Integer> intervalle : this.intervalles.subMap(depart != null ? depart : debut, true, fin, true).entrySet()) {
+            int chevauchement = Math.min(fin, intervalle.getValue()) - Math.max(debut, intervalle.getKey()) + 1;
+
+            if (chevauchement > 0) {
+                total += chevauchement;
+            }
+        }
+
+        return total;
+    }
+}
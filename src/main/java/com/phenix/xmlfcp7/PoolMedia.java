@@ -0,0 +1,163 @@
+package com.phenix.xmlfcp7;
+
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * Médias indexés par leur fichier : type de média, localisation, nom du
+ * fichier, timecode de début et framerate. Pour un même fichier, le pool
+ * retourne toujours le même média (le premier ajouté) : son masterclip et son
+ * bloc {@code <file>} ne sont écrits qu'une fois, quel que soit le nombre de
+ * médias qui l'utilisent.<br>
+ * Les éléments générés (mire, noir, texte, etc) n'ont pas de fichier : chacun
+ * est son propre média.<br>
+ * La clé est calculée à l'ajout : un média modifié ensuite (localisation,
+ * nom, timecode début ou framerate) garde sa place.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class PoolMedia {
+
+    /**
+     * Ce qui identifie le fichier d'un média.
+     */
+    private static final class Cle {
+
+        /**
+         * Classe du média.
+         */
+        private final Class<?> type;
+
+        /**
+         * Localisation du fichier.
+         */
+        private final String localisation;
+
+        /**
+         * Nom du fichier.
+         */
+        private final String nom_fichier;
+
+        /**
+         * Timecode début en image.
+         */
+        private final long start;
+
+        /**
+         * Base du framerate.
+         */
+        private final int timebase;
+
+        /**
+         * Si le framerate est NTSC.
+         */
+        private final boolean ntsc;
+
+        /**
+         * Si le timecode est en drop frame.
+         */
+        private final boolean drop_frame;
+
+        /**
+         * Code de hachage (calculé une fois).
+         */
+        private final int hash;
+
+        /**
+         * Construit la clé d'un média.
+         *
+         * @param media Le média.
+         */
+        private Cle(Media media) {
+            RateInfo rate = media.getRate();
+
+            this.type = media.getClass();
+            this.localisation = media.getLocalisation();
+            this.nom_fichier = media.getNomFichier();
+            this.start = media.getImageStart();
+            this.timebase = rate.getTimebase();
+            this.ntsc = rate.isNtsc();
+            this.drop_frame = rate.isDropFrame();
+            this.hash = Objects.hash(this.type, this.localisation, this.nom_fichier, this.start, this.timebase, this.ntsc, this.drop_frame);
+        }
+
+        /**
+         * Compare deux clés.
+         *
+         * @param objet L'autre clé.
+         * @return {@code true} si c'est le même fichier.
+         */
+        @Override
+        public boolean equals(Object objet) {
+            if (this == objet) {
+                return true;
+            }
+
+            if (!(objet instanceof Cle)) {
+                return false;
+            }
+
+            Cle cle = (Cle) objet;
+
+            return this.hash == cle.hash
+                    && this.type == cle.type
+                    && this.start == cle.start
+                    && this.timebase == cle.timebase
+                    && this.ntsc == cle.ntsc
+                    && this.drop_frame == cle.drop_frame
+                    && Objects.equals(this.nom_fichier, cle.nom_fichier)
+                    && Objects.equals(this.localisation, cle.localisation);
+        }
+
+        /**
+         * Retourne le code de hachage.
+         *
+         * @return Code de hachage.
+         */
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * Média de chaque fichier.
+     */
+    private final HashMap<Cle, Media> medias = new HashMap<Cle, Media>();
+
+    /**
+     * Ajoute un média s'il n'y a pas déjà un média pour son fichier.
+     *
+     * @param media Le média.
+     * @return Le média du fichier : celui déjà dans le pool ou {@code media}.
+     */
+    Media ajouter(Media media) {
+        if (isGenere(media)) {
+            return media;
+        }
+
+        Media canonique = this.medias.putIfAbsent(new Cle(media), media);
+        return (canonique != null) ? canonique : media;
+    }
+
+    /**
+     * Retourne le média du fichier d'un média, sans rien ajouter.
+     *
+     * @param media Le média.
+     * @return Le média du fichier, {@code null} s'il n'est pas dans le pool
+     * (un élément généré est toujours son propre média).
+     */
+    Media get(Media media) {
+        return isGenere(media) ? media : this.medias.get(new Cle(media));
+    }
+
+    /**
+     * Indique si un média est généré (sans fichier).
+     *
+     * @param media Le média.
+     * @return {@code true} si le média est généré.
+     */
+    private static boolean isGenere(Media media) {
+        return "genere".equals(media.getTypeMedia());
+    }
+}
@@ -0,0 +1,387 @@
+package com.phenix.xmlfcp7;
+
+import java.io.IOException;
+
+/**
+ * Framerate tel qu'il est écrit dans l'XML : base de temps ({@code timebase}),
+ * NTSC ou non et timecode <em>drop-frame</em> ou non.<br>
+ * Le nombre de ticks Premiere par image est calculé une seule fois : une
+ * position en image est convertie en ticks par une multiplication (une
+ * division seulement si le nombre de ticks par image n'est pas entier).
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class RateInfo {
+
+    /**
+     * Nombre de ticks Premiere dans une seconde.
+     */
+    public static final long TICKS_PAR_SECONDE = 254016000000L;
+
+    /**
+     * 23,976 images par seconde (24 NTSC).
+     */
+    public static final RateInfo IMAGES_23_976 = new RateInfo(24, true, false);
+
+    /**
+     * 24 images par seconde.
+     */
+    public static final RateInfo IMAGES_24 = new RateInfo(24, false, false);
+
+    /**
+     * 25 images par seconde.
+     */
+    public static final RateInfo IMAGES_25 = new RateInfo(25, false, false);
+
+    /**
+     * 29,97 images par seconde, timecode non drop-frame.
+     */
+    public static final RateInfo IMAGES_29_97 = new RateInfo(30, true, false);
+
+    /**
+     * 29,97 images par seconde, timecode drop-frame.
+     */
+    public static final RateInfo IMAGES_29_97_DF = new RateInfo(30, true, true);
+
+    /**
+     * 30 images par seconde.
+     */
+    public static final RateInfo IMAGES_30 = new RateInfo(30, false, false);
+
+    /**
+     * 50 images par seconde.
+     */
+    public static final RateInfo IMAGES_50 = new RateInfo(50, false, false);
+
+    /**
+     * 59,94 images par seconde, timecode non drop-frame.
+     */
+    public static final RateInfo IMAGES_59_94 = new RateInfo(60, true, false);
+
+    /**
+     * 59,94 images par seconde, timecode drop-frame.
+     */
+    public static final RateInfo IMAGES_59_94_DF = new RateInfo(60, true, true);
+
+    /**
+     * 60 images par seconde.
+     */
+    public static final RateInfo IMAGES_60 = new RateInfo(60, false, false);
+
+    /**
+     * Framerates connus, réutilisés par {@link #de(int, boolean, boolean) de}.
+     */
+    private static final RateInfo[] CONNUS = {
+        IMAGES_23_976, IMAGES_24, IMAGES_25, IMAGES_29_97, IMAGES_29_97_DF,
+        IMAGES_30, IMAGES_50, IMAGES_59_94, IMAGES_59_94_DF, IMAGES_60
+    };
+
+    /**
+     * Base de temps (nombre d'images par seconde arrondi).
+     */
+    private final int timebase;
+
+    /**
+     * Si le framerate est NTSC (base de temps × 1000 / 1001).
+     */
+    private final boolean ntsc;
+
+    /**
+     * Si le timecode est drop-frame.
+     */
+    private final boolean drop_frame;
+
+    /**
+     * Ticks par image : numérateur de la fraction réduite.
+     */
+    private final long ticks_numerateur;
+
+    /**
+     * Ticks par image : dénominateur de la fraction réduite ({@code 1} dans
+     * tous les cas courants).
+     */
+    private final long ticks_denominateur;
+
+    /**
+     * Construit un framerate.
+     *
+     * @param timebase Base de temps.
+     * @param ntsc Si NTSC.
+     * @param drop_frame Si le timecode est drop-frame.
+     */
+    private RateInfo(int timebase, boolean ntsc, boolean drop_frame) {
+        this.timebase = timebase;
+        this.ntsc = ntsc;
+        this.drop_frame = drop_frame;
+
+        // Une image dure (1001 / 1000 si NTSC) / timebase secondes.
+        long numerateur = TICKS_PAR_SECONDE * (ntsc ? 1001 : 1000);
+        long denominateur = timebase * 1000L;
+        long pgcd = pgcd(numerateur, denominateur);
+
+        this.ticks_numerateur = numerateur / pgcd;
+        this.ticks_denominateur = denominateur / pgcd;
+    }
+
+    /**
+     * Retourne un framerate non NTSC.
+     *
+     * @param timebase Nombre d'images par seconde.
+     * @return Le framerate.
+     */
+    public static RateInfo de(int timebase) {
+        return de(timebase, false, false);
+    }
+
+    /**
+     * Retourne un framerate.
+     *
+     * @param timebase Base de temps ({@code 30} pour 29,97).
+     * @param ntsc Si NTSC.
+     * @param drop_frame Si le timecode est drop-frame (seulement en NTSC 30
+     * ou 60).
+     * @return Le framerate.
+     */
+    public static RateInfo de(int timebase, boolean ntsc, boolean drop_frame) {
+        if (drop_frame && !(ntsc && (timebase == 30 || timebase == 60))) {
+            throw new IllegalArgumentException("Drop-frame seulement en 29,97 ou 59,94 : " + timebase + (ntsc ? " NTSC" : ""));
+        }
+
+        for (RateInfo rate : CONNUS) {
+            if (rate.timebase == timebase && rate.ntsc == ntsc && rate.drop_frame == drop_frame) {
+                return rate;
+            }
+        }
+
+        return new RateInfo(timebase, ntsc, drop_frame);
+    }
+
+    /**
+     * Retourne le framerate correspondant à un nombre d'images par seconde :
+     * 23,976, 29,97 et 59,94 sont NTSC (non drop-frame).
+     *
+     * @param images_par_seconde Nombre d'images par seconde.
+     * @return Le framerate.
+     */
+    public static RateInfo depuisImagesParSeconde(double images_par_seconde) {
+        int timebase = (int) Math.round(images_par_seconde);
+        boolean ntsc = Math.abs(images_par_seconde - timebase * 1000.0 / 1001) < 0.005;
+        return de(timebase, ntsc, false);
+    }
+
+    /**
+     * Indique le format d'affichage du timecode.
+     *
+     * @return {@code DF} ou {@code NDF}.
+     */
+    public String getDisplayFormat() {
+        return this.drop_frame ? "DF" : "NDF";
+    }
+
+    /**
+     * Retourne le nombre réel d'images par seconde.
+     *
+     * @return Images par seconde.
+     */
+    public double getImagesParSeconde() {
+        return this.ntsc ? this.timebase * 1000.0 / 1001 : this.timebase;
+    }
+
+    /**
+     * Retourne la valeur de {@code <ntsc>}.
+     *
+     * @return {@code TRUE} ou {@code FALSE}.
+     */
+    public String getNtsc() {
+        return this.ntsc ? "TRUE" : "FALSE";
+    }
+
+    /**
+     * Retourne la base de temps.
+     *
+     * @return Base de temps.
+     */
+    public int getTimebase() {
+        return this.timebase;
+    }
+
+    /**
+     * Convertit un timecode ({@code HH:MM:SS:FF}, séparateurs {@code :},
+     * {@code ;} ou {@code .}) en position en image : l'inverse de
+     * {@link #timecode(long) timecode}.
+     *
+     * @param timecode Le timecode.
+     * @return Position en image.
+     */
+    public long image(CharSequence timecode) {
+        if (timecode.length() != 11) {
+            throw new IllegalArgumentException("Timecode invalide : " + timecode);
+        }
+
+        return this.image(deuxChiffres(timecode, 0), deuxChiffres(timecode, 3), deuxChiffres(timecode, 6), deuxChiffres(timecode, 9));
+    }
+
+    /**
+     * Retourne la position en image d'un timecode déjà découpé (drop frame
+     * compris).
+     *
+     * @param heures Les heures.
+     * @param minutes Les minutes.
+     * @param secondes Les secondes.
+     * @param images Les images.
+     * @return Position en image.
+     */
+    long image(long heures, long minutes, long secondes, long images) {
+        long image = ((heures * 3600 + minutes * 60 + secondes) * this.timebase) + images;
+
+        if (this.drop_frame) {
+            // Les numéros sautés chaque minute (sauf toutes les 10 minutes) n'existent pas.
+            long minutes_totales = heures * 60 + minutes;
+            image -= (this.timebase / 15) * (minutes_totales - minutes_totales / 10);
+        }
+
+        return image;
+    }
+
+    /**
+     * Indique si le timecode est drop-frame.
+     *
+     * @return {@code true} si drop-frame.
+     */
+    public boolean isDropFrame() {
+        return this.drop_frame;
+    }
+
+    /**
+     * Indique si le framerate est NTSC.
+     *
+     * @return {@code true} si NTSC.
+     */
+    public boolean isNtsc() {
+        return this.ntsc;
+    }
+
+    /**
+     * Plus grand commun diviseur.
+     *
+     * @param a Premier nombre.
+     * @param b Second nombre.
+     * @return PGCD.
+     */
+    private static long pgcd(long a, long b) {
+        while (b != 0) {
+            long reste = a % b;
+            a = b;
+            b = reste;
+        }
+
+        return a;
+    }
+
+    /**
+     * Lit un nombre sur deux chiffres.
+     *
+     * @param texte Le texte.
+     * @param position Position du premier chiffre.
+     * @return Le nombre.
+     */
+    private static int deuxChiffres(CharSequence texte, int position) {
+        char dizaine = texte.charAt(position);
+        char unite = texte.charAt(position + 1);
+
+        if (dizaine < '0' || dizaine > '9' || unite < '0' || unite > '9') {
+            throw new IllegalArgumentException("Timecode invalide : " + texte);
+        }
+
+        return (dizaine - '0') * 10 + (unite - '0');
+    }
+
+    /**
+     * Ajoute un nombre sur deux chiffres.
+     *
+     * @param texte Où ajouter.
+     * @param nombre Le nombre.
+     * @param separateur Séparateur ajouté avant, {@code 0} pour aucun.
+     */
+    private static void deuxChiffres(StringBuilder texte, long nombre, char separateur) {
+        if (separateur != 0) {
+            texte.append(separateur);
+        }
+
+        if (nombre < 10) {
+            texte.append('0');
+        }
+
+        texte.append(nombre);
+    }
+
+    /**
+     * Convertit une position en image en ticks Premiere.
+     *
+     * @param image Position en image.
+     * @return Position en ticks.
+     */
+    public long ticks(long image) {
+        if (this.ticks_denominateur == 1) {
+            return image * this.ticks_numerateur;
+        }
+
+        return image * this.ticks_numerateur / this.ticks_denominateur;
+    }
+
+    /**
+     * Écrit le timecode d'une position ({@code HH:MM:SS:FF}, ou
+     * {@code HH;MM;SS;FF} en drop-frame).
+     *
+     * @param image Position en image.
+     * @return Le timecode.
+     */
+    public String timecode(long image) {
+        StringBuilder texte = new StringBuilder(12);
+
+        if (image < 0) {
+            texte.append('-');
+            image = -image;
+        }
+
+        char separateur = ':';
+
+        if (this.drop_frame) {
+            separateur = ';';
+
+            // Les numéros 0 et 1 (0 à 3 en 59,94) sont sautés chaque minute, sauf toutes les 10 minutes.
+            int sautees = this.timebase / 15;
+            long images_10_minutes = this.timebase * 600L - sautees * 9;
+            long images_minute = this.timebase * 60L - sautees;
+            long dizaines = image / images_10_minutes;
+            long reste = image % images_10_minutes;
+
+            image += sautees * 9 * dizaines;
+
+            if (reste > sautees) {
+                image += sautees * ((reste - sautees) / images_minute);
+            }
+        }
+
+        long secondes = image / this.timebase;
+        deuxChiffres(texte, secondes / 3600, (char) 0);
+        deuxChiffres(texte, (secondes / 60) % 60, separateur);
+        deuxChiffres(texte, secondes % 60, separateur);
+        deuxChiffres(texte, image % this.timebase, separateur);
+
+        return texte.toString();
+    }
+
+    /**
+     * Écrit le framerate ({@code <rate>}).
+     *
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeTo(XmlSink sink) throws IOException {
+        sink.ouvre("rate");
+        sink.element("timebase", this.timebase);
+        sink.element("ntsc", this.getNtsc());
+        sink.ferme("rate");
+    }
+}
@@ -0,0 +1,151 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.enums.PrettyPrint;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * XML rendu lors d'un export d'une timeline ou d'un dossier, avec la
+ * signature de tout ce dont il dépend. À l'export suivant, si la signature
+ * est la même, l'XML est réutilisé tel quel.<br>
+ * Le rendu n'est plus à jour dès que l'une de ces valeurs change :
+ * <ul>
+ * <li>la version de la timeline ou du dossier (chaque modification, ajout de
+ * clip, de marqueur, de média, de sous-dossier, etc) ;</li>
+ * <li>la version de chacun de ses médias et de leurs effets, et la version
+ * de chacun de ses marqueurs ;</li>
+ * <li>la version des serializers d'effets (voir
+ * {@link com.phenix.xmlfcp7.effect.EffectSerializers#getVersion()
+ * EffectSerializers.getVersion}) ;</li>
+ * <li>les IDs réservés pour l'export, la signature des sous-dossiers et des
+ * timelines d'un dossier ;</li>
+ * <li>la profondeur et la mise en forme de l'XML.</li>
+ * </ul>
+ * Le rendu peut n'être qu'une partie d'une chaîne plus grande (au plus
+ * {@code TAILLE_COPIE_MAX} caractères, voir {@link XmlSink}) : les
+ * sous-dossiers d'un dossier partagent la chaîne du dossier. La chaîne n'est
+ * gardée que par une référence faible ({@link SoftReference}) : le
+ * ramasse-miettes la libère si la mémoire manque, et le rendu est alors
+ * refait à l'export suivant. Seule la signature reste en mémoire.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class RenduCache {
+
+    /**
+     * Signature du rendu.
+     */
+    private final Object[] signature;
+
+    /**
+     * Profondeur d'indentation du rendu.
+     */
+    private final int profondeur;
+
+    /**
+     * Mise en forme du rendu.
+     */
+    private final PrettyPrint mise_en_forme;
+
+    /**
+     * La chaîne qui contient le code XML ({@code null} une fois libérée par
+     * le ramasse-miettes).
+     */
+    private final SoftReference<String> xml;
+
+    /**
+     * Début du code XML dans la chaîne.
+     */
+    private final int debut;
+
+    /**
+     * Fin (exclue) du code XML dans la chaîne.
+     */
+    private final int fin;
+
+    /**
+     * Garde une partie d'une chaîne comme rendu.
+     *
+     * @param signature Signature du rendu.
+     * @param profondeur Profondeur d'indentation du rendu.
+     * @param mise_en_forme Mise en forme du rendu.
+     * @param xml La chaîne qui contient le code XML.
+     * @param debut Début du code XML dans la chaîne.
+     * @param fin Fin (exclue) du code XML dans la chaîne.
+     */
+    RenduCache(Object[] signature, int profondeur, PrettyPrint mise_en_forme, String xml, int debut, int fin) {
+        this.signature = signature;
+        this.profondeur = profondeur;
+        this.mise_en_forme = mise_en_forme;
+        this.xml = new SoftReference<String>(xml);
+        this.debut = debut;
+        this.fin = fin;
+    }
+
+    /**
+     * Garde un rendu.
+     *
+     * @param signature Signature du rendu.
+     * @param sink Où le rendu va être écrit (pour sa profondeur et sa mise en
+     * forme).
+     * @param xml Le code XML.
+     */
+    RenduCache(Object[] signature, XmlSink sink, String xml) {
+        this(signature, sink.getProfondeur(), sink.getMiseEnForme(), xml, 0, xml.length());
+    }
+
+    /**
+     * Retourne la signature du rendu.
+     *
+     * @return La signature.
+     */
+    Object[] getSignature() {
+        return this.signature;
+    }
+
+    /**
+     * Retourne la chaîne qui contient le code XML, si le rendu peut être
+     * réutilisé.
+     *
+     * @param signature Signature attendue.
+     * @param sink Où le rendu va être écrit.
+     * @return La chaîne (à passer à {@link #writeTo(XmlSink, String) writeTo}),
+     * {@code null} si le rendu n'est pas à jour ou a été libéré.
+     */
+    String getXml(Object[] signature, XmlSink sink) {
+        if (this.profondeur != sink.getProfondeur()
+                || this.mise_en_forme != sink.getMiseEnForme()
+                || !Arrays.deepEquals(this.signature, signature)) {
+            return null;
+        }
+
+        return this.xml.get();
+    }
+
+    /**
+     * Écrit le code XML tel quel, sans l'ajouter à la copie en cours (voir
+     * {@link XmlSink#inclureHorsCopie(CharSequence, int, int)
+     * inclureHorsCopie}).
+     *
+     * @param sink Où écrire l'XML.
+     * @param xml La chaîne du rendu (voir {@link #getXml(Object[], XmlSink)
+     * getXml}).
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    void writeHorsCopieTo(XmlSink sink, String xml) throws IOException {
+        sink.inclureHorsCopie(xml, this.debut, this.fin);
+    }
+
+    /**
+     * Écrit le code XML tel quel.
+     *
+     * @param sink Où écrire l'XML.
+     * @param xml La chaîne du rendu (voir {@link #getXml(Object[], XmlSink)
+     * getXml}).
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    void writeTo(XmlSink sink, String xml) throws IOException {
+        sink.inclure(xml, this.debut, this.fin);
+    }
+}
@@ -0,0 +1,196 @@
+package com.phenix.xmlfcp7;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Sortie texte qui encode directement en UTF-8 dans un tampon d'octets et
+ * l'écrit dans un canal ({@link WritableByteChannel}) quand il est plein.<br>
+ * Les tampons d'octets (directs) sont réutilisés d'un export à l'autre.
+ * {@link #close()} vide tout dans le canal mais ne ferme pas le canal.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+final class SortieUtf8 implements Appendable, Closeable {
+
+    /**
+     * Taille d'un tampon d'octets.
+     */
+    private static final int TAILLE_TAMPON = 256 * 1024;
+
+    /**
+     * Nombre de caractères gardés avant de les encoder.
+     */
+    private static final int TAILLE_CARACTERES = 8 * 1024;
+
+    /**
+     * Nombre maximum de tampons gardés pour être réutilisés.
+     */
+    private static final int TAMPONS_MAX = 8;
+
+    /**
+     * Tampons d'octets libres.
+     */
+    private static final ConcurrentLinkedQueue<ByteBuffer> TAMPONS = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Où on écrit les octets.
+     */
+    private final WritableByteChannel canal;
+
+    /**
+     * Encodeur UTF-8 (les caractères invalides sont remplacés, comme avec un
+     * {@code OutputStreamWriter}).
+     */
+    private final CharsetEncoder encodeur = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * Caractères pas encore encodés.
+     */
+    private final CharBuffer caracteres = CharBuffer.allocate(TAILLE_CARACTERES);
+
+    /**
+     * Octets pas encore écrits ({@code null} une fois la sortie fermée).
+     */
+    private ByteBuffer octets;
+
+    /**
+     * Construit une sortie.
+     *
+     * @param canal Où écrire les octets.
+     */
+    SortieUtf8(WritableByteChannel canal) {
+        this.canal = canal;
+
+        ByteBuffer tampon = TAMPONS.poll();
+        this.octets = (tampon != null) ? tampon : ByteBuffer.allocateDirect(TAILLE_TAMPON);
+        this.octets.clear();
+    }
+
+    @Override
+    public Appendable append(CharSequence texte) throws IOException {
+        if (texte == null) {
+            texte = "null";
+        }
+
+        return this.append(texte, 0, texte.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence texte, int debut, int fin) throws IOException {
+        if (texte == null) {
+            return this.append("null", debut, fin);
+        }
+
+        while (debut < fin) {
+            int n = Math.min(fin - debut, this.caracteres.remaining());
+
+            if (texte instanceof String) {
+                this.caracteres.put((String) texte, debut, debut + n);
+            } else {
+                for (int i = debut; i < debut + n; i++) {
+                    this.caracteres.put(texte.charAt(i));
+                }
+            }
+
+            debut += n;
+
+            if (!this.caracteres.hasRemaining()) {
+                this.encoder(false);
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public Appendable append(char caractere) throws IOException {
+        if (!this.caracteres.hasRemaining()) {
+            this.encoder(false);
+        }
+
+        this.caracteres.put(caractere);
+        return this;
+    }
+
+    /**
+     * Encode et écrit tout ce qui reste dans le canal. Le tampon d'octets est
+     * rendu pour être réutilisé.
+     *
+     * @throws IOException Erreur d'écriture dans le canal.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.octets == null) {
+            return;
+        }
+
+        try {
+            this.encoder(true);
+
+            while (this.encodeur.flush(this.octets).isOverflow()) {
+                this.ecrireOctets();
+            }
+
+            this.ecrireOctets();
+        } finally {
+            if (TAMPONS.size() < TAMPONS_MAX) {
+                TAMPONS.offer(this.octets);
+            }
+
+            this.octets = null;
+        }
+    }
+
+    /**
+     * Écrit les octets du tampon dans le canal.
+     *
+     * @throws IOException Erreur d'écriture dans le canal.
+     */
+    private void ecrireOctets() throws IOException {
+        this.octets.flip();
+
+        while (this.octets.hasRemaining()) {
+            this.canal.write(this.octets);
+        }
+
+        this.octets.clear();
+    }
+
+    /**
+     * Encode les caractères en attente.
+     *
+     * @param fin Si ce sont les derniers caractères.
+     * @throws IOException Erreur d'écriture dans le canal.
+     */
+    private void encoder(boolean fin) throws IOException {
+        if (this.octets == null) {
+            throw new IOException("Sortie fermée.");
+        }
+
+        this.caracteres.flip();
+
+        while (true) {
+            CoderResult resultat = this.encodeur.encode(this.caracteres, this.octets, fin);
+
+            if (resultat.isOverflow()) {
+                this.ecrireOctets();
+            } else {
+                // Underflow : tout est encodé (sauf peut-être une moitié de paire de substitution).
+                break;
+            }
+        }
+
+        this.caracteres.compact();
+    }
+}
@@ -0,0 +1,341 @@
+package com.phenix.xmlfcp7;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
+
+/**
+ * Les clips d'une timeline (vidéo ou audio), rangés en colonnes de types
+ * primitifs : piste, image de début, image de fin, activé et média.<br>
+ * Les colonnes doublent de taille quand elles sont pleines. En dehors du
+ * package, la table est en lecture seule.<br>
+ * Les clips d'une même piste sont chaînés par image de début
+ * ({@link #getPremierClip(int) getPremierClip} puis
+ * {@link #getClipSuivant(int) getClipSuivant}) : parcourir toutes les pistes
+ * est linéaire en nombre de clips. Un clip ajouté après le dernier de sa
+ * piste est chaîné à la fin ; sinon la piste est triée à nouveau (une seule
+ * fois) à la prochaine lecture de son premier clip.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class TableClips {
+
+    /**
+     * Capacité de départ des colonnes.
+     */
+    private static final int CAPACITE_INITIALE = 16;
+
+    /**
+     * Nombre de clips.
+     */
+    private int taille;
+
+    /**
+     * Piste de chaque clip.
+     */
+    private int[] piste = new int[CAPACITE_INITIALE];
+
+    /**
+     * Image de début de chaque clip dans la timeline.
+     */
+    private int[] debut = new int[CAPACITE_INITIALE];
+
+    /**
+     * Image de fin (incluse) de chaque clip dans la timeline.
+     */
+    private int[] fin = new int[CAPACITE_INITIALE];
+
+    /**
+     * Indice (dans {@code liste_media}) du média de chaque clip.
+     */
+    private int[] media = new int[CAPACITE_INITIALE];
+
+    /**
+     * Clip suivant sur la même piste ({@code -1} pour le dernier).
+     */
+    private int[] suivant = new int[CAPACITE_INITIALE];
+
+    /**
+     * Si chaque clip est activé : un bit par clip.
+     */
+    private long[] active = new long[(CAPACITE_INITIALE + 63) / 64];
+
+    /**
+     * Les médias utilisés par les clips (une seule fois chacun).
+     */
+    private final ArrayList<Media> liste_media = new ArrayList<Media>();
+
+    /**
+     * Indice de chaque média dans {@code liste_media}.
+     */
+    private final IdentityHashMap<Media, Integer> indice_media = new IdentityHashMap<Media, Integer>();
+
+    /**
+     * Premier et dernier clip de chaque piste, puis {@code 1} si la chaîne
+     * n'est plus triée par image de début ({@code 0} sinon).
+     */
+    private final TreeMap<Integer, int[]> pistes = new TreeMap<Integer, int[]>();
+
+    /**
+     * Construit une table vide (seule une timeline en crée une).
+     */
+    TableClips() {
+    }
+
+    /**
+     * Ajoute un clip.
+     *
+     * @param piste Le numéro de piste.
+     * @param debut Image de début dans la timeline.
+     * @param fin Image de fin (incluse) dans la timeline.
+     * @param active Si le clip est activé.
+     * @param media Le média.
+     * @return Indice du clip.
+     */
+    int ajouter(int piste, int debut, int fin, boolean active, Media media) {
+        if (this.taille == this.piste.length) {
+            this.agrandir();
+        }
+
+        Integer indice = this.indice_media.get(media);
+
+        if (indice == null) {
+            indice = this.liste_media.size();
+            this.liste_media.add(media);
+            this.indice_media.put(media, indice);
+        }
+
+        int clip = this.taille;
+        this.piste[clip] = piste;
+        this.debut[clip] = debut;
+        this.fin[clip] = fin;
+        this.media[clip] = indice;
+        this.suivant[clip] = -1;
+
+        // On chaîne le clip à la fin de sa piste :
+        int[] extremites = this.pistes.get(piste);
+
+        if (extremites == null) {
+            this.pistes.put(piste, new int[]{clip, clip, 0});
+        } else {
+            if (debut < this.debut[extremites[1]]) {
+                extremites[2] = 1;
+            }
+
+            this.suivant[extremites[1]] = clip;
+            extremites[1] = clip;
+        }
+
+        if (active) {
+            this.active[clip >>> 6] |= 1L << clip;
+        }
+
+        this.taille++;
+        return clip;
+    }
+
+    /**
+     * Retourne le clip suivant sur la même piste.
+     *
+     * @param clip Indice du clip.
+     * @return Indice du clip suivant ou {@code -1} si c'est le dernier.
+     */
+    public int getClipSuivant(int clip) {
+        this.verifier(clip);
+        return this.suivant[clip];
+    }
+
+    /**
+     * Retourne l'image de début d'un clip dans la timeline.
+     *
+     * @param clip Indice du clip.
+     * @return Image de début.
+     */
+    public int getDebut(int clip) {
+        this.verifier(clip);
+        return this.debut[clip];
+    }
+
+    /**
+     * Retourne l'image de fin (incluse) d'un clip dans la timeline.
+     *
+     * @param clip Indice du clip.
+     * @return Image de fin.
+     */
+    public int getFin(int clip) {
+        this.verifier(clip);
+        return this.fin[clip];
+    }
+
+    /**
+     * Retourne le média d'un clip.
+     *
+     * @param clip Indice du clip.
+     * @return Le média.
+     */
+    public Media getMedia(int clip) {
+        this.verifier(clip);
+        return this.liste_media.get(this.media[clip]);
+    }
+
+    /**
+     * Retourne l'indice du média d'un clip. Deux clips qui utilisent le même
+     * média ont le même indice.
+     *
+     * @param clip Indice du clip.
+     * @return Indice du média.
+     */
+    public int getIndiceMedia(int clip) {
+        this.verifier(clip);
+        return this.media[clip];
+    }
+
+    /**
+     * Retourne la piste d'un clip.
+     *
+     * @param clip Indice du clip.
+     * @return Le numéro de piste.
+     */
+    public int getPiste(int clip) {
+        this.verifier(clip);
+        return this.piste[clip];
+    }
+
+    /**
+     * Retourne le plus grand numéro de piste utilisé.
+     *
+     * @return Numéro de piste ou {@code 0} s'il n'y a pas de clip.
+     */
+    public int getPisteMax() {
+        return this.pistes.isEmpty() ? 0 : this.pistes.lastKey();
+    }
+
+    /**
+     * Retourne le premier clip (par image de début) d'une piste.
+     *
+     * @param piste Le numéro de piste.
+     * @return Indice du clip ou {@code -1} si la piste est vide.
+     */
+    public int getPremierClip(int piste) {
+        int[] extremites = this.pistes.get(piste);
+
+        if (extremites == null) {
+            return -1;
+        }
+
+        if (extremites[2] != 0) {
+            this.trier(extremites);
+        }
+
+        return extremites[0];
+    }
+
+    /**
+     * Retourne le nombre de clips.
+     *
+     * @return Nombre de clips.
+     */
+    public int getTaille() {
+        return this.taille;
+    }
+
+    /**
+     * Indique si un clip est activé.
+     *
+     * @param clip Indice du clip.
+     * @return {@code true} si le clip est activé.
+     */
+    public boolean isActive(int clip) {
+        this.verifier(clip);
+        return (this.active[clip >>> 6] & (1L << clip)) != 0;
+    }
+
+    /**
+     * Prépare les colonnes pour des clips à venir.
+     *
+     * @param nombre Nombre de clips qui vont être ajoutés.
+     */
+    void reserver(int nombre) {
+        if (this.taille + nombre > this.piste.length) {
+            this.agrandir(this.taille + nombre);
+        }
+    }
+
+    /**
+     * Trie les clips de chaque piste par image de début.
+     */
+    void trier() {
+        for (int[] extremites : this.pistes.values()) {
+            if (extremites[2] != 0) {
+                this.trier(extremites);
+            }
+        }
+    }
+
+    /**
+     * Double la capacité des colonnes.
+     */
+    private void agrandir() {
+        this.agrandir(this.piste.length * 2);
+    }
+
+    /**
+     * Agrandit les colonnes.
+     *
+     * @param capacite Nouvelle capacité.
+     */
+    private void agrandir(int capacite) {
+        this.piste = Arrays.copyOf(this.piste, capacite);
+        this.debut = Arrays.copyOf(this.debut, capacite);
+        this.fin = Arrays.copyOf(this.fin, capacite);
+        this.media = Arrays.copyOf(this.media, capacite);
+        this.suivant = Arrays.copyOf(this.suivant, capacite);
+        this.active = Arrays.copyOf(this.active, (capacite + 63) / 64);
+    }
+
+    /**
+     * Trie les clips d'une piste par image de début et les chaîne à nouveau.
+     * Chaque clip est rangé dans un {@code long} (image de début dans les
+     * bits de poids fort, indice dans les autres) : un seul tri de type
+     * primitif, sans objet par clip.
+     *
+     * @param extremites Premier et dernier clip de la piste.
+     */
+    private void trier(int[] extremites) {
+        int nombre = 0;
+
+        for (int j = extremites[0]; j >= 0; j = this.suivant[j]) {
+            nombre++;
+        }
+
+        long[] cles = new long[nombre];
+        int n = 0;
+
+        for (int j = extremites[0]; j >= 0; j = this.suivant[j]) {
+            cles[n++] = ((long) this.debut[j] << 32) | j;
+        }
+
+        Arrays.sort(cles);
+
+        for (int i = 0; i < nombre - 1; i++) {
+            this.suivant[(int) cles[i]] = (int) cles[i + 1];
+        }
+
+        this.suivant[(int) cles[nombre - 1]] = -1;
+        extremites[0] = (int) cles[0];
+        extremites[1] = (int) cles[nombre - 1];
+        extremites[2] = 0;
+    }
+
+    /**
+     * Vérifie qu'un indice de clip existe.
+     *
+     * @param clip Indice du clip.
+     */
+    private void verifier(int clip) {
+        if (clip < 0 || clip >= this.taille) {
+            throw new IndexOutOfBoundsException("Clip " + clip + " (taille : " + this.taille + ")");
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.phenix.xmlfcp7;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Les marqueurs d'une timeline, triés par image in (puis image out, nom,
+ * note, couleur et framerate), avec l'image in de chacun dans une colonne de
+ * type primitif pour les recherches par intervalle.<br>
+ * Un marqueur ajouté après le dernier reste trié sans rien faire. Sinon, il
+ * attend la prochaine lecture : les marqueurs en attente sont triés puis
+ * fusionnés avec les autres (le tri de deux suites déjà triées est
+ * linéaire). Un marqueur ajouté alors qu'un marqueur identique (voir
+ * {@link Marqueur#comparer(Marqueur, Marqueur) comparer}) est déjà dans la
+ * table n'est pas gardé.<br>
+ * Chaque marqueur connaît les tables qui le gardent : quand il est modifié,
+ * seules ces tables sont triées à nouveau à la prochaine lecture. Ce tri ne
+ * retire aucun marqueur, même si la modification le rend identique à un
+ * autre.<br>
+ * Les ajouts et les lectures se font sous le verrou de la table : plusieurs
+ * threads peuvent la lire (export en parallèle) pendant qu'un marqueur est
+ * modifié.<br>
+ * En dehors du package, la table est en lecture seule.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class TableMarqueurs {
+
+    /**
+     * Capacité de départ des colonnes.
+     */
+    private static final int CAPACITE_INITIALE = 16;
+
+    /**
+     * Nombre de marqueurs (en attente compris).
+     */
+    private int taille;
+
+    /**
+     * Nombre de marqueurs gardés, au début de la table. Les suivants sont en
+     * attente : ils ont été ajoutés dans le désordre et peuvent être des
+     * doublons.
+     */
+    private int taille_gardee;
+
+    /**
+     * Si les marqueurs gardés sont triés (faux après la modification de l'un
+     * d'eux).
+     */
+    private boolean triee = true;
+
+    /**
+     * Les marqueurs.
+     */
+    private Marqueur[] marqueurs = new Marqueur[CAPACITE_INITIALE];
+
+    /**
+     * Image in de chaque marqueur.
+     */
+    private long[] in = new long[CAPACITE_INITIALE];
+
+    /**
+     * Construit une table vide (seule une timeline en crée une).
+     */
+    TableMarqueurs() {
+    }
+
+    /**
+     * Ajoute un marqueur. Il n'est pas gardé si un marqueur identique est
+     * déjà dans la table.
+     *
+     * @param marqueur Le marqueur.
+     */
+    synchronized void ajouter(Marqueur marqueur) {
+        if (this.taille == this.marqueurs.length) {
+            this.marqueurs = Arrays.copyOf(this.marqueurs, this.taille * 2);
+            this.in = Arrays.copyOf(this.in, this.taille * 2);
+        }
+
+        // Après le dernier marqueur trié : la table reste triée et le marqueur ne peut pas être un doublon.
+        boolean apres = this.triee && this.taille_gardee == this.taille
+                && (this.taille == 0 || Marqueur.comparer(this.marqueurs[this.taille - 1], marqueur) < 0);
+
+        this.marqueurs[this.taille] = marqueur;
+        this.in[this.taille] = marqueur.getImageIn();
+        this.taille++;
+
+        if (apres) {
+            this.taille_gardee = this.taille;
+            marqueur.ajouterTable(this);
+        }
+    }
+
+    /**
+     * Retourne le marqueur à un indice.
+     *
+     * @param indice Indice du marqueur (dans l'ordre de la table).
+     * @return Le marqueur.
+     */
+    public synchronized Marqueur getMarqueur(int indice) {
+        this.trier();
+
+        if (indice < 0 || indice >= this.taille) {
+            throw new IndexOutOfBoundsException("Marqueur inexistant : " + indice);
+        }
+
+        return this.marqueurs[indice];
+    }
+
+    /**
+     * Retourne les marqueurs dont l'image in est dans un intervalle, dans
+     * l'ordre de la table. La recherche est en {@code O(log n)} plus le nombre
+     * de marqueurs trouvés.
+     *
+     * @param in Première image de l'intervalle.
+     * @param out Dernière image (incluse) de l'intervalle.
+     * @return Les marqueurs.
+     */
+    public synchronized ArrayList<Marqueur> getMarqueurs(long in, long out) {
+        this.trier();
+
+        int debut = this.premier(in);
+        int fin = (out == Long.MAX_VALUE) ? this.taille : this.premier(out + 1);
+
+        ArrayList<Marqueur> liste = new ArrayList<Marqueur>(Math.max(fin - debut, 0));
+
+        for (int i = debut; i < fin; i++) {
+            liste.add(this.marqueurs[i]);
+        }
+
+        return liste;
+    }
+
+    /**
+     * Retourne le nombre de marqueurs.
+     *
+     * @return Nombre de marqueurs (sans doublon).
+     */
+    public synchronized int getTaille() {
+        this.trier();
+        return this.taille;
+    }
+
+    /**
+     * Retourne l'indice du premier marqueur dont l'image in est au moins
+     * {@code image} (recherche dichotomique).
+     *
+     * @param image L'image.
+     * @return Indice du marqueur, {@link #taille} s'il n'y en a pas.
+     */
+    private int premier(long image) {
+        int bas = 0;
+        int haut = this.taille;
+
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+
+            if (this.in[milieu] < image) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+
+        return bas;
+    }
+
+    /**
+     * Note la modification d'un marqueur de la table : elle sera triée à
+     * nouveau à la prochaine lecture.
+     */
+    synchronized void modifie() {
+        this.triee = false;
+    }
+
+    /**
+     * Retourne tous les marqueurs, dans l'ordre de la table.
+     *
+     * @return Liste des marqueurs.
+     */
+    public ArrayList<Marqueur> toList() {
+        return this.getMarqueurs(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Trie la table si des marqueurs ont été modifiés depuis le dernier tri,
+     * et garde les marqueurs en attente qui ne sont pas des doublons.
+     */
+    private synchronized void trier() {
+        if (this.triee && this.taille_gardee == this.taille) {
+            return;
+        }
+
+        if (!this.triee) {
+            Arrays.sort(this.marqueurs, 0, this.taille_gardee, Marqueur::comparer);
+        }
+
+        if (this.taille_gardee < this.taille) {
+            Arrays.sort(this.marqueurs, this.taille_gardee, this.taille, Marqueur::comparer);
+
+            // Les marqueurs en attente identiques sont côte à côte : on ne garde que le premier, s'il n'est pas déjà gardé.
+            int taille = this.taille_gardee;
+
+            for (int i = this.taille_gardee; i < this.taille; i++) {
+                Marqueur marqueur = this.marqueurs[i];
+
+                if (taille > this.taille_gardee && Marqueur.comparer(this.marqueurs[taille - 1], marqueur) == 0) {
+                    continue;
+                }
+
+                if (Arrays.binarySearch(this.marqueurs, 0, this.taille_gardee, marqueur, Marqueur::comparer) >= 0) {
+                    continue;
+                }
+
+                this.marqueurs[taille++] = marqueur;
+                marqueur.ajouterTable(this);
+            }
+
+            Arrays.fill(this.marqueurs, taille, this.taille, null);
+            this.taille = taille;
+            this.taille_gardee = taille;
+
+            // Fusion des deux suites triées.
+            Arrays.sort(this.marqueurs, 0, this.taille, Marqueur::comparer);
+        }
+
+        for (int i = 0; i < this.taille; i++) {
+            this.in[i] = this.marqueurs[i].getImageIn();
+        }
+
+        this.triee = true;
+    }
+}
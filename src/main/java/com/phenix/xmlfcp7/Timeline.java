@@ -3,13 +3,24 @@ package com.phenix.xmlfcp7;
 import com.phenix.timecode.Timecode;
 import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
 import com.phenix.xmlfcp7.effect.Effect;
-import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import com.phenix.xmlfcp7.effect.EffectSerializers;
+import com.phenix.xmlfcp7.effect.Mouvement;
+import com.phenix.xmlfcp7.effect.RemappageTemps;
+import com.phenix.xmlfcp7.effect.TexteGraphique;
 import java.io.File;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Locale;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -25,15 +36,21 @@ public final class Timeline {
     private String nom;
 
     /**
-     * Le timecode de début de la timeline.
+     * Le timecode de début de la timeline en image.
      */
-    private Timecode start_tc;
+    private long start;
 
     /**
      * Framerate de la timeline.
      */
     private int framerate;
 
+    /**
+     * Framerate de la timeline tel qu'il est écrit (NTSC, drop-frame) et
+     * conversion en ticks Premiere.
+     */
+    private RateInfo rate;
+
     /**
      * Hauteur de la timeline en pixel.
      */
@@ -49,21 +66,6 @@ public final class Timeline {
      */
     private double par;
 
-    /**
-     *
-     */
-    private static int clipitem = 0;
-
-    /**
-     * ID de la timeline instancé.
-     */
-    private int numero_timeline;
-
-    /**
-     * Cette variable sert à savoir combien de timeline ont été faite.
-     */
-    public static int nombre_timeline = 0;
-
     /**
      * Liste des UUID pour rendre unique une timeline.<br>
      * Cela permet de générer dans un projet 14 timelines.
@@ -86,74 +88,64 @@ public final class Timeline {
     };
 
     /**
-     * Nombre de canaux audio.
-     */
-    private int nombre_canaux;
-
-    /**
-     * Liste des pistes vidéo dans la timeline.
+     * UUID de la séquence, tiré une seule fois : tous les exports de la
+     * timeline (sur un thread ou en parallèle) écrivent le même.
      */
-    private ArrayList<Integer> liste_piste_video = new ArrayList<Integer>();
+    private final String uuid_sequence = UUID.randomUUID().toString();
 
     /**
-     * Liste des pistes audio dans la timeline.
+     * Ordre des clips ajoutés avec {@link #addAll(Collection) addAll}.
      */
-    private ArrayList<Integer> liste_piste_audio = new ArrayList<Integer>();
+    private static final Comparator<ClipSpec> ORDRE_LOT = Comparator
+            .comparingLong(ClipSpec::getIn)
+            .thenComparingInt(ClipSpec::getPiste)
+            .thenComparingLong(ClipSpec::getOut);
 
     /**
-     * Liste des médias vidéo dans la timeline.
+     * Effet {@code Basic Motion} écrit sur chaque clip vidéo (ses valeurs
+     * viennent du clip).
      */
-    private ArrayList<Media> liste_media_video = new ArrayList<Media>();
+    private static final Mouvement MOUVEMENT = new Mouvement();
 
     /**
-     * Liste des médias audio dans la timeline.
+     * Effet {@code Time Remap} des images figées (DaVinci Resolve).
      */
-    private ArrayList<Media> liste_media_audio = new ArrayList<Media>();
+    private static final RemappageTemps REMAPPAGE_TEMPS = new RemappageTemps();
 
     /**
-     * TC start du média vidéo dans la timeline.
+     * Effet texte écrit sur chaque clip texte.
      */
-    private ArrayList<Timecode> liste_tc_start_video = new ArrayList<Timecode>();
+    private static final TexteGraphique TEXTE = new TexteGraphique();
 
     /**
-     * TC start du média audio dans la timeline.
-     */
-    private ArrayList<Timecode> liste_tc_start_audio = new ArrayList<Timecode>();
-
-    /**
-     * TC end du média vidéo dans la timeline.
-     */
-    private ArrayList<Timecode> liste_tc_end_video = new ArrayList<Timecode>();
-
-    /**
-     * TC end du média audio dans la timeline.
+     * Nombre de canaux audio.
      */
-    private ArrayList<Timecode> liste_tc_end_audio = new ArrayList<Timecode>();
+    private int nombre_canaux;
 
     /**
-     * Si le média vidéo est activé dans la timeline.
+     * Les clips vidéos de la timeline.
      */
-    private ArrayList<Boolean> liste_active_video = new ArrayList<Boolean>();
+    private final TableClips clips_video = new TableClips();
 
     /**
-     * Si le média vidéo est activé dans la timeline.
+     * Les clips audios de la timeline.
      */
-    private ArrayList<Boolean> liste_active_audio = new ArrayList<Boolean>();
+    private final TableClips clips_audio = new TableClips();
 
     /**
-     * Liste des marqueurs dans la timeline
+     * Les marqueurs de la timeline, triés.
      */
-    private ArrayList<Marqueur> liste_marqueur = new ArrayList<Marqueur>();
+    private final TableMarqueurs marqueurs = new TableMarqueurs();
 
     /**
-     * La fin de la piste vidéo.
+     * Occupation des pistes vidéos.
      */
-    private HashMap<Integer, Integer> fin_piste_video = new HashMap<Integer, Integer>();
+    private final IndexPistes occupation_piste_video = new IndexPistes();
 
     /**
-     * La fin de la piste vidéo.
+     * Occupation des pistes audios.
      */
-    private HashMap<Integer, Integer> fin_piste_audio = new HashMap<Integer, Integer>();
+    private final IndexPistes occupation_piste_audio = new IndexPistes();
 
     /**
      * Liste des pistes vidéos à verrouiller.
@@ -185,6 +177,17 @@ public final class Timeline {
      */
     private int position_curseur;
 
+    /**
+     * Augmente à chaque modification de la timeline (voir
+     * {@link RenduCache}).
+     */
+    private long version;
+
+    /**
+     * XML de la séquence rendu au dernier export.
+     */
+    private volatile RenduCache cache;
+
     /**
      * Crée une timeline avec toutes les données par défaut.
      */
@@ -221,7 +224,7 @@ public final class Timeline {
     public Timeline(String nom, int framerate, Timecode start_tc) {
         this.nom = nom;
         this.framerate = framerate;
-        this.start_tc = start_tc;
+        this.start = start_tc.toImage();
         this.par = 1;
         this.position_curseur = 0; // Par défaut, le curseur est au début de la timeline.
 
@@ -232,52 +235,46 @@ public final class Timeline {
 
         // Par défaut c'est pour Adobe Premiere.
         this.logiciel_destination = XMLFCP7.Logiciel.PREMIERE;
-
-        this.numero_timeline = nombre_timeline;
-        nombre_timeline++;
     }
 
     /**
-     * Ajoute un marqueur sur la timeline.
+     * Ajoute plusieurs clips d'un coup (par exemple tous les événements d'une
+     * EDL). Les clips sont triés une seule fois (image de début, piste
+     * demandée, image de fin ; l'ordre de la collection est gardé pour les
+     * égalités) puis placés dans l'ordre : chaque piste n'est alors libre ou
+     * occupée qu'à sa fin, sans recherche parmi ses clips.
      *
-     * @param marqueur Le marqueur.
+     * @param clips Les clips.
      */
-    public void addMarqueur(Marqueur marqueur) {
-        this.liste_marqueur.add(marqueur);
+    public void addAll(Collection<ClipSpec> clips) {
+        ClipSpec[] lot = clips.toArray(new ClipSpec[0]);
+        Arrays.sort(lot, ORDRE_LOT);
+
+        int nombre_video = 0;
+
+        for (ClipSpec clip : lot) {
+            if (clip.getMedia() instanceof MediaVideo) {
+                nombre_video++;
+            }
+        }
+
+        this.clips_video.reserver(nombre_video);
+        this.clips_audio.reserver(lot.length - nombre_video);
+
+        for (ClipSpec clip : lot) {
+            this.addMedia(clip.getPiste(), clip.getMedia(), clip.getIn(), clip.getOut(), clip.isActive());
+        }
     }
 
     /**
-     * Retourne le code XML d'un marqueur dans une timeline pour un projet Adobe
-     * Premiere.
+     * Ajoute un marqueur sur la timeline. Il n'est pas gardé si un marqueur
+     * identique est déjà sur la timeline (voir {@link TableMarqueurs}).
      *
      * @param marqueur Le marqueur.
-     * @return Code XML.
      */
-    private String addMarqueurTimeline(Marqueur marqueur) {
-        String xml = "\t\t\t<marker>\n";
-        xml += "\t\t\t\t<name>" + marqueur.getNom() + "</name>\n";
-        xml += "\t\t\t\t<comment>" + marqueur.getNote() + "</comment>\n";
-        xml += "\t\t\t\t<in>" + (marqueur.getIn().toImage() - this.start_tc.toImage()) + "</in>\n";
-        xml += "\t\t\t\t<out>" + ((marqueur.getOut() == null || marqueur.getIn().toString().equals(marqueur.getOut().toString())) ? "-1" : (marqueur.getOut().toImage() - this.start_tc.toImage() + 1)) + "</out>\n";
-
-        if (marqueur.getCouleur() != null) {
-            if (this.logiciel_destination == XMLFCP7.Logiciel.PREMIERE) {
-                // Le vert étant le par défaut, on ne l'affiche pas.
-                if (marqueur.getCouleur() != CouleurMarqueur.VERT) {
-                    xml += "\t\t\t\t<pproColor>" + marqueur.getCouleur().getCouleurPremiere() + "</pproColor>\n";
-                }
-            } else {
-                xml += "\t\t\t\t<color>\n";
-                xml += "\t\t\t\t\t<alpha>" + marqueur.getCouleur().getCanalAlpha() + "</alpha>\n";
-                xml += "\t\t\t\t\t<red>" + marqueur.getCouleur().getCanalRouge() + "</red>\n";
-                xml += "\t\t\t\t\t<green>" + marqueur.getCouleur().getCanalVert() + "</green>\n";
-                xml += "\t\t\t\t\t<blue>" + marqueur.getCouleur().getCanalBleu() + "</blue>\n";
-                xml += "\t\t\t\t</color>\n";
-            }
-        }
-
-        xml += "\t\t\t</marker>\n";
-        return xml;
+    public void addMarqueur(Marqueur marqueur) {
+        this.marqueurs.ajouter(marqueur);
+        this.version++;
     }
 
     /**
@@ -286,7 +283,7 @@ public final class Timeline {
      * @param media Le média.
      */
     public void addMedia(Media media) {
-        this.addMedia(1, media, this.start_tc, new Timecode(this.start_tc.toImage() + media.getDuree().toImage(), media.getFramerate()), true);
+        this.addMedia(1, media, this.start, this.start + media.getImageDuree(), true);
     }
 
     /**
@@ -296,7 +293,7 @@ public final class Timeline {
      * @param media Le média.
      */
     public void addMedia(int piste, Media media) {
-        this.addMedia(piste, media, media.getIn(), media.getOut(), true);
+        this.addMedia(piste, media, media.getImageIn(), media.getImageOut(), true);
     }
 
     /**
@@ -324,871 +321,306 @@ public final class Timeline {
      * @param active Si le média est activé dans la timeline.
      */
     public void addMedia(int piste, Media media, Timecode in, Timecode out, boolean active) {
-        // Pour l'image :
-        if (media instanceof MediaVideo) {
-            // Pas de superposition (seulement si trié) :
-            while (this.fin_piste_video.containsKey(piste) && (in.toImage() <= this.fin_piste_video.get(piste))) {
-                piste++;
-            }
-
-            this.liste_piste_video.add(piste);
-            this.liste_active_video.add(active);
-
-            // S'il y a une nouvelle piste, on l'ajoute :
-            if (!this.fin_piste_video.containsKey(piste)) {
-                this.fin_piste_video.put(piste, out.toImage());
-            } // Sinon, on met à jour le Tc end :
-            else {
-                // Et si le TC out et plus grand que le tc de fin de la piste :
-                if (this.fin_piste_video.get(piste) < out.toImage()) {
-                    this.fin_piste_video.replace(piste, out.toImage());
-                }
-            }
-
-            this.liste_media_video.add(media);
+        this.conformiteFramerate(in, out);
+        this.addMedia(piste, media, in.toImage(), out.toImage(), active);
+    }
 
-            if (this.framerate != 0) {
-                in.setFramerate(this.framerate);
-            } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
-            else {
-                this.framerate = (int) in.getFramerate();
-            }
+    /**
+     * Ajoute un média à la timeline en précisant la piste, point in et point
+     * out en image. Si la timeline n'a pas de framerate, elle prend celui du
+     * média.
+     *
+     * @param piste Le numéro de piste.
+     * @param media Le média.
+     * @param in Point in du média en image.
+     * @param out Point out (inclus) du média en image.
+     * @param active Si le média est activé dans la timeline.
+     */
+    public void addMedia(int piste, Media media, long in, long out, boolean active) {
+        if (this.framerate == 0) {
+            this.framerate = media.getFramerate();
+        }
 
-            if (this.framerate != 0) {
-                out.setFramerate(this.framerate);
-            } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
-            else {
-                this.framerate = (int) out.getFramerate();
-            }
+        int debut = Math.toIntExact(in);
+        int fin = Math.toIntExact(out);
 
-            this.liste_tc_start_video.add(in);
-            this.liste_tc_end_video.add(out);
+        // Pour l'image :
+        if (media instanceof MediaVideo) {
+            // Pas de superposition :
+            piste = this.occupation_piste_video.placer(piste, debut, fin);
+            this.clips_video.ajouter(piste, debut, fin, active, media);
 
             conformiteMedia((MediaVideo) media);
         } // Pour les audios :
         else {
-            // Pas de superposition (seulement si trié) :
-            while (this.fin_piste_audio.containsKey(piste) && (in.toImage() <= this.fin_piste_audio.get(piste))) {
-                piste++;
-            }
-
-            this.liste_piste_audio.add(piste);
-            this.liste_active_audio.add(active);
-
-            // S'il y a une nouvelle piste, on l'ajoute :
-            if (!this.fin_piste_audio.containsKey(piste)) {
-                this.fin_piste_audio.put(piste, out.toImage());
-            } // Sinon, on met à jour le Tc end :
-            else {
-                // Et si le TC out et plus grand que le tc de fin de la piste :
-                if (this.fin_piste_audio.get(piste) < out.toImage()) {
-                    this.fin_piste_audio.replace(piste, out.toImage());
-                }
-            }
-
-            this.liste_media_audio.add(media);
-
-            if (this.framerate != 0) {
-                in.setFramerate(this.framerate);
-            } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
-            else {
-                this.framerate = (int) in.getFramerate();
-            }
-
-            if (this.framerate != 0) {
-                out.setFramerate(this.framerate);
-            } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
-            else {
-                this.framerate = (int) out.getFramerate();
-            }
-
-            this.liste_tc_start_audio.add(in);
-            this.liste_tc_end_audio.add(out);
+            // Pas de superposition :
+            piste = this.occupation_piste_audio.placer(piste, debut, fin);
+            this.clips_audio.ajouter(piste, debut, fin, active, media);
         }
+
+        this.version++;
     }
 
     /**
-     * Ajoute un clip vidéo à la timeline.
+     * Écrit un clip vidéo de la timeline.
      *
+     * @param sink Où écrire l'XML.
+     * @param ids Les IDs du projet.
      * @param m Le média vidéo à ajouter.
-     * @param start Où commence la vidéo dans la timeline.
+     * @param start Image où commence la vidéo dans la timeline.
      * @param active Si le média est activé dans la timeline.
-     *
-     * @return Code XML du projet Adobe Premiere.
+     * @throws IOException Erreur d'écriture dans la sortie.
      */
-    private String addItemClipVideo(MediaVideo m, Timecode start, boolean active) {
-        clipitem++;
-
-        // On définit à quel logiciel est destiné ce média vidéo.
-        m.setLogicielDestination(logiciel_destination);
+    private void addItemClipVideo(XmlSink sink, IdAllocator ids, MediaVideo m, int start, boolean active) throws IOException {
+        int clipitem = ids.nouveauClipitem();
+        int id = ids.getIdMedia(m);
 
         String nom_fichier = new File(m.getNomFichier().replace("\\", "/")).getName();
 
-        String xml = "\t\t\t\t\t<clipitem id=\"clipitem-" + clipitem + "\">\n"
-                + "\t\t\t\t\t\t<masterclipid>masterclip-" + m.getId() + "</masterclipid>\n"
-                + "\t\t\t\t\t\t<name>" + (m.getNom() != null ? m.getNom() : nom_fichier) + "</name>\n"
-                + "\t\t\t\t\t\t<enabled>" + ((active) ? "TRUE" : "FALSE") + "</enabled>\n"
-                + "\t\t\t\t\t\t<duration>" + m.getDuree().toImage() + "</duration>\n"
-                + "\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                + "\t\t\t\t\t\t\t<ntsc>FALSE</ntsc>\n"
-                + "\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t<start>" + (start.toImage() - this.start_tc.toImage()) + "</start>\n"
-                + "\t\t\t\t\t\t<end>" + ((start.toImage() - this.start_tc.toImage() + m.getDuree().toImage()) - ((m.getDuree().toImage() > 1) ? 1 : 0)) + "</end>\n"
-                + // "-1" car sinon cela ajoute une frame.
-                "\t\t\t\t\t\t<in>" + m.getIn().toImage() + "</in>\n"
-                + "\t\t\t\t\t\t<out>" + (m.getOut().toImage()) + "</out>\n"
-                + "\t\t\t\t\t\t<pproTicksIn>0</pproTicksIn>\n"
-                + // Je sais plus.
-                "\t\t\t\t\t\t<pproTicksOut>" + (m.getOut().toImage() * 254016000000L / this.framerate) + "</pproTicksOut>\n"; // Je sais plus.
-        /*if (!(m instanceof MediaTexte)) {
-            xml += "\t\t\t\t\t\t<alphatype>"+m.getAlpha().getMethode()+"</alphatype>\n";
-        } else {
-            xml += "\t\t\t\t\t\t<alphatype>straight</alphatype>\n";
-        }*/
-        xml += "\t\t\t\t\t\t<alphatype>" + m.getAlpha() + "</alphatype>\n"
-                + "\t\t\t\t\t\t<pixelaspectratio>square</pixelaspectratio>\n"
-                + "\t\t\t\t\t\t<anamorphic>FALSE</anamorphic>\n";
+        sink.debutBalise("clipitem").attribut("id", "clipitem-", clipitem).finBalise();
+        sink.element("masterclipid", "masterclip-" + id);
+        sink.element("name", (m.getNom() != null ? m.getNom() : nom_fichier));
+        sink.element("enabled", (active) ? "TRUE" : "FALSE");
+        long duree = m.getImageDuree();
+        RateInfo rate = this.getRate();
+
+        sink.element("duration", duree);
+        this.rateClip(m).writeTo(sink);
+        sink.element("start", start - this.start);
+        // "-1" car sinon cela ajoute une frame.
+        sink.element("end", (start - this.start + duree) - ((duree > 1) ? 1 : 0));
+        sink.element("in", m.getImageIn());
+        sink.element("out", m.getImageOut());
+        // Je sais plus.
+        sink.element("pproTicksIn", 0);
+        // Je sais plus.
+        sink.element("pproTicksOut", rate.ticks(m.getImageOut()));
+        sink.element("alphatype", m.getAlpha());
+        sink.element("pixelaspectratio", "square");
+        sink.element("anamorphic", "FALSE");
 
         // Si le fichier est généré.
         if (!m.getTypeMedia().equals("genere")) {
-            if (!m.dejaUtilise()) {
-                // Si le logiciel est Adobe Premiere :
-                if (this.logiciel_destination == Logiciel.PREMIERE) {
-                    xml += "\t\t\t\t\t\t<file id=\"file-" + m.getId() + "\">\n"
-                            + "\t\t\t\t\t\t\t<name>" + nom_fichier + "</name>\n"
-                            + "\t\t\t\t\t\t\t<pathurl>" + m.getLocalisation() + "</pathurl>\n"
-                            + // Où se trouve le fichier.
-                            "\t\t\t\t\t\t\t<rate>\n"
-                            + "\t\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                            + // Framerate du média.
-                            "\t\t\t\t\t\t\t\t<ntsc>FALSE</ntsc>\n"
-                            + "\t\t\t\t\t\t\t</rate>\n"
-                            + "\t\t\t\t\t\t\t<duration>" + m.getDureeFichier().toImage() + "</duration>\n"
-                            + // Durée du média.
-                            "\t\t\t\t\t\t\t<timecode>\n"
-                            + "\t\t\t\t\t\t\t\t<rate>\n"
-                            + "\t\t\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                            + // Framerate du média.
-                            "\t\t\t\t\t\t\t\t\t<ntsc>FALSE</ntsc>\n"
-                            + "\t\t\t\t\t\t\t\t</rate>\n"
-                            + "\t\t\t\t\t\t\t\t<string>" + m.getStart() + "</string>\n"
-                            + // Timecode de début du média.
-                            "\t\t\t\t\t\t\t\t<frame>" + m.getStart().toImage() + "</frame>\n"
-                            + // Début du média en nombre d'images.
-                            "\t\t\t\t\t\t\t\t<displayformat>NDF</displayformat>\n";
-
-                    if (m.getNomBobine() != null) {
-                        xml += "\t\t\t\t\t\t\t\t<reel>\n"
-                                + "\t\t\t\t\t\t\t\t\t<name>" + m.getNomBobine() + "</name>\n"
-                                + "\t\t\t\t\t\t\t\t</reel>\n";
-                    }
-                    xml += "\t\t\t\t\t\t\t</timecode>\n"
-                            + "\t\t\t\t\t\t\t<media>\n"
-                            + "\t\t\t\t\t\t\t\t<video>\n"
-                            + "\t\t\t\t\t\t\t\t\t<samplecharacteristics>\n"
-                            + "\t\t\t\t\t\t\t\t\t\t<rate>\n"
-                            // Frame rate du média.
-                            + "\t\t\t\t\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                            + "\t\t\t\t\t\t\t\t\t\t\t<ntsc>FALSE</ntsc>\n"
-                            + "\t\t\t\t\t\t\t\t\t\t</rate>\n"
-                            // largeur du média.
-                            + "\t\t\t\t\t\t\t\t\t\t<width>" + m.getLargeur() + "</width>\n"
-                            // hauteur du média.
-                            + "\t\t\t\t\t\t\t\t\t\t<height>" + m.getHauteur() + "</height>\n"
-                            + "\t\t\t\t\t\t\t\t\t\t<anamorphic>FALSE</anamorphic>\n"
-                            + "\t\t\t\t\t\t\t\t\t\t<pixelaspectratio>square</pixelaspectratio>\n"
-                            + "\t\t\t\t\t\t\t\t\t\t<fielddominance>" + ((MediaVideo) m).getTrame() + "</fielddominance>\n"
-                            + "\t\t\t\t\t\t\t\t\t</samplecharacteristics>\n"
-                            + "\t\t\t\t\t\t\t\t</video>\n";
-                    //xml += "\t</media>\n"
-                    //       + "</file>";
-                } // Cas de Resolve:
-                else {
-                    xml += "\t\t\t\t\t\t<file id=\"file-" + m.getId() + "\">\n"
-                            + "\t\t\t\t\t\t\t<duration>" + m.getDureeFichier().toImage() + "</duration>\n"
-                            + "\t\t\t\t\t\t\t<rate>\n"
-                            + "\t\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                            + "\t\t\t\t\t\t\t\t<ntsc>false</ntsc>\n"
-                            + "\t\t\t\t\t\t\t</rate>\n"
-                            + "\t\t\t\t\t\t\t<name>" + nom_fichier + "</name>\n"
-                            + "\t\t\t\t\t\t\t<pathurl>" + /*new File(m.getLocalisation().replace("\\", "/")).getName()*/ m.getLocalisation() + "</pathurl>\n"
-                            + "\t\t\t\t\t\t\t<timecode>\n"
-                            + "\t\t\t\t\t\t\t\t<string>" + m.getStart() + "</string>\n"
-                            + "\t\t\t\t\t\t\t\t<displayformat>NDF</displayformat>\n"
-                            + "\t\t\t\t\t\t\t\t<rate>\n"
-                            + "\t\t\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                            + "\t\t\t\t\t\t\t\t\t<ntsc>false</ntsc>\n"
-                            + "\t\t\t\t\t\t\t\t</rate>\n";
-
-                    if (m.getNomBobine() != null) {
-                        xml += "\t\t\t\t\t\t\t\t<reel>\n"
-                                + "\t\t\t\t\t\t\t\t\t<name>" + m.getNomBobine() + "</name>\n"
-                                + "\t\t\t\t\t\t\t\t</reel>\n";
-                    }
-
-                    xml += "\t\t\t\t\t\t\t</timecode>\n"
-                            + "\t\t\t\t\t\t\t<media>\n"
-                            + "\t\t\t\t\t\t\t\t<video>\n"
-                            + "\t\t\t\t\t\t\t\t\t<duration>" + m.getDureeFichier().toImage() + "</duration>\n"
-                            + "\t\t\t\t\t\t\t\t\t<samplecharacteristics>\n"
-                            + "\t\t\t\t\t\t\t\t\t\t<width>" + m.getLargeur() + "</width>\n"
-                            + "\t\t\t\t\t\t\t\t\t\t<height>" + m.getHauteur() + "</height>\n"
-                            + "\t\t\t\t\t\t\t\t\t</samplecharacteristics>\n"
-                            + "\t\t\t\t\t\t\t\t</video>\n";
-
-                    /*
-                    // S'il y a des pistes audios.
-                    if()
-                    xml += "";
-                     */
-                }
-
-                if (((MediaVideo) m).getCanaux() > 0) {
-                    xml += canauxClip(((MediaVideo) m).getCanaux(), 48000, 16);
-                }
-
-                xml += "\t\t\t\t\t\t\t</media>\n"
-                        + "\t\t\t\t\t\t</file>\n";
+            if (ids.premiereDefinition(m)) {
+                m.writeFichierTo(sink, id, this.logiciel_destination);
             } else {
-                xml += "\t\t\t\t\t\t<file id=\"file-" + m.getId() + "\"/>\n";
+                sink.debutBalise("file").attribut("id", "file-", id).finBaliseVide();
             }
         } // Cas où c'est un élément généré (mire, noir, calque d'effet, etc) :
         else {
-            xml += "\t\t\t\t\t\t<file id=\"genere-" + m.getId() + "\">\n"
-                    + "\t\t\t\t\t\t\t<name>" + m.getNomFichier() + "</name>\n";
-
-            MediaTexte m_texte;
-            if (m instanceof MediaTexte) {
-                m_texte = (MediaTexte) m;
-            } else {
-                m_texte = null;
-            }
+            sink.debutBalise("file").attribut("id", "genere-", id).finBalise();
+            sink.element("name", m.getNomFichier());
 
             if (m instanceof MediaTexte) {
-                xml += "\t\t\t\t\t\t\t<mediaSource>" + m_texte.getMediaSource() + "</mediaSource>\n";
+                sink.element("mediaSource", ((MediaTexte) m).getMediaSource());
             }
 
-            xml += "\t\t\t\t\t\t\t<rate>\n"
-                    + "\t\t\t\t\t\t\t\t<timebase>30</timebase>\n"
-                    + "\t\t\t\t\t\t\t\t<ntsc>TRUE</ntsc>\n"
-                    + "\t\t\t\t\t\t\t</rate>\n"
-                    + "\t\t\t\t\t\t\t<timecode>\n"
-                    + "\t\t\t\t\t\t\t\t<rate>\n"
-                    + "\t\t\t\t\t\t\t\t\t<timebase>30</timebase>\n"
-                    + "\t\t\t\t\t\t\t\t\t<ntsc>TRUE</ntsc>\n"
-                    + "\t\t\t\t\t\t\t\t</rate>\n"
-                    + "\t\t\t\t\t\t\t\t<string>00;00;00;00</string>\n"
-                    + "\t\t\t\t\t\t\t\t<frame>0</frame>\n"
-                    + "\t\t\t\t\t\t\t\t<displayformat>DF</displayformat>\n";
+            sink.ouvre("rate");
+            sink.element("timebase", 30);
+            sink.element("ntsc", "TRUE");
+            sink.ferme("rate");
+            sink.ouvre("timecode");
+            sink.ouvre("rate");
+            sink.element("timebase", 30);
+            sink.element("ntsc", "TRUE");
+            sink.ferme("rate");
+            sink.element("string", "00;00;00;00");
+            sink.element("frame", 0);
+            sink.element("displayformat", "DF");
 
             if (!(m instanceof MediaTexte)) {
-                xml += "\t\t\t\t\t\t\t\t<reel>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name></name>\n"
-                        + "\t\t\t\t\t\t\t\t</reel>\n";
+                sink.ouvre("reel");
+                sink.element("name", "");
+                sink.ferme("reel");
             }
-            xml += "\t\t\t\t\t\t\t</timecode>\n"
-                    + "\t\t\t\t\t\t\t<media>\n"
-                    + "\t\t\t\t\t\t\t\t<video>\n"
-                    + "\t\t\t\t\t\t\t\t\t<samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<rate>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t\t<timebase>30</timebase>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t\t<ntsc>TRUE</ntsc>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t</rate>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<width>" + m.getLargeur() + "</width>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<height>" + m.getHauteur() + "</height>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<anamorphic>FALSE</anamorphic>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<pixelaspectratio>square</pixelaspectratio>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<fielddominance>none</fielddominance>\n"
-                    + "\t\t\t\t\t\t\t\t\t</samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t</video>\n"
-                    + "\t\t\t\t\t\t\t</media>\n"
-                    + "\t\t\t\t\t\t</file>\n";
+
+            sink.ferme("timecode");
+            sink.ouvre("media");
+            sink.ouvre("video");
+            sink.ouvre("samplecharacteristics");
+            sink.ouvre("rate");
+            sink.element("timebase", 30);
+            sink.element("ntsc", "TRUE");
+            sink.ferme("rate");
+            sink.element("width", m.getLargeur());
+            sink.element("height", m.getHauteur());
+            sink.element("anamorphic", "FALSE");
+            sink.element("pixelaspectratio", "square");
+            sink.element("fielddominance", "none");
+            sink.ferme("samplecharacteristics");
+            sink.ferme("video");
+            sink.ferme("media");
+            sink.ferme("file");
         }
-        m.utiliser();
 
         // Cas qui n'est pas un élément généré (mire, décompte, etc) :
         if (!m.getTypeMedia().equals("genere")) {
-            xml += "\t\t\t\t\t\t<link>\n"
-                    + "\t\t\t\t\t\t\t<linkclipref>masterclip-" + m.getId() + "</linkclipref>\n"
-                    + "\t\t\t\t\t\t\t<mediatype>video</mediatype>\n"
-                    + "\t\t\t\t\t\t\t<trackindex>1</trackindex>\n"
-                    + "\t\t\t\t\t\t\t<clipindex>1</clipindex>\n"
-                    + "\t\t\t\t\t\t</link>\n";
+            sink.ouvre("link");
+            sink.element("linkclipref", "masterclip-" + id);
+            sink.element("mediatype", "video");
+            sink.element("trackindex", 1);
+            sink.element("clipindex", 1);
+            sink.ferme("link");
 
             // DaVinci Resolve indique le mode composition.
             if (this.logiciel_destination == Logiciel.RESOLVE) {
-                xml += "\t\t\t\t\t\t<compositemode>normal</compositemode>\n";
+                sink.element("compositemode", "normal");
             }
 
-            // Ajoute les effets sur le média :
-            ArrayList<Effect> liste_effet = m.getListeEffect();
+            // Ajoute les effets sur le média (un Basic Motion du média remplace celui écrit d'office) :
+            Mouvement mouvement = MOUVEMENT;
 
-            for (Effect effet : liste_effet) {
-                xml += effet.toString();
+            for (Effect effet : m.getListeEffect()) {
+                if (effet instanceof Mouvement) {
+                    mouvement = (Mouvement) effet;
+                } else {
+                    EffectSerializers.writeTo(effet, this.logiciel_destination, m, this, sink);
+                }
             }
 
             // Cas quand il y a un déplacement :
-            xml += "\t\t\t\t\t\t<filter>\n";
-
-            if (this.logiciel_destination == Logiciel.RESOLVE) {
-                xml += "\t\t\t\t\t\t\t<enabled>TRUE</enabled>\n"
-                        + "\t\t\t\t\t\t\t<start>" + m.getStart().toImage() + "</start>\n"
-                        + "\t\t\t\t\t\t\t<end>" + m.getStart().toImage() + m.getDuree().toImage() + "</end>\n";
-            }
-
-            xml += "\t\t\t\t\t\t\t<effect>\n"
-                    + "\t\t\t\t\t\t\t\t<name>Basic Motion</name>\n"
-                    + "\t\t\t\t\t\t\t\t<effectid>basic</effectid>\n"
-                    + "\t\t\t\t\t\t\t\t<effectcategory>motion</effectcategory>\n"
-                    + "\t\t\t\t\t\t\t\t<effecttype>motion</effecttype>\n"
-                    + "\t\t\t\t\t\t\t\t<mediatype>video</mediatype>\n"
-                    + "\t\t\t\t\t\t\t\t<pproBypass>false</pproBypass>\n"
-                    + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                    + "\t\t\t\t\t\t\t\t\t<parameterid>scale</parameterid>\n"
-                    + "\t\t\t\t\t\t\t\t\t<name>Scale</name>\n"
-                    + "\t\t\t\t\t\t\t\t\t<valuemin>0</valuemin>\n"
-                    + "\t\t\t\t\t\t\t\t\t<valuemax>1000</valuemax>\n"
-                    + "\t\t\t\t\t\t\t\t\t<value>" + m.getEchelle() + "</value>\n"
-                    + "\t\t\t\t\t\t\t\t</parameter>\n"
-                    + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                    + "\t\t\t\t\t\t\t\t\t<parameterid>rotation</parameterid>\n"
-                    + "\t\t\t\t\t\t\t\t\t<name>Rotation</name>\n"
-                    + "\t\t\t\t\t\t\t\t\t<valuemin>-8640</valuemin>\n"
-                    + // Rotation ?
-                    "\t\t\t\t\t\t\t\t\t<valuemax>8640</valuemax>\n"
-                    + // Rotation ?
-                    "\t\t\t\t\t\t\t\t\t<value>0</value>\n"
-                    + "\t\t\t\t\t\t\t\t</parameter>\n"
-                    + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                    + "\t\t\t\t\t\t\t\t\t<parameterid>center</parameterid>\n"
-                    + "\t\t\t\t\t\t\t\t\t<name>Center</name>\n"
-                    + "\t\t\t\t\t\t\t\t\t<value>\n";
-            // Position en X : 0 = centre.
-            if (this.logiciel_destination == Logiciel.PREMIERE) {
-                xml += "\t\t\t\t\t\t\t\t\t\t<horiz>" + new DecimalFormat("#.#########", new DecimalFormatSymbols(Locale.ENGLISH)).format(m.getPositionHorizontale(this.largeur, this.hauteur, this.par)) + "</horiz>\n";
-                xml += "\t\t\t\t\t\t\t\t\t\t<vert>" + new DecimalFormat("#.#########", new DecimalFormatSymbols(Locale.ENGLISH)).format(m.getPositionVerticale(this.largeur, this.hauteur, this.par)) + "</vert>\n";
-            } else {
-                xml += "\t\t\t\t\t\t\t\t\t\t<horiz>" + m.getPositionHorizontale(this.largeur, this.hauteur, this.par) + "</horiz>\n";
-                xml += "\t\t\t\t\t\t\t\t\t\t<vert>" + m.getPositionVerticale(this.largeur, this.hauteur, this.par) + "</vert>\n";
-            }
-            // Position en Y : 0 = centre.
-            xml += "\t\t\t\t\t\t\t\t\t</value>\n"
-                    + "\t\t\t\t\t\t\t\t</parameter>\n"
-                    + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                    + "\t\t\t\t\t\t\t\t\t<parameterid>centerOffset</parameterid>\n"
-                    + "\t\t\t\t\t\t\t\t\t<name>Anchor Point</name>\n"
-                    + "\t\t\t\t\t\t\t\t\t<value>\n"
-                    // Point d'ancrage ?
-                    + "\t\t\t\t\t\t\t\t\t\t<horiz>0</horiz>\n"
-                    // Point d'ancrage ?
-                    + "\t\t\t\t\t\t\t\t\t\t<vert>0</vert>\n"
-                    + "\t\t\t\t\t\t\t\t\t</value>\n"
-                    + "\t\t\t\t\t\t\t\t</parameter>\n"
-                    + "\t\t\t\t\t\t\t</effect>\n"
-                    + "\t\t\t\t\t\t</filter>\n"
-                    + canauxClip2(((MediaVideo) m).getCanaux());
+            EffectSerializers.writeTo(mouvement, this.logiciel_destination, m, this, sink);
+            canauxClip2(sink, m.getCanaux());
         } // En cas de fichier généré :
         else {
             // Pour un fichier de texte :
             if (m instanceof MediaTexte) {
-                MediaTexte m_texte = (MediaTexte) m;
-
                 // Texte d'Adobe CC2023 :
-                xml += "\t\t\t\t\t\t<filter>\n"
-                        + "\t\t\t\t\t\t\t<effect>\n"
-                        + "\t\t\t\t\t\t\t\t<name>" + m_texte.getTexte() + "</name>\n"
-                        + "\t\t\t\t\t\t\t\t<effectid>GraphicAndType</effectid>\n"
-                        + "\t\t\t\t\t\t\t\t<effectcategory>graphic</effectcategory>\n"
-                        + "\t\t\t\t\t\t\t\t<effecttype>filter</effecttype>\n"
-                        + "\t\t\t\t\t\t\t\t<mediatype>video</mediatype>\n"
-                        + "\t\t\t\t\t\t\t\t<pproBypass>false</pproBypass>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>1</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Texte source</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<hash>2d03c7ab-2985-2ec9-45bf-033100000154</hash>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>PAEAAAAAAABEMyIRDAAAAAAABgAKAAQABgAAAGQAAAAAAF4AGAAQAAwAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAFgAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAgAAAAAABcABwBeAAAAAAAAARAAAAAcAAAALAAAAAAAAQBo////bP///3D///90////AQAAAAQAAAAGAAAAVGFob21hAAABAAAADAAAAAgADgAEAAgACAAAAGgAAAA8AAAAAAA2ABQAAAAAAAAAAAAAAAAAEAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAADAAAAAgABAA2AAAAAgAAAAwAAAAMAAAAAACAQPT////4/////P///wQABAAEAAAACAAAAEJvbmpvdXINAAAAAA==</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>2</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Transformation</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>11</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>false</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>false</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,false,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>3</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Position</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,0.5:0.5,0,0,0,0,0,0,5,4,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>4</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Echelle</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>2</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>0</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>4000</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,100.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>5</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Echelle horizontale</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>2</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>0</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>4000</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,100.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>6</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name> </name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>4</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>false</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>true</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,true,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>7</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Rotation</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>3</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>-32768</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>32767</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,0.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>8</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Opacité</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>2</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>0</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>100</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,100.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>9</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Point d'ancrage</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,0:0,0,0,0,0,0,0,5,4,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>10</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name></name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>12</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>false</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>false</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,false,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>11</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name> </name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>8</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>0</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>32768</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,0.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>12</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name> </name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>8</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>0</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>32768</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,0.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>13</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>start</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>8</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>-100</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>1000000000</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,8.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>14</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>end</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>8</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>-100</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>1000000000</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,8.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>15</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name> </name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>4</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>false</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>true</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,false,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>16</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name> </name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>4</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>false</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>true</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,false,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>17</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name> </name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>4</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>false</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>true</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,false,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>18</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name> </name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>4</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>false</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>true</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,false,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>19</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Largeur du parent</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>2</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>0</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>20000</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,0.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>20</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Hauteur du parent</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>2</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>0</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>20000</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,0.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>21</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name>Rotation du parent</name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>3</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>-32768</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>32767</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,0.,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t\t<parameter authoringApp=\"PremierePro\">\n"
-                        + "\t\t\t\t\t\t\t\t\t<parameterid>22</parameterid>\n"
-                        + "\t\t\t\t\t\t\t\t\t<name> </name>\n"
-                        + "\t\t\t\t\t\t\t\t\t<IsTimeVarying>false</IsTimeVarying>\n"
-                        + "\t\t\t\t\t\t\t\t\t<ParameterControlType>4</ParameterControlType>\n"
-                        + "\t\t\t\t\t\t\t\t\t<LowerBound>false</LowerBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<UpperBound>true</UpperBound>\n"
-                        + "\t\t\t\t\t\t\t\t\t<value>-91445760000000000,false,0,0,0,0,0,0</value>\n"
-                        + "\t\t\t\t\t\t\t\t</parameter>\n"
-                        + "\t\t\t\t\t\t\t</effect>\n"
-                        + "\t\t\t\t\t\t</filter>\n";
+                EffectSerializers.writeTo(TEXTE, this.logiciel_destination, m, this, sink);
             }
         }
 
         // Il se peut que cela soit une image et non une vidéo qu'on doit freezer.
         if (this.logiciel_destination == XMLFCP7.Logiciel.RESOLVE && m.isFreeze()) {
-            xml += "\t\t\t\t\t\t<filter>\n";
-            xml += "\t\t\t\t\t\t\t<enabled>TRUE</enabled>\n";
-            xml += "\t\t\t\t\t\t\t<start>-1</start>\n";
-            xml += "\t\t\t\t\t\t\t<end>-1</end>\n";
-            xml += "\t\t\t\t\t\t\t<effect>\n";
-            xml += "\t\t\t\t\t\t\t<name>Time Remap</name>\n";
-            xml += "\t\t\t\t\t\t\t<effectid>timeremap</effectid>\n";
-            xml += "\t\t\t\t\t\t\t<effecttype>motion</effecttype>\n";
-            xml += "\t\t\t\t\t\t\t<mediatype>video</mediatype>\n";
-            xml += "\t\t\t\t\t\t\t<effectcategory>motion</effectcategory>\n";
-            xml += "\t\t\t\t\t\t\t<parameter>\n";
-            xml += "\t\t\t\t\t\t\t<name>speed</name>\n";
-            xml += "\t\t\t\t\t\t\t<parameterid>speed</parameterid>\n";
-            xml += "\t\t\t\t\t\t\t<value>0</value>\n";
-            xml += "\t\t\t\t\t\t\t<valuemin>-10000</valuemin>\n";
-            xml += "\t\t\t\t\t\t\t<valuemax>10000</valuemax>\n";
-            xml += "\t\t\t\t\t\t\t</parameter>\n";
-            xml += "\t\t\t\t\t\t\t<parameter>\n";
-            xml += "\t\t\t\t\t\t\t<name>reverse</name>\n";
-            xml += "\t\t\t\t\t\t\t<parameterid>reverse</parameterid>\n";
-            xml += "\t\t\t\t\t\t\t<value>FALSE</value>\n";
-            xml += "\t\t\t\t\t\t\t</parameter>\n";
-            xml += "\t\t\t\t\t\t\t<parameter>\n";
-            xml += "\t\t\t\t\t\t\t<name>frameblending</name>\n";
-            xml += "\t\t\t\t\t\t\t<parameterid>frameblending</parameterid>\n";
-            xml += "\t\t\t\t\t\t\t<value>FALSE</value>\n";
-            xml += "\t\t\t\t\t\t\t</parameter>\n";
-            xml += "\t\t\t\t\t\t\t<parameter>\n";
-            xml += "\t\t\t\t\t\t\t<name>variablespeed</name>\n";
-            xml += "\t\t\t\t\t\t\t<parameterid>variablespeed</parameterid>\n";
-            xml += "\t\t\t\t\t\t\t<value>0</value>\n";
-            xml += "\t\t\t\t\t\t\t<valuemin>0</valuemin>\n";
-            xml += "\t\t\t\t\t\t\t<valuemax>1</valuemax>\n";
-            xml += "\t\t\t\t\t\t\t</parameter>\n";
-            xml += "\t\t\t\t\t\t\t<parameter>\n";
-            xml += "\t\t\t\t\t\t\t<name>graphdict</name>\n";
-            xml += "\t\t\t\t\t\t\t<parameterid>graphdict</parameterid>\n";
-            xml += "\t\t\t\t\t\t\t<keyframe>\n";
-            xml += "\t\t\t\t\t\t\t<when>0</when>\n";
-            xml += "\t\t\t\t\t\t\t<value>0</value>\n";
-            xml += "\t\t\t\t\t\t\t<speedvirtualkf>TRUE</speedvirtualkf>\n";
-            xml += "\t\t\t\t\t\t\t<speedkfstart>TRUE</speedkfstart>\n";
-            xml += "\t\t\t\t\t\t\t</keyframe>\n";
-            xml += "\t\t\t\t\t\t\t<keyframe>\n";
-            xml += "\t\t\t\t\t\t\t<when>86400</when>\n";
-            xml += "\t\t\t\t\t\t\t<value>0</value>\n";
-            xml += "\t\t\t\t\t\t\t<speedvirtualkf>TRUE</speedvirtualkf>\n";
-            xml += "\t\t\t\t\t\t\t<speedkfin>TRUE</speedkfin>\n";
-            xml += "\t\t\t\t\t\t\t</keyframe>\n";
-            xml += "\t\t\t\t\t\t\t<keyframe>\n";
-            xml += "\t\t\t\t\t\t\t<when>86520</when>\n";
-            xml += "\t\t\t\t\t\t\t<value>0</value>\n";
-            xml += "\t\t\t\t\t\t\t<speedvirtualkf>TRUE</speedvirtualkf>\n";
-            xml += "\t\t\t\t\t\t\t<speedkfout>TRUE</speedkfout>\n";
-            xml += "\t\t\t\t\t\t\t</keyframe>\n";
-            xml += "\t\t\t\t\t\t\t<keyframe>\n";
-            xml += "\t\t\t\t\t\t\t<when>1440001</when>\n";
-            xml += "\t\t\t\t\t\t\t<value>1</value>\n";
-            xml += "\t\t\t\t\t\t\t<speedvirtualkf>TRUE</speedvirtualkf>\n";
-            xml += "\t\t\t\t\t\t\t<speedkfend>TRUE</speedkfend>\n";
-            xml += "\t\t\t\t\t\t\t</keyframe>\n";
-            xml += "\t\t\t\t\t\t\t<valuemin>0</valuemin>\n";
-            xml += "\t\t\t\t\t\t\t<valuemax>0</valuemax>\n";
-            xml += "\t\t\t\t\t\t\t<interpolation>\n";
-            xml += "\t\t\t\t\t\t\t<name>FCPCurve</name>\n";
-            xml += "\t\t\t\t\t\t\t</interpolation>\n";
-            xml += "\t\t\t\t\t\t\t</parameter>\n";
-            xml += "\t\t\t\t\t\t\t</effect>\n";
-            xml += "\t\t\t\t\t\t</filter>\n";
+            EffectSerializers.writeTo(REMAPPAGE_TEMPS, this.logiciel_destination, m, this, sink);
         }
 
-        xml += "\t\t\t\t\t\t<logginginfo>\n"
-                + "\t\t\t\t\t\t\t<description></description>\n"
-                + "\t\t\t\t\t\t\t<scene></scene>\n"
-                + "\t\t\t\t\t\t\t<shottake></shottake>\n"
-                + "\t\t\t\t\t\t\t<lognote></lognote>\n"
-                + "\t\t\t\t\t\t<good></good>\n"
-                + "\t\t\t\t\t\t<originalvideofilename></originalvideofilename>\n"
-                + "\t\t\t\t\t\t<originalaudiofilename></originalaudiofilename>\n"
-                + "\t\t\t\t\t\t</logginginfo>\n"
-                + "\t\t\t\t\t\t<colorinfo>\n"
-                + "\t\t\t\t\t\t\t<lut></lut>\n"
-                + "\t\t\t\t\t\t\t<lut1></lut1>\n"
-                + "\t\t\t\t\t\t\t<asc_sop></asc_sop>\n"
-                + "\t\t\t\t\t\t\t<asc_sat></asc_sat>\n"
-                + "\t\t\t\t\t\t\t<lut2></lut2>\n"
-                + "\t\t\t\t\t\t</colorinfo>\n"
-                + "\t\t\t\t\t\t<labels>\n"
-                //+ "\t\t\t\t\t\t\t<label>Meilleure prise</label>\n"
-                + "\t\t\t\t\t\t\t<label2>" + m.getCouleur() + "</label2>\n"
-                + "\t\t\t\t\t\t</labels>\n"
-                + "\t\t\t\t\t</clipitem>\n";
-        return xml;
+        sink.ouvre("logginginfo");
+        sink.element("description", "");
+        sink.element("scene", "");
+        sink.element("shottake", "");
+        sink.element("lognote", "");
+        sink.element("good", "");
+        sink.element("originalvideofilename", "");
+        sink.element("originalaudiofilename", "");
+        sink.ferme("logginginfo");
+        sink.ouvre("colorinfo");
+        sink.element("lut", "");
+        sink.element("lut1", "");
+        sink.element("asc_sop", "");
+        sink.element("asc_sat", "");
+        sink.element("lut2", "");
+        sink.ferme("colorinfo");
+        sink.ouvre("labels");
+        sink.element("label2", m.getCouleur());
+        sink.ferme("labels");
+        sink.ferme("clipitem");
     }
 
     /**
-     * Ajoute un clip audio dans la timeline.
+     * Écrit un clip audio de la timeline.
      *
-     * @return Le code XML à ajouter au fichier final.
-     */
-    private String addItemClipAudio(MediaAudio m, int trackindex, Timecode start, boolean active) {
-        clipitem++;
-        /*String xml = "\t\t\t\t\t<clipitem id=\"clipitem-" + clipitem + "\" premiereChannelType=\"mono\">\n"
-                + "\t\t\t\t\t\t<masterclipid>masterclip-" + m.getId() + "</masterclipid>\n"
-                + "\t\t\t\t\t\t<name>" + new File(m.getNomFichier().replace("\\", "/")).getName() + "</name>\n"
-                + "\t\t\t\t\t\t<enabled>TRUE</enabled>\n"
-                + "\t\t\t\t\t\t<duration>" + m.getDuree().toImage() + "</duration>\n"
-                + "\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                + "\t\t\t\t\t\t\t<ntsc>FALSE</ntsc>\n"
-                + "\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t<start>" + m.getIn().toImage() + "</start>\n"
-                + "\t\t\t\t\t\t<end>" + (m.getIn().toImage() + m.getDuree().toImage()) + "</end>\n"
-                + "\t\t\t\t\t\t<in>" + m.getIn().toImage() + "</in>\n"
-                + "\t\t\t\t\t\t<out>" + m.getOut().toImage() + "</out>\n"
-                + "\t\t\t\t\t\t<pproTicksIn>0</pproTicksIn>\n"
-                + "\t\t\t\t\t\t<pproTicksOut>" + (m.getOut().toImage() * 254016000000L / this.framerate) + "</pproTicksOut>\n"
-                + "\t\t\t\t\t\t<file id=\"file-1\"/>\n"
-                + "\t\t\t\t\t\t<sourcetrack>\n"
-                + "\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                + "\t\t\t\t\t\t\t<trackindex>" + trackindex + "</trackindex>\n"
-                + "\t\t\t\t\t\t</sourcetrack>\n"
-                + "\t\t\t\t\t\t<link>\n"
-                + "\t\t\t\t\t\t\t<linkclipref>clipitem-1</linkclipref>\n"
-                + "\t\t\t\t\t\t\t<mediatype>video</mediatype>\n"
-                + "\t\t\t\t\t\t\t<trackindex>1</trackindex>\n"
-                + "\t\t\t\t\t\t\t<clipindex>1</clipindex>\n"
-                + "\t\t\t\t\t\t</link>\n"
-                + canauxClip2(((MediaVideo) m).getCanaux())
-                + "\t\t\t\t\t\t<logginginfo>\n"
-                + "\t\t\t\t\t\t\t<description></description>\n"
-                + "\t\t\t\t\t\t\t<scene></scene>\n"
-                + "\t\t\t\t\t\t\t<shottake></shottake>\n"
-                + "\t\t\t\t\t\t\t<lognote></lognote>\n"
-                + "\t\t\t\t\t\t</logginginfo>\n"
-                + "\t\t\t\t\t\t<labels>\n"
-                + "\t\t\t\t\t\t\t<label2>Iris</label2>\n"
-                + "\t\t\t\t\t\t</labels>\n"
-                + "\t\t\t\t\t</clipitem>\n";*/
+     * @param sink Où écrire l'XML.
+     * @param ids Les IDs du projet.
+     * @param m Le média audio.
+     * @param trackindex Numéro de la piste audio.
+     * @param start Image où commence l'audio dans la timeline.
+     * @param active Si le média est activé dans la timeline.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void addItemClipAudio(XmlSink sink, IdAllocator ids, MediaAudio m, int trackindex, int start, boolean active) throws IOException {
+        int clipitem = ids.nouveauClipitem();
+        int id = ids.getIdMedia(m);
 
         String nom_fichier = new File(m.getNomFichier().replace("\\", "/")).getName();
 
-        String xml = "\t\t\t\t\t<clipitem id=\"clipitem-" + clipitem + "\" premiereChannelType=\"mono\">\n"
-                + "\t\t\t\t\t\t<masterclipid>masterclip-" + m.getId() + "</masterclipid>\n"
-                + "\t\t\t\t\t\t<name>" + new File(m.getNomFichier().replace("\\", "/")).getName() + "</name>\n"
-                + "\t\t\t\t\t\t<enabled>" + ((active) ? "TRUE" : "FALSE") + "</enabled>\n"
-                + "\t\t\t\t\t\t<duration>" + (m.getDuree().toImage() - 1) + "</duration>\n"
-                + "\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                + "\t\t\t\t\t\t\t<ntsc>FALSE</ntsc>\n"
-                + "\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t<start>" + start.toImage() + "</start>\n"
-                + "\t\t\t\t\t\t<end>" + (start.toImage() + m.getDuree().toImage() - 1) + "</end>\n"
-                + "\t\t\t\t\t\t<in>" + m.getIn().toImage() + "</in>\n"
-                + "\t\t\t\t\t\t<out>" + m.getOut().toImage() + "</out>\n"
-                + "\t\t\t\t\t\t<pproTicksIn>0</pproTicksIn>\n"
-                + "\t\t\t\t\t\t<pproTicksOut>" + ((m.getOut().toImage() - 1) * 254016000000L / this.framerate) + "</pproTicksOut>\n"
-                + "\t\t\t\t\t\t<file id=\"file-" + m.getId() + "\">\n"
-                + "\t\t\t\t\t\t\t<name>" + nom_fichier + "</name>\n"
-                + "\t\t\t\t\t\t\t<pathurl>" + m.getLocalisation() + "</pathurl>\n"
-                + "\t\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                + "\t\t\t\t\t\t\t\t<ntsc>FALSE</ntsc>\n"
-                + "\t\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t\t<duration>" + m.getDureeFichier().toImage() + "</duration>\n"
-                + "\t\t\t\t\t\t\t<timecode>\n"
-                + "\t\t\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t\t\t<timebase>" + m.getFramerate() + "</timebase>\n"
-                + "\t\t\t\t\t\t\t\t\t<ntsc>FALSE</ntsc>\n"
-                + "\t\t\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t\t\t<string>" + m.getStart() + "</string>\n"
-                + "\t\t\t\t\t\t\t\t<frame>" + m.getStart().toImage() + "</frame>\n"
-                + "\t\t\t\t\t\t\t\t<displayformat>NDF</displayformat>\n"
-                + "\t\t\t\t\t\t\t</timecode>\n"
-                + "\t\t\t\t\t\t\t<media>\n";
-
-        for (int i = 0; i < m.getNombreCanaux(); i++) {
-            xml += "\t\t\t\t\t\t\t\t<audio>\n"
-                    + "\t\t\t\t\t\t\t\t\t<samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<depth>16</depth>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<samplerate>48000</samplerate>\n"
-                    + "\t\t\t\t\t\t\t\t\t</samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t\t<channelcount>1</channelcount>\n"
-                    + "\t\t\t\t\t\t\t\t\t<audiochannel>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<sourcechannel>" + (i + 1) + "</sourcechannel>\n"
-                    + "\t\t\t\t\t\t\t\t\t</audiochannel>\n"
-                    + "\t\t\t\t\t\t\t\t</audio>\n";
+        sink.debutBalise("clipitem").attribut("id", "clipitem-", clipitem).attribut("premiereChannelType", "mono").finBalise();
+        sink.element("masterclipid", "masterclip-" + id);
+        sink.element("name", nom_fichier);
+        sink.element("enabled", (active) ? "TRUE" : "FALSE");
+        long duree = m.getImageDuree();
+        RateInfo rate = this.getRate();
+
+        sink.element("duration", duree - 1);
+        this.rateClip(m).writeTo(sink);
+        sink.element("start", start - this.start);
+        sink.element("end", start - this.start + duree - 1);
+        sink.element("in", m.getImageIn());
+        sink.element("out", m.getImageOut());
+        sink.element("pproTicksIn", 0);
+        sink.element("pproTicksOut", rate.ticks(m.getImageOut() - 1));
+
+        if (ids.premiereDefinition(m)) {
+            m.writeFichierTo(sink, id, this.logiciel_destination);
+        } else {
+            sink.debutBalise("file").attribut("id", "file-", id).finBaliseVide();
         }
 
-        xml += "\t\t\t\t\t\t\t</media>\n"
-                + "\t\t\t\t\t\t</file>\n"
-                + "\t\t\t\t\t\t<sourcetrack>\n"
-                + "\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                + "\t\t\t\t\t\t\t<trackindex>" + m.getNumeroSourceCanal() + "</trackindex>\n"
-                + "\t\t\t\t\t\t</sourcetrack>\n"
-                /*+ "\t\t\t\t\t\t<link>\n"
-                + "\t\t\t\t\t\t\t<linkclipref>clipitem-53</linkclipref>\n"
-                + "\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                + "\t\t\t\t\t\t\t<trackindex>1</trackindex>\n"
-                + "\t\t\t\t\t\t\t<clipindex>1</clipindex>\n"
-                + "\t\t\t\t\t\t\t<groupindex>1</groupindex>\n"
-                + "\t\t\t\t\t\t</link>\n"*/
-                + "\t\t\t\t\t\t<logginginfo>\n"
-                + "\t\t\t\t\t\t\t<description></description>\n"
-                + "\t\t\t\t\t\t\t<scene></scene>\n"
-                + "\t\t\t\t\t\t\t<shottake></shottake>\n"
-                + "\t\t\t\t\t\t\t<lognote></lognote>\n"
-                + "\t\t\t\t\t\t\t<good></good>\n"
-                + "\t\t\t\t\t\t\t<originalvideofilename></originalvideofilename>\n"
-                + "\t\t\t\t\t\t\t<originalaudiofilename></originalaudiofilename>\n"
-                + "\t\t\t\t\t\t</logginginfo>\n"
-                + "\t\t\t\t\t\t<colorinfo>\n"
-                + "\t\t\t\t\t\t\t<lut></lut>\n"
-                + "\t\t\t\t\t\t\t<lut1></lut1>\n"
-                + "\t\t\t\t\t\t\t<asc_sop></asc_sop>\n"
-                + "\t\t\t\t\t\t\t<asc_sat></asc_sat>\n"
-                + "\t\t\t\t\t\t\t<lut2></lut2>\n"
-                + "\t\t\t\t\t\t</colorinfo>\n"
-                + "\t\t\t\t\t\t<labels>\n"
-                + "\t\t\t\t\t\t\t<label2>Caribbean</label2>\n"
-                + "\t\t\t\t\t\t</labels>\n"
-                + "\t\t\t\t\t</clipitem>\n";
-        return xml;
+        sink.ouvre("sourcetrack");
+        sink.element("mediatype", "audio");
+        sink.element("trackindex", m.getNumeroSourceCanal());
+        sink.ferme("sourcetrack");
+        sink.ouvre("logginginfo");
+        sink.element("description", "");
+        sink.element("scene", "");
+        sink.element("shottake", "");
+        sink.element("lognote", "");
+        sink.element("good", "");
+        sink.element("originalvideofilename", "");
+        sink.element("originalaudiofilename", "");
+        sink.ferme("logginginfo");
+        sink.ouvre("colorinfo");
+        sink.element("lut", "");
+        sink.element("lut1", "");
+        sink.element("asc_sop", "");
+        sink.element("asc_sat", "");
+        sink.element("lut2", "");
+        sink.ferme("colorinfo");
+        sink.ouvre("labels");
+        sink.element("label2", "Caribbean");
+        sink.ferme("labels");
+        sink.ferme("clipitem");
     }
 
     /**
+     * Écrit les liens vers les canaux audio d'un clip vidéo.
      *
-     * @param nb
-     * @return
+     * @param sink Où écrire l'XML.
+     * @param nb Nombre de canaux audio.
+     * @throws IOException Erreur d'écriture dans la sortie.
      */
-    private String canauxClip2(int nb) {
-        String xml = "";
-
+    private void canauxClip2(XmlSink sink, int nb) throws IOException {
         for (int i = 1; i <= nb; i++) {
-            xml += "\t\t\t\t\t\t<link>\n"
-                    + "\t\t\t\t\t\t\t<linkclipref>clipitem-" + (1 + i) + "</linkclipref>\n"
-                    + "\t\t\t\t\t\t\t<mediatype>audio</mediatype>\n"
-                    + "\t\t\t\t\t\t\t<trackindex>" + i + "</trackindex>\n"
-                    + "\t\t\t\t\t\t\t<clipindex>1</clipindex>\n"
-                    + "\t\t\t\t\t\t</link>\n";
+            sink.ouvre("link");
+            sink.element("linkclipref", "clipitem-" + (1 + i));
+            sink.element("mediatype", "audio");
+            sink.element("trackindex", i);
+            sink.element("clipindex", 1);
+            sink.ferme("link");
         }
-
-        return xml;
     }
 
     /**
+     * Met les timecodes d'un clip au framerate de la timeline. Si la timeline
+     * n'en a pas encore, elle prend celui des timecodes.
      *
-     * @param nb
-     * @param echantillon
-     * @param bit
-     * @return
-     */
-    private String canauxClip(int nb, int echantillon, int bit) {
-        String xml;
-
-        if (nb == 2) {
-            xml = "\t\t\t\t\t\t\t\t<audio>\n"
-                    + "\t\t\t\t\t\t\t\t\t<samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<depth>" + bit + "</depth>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<samplerate>" + echantillon + "</samplerate>\n"
-                    + "\t\t\t\t\t\t\t\t\t</samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t\t<channelcount>1</channelcount>\n"
-                    + "\t\t\t\t\t\t\t\t\t<layout>stereo</layout>\n"
-                    + "\t\t\t\t\t\t\t\t\t<audiochannel>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<sourcechannel>1</sourcechannel>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<channellabel>left</channellabel>\n"
-                    + "\t\t\t\t\t\t\t\t\t</audiochannel>\n"
-                    + "\t\t\t\t\t\t\t\t</audio>\n"
-                    + "\t\t\t\t\t\t\t\t<audio>\n"
-                    + "\t\t\t\t\t\t\t\t\t<samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<depth>" + bit + "</depth>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<samplerate>" + echantillon + "</samplerate>\n"
-                    + "\t\t\t\t\t\t\t\t\t</samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t\t<channelcount>1</channelcount>\n"
-                    + "\t\t\t\t\t\t\t\t\t<layout>stereo</layout>\n"
-                    + "\t\t\t\t\t\t\t\t\t<audiochannel>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<sourcechannel>2</sourcechannel>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<channellabel>right</channellabel>\n"
-                    + "\t\t\t\t\t\t\t\t\t</audiochannel>\n"
-                    + "\t\t\t\t\t\t\t\t</audio>\n";
-        } else {
-            xml = "\t\t\t\t\t\t\t\t<audio>\n"
-                    + "\t\t\t\t\t\t\t\t\t<samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<depth>" + bit + "</depth>\n"
-                    + "\t\t\t\t\t\t\t\t\t\t<samplerate>" + echantillon + "</samplerate>\n"
-                    + "\t\t\t\t\t\t\t\t\t</samplecharacteristics>\n"
-                    + "\t\t\t\t\t\t\t\t\t<channelcount>" + nb + "</channelcount>\n"
-                    + "\t\t\t\t\t\t\t\t</audio>\n";
+     * @param in Point in du clip dans la timeline.
+     * @param out Point out du clip dans la timeline.
+     */
+    private void conformiteFramerate(Timecode in, Timecode out) {
+        if (this.framerate != 0) {
+            in.setFramerate(this.framerate);
+        } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
+        else {
+            this.framerate = (int) in.getFramerate();
+        }
+
+        if (this.framerate != 0) {
+            out.setFramerate(this.framerate);
+        } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
+        else {
+            this.framerate = (int) out.getFramerate();
         }
-        return xml;
     }
 
     /**
@@ -1207,6 +639,69 @@ public final class Timeline {
         }*/
     }
 
+    /**
+     * Retourne l'XML d'un média tel que l'export l'écrit : son masterclip et
+     * son clipitem dans la timeline (pour chaque logiciel, avec ses propres
+     * IDs). Deux médias décrits par le même XML s'écrivent de la même façon.
+     *
+     * @param m Le média.
+     * @return Code XML.
+     */
+    String decrireClip(Media m) {
+        Logiciel logiciel_destination = this.logiciel_destination;
+        StringBuilder xml = new StringBuilder(m.toString());
+
+        try {
+            for (Logiciel logiciel : Logiciel.values()) {
+                this.logiciel_destination = logiciel;
+                xml.append(XmlSink.enChaine(sink -> {
+                    if (m instanceof MediaAudio) {
+                        this.addItemClipAudio(sink, new IdAllocator(), (MediaAudio) m, 1, (int) this.start, true);
+                    } else if (m instanceof MediaVideo) {
+                        this.addItemClipVideo(sink, new IdAllocator(), (MediaVideo) m, (int) this.start, true);
+                    }
+                }));
+            }
+        } finally {
+            this.logiciel_destination = logiciel_destination;
+        }
+
+        return xml.toString();
+    }
+
+    /**
+     * Écrit la timeline en EDL CMX3600 (piste vidéo 1 et pistes audio 1 à 4,
+     * voir {@link #writeEdlTo(Appendable, int) writeEdlTo}). Le fichier est
+     * créé ou remplacé.
+     *
+     * @param chemin Le fichier EDL.
+     * @throws IOException Erreur d'écriture du fichier.
+     */
+    public void exporterEDL(Path chemin) throws IOException {
+        try (FileChannel canal = FileChannel.open(chemin, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                SortieUtf8 sortie = new SortieUtf8(canal)) {
+            this.writeEdlTo(sortie, 1);
+        }
+    }
+
+    /**
+     * Retourne les clips audios de la timeline (en lecture seule).
+     *
+     * @return Les clips audios.
+     */
+    public TableClips getClipsAudio() {
+        return this.clips_audio;
+    }
+
+    /**
+     * Retourne les clips vidéos de la timeline (en lecture seule).
+     *
+     * @return Les clips vidéos.
+     */
+    public TableClips getClipsVideo() {
+        return this.clips_video;
+    }
+
     /**
      * Retourne le framerate de la timeline.
      *
@@ -1216,6 +711,24 @@ public final class Timeline {
         return this.framerate;
     }
 
+    /**
+     * Retourne le framerate de la timeline tel qu'il est écrit (voir
+     * {@link #setRate(RateInfo) setRate}).
+     *
+     * @return Le framerate.
+     */
+    public RateInfo getRate() {
+        RateInfo rate = this.rate;
+
+        // Le framerate a pu changer (timeline sans framerate qui prend celui d'un média).
+        if (rate == null || rate.getTimebase() != this.framerate) {
+            rate = RateInfo.de(this.framerate);
+            this.rate = rate;
+        }
+
+        return rate;
+    }
+
     /**
      * Retourne la hauteur en pixel de la timeline.
      *
@@ -1234,6 +747,86 @@ public final class Timeline {
         return this.largeur;
     }
 
+    /**
+     * Retourne le timecode début de la timeline en image.
+     *
+     * @return Timecode début en image.
+     */
+    public long getImageStart() {
+        return this.start;
+    }
+
+    /**
+     * Retourne la liste des marqueurs de la timeline, dans l'ordre des images
+     * in (une copie : pour ajouter un marqueur, voir
+     * {@link #addMarqueur(Marqueur) addMarqueur}).
+     *
+     * @return Liste des marqueurs.
+     */
+    public ArrayList<Marqueur> getListeMarqueur() {
+        return this.marqueurs.toList();
+    }
+
+    /**
+     * Retourne les marqueurs de la timeline, triés par image in.
+     *
+     * @return Les marqueurs.
+     */
+    public TableMarqueurs getMarqueurs() {
+        return this.marqueurs;
+    }
+
+    /**
+     * Retourne les marqueurs dont l'image in est dans un intervalle, dans
+     * l'ordre des images in (en {@code O(log n)} plus le nombre de marqueurs
+     * trouvés).
+     *
+     * @param in Première image de l'intervalle (position dans la timeline,
+     * comme {@link Marqueur#getImageIn() getImageIn}).
+     * @param out Dernière image (incluse) de l'intervalle.
+     * @return Les marqueurs.
+     */
+    public ArrayList<Marqueur> getMarqueurs(long in, long out) {
+        return this.marqueurs.getMarqueurs(in, out);
+    }
+
+    /**
+     * Retourne le nom de la timeline.
+     *
+     * @return Nom de la timeline.
+     */
+    public String getNom() {
+        return this.nom;
+    }
+
+    /**
+     * Retourne le nombre d'images occupées par des clips sur une piste audio
+     * entre deux timecodes (inclus).
+     *
+     * @param piste Le numéro de piste.
+     * @param de Timecode de début.
+     * @param a Timecode de fin.
+     * @return Nombre d'images occupées.
+     */
+    public int getOccupationAudio(int piste, Timecode de, Timecode a) {
+        OccupationPiste occupation = this.occupation_piste_audio.get(piste);
+        return (occupation == null) ? 0 : occupation.occupation(de.toImage(), a.toImage());
+    }
+
+    /**
+     * Retourne le nombre d'images occupées par des clips sur une piste vidéo
+     * entre deux timecodes (inclus).
+     *
+     * @param piste Le numéro de piste.
+     * @param de Timecode de début.
+     * @param a Timecode de fin.
+     * @return Nombre d'images occupées.
+     */
+    public int getOccupationVideo(int piste, Timecode de, Timecode a) {
+        OccupationPiste occupation = this.occupation_piste_video.get(piste);
+        return (occupation == null) ? 0 : occupation.occupation(de.toImage(), a.toImage());
+    }
+
     /**
      * Retourne le PAR de la timeline.
      *
@@ -1249,7 +842,43 @@ public final class Timeline {
      * @return Timecode début.
      */
     public Timecode getStartTc() {
-        return this.start_tc;
+        return new Timecode((int) this.start, this.framerate);
+    }
+
+    /**
+     * Ajoute les marqueurs d'un rapport CSV ou TSV (par exemple un rapport de
+     * contrôle qualité, voir {@link FormatMarqueursCSV}). Le fichier est lu en
+     * UTF-8 au fil de l'eau, directement dans les marqueurs de la timeline.
+     *
+     * @param chemin Le fichier.
+     * @param format Format du rapport.
+     * @return Nombre de marqueurs lus.
+     * @throws IOException Erreur de lecture du fichier.
+     */
+    public int importerMarqueurs(Path chemin, FormatMarqueursCSV format) throws IOException {
+        try (Reader lecteur = new InputStreamReader(Files.newInputStream(chemin), StandardCharsets.UTF_8)) {
+            return this.importerMarqueurs(lecteur, format);
+        }
+    }
+
+    /**
+     * Ajoute les marqueurs d'un rapport CSV ou TSV (voir
+     * {@link FormatMarqueursCSV}). Les timecodes du rapport sont des positions
+     * dans la timeline, au framerate de la timeline.
+     *
+     * @param lecteur Où lire le rapport (il n'est pas fermé).
+     * @param format Format du rapport.
+     * @return Nombre de marqueurs lus.
+     * @throws IOException Erreur de lecture.
+     */
+    public int importerMarqueurs(Reader lecteur, FormatMarqueursCSV format) throws IOException {
+        int nombre = new LecteurMarqueursCSV(lecteur, format, this.getRate(), this.marqueurs).lire();
+
+        if (nombre > 0) {
+            this.version++;
+        }
+
+        return nombre;
     }
 
     /**
@@ -1259,127 +888,193 @@ public final class Timeline {
      */
     @Override
     public String toString() {
+        return XmlSink.enChaine(this::writeTo);
+    }
+
+    /**
+     * Écrit la timeline en EDL CMX3600, directement depuis ses clips : une
+     * ligne par clip, la bobine du média ({@link Media#getNomBobine()
+     * getNomBobine}) et les marqueurs en lignes {@code * LOC:}. CMX3600 n'a
+     * qu'une piste vidéo : une EDL par piste vidéo.
+     *
+     * @param sortie Où écrire l'EDL.
+     * @param piste_video Numéro de la piste vidéo à écrire.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeEdlTo(Appendable sortie, int piste_video) throws IOException {
+        new EcrivainEDL(this, sortie).ecrire(piste_video);
+    }
+
+    /**
+     * Écrit le code XML de la timeline pour générer le projet Adobe Premiere
+     * (avec ses propres IDs).
+     *
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeTo(XmlSink sink) throws IOException {
+        IdAllocator ids = new IdAllocator();
+        ids.reserver(this);
+        ids.figer();
+        this.writeTo(sink, ids);
+    }
+
+    /**
+     * Écrit le code XML de la timeline pour générer le projet Adobe Premiere.
+     *
+     * @param sink Où écrire l'XML.
+     * @param ids Les IDs du projet.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeTo(XmlSink sink, IdAllocator ids) throws IOException {
+        IdAllocator reservation = ids.pour(this);
+        Object[] signature = reservation.getSignature();
+
+        // Sans réservation, pas de signature : rien à réutiliser (et la timeline est écrite sur ce seul thread).
+        if (signature == null) {
+            this.preparer();
+            this.ecrireSequence(sink, reservation);
+            return;
+        }
+
+        RenduCache rendu = this.cache;
+        String xml_rendu = (rendu != null) ? rendu.getXml(signature, sink) : null;
+
+        if (xml_rendu != null) {
+            rendu.writeTo(sink, xml_rendu);
+            return;
+        }
+
+        // Écrit au fil de l'eau : une très grande séquence n'est pas gardée.
+        String xml = sink.ecrireCopie(s -> this.ecrireSequence(s, reservation));
+        this.cache = (xml != null) ? new RenduCache(signature, sink, xml) : null;
+    }
+
+    /**
+     * Écrit la séquence.
+     *
+     * @param sink Où écrire l'XML.
+     * @param ids Les IDs de la timeline.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void ecrireSequence(XmlSink sink, IdAllocator ids) throws IOException {
+        RateInfo rate = this.getRate();
+
         // Informations générales :
-        String xml = "\t<sequence id=\"sequence-" + (this.numero_timeline + 1) + "\" TL.SQAudioVisibleBase=\"0\" TL.SQVideoVisibleBase=\"0\" ";
-        xml += "TL.SQVisibleBaseTime=\"0\" TL.SQAVDividerPosition=\"0.5\" TL.SQHideShyTracks=\"0\" ";
-        xml += "TL.SQHeaderWidth=\"236\" Monitor.ProgramZoomOut=\"1461057696000000\" ";
-        xml += "Monitor.ProgramZoomIn=\"0\" TL.SQTimePerPixel=\"5.6763479296991362\" ";
-        xml += "MZ.EditLine=\"" + (this.position_curseur * 254016000000L / this.framerate) + "\" MZ.Sequence.PreviewFrameSizeHeight=\"" + this.hauteur + "\" "; // MZ.EditLine = où doit se trouver le marqueur.
-        xml += "MZ.Sequence.PreviewFrameSizeWidth=\"" + this.largeur + "\" MZ.Sequence.AudioTimeDisplayFormat=\"200\" ";
-        xml += "MZ.Sequence.PreviewRenderingClassID=\"1061109567\" MZ.Sequence.PreviewRenderingPresetCodec=\"1096172337\" ";
-        xml += "MZ.Sequence.PreviewRenderingPresetPath=\"EncoderPresets\\SequencePreview\\9678af98-a7b7-4bdb-b477-7ac9c8df4a4e\\I-Frame Only MPEG.epr\" ";
-        xml += "MZ.Sequence.PreviewUseMaxRenderQuality=\"false\" MZ.Sequence.PreviewUseMaxBitDepth=\"false\" ";
-        xml += "MZ.Sequence.EditingModeGUID=\"9678af98-a7b7-4bdb-b477-7ac9c8df4a4e\" ";
-        xml += "MZ.Sequence.VideoTimeDisplayFormat=\"100\" MZ.WorkOutPoint=\"1461057696000000\" MZ.WorkInPoint=\"0\" ";
-        xml += "MZ.ZeroPoint=\"" + (this.start_tc.toImage() * 254016000000L / this.framerate) + "\" explodedTracks=\"true\">\n";
-        xml += "\t\t<uuid>" + /*this.uuid[numero_timeline]*/ UUID.randomUUID().toString() + "</uuid>\n";
-        xml += "\t\t<duration>" + this.liste_media_video.get(0).getDuree().toImage() + "</duration>\n";
-        xml += "\t\t<rate>\n";
-        xml += "\t\t\t<timebase>" + this.framerate + "</timebase>\n";
-        xml += "\t\t\t<ntsc>FALSE</ntsc>\n";
-        xml += "\t\t</rate>\n";
-        xml += "\t\t<name>" + this.nom + "</name>\n";
+        sink.debutBalise("sequence")
+                .attribut("id", "sequence-", ids.nouvelleSequence())
+                .attribut("TL.SQAudioVisibleBase", "0")
+                .attribut("TL.SQVideoVisibleBase", "0")
+                .attribut("TL.SQVisibleBaseTime", "0")
+                .attribut("TL.SQAVDividerPosition", "0.5")
+                .attribut("TL.SQHideShyTracks", "0")
+                .attribut("TL.SQHeaderWidth", "236")
+                .attribut("Monitor.ProgramZoomOut", "1461057696000000")
+                .attribut("Monitor.ProgramZoomIn", "0")
+                .attribut("TL.SQTimePerPixel", "5.6763479296991362")
+                // MZ.EditLine = où doit se trouver le marqueur.
+                .attribut("MZ.EditLine", rate.ticks(this.position_curseur))
+                .attribut("MZ.Sequence.PreviewFrameSizeHeight", this.hauteur)
+                .attribut("MZ.Sequence.PreviewFrameSizeWidth", this.largeur)
+                .attribut("MZ.Sequence.AudioTimeDisplayFormat", "200")
+                .attribut("MZ.Sequence.PreviewRenderingClassID", "1061109567")
+                .attribut("MZ.Sequence.PreviewRenderingPresetCodec", "1096172337")
+                .attribut("MZ.Sequence.PreviewRenderingPresetPath", "EncoderPresets\\SequencePreview\\9678af98-a7b7-4bdb-b477-7ac9c8df4a4e\\I-Frame Only MPEG.epr")
+                .attribut("MZ.Sequence.PreviewUseMaxRenderQuality", "false")
+                .attribut("MZ.Sequence.PreviewUseMaxBitDepth", "false")
+                .attribut("MZ.Sequence.EditingModeGUID", "9678af98-a7b7-4bdb-b477-7ac9c8df4a4e")
+                .attribut("MZ.Sequence.VideoTimeDisplayFormat", "100")
+                .attribut("MZ.WorkOutPoint", "1461057696000000")
+                .attribut("MZ.WorkInPoint", "0")
+                .attribut("MZ.ZeroPoint", rate.ticks(this.start))
+                .attribut("explodedTracks", "true")
+                .finBalise();
+        sink.element("uuid", this.uuid_sequence);
+        // Durée du premier média de la séquence (vidéo, sinon audio).
+        TableClips premiers = (this.clips_video.getTaille() > 0) ? this.clips_video : this.clips_audio;
+        sink.element("duration", (premiers.getTaille() > 0) ? premiers.getMedia(0).getImageDuree() : 0);
+        rate.writeTo(sink);
+        sink.element("name", this.nom);
 
         // Les médias dans la timeline.
-        xml += "\t\t<media>\n";
+        sink.ouvre("media");
 
         // La partie image de la timeline:
-        xml += "\t\t\t<video>\n"
-                + "\t\t\t\t<format>\n"
-                + "\t\t\t\t\t<samplecharacteristics>\n"
-                + "\t\t\t\t\t\t<rate>\n"
-                + "\t\t\t\t\t\t\t<timebase>" + this.framerate + "</timebase>\n"
-                + "\t\t\t\t\t\t\t<ntsc>FALSE</ntsc>\n"
-                + "\t\t\t\t\t\t</rate>\n"
-                + "\t\t\t\t\t\t<codec>\n"
-                + "\t\t\t\t\t\t\t<name>Apple ProRes 422</name>\n"
-                + "\t\t\t\t\t\t\t<appspecificdata>\n"
-                + "\t\t\t\t\t\t\t\t<appname>Final Cut Pro</appname>\n"
-                + "\t\t\t\t\t\t\t\t<appmanufacturer>Apple Inc.</appmanufacturer>\n"
-                + "\t\t\t\t\t\t\t\t<appversion>7.0</appversion>\n"
-                + "\t\t\t\t\t\t\t\t<data>\n"
-                + "\t\t\t\t\t\t\t\t\t<qtcodec>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<codecname>Apple ProRes 422</codecname>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<codectypename>Apple ProRes 422</codectypename>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<codectypecode>apcn</codectypecode>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<codecvendorcode>appl</codecvendorcode>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<spatialquality>1024</spatialquality>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<temporalquality>0</temporalquality>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<keyframerate>0</keyframerate>\n"
-                + "\t\t\t\t\t\t\t\t\t\t<datarate>0</datarate>\n"
-                + "\t\t\t\t\t\t\t\t\t</qtcodec>\n"
-                + "\t\t\t\t\t\t\t\t</data>\n"
-                + "\t\t\t\t\t\t\t</appspecificdata>\n"
-                + "\t\t\t\t\t\t</codec>\n"
-                + "\t\t\t\t\t\t<width>" + this.largeur + "</width>\n"
-                + "\t\t\t\t\t\t<height>" + this.hauteur + "</height>\n"
-                + "\t\t\t\t\t\t<anamorphic>FALSE</anamorphic>\n"
-                + "\t\t\t\t\t\t<pixelaspectratio>square</pixelaspectratio>\n"
-                + "\t\t\t\t\t\t<fielddominance>none</fielddominance>\n"
-                + "\t\t\t\t\t\t<colordepth>24</colordepth>\n"
-                + "\t\t\t\t\t</samplecharacteristics>\n"
-                + "\t\t\t\t</format>\n";
-
-        ArrayList<Integer> num_piste = new ArrayList<>();
-        int max = 0;
-
-        for (Integer piste_video : this.liste_piste_video) {
-            if (!num_piste.contains(piste_video)) {
-                num_piste.add(piste_video);
-
-                // Piste max:
-                if (piste_video > max) {
-                    max = piste_video;
-                }
-            }
-        }
+        sink.ouvre("video");
+        sink.ouvre("format");
+        sink.ouvre("samplecharacteristics");
+        rate.writeTo(sink);
+        sink.ouvre("codec");
+        sink.element("name", "Apple ProRes 422");
+        sink.ouvre("appspecificdata");
+        sink.element("appname", "Final Cut Pro");
+        sink.element("appmanufacturer", "Apple Inc.");
+        sink.element("appversion", "7.0");
+        sink.ouvre("data");
+        sink.ouvre("qtcodec");
+        sink.element("codecname", "Apple ProRes 422");
+        sink.element("codectypename", "Apple ProRes 422");
+        sink.element("codectypecode", "apcn");
+        sink.element("codecvendorcode", "appl");
+        sink.element("spatialquality", 1024);
+        sink.element("temporalquality", 0);
+        sink.element("keyframerate", 0);
+        sink.element("datarate", 0);
+        sink.ferme("qtcodec");
+        sink.ferme("data");
+        sink.ferme("appspecificdata");
+        sink.ferme("codec");
+        sink.element("width", this.largeur);
+        sink.element("height", this.hauteur);
+        sink.element("anamorphic", "FALSE");
+        sink.element("pixelaspectratio", "square");
+        sink.element("fielddominance", "none");
+        sink.element("colordepth", 24);
+        sink.ferme("samplecharacteristics");
+        sink.ferme("format");
+
+        // Piste max:
+        int max = this.clips_video.getPisteMax();
 
         // Crée chaque piste vidéo (Track / piste 1) :
         for (int i = 1; i <= max; i++) {
-            xml += "\t\t\t\t<track TL.SQTrackShy=\"0\" TL.SQTrackExpandedHeight=\"25\" TL.SQTrackExpanded=\"0\" MZ.TrackTargeted=\"1\">\n";
-
-            for (int j = 0; j < this.liste_piste_video.size(); j++) {
-                // Piste actuelle :
-                if (this.liste_piste_video.get(j) == i) {
-                    if (this.liste_media_video.get(j) instanceof MediaVideo) {
-                        xml += this.addItemClipVideo((MediaVideo) this.liste_media_video.get(j), this.liste_tc_start_video.get(j), this.liste_active_video.get(j));
-                    }
+            sink.debutBalise("track")
+                    .attribut("TL.SQTrackShy", "0")
+                    .attribut("TL.SQTrackExpandedHeight", "25")
+                    .attribut("TL.SQTrackExpanded", "0")
+                    .attribut("MZ.TrackTargeted", "1")
+                    .finBalise();
+
+            // Les clips de la piste actuelle :
+            for (int j = this.clips_video.getPremierClip(i); j >= 0; j = this.clips_video.getClipSuivant(j)) {
+                if (this.clips_video.getMedia(j) instanceof MediaVideo) {
+                    this.addItemClipVideo(sink, ids, (MediaVideo) this.clips_video.getMedia(j), this.clips_video.getDebut(j), this.clips_video.isActive(j));
                 }
             }
 
-            xml += "\t\t\t\t\t<enabled>TRUE</enabled>\n"
-                    // Si on verrouille la piste vidéo.
-                    + "\t\t\t\t\t<locked>" + ((this.liste_piste_video_verrouiller.contains(i) || this.verrouiller_piste_video) ? "TRUE" : "FALSE") + "</locked>\n"
-                    + "\t\t\t\t</track>\n";
+            sink.element("enabled", "TRUE");
+            // Si on verrouille la piste vidéo.
+            sink.element("locked", (this.liste_piste_video_verrouiller.contains(i) || this.verrouiller_piste_video) ? "TRUE" : "FALSE");
+            sink.ferme("track");
         }
 
-        xml += "\t\t\t</video>\n"
-                + // La partie audio de la timeline :
-                "\t\t\t<audio>\n"
-                + "\t\t\t\t<numOutputChannels>" + this.nombre_canaux + "</numOutputChannels>\n"
-                + "\t\t\t\t<format>\n"
-                + "\t\t\t\t\t<samplecharacteristics>\n"
-                + "\t\t\t\t\t\t<depth>16</depth>\n"
-                + "\t\t\t\t\t\t<samplerate>48000</samplerate>\n"
-                + "\t\t\t\t\t</samplecharacteristics>\n"
-                + "\t\t\t\t</format>\n"
-                + "\t\t\t\t<outputs>\n"
-                + this.outputGroupe(this.nombre_canaux)
-                + "\t\t\t\t</outputs>\n";
-
-        ArrayList<Integer> num_piste_audio = new ArrayList<>();
-        int max_audio = 0;
-
-        for (Integer piste_audio : this.liste_piste_audio) {
-            if (!num_piste_audio.contains(piste_audio)) {
-                num_piste_audio.add(piste_audio);
-
-                // Piste max:
-                if (piste_audio > max_audio) {
-                    max_audio = piste_audio;
-                }
-            }
-        }
+        sink.ferme("video");
+
+        // La partie audio de la timeline :
+        sink.ouvre("audio");
+        sink.element("numOutputChannels", this.nombre_canaux);
+        sink.ouvre("format");
+        sink.ouvre("samplecharacteristics");
+        sink.element("depth", 16);
+        sink.element("samplerate", 48000);
+        sink.ferme("samplecharacteristics");
+        sink.ferme("format");
+        sink.ouvre("outputs");
+        this.outputGroupe(sink, this.nombre_canaux);
+        sink.ferme("outputs");
+
+        // Piste max:
+        int max_audio = this.clips_audio.getPisteMax();
 
         if (max_audio < this.nombre_canaux) {
             max_audio = this.nombre_canaux;
@@ -1387,104 +1082,179 @@ public final class Timeline {
 
         // Crée chaque piste audio :
         for (int i = 1; i <= max_audio; i++) {
-            if (i % 2 == 1) {
-                xml += "\t\t\t\t<track monotrack=\"TRUE\" TL.SQTrackAudioKeyframeStyle=\"0\" TL.SQTrackShy=\"0\" TL.SQTrackExpandedHeight=\"25\" TL.SQTrackExpanded=\"0\" MZ.TrackTargeted=\"1\" PannerCurrentValue=\"0\" PannerIsInverted=\"true\" PannerStartKeyframe=\"-91445760000000000,0.,0,0,0,0,0,0\" PannerName=\"Pan\" currentExplodedTrackIndex=\"0\" totalExplodedTrackCount=\"1\" premiereTrackType=\"Mono\">\n";
+            sink.debutBalise("track")
+                    .attribut("monotrack", "TRUE")
+                    .attribut("TL.SQTrackAudioKeyframeStyle", "0")
+                    .attribut("TL.SQTrackShy", "0")
+                    .attribut("TL.SQTrackExpandedHeight", "25")
+                    .attribut("TL.SQTrackExpanded", "0")
+                    .attribut("MZ.TrackTargeted", "1");
 
+            if (i % 2 == 1) {
+                sink.attribut("PannerCurrentValue", "0")
+                        .attribut("PannerIsInverted", "true")
+                        .attribut("PannerStartKeyframe", "-91445760000000000,0.,0,0,0,0,0,0");
             } else {
-                xml += "\t\t\t\t<track monotrack=\"TRUE\" TL.SQTrackAudioKeyframeStyle=\"0\" TL.SQTrackShy=\"0\" TL.SQTrackExpandedHeight=\"25\" TL.SQTrackExpanded=\"0\" MZ.TrackTargeted=\"1\" PannerIsInverted=\"true\" PannerName=\"Pan\" currentExplodedTrackIndex=\"0\" totalExplodedTrackCount=\"1\" premiereTrackType=\"Mono\">\n";
+                sink.attribut("PannerIsInverted", "true");
             }
 
-            for (int j = 0; j < this.liste_piste_audio.size(); j++) {
-                // Piste actuelle :
-                if (this.liste_piste_audio.get(j) == i) {
-                    if (this.liste_media_audio.get(j) instanceof MediaAudio) {
-                        xml += this.addItemClipAudio((MediaAudio) this.liste_media_audio.get(j), i, this.liste_tc_start_audio.get(j), this.liste_active_audio.get(j));
-                    }
+            sink.attribut("PannerName", "Pan")
+                    .attribut("currentExplodedTrackIndex", "0")
+                    .attribut("totalExplodedTrackCount", "1")
+                    .attribut("premiereTrackType", "Mono")
+                    .finBalise();
+
+            // Les clips de la piste actuelle :
+            for (int j = this.clips_audio.getPremierClip(i); j >= 0; j = this.clips_audio.getClipSuivant(j)) {
+                if (this.clips_audio.getMedia(j) instanceof MediaAudio) {
+                    this.addItemClipAudio(sink, ids, (MediaAudio) this.clips_audio.getMedia(j), i, this.clips_audio.getDebut(j), this.clips_audio.isActive(j));
                 }
             }
 
-            xml += "\t\t\t\t\t<enabled>TRUE</enabled>\n"
-                    + "\t\t\t\t\t<locked>" + ((this.liste_piste_audio_verrouiller.contains(i) || this.verrouiller_piste_audio) ? "TRUE" : "FALSE") + "</locked>\n"
-                    + "\t\t\t\t\t<outputchannelindex>" + i + "</outputchannelindex>\n"
-                    + "\t\t\t\t</track>\n";
+            sink.element("enabled", "TRUE");
+            sink.element("locked", (this.liste_piste_audio_verrouiller.contains(i) || this.verrouiller_piste_audio) ? "TRUE" : "FALSE");
+            sink.element("outputchannelindex", i);
+            sink.ferme("track");
         }
 
-        /*+ "\t\t\t\t<track monotrack=\"TRUE\" TL.SQTrackAudioKeyframeStyle=\"0\" TL.SQTrackShy=\"0\" TL.SQTrackExpandedHeight=\"25\" TL.SQTrackExpanded=\"0\" MZ.TrackTargeted=\"1\" PannerCurrentValue=\"0\" PannerIsInverted=\"true\" PannerStartKeyframe=\"-91445760000000000,0.,0,0,0,0,0,0\" PannerName=\"Pan\" currentExplodedTrackIndex=\"0\" totalExplodedTrackCount=\"1\" premiereTrackType=\"Mono\">\n"
-                + // Si le fichier vidéo a une piste audio, on l'ajoute:
-                ((((MediaVideo) this.liste_media_video.get(0)).getCanaux() >= 1) ? addItemClipAudio((MediaVideo) this.liste_media_video.get(0), 1) : "")
-                + "\t\t\t\t\t<enabled>TRUE</enabled>\n"
-                + "\t\t\t\t\t<locked>" + ((this.liste_piste_audio_verrouiller.contains(1) || this.verrouiller_piste_audio) ? "TRUE" : "FALSE") + "</locked>\n"
-                + "\t\t\t\t\t<outputchannelindex>1</outputchannelindex>\n"
-                + "\t\t\t\t</track>\n"
-                + "\t\t\t\t<track monotrack=\"TRUE\" TL.SQTrackAudioKeyframeStyle=\"0\" TL.SQTrackShy=\"0\" TL.SQTrackExpandedHeight=\"25\" TL.SQTrackExpanded=\"0\" MZ.TrackTargeted=\"1\" PannerIsInverted=\"true\" PannerName=\"Pan\" currentExplodedTrackIndex=\"0\" totalExplodedTrackCount=\"1\" premiereTrackType=\"Mono\">\n"
-                + // Si le fichier vidéo a au moins 2 pistes audio, on l'ajoute:
-                ((((MediaVideo) this.liste_media_video.get(0)).getCanaux() >= 2) ? addItemClipAudio((MediaVideo) this.liste_media_video.get(0), 2) : "")
-                + "\t\t\t\t\t<enabled>TRUE</enabled>\n"
-                + "\t\t\t\t\t<locked>" + ((this.liste_piste_audio_verrouiller.contains(2) || this.verrouiller_piste_audio) ? "TRUE" : "FALSE") + "</locked>\n"
-                + "\t\t\t\t\t<outputchannelindex>2</outputchannelindex>\n"
-                + "\t\t\t\t</track>\n"
-                + "\t\t\t\t<track monotrack=\"TRUE\" TL.SQTrackAudioKeyframeStyle=\"0\" TL.SQTrackShy=\"0\" TL.SQTrackExpandedHeight=\"25\" TL.SQTrackExpanded=\"0\" MZ.TrackTargeted=\"1\" PannerCurrentValue=\"0\" PannerIsInverted=\"true\" PannerStartKeyframe=\"-91445760000000000,0.,0,0,0,0,0,0\" PannerName=\"Pan\" currentExplodedTrackIndex=\"0\" totalExplodedTrackCount=\"1\" premiereTrackType=\"Mono\">\n"
-                + // Si le fichier vidéo a au moins 3 pistes audio, on l'ajoute:
-                ((((MediaVideo) this.liste_media_video.get(0)).getCanaux() >= 3) ? addItemClipAudio((MediaVideo) this.liste_media_video.get(0), 3) : "")
-                + "\t\t\t\t\t<enabled>TRUE</enabled>\n"
-                + "\t\t\t\t\t<locked>" + ((this.liste_piste_audio_verrouiller.contains(3) || this.verrouiller_piste_audio) ? "TRUE" : "FALSE") + "</locked>\n"
-                + "\t\t\t\t\t<outputchannelindex>3</outputchannelindex>\n"
-                + "\t\t\t\t</track>\n"
-                + "\t\t\t\t<track monotrack=\"TRUE\" TL.SQTrackAudioKeyframeStyle=\"0\" TL.SQTrackShy=\"0\" TL.SQTrackExpandedHeight=\"25\" TL.SQTrackExpanded=\"0\" MZ.TrackTargeted=\"1\" PannerIsInverted=\"true\" PannerName=\"Pan\" currentExplodedTrackIndex=\"0\" totalExplodedTrackCount=\"1\" premiereTrackType=\"Mono\">\n"
-                + // Si le fichier vidéo a au moins 4 pistes audio, on l'ajoute:
-                ((((MediaVideo) this.liste_media_video.get(0)).getCanaux() >= 4) ? addItemClipAudio((MediaVideo) this.liste_media_video.get(0), 4) : "")
-                + "\t\t\t\t\t<enabled>TRUE</enabled>\n"
-                + "\t\t\t\t\t<locked>" + ((this.liste_piste_audio_verrouiller.contains(4) || this.verrouiller_piste_audio) ? "TRUE" : "FALSE") + "</locked>\n"
-                + "\t\t\t\t\t<outputchannelindex>4</outputchannelindex>\n"
-                + "\t\t\t\t</track>\n"*/
-        xml += "\t\t\t</audio>\n";
-
-        xml += "\t\t</media>\n";
+        sink.ferme("audio");
+
+        sink.ferme("media");
 
         // Information de timecode:
-        xml += "\t\t<timecode>\n";
-        xml += "\t\t\t<rate>\n";
-        xml += "\t\t\t\t<timebase>" + this.framerate + "</timebase>\n";
-        xml += "\t\t\t\t<ntsc>FALSE</ntsc>\n";
-        xml += "\t\t\t</rate>\n";
-        xml += "\t\t\t<string>" + this.start_tc + "</string>\n";
-        xml += "\t\t\t<frame>" + this.start_tc.toImage() + "</frame>\n";
-        xml += "\t\t\t<displayformat>NDF</displayformat>\n";
-        xml += "\t\t</timecode>\n";
-
-        // Les marques :
-        for (Marqueur marqueur : this.liste_marqueur) {
-            xml += this.addMarqueurTimeline(marqueur);
+        sink.ouvre("timecode");
+        rate.writeTo(sink);
+        sink.element("string", rate.timecode(this.start));
+        sink.element("frame", this.start);
+        sink.element("displayformat", rate.getDisplayFormat());
+        sink.ferme("timecode");
+
+        // Les marques (déjà dans l'ordre) :
+        for (int i = 0; i < this.marqueurs.getTaille(); i++) {
+            this.marqueurs.getMarqueur(i).writeTo(sink, this.start, this.logiciel_destination);
         }
 
-        xml += "\t\t<labels>\n";
-        xml += "\t\t\t<label2>Forest</label2>\n";
-        xml += "\t\t</labels>\n";
-        xml += "\t</sequence>\n";
+        sink.ouvre("labels");
+        sink.element("label2", "Forest");
+        sink.ferme("labels");
+        sink.ferme("sequence");
+    }
 
-        return xml;
+    /**
+     * Écrit les groupes de sortie audio.
+     *
+     * @param sink Où écrire l'XML.
+     * @param nb Nombre de canaux.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void outputGroupe(XmlSink sink, int nb) throws IOException {
+        for (int i = 1; i <= nb; i++) {
+            sink.ouvre("group");
+            sink.element("index", i);
+            sink.element("numchannels", 1);
+            sink.element("downmix", 0);
+            sink.ouvre("channel");
+            sink.element("index", i);
+            sink.ferme("channel");
+            sink.ferme("group");
+        }
     }
 
     /**
+     * Trie les clips de chaque piste par début et donne le logiciel de
+     * destination de la timeline à ses médias vidéos (leur position en
+     * dépend). C'est fait avant l'écriture, à la réservation : ni la
+     * timeline ni les médias partagés ne sont modifiés pendant que des
+     * timelines sont écrites en parallèle.
+     */
+    private void preparer() {
+        this.clips_video.trier();
+        this.clips_audio.trier();
+
+        for (int i = 0; i < this.clips_video.getTaille(); i++) {
+            Media m = this.clips_video.getMedia(i);
+
+            if (m instanceof MediaVideo) {
+                ((MediaVideo) m).setLogicielDestination(this.logiciel_destination);
+            }
+        }
+    }
+
+    /**
+     * Retourne le framerate d'un clip : celui de la timeline si le média a la
+     * même base de temps sans être NTSC (il est conformé à la timeline),
+     * celui du média sinon.
      *
-     * @param nb
-     * @return
+     * @param media Le média du clip.
+     * @return Le framerate du clip.
      */
-    private String outputGroupe(int nb) {
-        String xml = "";
+    private RateInfo rateClip(Media media) {
+        RateInfo rate_media = media.getRate();
 
-        for (int i = 1; i <= nb; i++) {
-            xml += "\t\t\t\t\t<group>\n"
-                    + "\t\t\t\t\t\t<index>" + i + "</index>\n"
-                    + "\t\t\t\t\t\t<numchannels>1</numchannels>\n"
-                    + "\t\t\t\t\t\t<downmix>0</downmix>\n"
-                    + "\t\t\t\t\t\t<channel>\n"
-                    + "\t\t\t\t\t\t\t<index>" + i + "</index>\n"
-                    + "\t\t\t\t\t\t</channel>\n"
-                    + "\t\t\t\t\t</group>\n";
+        if (!rate_media.isNtsc() && rate_media.getTimebase() == this.framerate) {
+            return this.getRate();
         }
 
-        return xml;
+        return rate_media;
+    }
+
+    /**
+     * Réserve les IDs que la timeline utilisera, dans l'ordre où
+     * {@link #writeTo(XmlSink, IdAllocator) writeTo} les demande.
+     *
+     * @param ids Les IDs du projet.
+     * @param reservation La réservation de la timeline.
+     * @param signature Où ajouter ce dont dépend le rendu de la timeline
+     * (voir {@link RenduCache}).
+     */
+    void reserverIds(IdAllocator ids, IdAllocator reservation, List<Object> signature) {
+        // Avant de signer les médias : leur version en tient compte.
+        this.preparer();
+
+        signature.add(this.version);
+        signature.add(EffectSerializers.getVersion());
+
+        for (int i = 0; i < this.marqueurs.getTaille(); i++) {
+            Marqueur marqueur = this.marqueurs.getMarqueur(i);
+            signature.add(marqueur);
+            signature.add(marqueur.getVersion());
+        }
+
+        for (int i = 1; i <= this.clips_video.getPisteMax(); i++) {
+            for (int j = this.clips_video.getPremierClip(i); j >= 0; j = this.clips_video.getClipSuivant(j)) {
+                Media m = this.clips_video.getMedia(j);
+
+                m.signer(signature);
+
+                if (m instanceof MediaVideo) {
+                    ids.nouveauClipitem();
+                    signature.add(ids.getIdMedia(m));
+
+                    if (!m.getTypeMedia().equals("genere") && ids.premiereDefinition(m)) {
+                        reservation.reserverDefinition(m);
+                        signature.add(Boolean.TRUE);
+                    }
+                }
+            }
+        }
+
+        for (int i = 1; i <= this.clips_audio.getPisteMax(); i++) {
+            for (int j = this.clips_audio.getPremierClip(i); j >= 0; j = this.clips_audio.getClipSuivant(j)) {
+                Media m = this.clips_audio.getMedia(j);
+
+                m.signer(signature);
+
+                if (m instanceof MediaAudio) {
+                    ids.nouveauClipitem();
+                    signature.add(ids.getIdMedia(m));
+
+                    if (ids.premiereDefinition(m)) {
+                        reservation.reserverDefinition(m);
+                        signature.add(Boolean.TRUE);
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -1494,6 +1264,7 @@ public final class Timeline {
      */
     public void setCanaux(int nombre_canaux) {
         this.nombre_canaux = nombre_canaux;
+        this.version++;
     }
 
     /**
@@ -1505,6 +1276,7 @@ public final class Timeline {
     public void setDimension(int largeur, int hauteur) {
         this.largeur = largeur;
         this.hauteur = hauteur;
+        this.version++;
     }
 
     /**
@@ -1514,6 +1286,7 @@ public final class Timeline {
      */
     public void setLogicielDestination(Logiciel logiciel_destination) {
         this.logiciel_destination = logiciel_destination;
+        this.version++;
     }
 
     /**
@@ -1523,6 +1296,7 @@ public final class Timeline {
      */
     public void setPAR(float par) {
         this.par = par;
+        this.version++;
     }
 
     /**
@@ -1532,6 +1306,19 @@ public final class Timeline {
      */
     public void setPositionCurseur(int position_curseur) {
         this.position_curseur = position_curseur;
+        this.version++;
+    }
+
+    /**
+     * Modifie le framerate de la timeline, par exemple
+     * {@link RateInfo#IMAGES_29_97_DF} pour une séquence NTSC drop-frame.
+     *
+     * @param rate Le framerate.
+     */
+    public void setRate(RateInfo rate) {
+        this.framerate = rate.getTimebase();
+        this.rate = rate;
+        this.version++;
     }
 
     /**
@@ -1540,13 +1327,15 @@ public final class Timeline {
      * @param startTc Le timecode de début.
      */
     public void setStart(Timecode startTc) {
-        this.start_tc = startTc;
         if (this.framerate != 0) {
-            this.start_tc.setFramerate(this.framerate);
+            startTc.setFramerate(this.framerate);
         } // Sinon, on affecte le framerate du timecode (s'il en a un) à média.
         else {
-            this.framerate = (int) this.start_tc.getFramerate();
+            this.framerate = (int) startTc.getFramerate();
         }
+
+        this.start = startTc.toImage();
+        this.version++;
     }
 
     /**
@@ -1554,6 +1343,7 @@ public final class Timeline {
      */
     public void verrouillerPisteAudio() {
         this.verrouiller_piste_audio = true;
+        this.version++;
     }
 
     /**
@@ -1577,6 +1367,8 @@ public final class Timeline {
         } else {
             this.liste_piste_audio_verrouiller.remove(numero_piste);
         }
+
+        this.version++;
     }
 
     /**
@@ -1584,6 +1376,7 @@ public final class Timeline {
      */
     public void verrouillerPisteVideo() {
         this.verrouiller_piste_video = true;
+        this.version++;
     }
 
     /**
@@ -1608,5 +1401,7 @@ public final class Timeline {
         } else {
             this.liste_piste_video_verrouiller.remove(numero_piste);
         }
+
+        this.version++;
     }
 }
@@ -1,13 +1,27 @@
 package com.phenix.xmlfcp7;
 
+import com.phenix.xmlfcp7.enums.PrettyPrint;
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.stream.XMLStreamException;
 
 /**
  * XML Final Cut Pro 7.
@@ -16,6 +30,11 @@ import java.util.ArrayList;
  */
 public final class XMLFCP7 {
 
+    /**
+     * Taille du tampon du compresseur gzip.
+     */
+    private static final int TAILLE_TAMPON_GZIP = 64 * 1024;
+
     /**
      * Les différents modes.
      */
@@ -65,6 +84,11 @@ public final class XMLFCP7 {
      */
     private ArrayList<Media> liste_media = new ArrayList<Media>();
 
+    /**
+     * Médias à la racine du projet, par fichier.
+     */
+    private final PoolMedia pool_media = new PoolMedia();
+
     /**
      * Liste des timelines.
      */
@@ -80,6 +104,38 @@ public final class XMLFCP7 {
      */
     private Logiciel logiciel_destination;
 
+    /**
+     * Pool utilisé pour écrire les dossiers et timelines en parallèle,
+     * {@code null} pour tout écrire sur le thread appelant.
+     */
+    private ForkJoinPool pool_export;
+
+    /**
+     * Si l'export est compressé en gzip.
+     */
+    private boolean compression_gzip;
+
+    /**
+     * Niveau de compression gzip (de {@code 0} à {@code 9}, ou
+     * {@link Deflater#DEFAULT_COMPRESSION}).
+     */
+    private int niveau_gzip = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Mise en forme de l'XML exporté.
+     */
+    private PrettyPrint mise_en_forme = PrettyPrint.TABS;
+
+    /**
+     * Construit un projet à écrire avec {@link #exporter(OutputStream)
+     * exporter}, sans fichier.
+     *
+     * @param logiciel_destination Le XML est destiné à quel logiciel.
+     */
+    public XMLFCP7(Logiciel logiciel_destination) {
+        this(null, Mode.ECRITURE, logiciel_destination);
+    }
+
     /**
      * Construit un {@code XMLFCP7}.
      *
@@ -91,19 +147,31 @@ public final class XMLFCP7 {
     }
 
     /**
-     * Construit un {@code XMLFCP7}.
+     * Construit un {@code XMLFCP7}.<br>
+     * En lecture, préférer {@link #lire(Path, Logiciel) lire}, qui signale
+     * les erreurs par des exceptions vérifiées.
      *
      * @param fichier Le chemin et nom du fichier.
      * @param mode Si on lit ou écrit l'XML.
      * @param logiciel_destination Le XML est destiné à quel logiciel.
+     * @throws UncheckedIOException En lecture, si le fichier n'est pas lisible
+     * ou si l'XML est mal formé.
      */
     public XMLFCP7(File fichier, Mode mode, Logiciel logiciel_destination) {
         this.fichier = fichier;
         this.mode = mode;
         this.logiciel_destination = logiciel_destination;
 
-        // Si on crée un nouvel XML FCP7, alors le nombre de timeline est de 0.
-        Timeline.nombre_timeline = 0;
+        // En lecture, on lit tout le fichier d'un coup (décompressé au besoin).
+        if (this.mode == Mode.LECTURE) {
+            try {
+                this.charger();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            } catch (XMLStreamException exception) {
+                throw new UncheckedIOException(new IOException("XML illisible : " + this.fichier, exception));
+            }
+        }
     }
 
     /**
@@ -112,34 +180,47 @@ public final class XMLFCP7 {
      * @param dossier Le dossier.
      */
     public void addDossier(Dossier dossier) {
+        dossier.setLogicielDestination(this.logiciel_destination);
         this.liste_dossier.add(dossier);
     }
 
     /**
-     * Ajoute un média audio au projet. Si mode écriture (add).
+     * Ajoute un média audio au projet. Si mode écriture (add).<br>
+     * S'il y a déjà un média audio pour le même fichier (voir
+     * {@link PoolMedia}), il n'est pas ajouté une deuxième fois.
      *
      * @param audio Média audio.
+     * @return Le média audio du fichier dans le projet, à utiliser dans les
+     * timelines.
      */
-    public void addMediaAudio(MediaAudio audio) {
-        this.liste_media.add(audio);
+    public MediaAudio addMediaAudio(MediaAudio audio) {
+        return (MediaAudio) this.ajouterMedia(audio);
     }
 
     /**
-     * Ajoute une image au projet.
+     * Ajoute une image au projet.<br>
+     * S'il y a déjà une image pour le même fichier (voir {@link PoolMedia}),
+     * elle n'est pas ajoutée une deuxième fois.
      *
      * @param image L'image a ajouter.
+     * @return L'image du fichier dans le projet, à utiliser dans les
+     * timelines.
      */
-    public void addMediaImage(MediaImage image) {
-        this.liste_media.add(image);
+    public MediaImage addMediaImage(MediaImage image) {
+        return (MediaImage) this.ajouterMedia(image);
     }
 
     /**
-     * Ajoute une vidéo au projet.
+     * Ajoute une vidéo au projet.<br>
+     * S'il y a déjà une vidéo pour le même fichier (voir {@link PoolMedia}),
+     * elle n'est pas ajoutée une deuxième fois.
      *
      * @param video La vidéo à ajouter.
+     * @return La vidéo du fichier dans le projet, à utiliser dans les
+     * timelines.
      */
-    public void addMediaVideo(MediaVideo video) {
-        this.liste_media.add(video);
+    public MediaVideo addMediaVideo(MediaVideo video) {
+        return (MediaVideo) this.ajouterMedia(video);
     }
 
     /**
@@ -153,59 +234,306 @@ public final class XMLFCP7 {
     }
 
     /**
-     * On clôt le fichier dans soit sa lecture soit dans son écriture.
+     * Ajoute un média à la racine du projet s'il n'y a pas déjà un média pour
+     * son fichier.
+     *
+     * @param media Le média.
+     * @return Le média du fichier dans le projet.
+     */
+    private Media ajouterMedia(Media media) {
+        Media canonique = this.pool_media.ajouter(media);
+
+        if (canonique == media) {
+            this.liste_media.add(media);
+        }
+
+        return canonique;
+    }
+
+    /**
+     * Lit tout le fichier du projet (décompressé au besoin).
+     *
+     * @throws IOException Si le fichier n'est pas lisible.
+     * @throws XMLStreamException Si l'XML est mal formé.
+     */
+    private void charger() throws IOException, XMLStreamException {
+        try (InputStream entree = LecteurXML.decompresser(new FileInputStream(this.fichier))) {
+            LecteurXML lecteur = new LecteurXML(entree);
+            lecteur.lire();
+
+            this.titre_projet = lecteur.getTitreProjet();
+            for (Dossier dossier : lecteur.getListeDossier()) {
+                this.addDossier(dossier);
+            }
+
+            for (Media media : lecteur.getListeMedia()) {
+                this.ajouterMedia(media);
+            }
+
+            for (Timeline timeline : lecteur.getListeTimeline()) {
+                this.addTimeline(timeline);
+            }
+        }
+    }
+
+    /**
+     * On clôt le fichier dans soit sa lecture soit dans son écriture.<br>
+     * En écriture, le projet est écrit dans le fichier (voir
+     * {@link #exporter(Path) exporter}).
+     *
+     * @throws UncheckedIOException Erreur d'écriture du fichier.
      */
     public void close() {
         // En écriture, on écrit tout.
-        if (this.mode == Mode.ECRITURE) {
+        if (this.mode == Mode.ECRITURE && this.fichier != null) {
             try {
-                // Si on veut faire de l'UTF8 mais alors on doit vérifier que les Strings reçus sont en UTF8.
-                OutputStream os = new FileOutputStream(this.fichier);
-                PrintWriter file = new PrintWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
-                //PrintWriter file = new PrintWriter(this.fichier);
-                file.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-                file.append("<!DOCTYPE xmeml>\n");
-                file.append("<xmeml version=\"4\">\n");
-
-                file.append("\t<project>\n");
-                file.append("\t\t<name>" + this.titre_projet + "</name>\n");
-                file.append("\t\t<children>\n");
-
-                // Liste des dossiers :
-                for (Dossier dossier : this.liste_dossier) {
-                    file.append(dossier.toString());
-                }
+                this.exporter(this.fichier.toPath());
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        } // En lecture, on ne fait que lire.
+        else {
+        }
+    }
 
-                // Liste timeline :
-                for (Timeline timeline : this.liste_timeline) {
-                    file.append(timeline.toString());
-                }
+    /**
+     * Retourne un flux qui compresse en gzip vers un canal. Fermer le flux
+     * termine le gzip mais ne ferme pas le canal.
+     *
+     * @param canal Le canal.
+     * @return Le flux compressé.
+     * @throws IOException Erreur d'écriture dans le canal.
+     */
+    private GZIPOutputStream compresser(WritableByteChannel canal) throws IOException {
+        int niveau = this.niveau_gzip;
+
+        return new GZIPOutputStream(Channels.newOutputStream(canal), TAILLE_TAMPON_GZIP) {
+            {
+                this.def.setLevel(niveau);
+            }
 
-                // Liste des médias :
-                for (Media media : this.liste_media) {
-                    file.append(media.toString());
+            @Override
+            public void close() throws IOException {
+                try {
+                    this.finish();
+                    this.out.flush();
+                } finally {
+                    this.def.end();
                 }
+            }
+        };
+    }
+
+    /**
+     * Écrit le projet. Les IDs sont attribués à chaque écriture : exporter
+     * plusieurs fois le même projet donne le même XML.
+     *
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void ecrire(XmlSink sink) throws IOException {
+        IdAllocator ids = new IdAllocator();
+
+        sink.ligne("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        sink.ligne("<!DOCTYPE xmeml>");
+        sink.debutBalise("xmeml").attribut("version", 4).finBalise();
+
+        sink.ouvre("project");
+        sink.element("name", this.titre_projet);
+        sink.ouvre("children");
+
+        // Les IDs sont réservés avant, dans l'ordre du document : la numérotation ne dépend pas de l'ordre
+        // d'écriture et chaque timeline ou dossier inchangé depuis l'export précédent réutilise son XML.
+        for (Dossier dossier : this.liste_dossier) {
+            dossier.reserverIds(ids);
+        }
+
+        for (Timeline timeline : this.liste_timeline) {
+            ids.reserver(timeline);
+        }
+
+        // Les médias à la racine viennent en dernier (un masterclip par fichier, absent s'il est déjà dans un dossier).
+        byte[] masterclips = new byte[this.liste_media.size()];
+
+        for (int i = 0; i < masterclips.length; i++) {
+            masterclips[i] = ids.reserverMasterclip(this.liste_media.get(i));
+        }
 
-                file.append("\t\t</children>\n");
-                file.append("\t</project>\n");
+        // Tout est réservé : l'écriture ne fait plus que lire les IDs, sur un ou plusieurs threads.
+        ids.figer();
 
-                file.append("</xmeml>");
-                file.close();
-            } catch (FileNotFoundException exception) {
-                exception.printStackTrace();
+        if (this.pool_export != null) {
+            this.ecrireParallele(sink, ids);
+        } else {
+            // Liste des dossiers :
+            for (Dossier dossier : this.liste_dossier) {
+                dossier.writeTo(sink, ids);
+            }
+
+            // Liste timeline :
+            for (Timeline timeline : this.liste_timeline) {
+                timeline.writeTo(sink, ids);
+            }
+        }
+
+        // Liste des médias :
+        for (int i = 0; i < masterclips.length; i++) {
+            Media media = this.liste_media.get(i);
+
+            if ((masterclips[i] & IdAllocator.MASTERCLIP) != 0) {
+                media.writeMasterclipTo(sink, ids.getIdMedia(media), (masterclips[i] & IdAllocator.FICHIER) != 0, this.logiciel_destination);
             }
-        } // En lecture, on ne fait que lire.
-        else {
         }
+
+        sink.ferme("children");
+        sink.ferme("project");
+
+        sink.ferme("xmeml");
     }
 
     /**
-     * TODO : Retourne le média audio.
+     * Écrit les dossiers et les timelines à la racine du projet en parallèle :
+     * chacun est rendu dans sa propre chaîne, puis les chaînes sont écrites
+     * dans l'ordre du document. Les tâches ne font que lire l'état partagé :
+     * les IDs sont réservés et figés, et le logiciel de destination des médias
+     * est donné à la réservation.
      *
-     * @return L'audio.
+     * @param sink Où écrire l'XML.
+     * @param ids Les IDs du projet (tous réservés, figés).
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void ecrireParallele(XmlSink sink, IdAllocator ids) throws IOException {
+        int profondeur = sink.getProfondeur();
+        PrettyPrint mise_en_forme = sink.getMiseEnForme();
+        ArrayList<ForkJoinTask<String>> taches = new ArrayList<>(this.liste_dossier.size() + this.liste_timeline.size());
+
+        for (Dossier dossier : this.liste_dossier) {
+            taches.add(this.pool_export.submit(() -> XmlSink.enChaine(s -> dossier.writeTo(s, ids), profondeur, mise_en_forme)));
+        }
+
+        for (Timeline timeline : this.liste_timeline) {
+            taches.add(this.pool_export.submit(() -> XmlSink.enChaine(s -> timeline.writeTo(s, ids), profondeur, mise_en_forme)));
+        }
+
+        for (ForkJoinTask<String> tache : taches) {
+            sink.inclure(tache.join());
+        }
+    }
+
+    /**
+     * Écrit le projet (en UTF-8) dans un fichier. Le fichier est créé ou
+     * remplacé. Si son nom finit par {@code .gz}, il est compressé en gzip
+     * même sans {@link #setCompressionGzip(boolean) setCompressionGzip}.
+     *
+     * @param chemin Le fichier.
+     * @throws IOException Erreur d'écriture du fichier.
+     */
+    public void exporter(Path chemin) throws IOException {
+        Path nom = chemin.getFileName();
+        boolean gzip = this.compression_gzip || (nom != null && nom.toString().endsWith(".gz"));
+
+        try (FileChannel canal = FileChannel.open(chemin, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            this.exporter(canal, gzip);
+        }
+    }
+
+    /**
+     * Écrit le projet (en UTF-8, compressé en gzip si
+     * {@link #setCompressionGzip(boolean) setCompressionGzip}) dans un flux,
+     * par exemple le corps d'une réponse HTTP ou une entrée d'archive. Le flux
+     * est vidé mais pas fermé.
+     *
+     * @param sortie Le flux.
+     * @throws IOException Erreur d'écriture dans le flux.
+     */
+    public void exporter(OutputStream sortie) throws IOException {
+        this.exporter(Channels.newChannel(sortie));
+        sortie.flush();
+    }
+
+    /**
+     * Écrit le projet (en UTF-8, compressé en gzip si
+     * {@link #setCompressionGzip(boolean) setCompressionGzip}) dans un canal.
+     * L'XML est encodé directement dans un tampon d'octets, écrit dans le canal
+     * à chaque fois qu'il est plein. Le canal n'est pas fermé.
+     *
+     * @param canal Le canal.
+     * @throws IOException Erreur d'écriture dans le canal.
+     */
+    public void exporter(WritableByteChannel canal) throws IOException {
+        this.exporter(canal, this.compression_gzip);
+    }
+
+    /**
+     * Écrit le projet (en UTF-8) dans un canal, compressé ou non.
+     *
+     * @param canal Le canal.
+     * @param gzip Si on compresse en gzip.
+     * @throws IOException Erreur d'écriture dans le canal.
+     */
+    private void exporter(WritableByteChannel canal, boolean gzip) throws IOException {
+        if (!gzip) {
+            try (SortieUtf8 sortie = new SortieUtf8(canal)) {
+                this.ecrire(new XmlSink(sortie, 0, this.mise_en_forme));
+            }
+            return;
+        }
+
+        // Le gzip est terminé après la sortie UTF-8, qui lui envoie ses derniers octets en se fermant.
+        try (GZIPOutputStream compression = this.compresser(canal); SortieUtf8 sortie = new SortieUtf8(Channels.newChannel(compression))) {
+            this.ecrire(new XmlSink(sortie, 0, this.mise_en_forme));
+        }
+    }
+
+    /**
+     * Retourne la liste des dossiers à la racine du projet.
+     *
+     * @return Liste des dossiers.
+     */
+    public ArrayList<Dossier> getListeDossier() {
+        return this.liste_dossier;
+    }
+
+    /**
+     * Retourne la liste des médias à la racine du projet.
+     *
+     * @return Liste des médias.
+     */
+    public ArrayList<Media> getListeMedia() {
+        return this.liste_media;
+    }
+
+    /**
+     * Retourne la liste des timelines à la racine du projet.
+     *
+     * @return Liste des timelines.
+     */
+    public ArrayList<Timeline> getListeTimeline() {
+        return this.liste_timeline;
+    }
+
+    /**
+     * Retourne le premier média audio à la racine du projet.
+     *
+     * @return L'audio ou {@code null} s'il n'y en a pas.
      */
     public MediaAudio getMediaAudio() {
-        return new MediaAudio("XXX.wav");
+        for (Media media : this.liste_media) {
+            if (media instanceof MediaAudio) {
+                return (MediaAudio) media;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Retourne le nom du projet.
+     *
+     * @return Nom du projet.
+     */
+    public String getTitreProjet() {
+        return this.titre_projet;
     }
 
     /**
@@ -220,6 +548,113 @@ public final class XMLFCP7 {
         return (logiciel_destination == Logiciel.PREMIERE) ? "PRE" : "RESOLVE";
     }
 
+    /**
+     * Lit une EDL CMX3600 et ajoute au projet la timeline obtenue (voir
+     * {@link LecteurEDL}). Le fichier est lu ligne par ligne : seul
+     * l'événement en cours est gardé en mémoire.
+     *
+     * @param chemin Le fichier EDL.
+     * @param rate Framerate de l'EDL : une EDL ne l'indique pas ({@code FCM:}
+     * ne dit que si le timecode est drop-frame).
+     * @return La timeline.
+     * @throws IOException Erreur de lecture du fichier.
+     */
+    public Timeline importerEDL(Path chemin, RateInfo rate) throws IOException {
+        String nom = chemin.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+
+        // Les EDL sont en ASCII ; les noms de clip accentués sont lus en UTF-8 (octets invalides remplacés).
+        try (BufferedReader lecteur = new BufferedReader(new InputStreamReader(Files.newInputStream(chemin), StandardCharsets.UTF_8))) {
+            Timeline timeline = new LecteurEDL(lecteur, nom, rate).lire();
+            this.addTimeline(timeline);
+            return timeline;
+        }
+    }
+
+    /**
+     * Lit un projet, destiné à Premiere Pro.
+     *
+     * @param chemin Le fichier XML (compressé en gzip ou non).
+     * @return Le projet.
+     * @throws IOException Si le fichier n'est pas lisible.
+     * @throws XMLStreamException Si l'XML est mal formé.
+     */
+    public static XMLFCP7 lire(Path chemin) throws IOException, XMLStreamException {
+        return lire(chemin, Logiciel.PREMIERE);
+    }
+
+    /**
+     * Lit un projet.
+     *
+     * @param chemin Le fichier XML (compressé en gzip ou non).
+     * @param logiciel_destination Le XML est destiné à quel logiciel.
+     * @return Le projet.
+     * @throws IOException Si le fichier n'est pas lisible.
+     * @throws XMLStreamException Si l'XML est mal formé.
+     */
+    public static XMLFCP7 lire(Path chemin, Logiciel logiciel_destination) throws IOException, XMLStreamException {
+        XMLFCP7 projet = new XMLFCP7(logiciel_destination);
+        projet.fichier = chemin.toFile();
+        projet.mode = Mode.LECTURE;
+        projet.charger();
+        return projet;
+    }
+
+    /**
+     * Active ou non la compression gzip de l'export ({@code .xml.gz}). La
+     * lecture détecte seule un fichier compressé.
+     *
+     * @param compression {@code true} pour compresser.
+     */
+    public void setCompressionGzip(boolean compression) {
+        this.compression_gzip = compression;
+    }
+
+    /**
+     * Active la compression gzip de l'export avec un niveau donné.
+     *
+     * @param niveau De {@code 0} (rapide) à {@code 9} (plus petit), ou
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public void setCompressionGzip(int niveau) {
+        if (niveau != Deflater.DEFAULT_COMPRESSION && (niveau < Deflater.NO_COMPRESSION || niveau > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Niveau de compression invalide : " + niveau);
+        }
+
+        this.niveau_gzip = niveau;
+        this.compression_gzip = true;
+    }
+
+    /**
+     * Active ou non l'écriture en parallèle (sur le pool commun) des dossiers
+     * et timelines à la racine du projet. Le fichier généré est le même.
+     *
+     * @param parallele {@code true} pour écrire en parallèle.
+     */
+    public void setExportParallele(boolean parallele) {
+        this.setExportParallele(parallele ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Écrit en parallèle, sur un pool donné, les dossiers et timelines à la
+     * racine du projet. Le fichier généré est le même.
+     *
+     * @param pool Le pool ou {@code null} pour tout écrire sur le thread
+     * appelant.
+     */
+    public void setExportParallele(ForkJoinPool pool) {
+        this.pool_export = pool;
+    }
+
+    /**
+     * Modifie la mise en forme de l'XML exporté. Par défaut, une balise par
+     * ligne indentée avec des tabulations ({@link PrettyPrint#TABS}).
+     *
+     * @param mise_en_forme La mise en forme.
+     */
+    public void setMiseEnForme(PrettyPrint mise_en_forme) {
+        this.mise_en_forme = mise_en_forme;
+    }
+
     /**
      * Modifie le nom du projet.
      *
@@ -0,0 +1,622 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.enums.PrettyPrint;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Écrit l'XML au fur et à mesure dans une sortie ({@link Appendable}), sans
+ * construire de chaîne intermédiaire.<br>
+ * L'indentation est gérée ici, à partir de la profondeur des balises ouvertes,
+ * ainsi que les retours à la ligne (voir {@link PrettyPrint}).
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class XmlSink {
+
+    /**
+     * Un élément qui sait s'écrire dans un {@code XmlSink}.
+     */
+    @FunctionalInterface
+    public interface Ecriture {
+
+        /**
+         * Écrit l'élément.
+         *
+         * @param sink Où écrire.
+         * @throws IOException Erreur d'écriture dans la sortie.
+         */
+        void writeTo(XmlSink sink) throws IOException;
+    }
+
+    /**
+     * Nombre maximum de caractères copiés par {@link #ecrireCopie(Ecriture)
+     * ecrireCopie} : au-delà, l'XML n'est pas gardé.
+     */
+    private static final int TAILLE_COPIE_MAX = 8 * 1024 * 1024;
+
+    /**
+     * Sortie qui garde une copie de ce qui y est écrit, tant que la copie ne
+     * dépasse pas {@link #TAILLE_COPIE_MAX}.
+     */
+    private static final class Copie implements Appendable {
+
+        /**
+         * La vraie sortie.
+         */
+        private final Appendable sortie;
+
+        /**
+         * La copie, {@code null} si elle est devenue trop grande.
+         */
+        private StringBuilder copie = new StringBuilder();
+
+        /**
+         * Construit la copie d'une sortie.
+         *
+         * @param sortie La vraie sortie.
+         */
+        private Copie(Appendable sortie) {
+            this.sortie = sortie;
+        }
+
+        @Override
+        public Appendable append(CharSequence texte) throws IOException {
+            this.sortie.append(texte);
+
+            if (this.copie != null) {
+                this.copie.append(texte);
+                this.verifier();
+            }
+
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence texte, int debut, int fin) throws IOException {
+            this.sortie.append(texte, debut, fin);
+
+            if (this.copie != null) {
+                this.copie.append(texte, debut, fin);
+                this.verifier();
+            }
+
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            this.sortie.append(c);
+
+            if (this.copie != null) {
+                this.copie.append(c);
+            }
+
+            return this;
+        }
+
+        /**
+         * Retourne la copie et en recommence une nouvelle (même si elle avait
+         * été abandonnée).
+         *
+         * @return La copie, {@code null} si elle avait été abandonnée.
+         */
+        private String couper() {
+            String texte = (this.copie != null) ? this.copie.toString() : null;
+            this.copie = new StringBuilder();
+            return texte;
+        }
+
+        /**
+         * Abandonne la copie si elle est trop grande.
+         */
+        private void verifier() {
+            if (this.copie.length() > TAILLE_COPIE_MAX) {
+                this.copie = null;
+            }
+        }
+    }
+
+    /**
+     * Tabulations utilisées pour l'indentation.
+     */
+    private static final String TABULATIONS = "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t";
+
+    /**
+     * Où on écrit l'XML.
+     */
+    private final Appendable sortie;
+
+    /**
+     * Nombre de balises ouvertes.
+     */
+    private int profondeur;
+
+    /**
+     * Mise en forme de l'XML.
+     */
+    private final PrettyPrint mise_en_forme;
+
+    /**
+     * Construit un {@code XmlSink}.
+     *
+     * @param sortie Où écrire l'XML.
+     */
+    public XmlSink(Appendable sortie) {
+        this(sortie, 0);
+    }
+
+    /**
+     * Construit un {@code XmlSink} qui commence à une profondeur donnée.
+     *
+     * @param sortie Où écrire l'XML.
+     * @param profondeur Profondeur (indentation) de départ.
+     */
+    public XmlSink(Appendable sortie, int profondeur) {
+        this(sortie, profondeur, PrettyPrint.TABS);
+    }
+
+    /**
+     * Construit un {@code XmlSink} avec une mise en forme donnée.
+     *
+     * @param sortie Où écrire l'XML.
+     * @param profondeur Profondeur (indentation) de départ.
+     * @param mise_en_forme Mise en forme de l'XML.
+     */
+    public XmlSink(Appendable sortie, int profondeur, PrettyPrint mise_en_forme) {
+        this.sortie = sortie;
+        this.profondeur = profondeur;
+        this.mise_en_forme = mise_en_forme;
+    }
+
+    /**
+     * Retourne l'XML d'un élément sous forme de chaîne.
+     *
+     * @param ecriture L'élément à écrire.
+     * @return Code XML.
+     */
+    public static String enChaine(Ecriture ecriture) {
+        return enChaine(ecriture, 0);
+    }
+
+    /**
+     * Retourne l'XML d'un élément sous forme de chaîne, indenté comme s'il
+     * était écrit à une profondeur donnée.
+     *
+     * @param ecriture L'élément à écrire.
+     * @param profondeur Profondeur (indentation) de départ.
+     * @return Code XML.
+     */
+    public static String enChaine(Ecriture ecriture, int profondeur) {
+        return enChaine(ecriture, profondeur, PrettyPrint.TABS);
+    }
+
+    /**
+     * Retourne l'XML d'un élément sous forme de chaîne, avec une mise en forme
+     * donnée.
+     *
+     * @param ecriture L'élément à écrire.
+     * @param profondeur Profondeur (indentation) de départ.
+     * @param mise_en_forme Mise en forme de l'XML.
+     * @return Code XML.
+     */
+    public static String enChaine(Ecriture ecriture, int profondeur, PrettyPrint mise_en_forme) {
+        StringBuilder xml = new StringBuilder();
+
+        try {
+            ecriture.writeTo(new XmlSink(xml, profondeur, mise_en_forme));
+        } catch (IOException exception) {
+            // Un StringBuilder ne lève jamais d'IOException.
+            throw new UncheckedIOException(exception);
+        }
+
+        return xml.toString();
+    }
+
+    /**
+     * Ajoute un attribut à la balise commencée par
+     * {@link #debutBalise(String) debutBalise}.
+     *
+     * @param nom Nom de l'attribut.
+     * @param valeur Valeur de l'attribut.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink attribut(String nom, String valeur) throws IOException {
+        this.sortie.append(' ').append(nom).append("=\"");
+        this.echapper(valeur, true);
+        this.sortie.append('"');
+        return this;
+    }
+
+    /**
+     * Ajoute un attribut numérique à la balise commencée par
+     * {@link #debutBalise(String) debutBalise}.
+     *
+     * @param nom Nom de l'attribut.
+     * @param valeur Valeur de l'attribut.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink attribut(String nom, long valeur) throws IOException {
+        this.sortie.append(' ').append(nom).append("=\"");
+        this.nombre(valeur);
+        this.sortie.append('"');
+        return this;
+    }
+
+    /**
+     * Ajoute un attribut composé d'un préfixe et d'un numéro (par exemple :
+     * {@code id="clipitem-12"}).
+     *
+     * @param nom Nom de l'attribut.
+     * @param prefixe Préfixe de la valeur.
+     * @param numero Numéro ajouté après le préfixe.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink attribut(String nom, String prefixe, long numero) throws IOException {
+        this.sortie.append(' ').append(nom).append("=\"");
+        this.echapper(prefixe, true);
+        this.nombre(numero);
+        this.sortie.append('"');
+        return this;
+    }
+
+    /**
+     * Commence une balise (sans la fermer) pour pouvoir y ajouter des
+     * attributs.
+     *
+     * @param balise Nom de la balise.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink debutBalise(String balise) throws IOException {
+        this.indenter();
+        this.sortie.append('<').append(balise);
+        return this;
+    }
+
+    /**
+     * Écrit un élément qui ne contient que du texte.
+     *
+     * @param balise Nom de la balise.
+     * @param valeur Valeur (échappée).
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink element(String balise, String valeur) throws IOException {
+        this.indenter();
+        this.sortie.append('<').append(balise).append('>');
+        this.echapper(valeur, false);
+        this.sortie.append("</").append(balise).append('>');
+        this.finLigne();
+        return this;
+    }
+
+    /**
+     * Écrit un élément qui contient un nombre.
+     *
+     * @param balise Nom de la balise.
+     * @param valeur Valeur.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink element(String balise, long valeur) throws IOException {
+        this.indenter();
+        this.sortie.append('<').append(balise).append('>');
+        this.nombre(valeur);
+        this.sortie.append("</").append(balise).append('>');
+        this.finLigne();
+        return this;
+    }
+
+    /**
+     * Écrit un élément qui contient la valeur textuelle d'un objet
+     * ({@link String#valueOf(Object)}).
+     *
+     * @param balise Nom de la balise.
+     * @param valeur Valeur.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink element(String balise, Object valeur) throws IOException {
+        return this.element(balise, String.valueOf(valeur));
+    }
+
+    /**
+     * Ferme une balise ouverte.
+     *
+     * @param balise Nom de la balise.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink ferme(String balise) throws IOException {
+        this.profondeur--;
+        this.indenter();
+        this.sortie.append("</").append(balise).append('>');
+        this.finLigne();
+        return this;
+    }
+
+    /**
+     * Termine une balise commencée par {@link #debutBalise(String) debutBalise}
+     * qui aura des enfants.
+     *
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink finBalise() throws IOException {
+        this.sortie.append('>');
+        this.finLigne();
+        this.profondeur++;
+        return this;
+    }
+
+    /**
+     * Termine une balise commencée par {@link #debutBalise(String) debutBalise}
+     * sans enfant ({@code <file id="file-1"/>}).
+     *
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink finBaliseVide() throws IOException {
+        this.sortie.append("/>");
+        this.finLigne();
+        return this;
+    }
+
+    /**
+     * Dans {@link #ecrireCopie(Ecriture) ecrireCopie}, retourne ce qui a été
+     * copié jusque là et recommence une nouvelle copie : les positions de
+     * {@link #getPositionCopie() getPositionCopie} repartent de zéro.
+     *
+     * @return La copie, {@code null} si elle avait été abandonnée ou si ce
+     * {@code XmlSink} n'écrit pas dans une copie.
+     */
+    String couperCopie() {
+        return (this.sortie instanceof Copie) ? ((Copie) this.sortie).couper() : null;
+    }
+
+    /**
+     * Écrit de l'XML dans la sortie au fil de l'eau en en gardant une copie,
+     * par exemple pour la réutiliser à l'export suivant ({@link RenduCache}).
+     * Au-delà de {@link #TAILLE_COPIE_MAX} caractères, la copie est
+     * abandonnée.
+     *
+     * @param ecriture Ce qui écrit l'XML.
+     * @return La copie de l'XML écrit, {@code null} s'il était trop grand.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    String ecrireCopie(Ecriture ecriture) throws IOException {
+        Copie copie = new Copie(this.sortie);
+        ecriture.writeTo(new XmlSink(copie, this.profondeur, this.mise_en_forme));
+        return (copie.copie != null) ? copie.copie.toString() : null;
+    }
+
+    /**
+     * Retourne la mise en forme de l'XML.
+     *
+     * @return Mise en forme.
+     */
+    public PrettyPrint getMiseEnForme() {
+        return this.mise_en_forme;
+    }
+
+    /**
+     * Retourne la position actuelle dans la copie de
+     * {@link #ecrireCopie(Ecriture) ecrireCopie}, pour retrouver ensuite une
+     * partie de l'XML copié.
+     *
+     * @return Nombre de caractères déjà copiés, {@code -1} si ce
+     * {@code XmlSink} n'écrit pas dans une copie (ou si elle a été
+     * abandonnée).
+     */
+    int getPositionCopie() {
+        if (this.sortie instanceof Copie) {
+            StringBuilder copie = ((Copie) this.sortie).copie;
+            return (copie != null) ? copie.length() : -1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Retourne la profondeur actuelle.
+     *
+     * @return Nombre de balises ouvertes.
+     */
+    public int getProfondeur() {
+        return this.profondeur;
+    }
+
+    /**
+     * Écrit de l'XML déjà rendu (et indenté), par exemple avec
+     * {@link #enChaine(Ecriture, int, PrettyPrint) enChaine}, avec la même
+     * mise en forme.
+     *
+     * @param xml Le code XML.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink inclure(CharSequence xml) throws IOException {
+        this.sortie.append(xml);
+        return this;
+    }
+
+    /**
+     * Écrit une partie d'un code XML déjà formé, tel quel.
+     *
+     * @param xml Le code XML.
+     * @param debut Début de la partie à écrire.
+     * @param fin Fin (exclue) de la partie à écrire.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink inclure(CharSequence xml, int debut, int fin) throws IOException {
+        this.sortie.append(xml, debut, fin);
+        return this;
+    }
+
+    /**
+     * Écrit une partie d'un code XML déjà formé, tel quel, sans l'ajouter à la
+     * copie de {@link #ecrireCopie(Ecriture) ecrireCopie} (la copie doit
+     * ensuite être coupée avec {@link #couperCopie() couperCopie}).
+     *
+     * @param xml Le code XML.
+     * @param debut Début de la partie à écrire.
+     * @param fin Fin (exclue) de la partie à écrire.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    void inclureHorsCopie(CharSequence xml, int debut, int fin) throws IOException {
+        Appendable sortie = (this.sortie instanceof Copie) ? ((Copie) this.sortie).sortie : this.sortie;
+        sortie.append(xml, debut, fin);
+    }
+
+    /**
+     * Écrit une ligne telle quelle (sans échappement), par exemple le prologue
+     * XML.
+     *
+     * @param ligne La ligne.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink ligne(CharSequence ligne) throws IOException {
+        this.indenter();
+        this.sortie.append(ligne);
+        this.finLigne();
+        return this;
+    }
+
+    /**
+     * Ouvre une balise sans attribut.
+     *
+     * @param balise Nom de la balise.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink ouvre(String balise) throws IOException {
+        this.indenter();
+        this.sortie.append('<').append(balise).append('>');
+        this.finLigne();
+        this.profondeur++;
+        return this;
+    }
+
+    /**
+     * Écrit un texte (échappé) à la position actuelle, sans balise ni
+     * indentation, par exemple la valeur d'un paramètre dans un modèle
+     * précompilé.
+     *
+     * @param texte Le texte.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink texte(String texte) throws IOException {
+        this.echapper(texte, false);
+        return this;
+    }
+
+    /**
+     * Écrit un nombre à la position actuelle, sans balise ni indentation.
+     *
+     * @param valeur Le nombre.
+     * @return Ce {@code XmlSink}.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public XmlSink texte(long valeur) throws IOException {
+        this.nombre(valeur);
+        return this;
+    }
+
+    /**
+     * Écrit un texte en échappant les caractères réservés de l'XML.
+     *
+     * @param texte Le texte ({@code null} est écrit "null", comme avec une
+     * concaténation).
+     * @param attribut Si le texte est la valeur d'un attribut (on échappe
+     * alors aussi les guillemets).
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void echapper(String texte, boolean attribut) throws IOException {
+        if (texte == null) {
+            texte = "null";
+        }
+
+        int debut = 0;
+        int longueur = texte.length();
+
+        for (int i = 0; i < longueur; i++) {
+            String remplacement;
+
+            switch (texte.charAt(i)) {
+                case '&':
+                    remplacement = "&amp;";
+                    break;
+                case '<':
+                    remplacement = "&lt;";
+                    break;
+                case '>':
+                    remplacement = "&gt;";
+                    break;
+                case '"':
+                    remplacement = attribut ? "&quot;" : null;
+                    break;
+                default:
+                    remplacement = null;
+            }
+
+            if (remplacement != null) {
+                this.sortie.append(texte, debut, i).append(remplacement);
+                debut = i + 1;
+            }
+        }
+
+        this.sortie.append(texte, debut, longueur);
+    }
+
+    /**
+     * Termine la ligne (sauf sans mise en forme).
+     *
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void finLigne() throws IOException {
+        if (this.mise_en_forme != PrettyPrint.NONE) {
+            this.sortie.append('\n');
+        }
+    }
+
+    /**
+     * Écrit l'indentation de la profondeur actuelle (sauf sans mise en
+     * forme).
+     *
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void indenter() throws IOException {
+        if (this.mise_en_forme == PrettyPrint.NONE) {
+            return;
+        }
+
+        int reste = this.profondeur;
+
+        while (reste > 0) {
+            int n = Math.min(reste, TABULATIONS.length());
+            this.sortie.append(TABULATIONS, 0, n);
+            reste -= n;
+        }
+    }
+
+    /**
+     * Écrit un nombre.
+     *
+     * @param valeur Le nombre.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private void nombre(long valeur) throws IOException {
+        if (this.sortie instanceof StringBuilder) {
+            ((StringBuilder) this.sortie).append(valeur);
+        } else {
+            this.sortie.append(Long.toString(valeur));
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.phenix.xmlfcp7.effect;
+
+import com.phenix.xmlfcp7.XmlSink;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Courbe d'un paramètre d'effet animé : des images clés (image, valeur)
+ * triées par image, dans deux colonnes de type primitif. Entre deux images
+ * clés, la valeur est interpolée linéairement.<br>
+ * Les images sont des positions dans le média du clip (comme son point in).
+ * Une image clé ajoutée à une image déjà présente remplace sa valeur.<br>
+ * À l'écriture, les images clés inutiles sont retirées (Ramer-Douglas-Peucker
+ * sur les segments linéaires) : une image clé n'est gardée que si la courbe
+ * sans elle s'en écarte de plus de la tolérance. Avec une tolérance de 0 (par
+ * défaut), seules les images clés alignées sont retirées : la courbe écrite
+ * est la même.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class Courbe {
+
+    /**
+     * Images clés gardées pour une version et une tolérance.
+     */
+    private static final class Reduction {
+
+        /**
+         * Version de la courbe.
+         */
+        private final long version;
+
+        /**
+         * Tolérance.
+         */
+        private final double tolerance;
+
+        /**
+         * Indice des images clés gardées.
+         */
+        private final int[] indices;
+
+        /**
+         * Construit une réduction.
+         *
+         * @param version Version de la courbe.
+         * @param tolerance Tolérance.
+         * @param indices Indice des images clés gardées.
+         */
+        private Reduction(long version, double tolerance, int[] indices) {
+            this.version = version;
+            this.tolerance = tolerance;
+            this.indices = indices;
+        }
+    }
+
+    /**
+     * Capacité de départ des colonnes.
+     */
+    private static final int CAPACITE_INITIALE = 16;
+
+    /**
+     * Nombre d'images clés.
+     */
+    private int taille;
+
+    /**
+     * Image de chaque image clé.
+     */
+    private long[] images = new long[CAPACITE_INITIALE];
+
+    /**
+     * Valeur de chaque image clé.
+     */
+    private double[] valeurs = new double[CAPACITE_INITIALE];
+
+    /**
+     * Écart maximum toléré en retirant des images clés.
+     */
+    private double tolerance;
+
+    /**
+     * Augmente à chaque modification de la courbe.
+     */
+    private long version;
+
+    /**
+     * Dernières images clés gardées (calculées à l'écriture).
+     */
+    private Reduction reduction;
+
+    /**
+     * Construit une courbe vide.
+     */
+    public Courbe() {
+    }
+
+    /**
+     * Agrandit les colonnes si besoin.
+     *
+     * @param capacite Nombre d'images clés à pouvoir ranger.
+     */
+    private void agrandir(int capacite) {
+        if (capacite > this.images.length) {
+            int nouvelle = Math.max(capacite, this.images.length * 2);
+            this.images = Arrays.copyOf(this.images, nouvelle);
+            this.valeurs = Arrays.copyOf(this.valeurs, nouvelle);
+        }
+    }
+
+    /**
+     * Ajoute une image clé.
+     *
+     * @param image Position dans le média du clip en image.
+     * @param valeur Valeur du paramètre.
+     */
+    public synchronized void ajouter(long image, double valeur) {
+        verifier(valeur);
+
+        int indice = this.indice(image);
+
+        if (indice < this.taille && this.images[indice] == image) {
+            this.valeurs[indice] = valeur;
+        } else {
+            this.agrandir(this.taille + 1);
+
+            // Après la dernière image clé (cas courant) : rien à déplacer.
+            System.arraycopy(this.images, indice, this.images, indice + 1, this.taille - indice);
+            System.arraycopy(this.valeurs, indice, this.valeurs, indice + 1, this.taille - indice);
+
+            this.images[indice] = image;
+            this.valeurs[indice] = valeur;
+            this.taille++;
+        }
+
+        this.version++;
+    }
+
+    /**
+     * Ajoute une image clé par image, à partir d'une image (par exemple des
+     * valeurs d'analyse image par image).
+     *
+     * @param premiere_image Position de la première valeur dans le média du
+     * clip en image.
+     * @param valeurs Une valeur par image.
+     */
+    public synchronized void ajouter(long premiere_image, double[] valeurs) {
+        if (this.taille > 0 && premiere_image <= this.images[this.taille - 1]) {
+            for (int i = 0; i < valeurs.length; i++) {
+                this.ajouter(premiere_image + i, valeurs[i]);
+            }
+
+            return;
+        }
+
+        // Après la dernière image clé : copie directe.
+        this.agrandir(this.taille + valeurs.length);
+
+        for (int i = 0; i < valeurs.length; i++) {
+            verifier(valeurs[i]);
+            this.images[this.taille + i] = premiere_image + i;
+        }
+
+        System.arraycopy(valeurs, 0, this.valeurs, this.taille, valeurs.length);
+        this.taille += valeurs.length;
+        this.version++;
+    }
+
+    /**
+     * Retourne l'image d'une image clé.
+     *
+     * @param indice Indice de l'image clé.
+     * @return Position dans le média du clip en image.
+     */
+    public synchronized long getImage(int indice) {
+        this.verifier(indice);
+        return this.images[indice];
+    }
+
+    /**
+     * Retourne le nombre d'images clés.
+     *
+     * @return Nombre d'images clés.
+     */
+    public synchronized int getTaille() {
+        return this.taille;
+    }
+
+    /**
+     * Retourne la tolérance.
+     *
+     * @return Écart maximum toléré en retirant des images clés.
+     */
+    public synchronized double getTolerance() {
+        return this.tolerance;
+    }
+
+    /**
+     * Retourne la valeur d'une image clé.
+     *
+     * @param indice Indice de l'image clé.
+     * @return Valeur du paramètre.
+     */
+    public synchronized double getValeur(int indice) {
+        this.verifier(indice);
+        return this.valeurs[indice];
+    }
+
+    /**
+     * Retourne la version de la courbe.
+     *
+     * @return Nombre de modifications.
+     */
+    public synchronized long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Retourne l'indice de la première image clé à une image ou après
+     * (recherche dichotomique).
+     *
+     * @param image L'image.
+     * @return Indice de l'image clé, {@link #taille} s'il n'y en a pas.
+     */
+    private int indice(long image) {
+        // Cas courant : après la dernière image clé.
+        if (this.taille == 0 || this.images[this.taille - 1] < image) {
+            return this.taille;
+        }
+
+        int bas = 0;
+        int haut = this.taille;
+
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+
+            if (this.images[milieu] < image) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+
+        return bas;
+    }
+
+    /**
+     * Retourne la valeur d'un nombre telle qu'écrite dans l'XML.
+     *
+     * @param valeur Le nombre.
+     * @return Le nombre, sans exposant ni décimales inutiles.
+     */
+    static String nombre(double valeur) {
+        if (valeur == Math.rint(valeur) && Math.abs(valeur) < 1e15) {
+            return Long.toString((long) valeur);
+        }
+
+        return BigDecimal.valueOf(valeur).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Retire les images clés inutiles (Ramer-Douglas-Peucker, sans récursion) :
+     * entre deux images clés gardées, l'image clé qui s'écarte le plus du
+     * segment qui les relie est gardée si son écart dépasse la tolérance, et
+     * on recommence de chaque côté.
+     *
+     * @param images Image de chaque image clé (triées).
+     * @param valeurs Valeur de chaque image clé.
+     * @param taille Nombre d'images clés.
+     * @param tolerance Écart maximum toléré (0 : seulement les erreurs
+     * d'arrondi).
+     * @return Indice des images clés gardées.
+     */
+    private static int[] reduire(long[] images, double[] valeurs, int taille, double tolerance) {
+        if (taille <= 2) {
+            int[] indices = new int[taille];
+
+            for (int i = 0; i < taille; i++) {
+                indices[i] = i;
+            }
+
+            return indices;
+        }
+
+        boolean[] garder = new boolean[taille];
+        garder[0] = true;
+        garder[taille - 1] = true;
+
+        // Les segments à traiter (début et fin) : ils ne se chevauchent pas.
+        int[] pile = new int[2 * taille];
+        int sommet = 0;
+        pile[sommet++] = 0;
+        pile[sommet++] = taille - 1;
+        int gardees = 2;
+
+        while (sommet > 0) {
+            int fin = pile[--sommet];
+            int debut = pile[--sommet];
+
+            if (fin - debut < 2) {
+                continue;
+            }
+
+            double pente = (valeurs[fin] - valeurs[debut]) / (double) (images[fin] - images[debut]);
+            int pire = -1;
+            double ecart_max = 0;
+
+            for (int i = debut + 1; i < fin; i++) {
+                double attendu = valeurs[debut] + pente * (images[i] - images[debut]);
+                double ecart = Math.abs(valeurs[i] - attendu);
+
+                // Sans tolérance, on n'accepte que l'erreur d'arrondi de l'interpolation.
+                double seuil = (tolerance > 0) ? tolerance : 8 * Math.ulp(Math.max(Math.abs(valeurs[i]), Math.abs(attendu)));
+
+                if (ecart > seuil && ecart >= ecart_max) {
+                    pire = i;
+                    ecart_max = ecart;
+                }
+            }
+
+            if (pire >= 0) {
+                garder[pire] = true;
+                gardees++;
+                pile[sommet++] = debut;
+                pile[sommet++] = pire;
+                pile[sommet++] = pire;
+                pile[sommet++] = fin;
+            }
+        }
+
+        int[] indices = new int[gardees];
+        int n = 0;
+
+        for (int i = 0; i < taille; i++) {
+            if (garder[i]) {
+                indices[n++] = i;
+            }
+        }
+
+        return indices;
+    }
+
+    /**
+     * Retourne les images clés à écrire : celles qui restent après réduction
+     * (calculées une fois par version de la courbe).
+     *
+     * @return Indice des images clés gardées.
+     */
+    synchronized int[] reduites() {
+        Reduction reduction = this.reduction;
+
+        if (reduction == null || reduction.version != this.version || reduction.tolerance != this.tolerance) {
+            reduction = new Reduction(this.version, this.tolerance, reduire(this.images, this.valeurs, this.taille, this.tolerance));
+            this.reduction = reduction;
+        }
+
+        return reduction.indices;
+    }
+
+    /**
+     * Modifie la tolérance de la réduction des images clés.
+     *
+     * @param tolerance Écart maximum toléré, dans l'unité du paramètre (0 :
+     * sans perte).
+     */
+    public synchronized void setTolerance(double tolerance) {
+        if (tolerance < 0 || Double.isNaN(tolerance)) {
+            throw new IllegalArgumentException("Tolérance invalide : " + tolerance);
+        }
+
+        this.tolerance = tolerance;
+        this.version++;
+    }
+
+    /**
+     * Retourne la valeur du paramètre à une image (interpolée entre les deux
+     * images clés qui l'entourent).
+     *
+     * @param image Position dans le média du clip en image.
+     * @return La valeur (celle de la première ou de la dernière image clé en
+     * dehors de la courbe).
+     */
+    public synchronized double valeur(long image) {
+        if (this.taille == 0) {
+            throw new IllegalStateException("La courbe n'a pas d'image clé.");
+        }
+
+        int indice = this.indice(image);
+
+        if (indice == this.taille) {
+            return this.valeurs[this.taille - 1];
+        }
+
+        if (this.images[indice] == image || indice == 0) {
+            return this.valeurs[indice];
+        }
+
+        long debut = this.images[indice - 1];
+        double pente = (this.valeurs[indice] - this.valeurs[indice - 1]) / (double) (this.images[indice] - debut);
+        return this.valeurs[indice - 1] + pente * (image - debut);
+    }
+
+    /**
+     * Vérifie un indice d'image clé.
+     *
+     * @param indice L'indice.
+     */
+    private void verifier(int indice) {
+        if (indice < 0 || indice >= this.taille) {
+            throw new IndexOutOfBoundsException("Image clé inexistante : " + indice);
+        }
+    }
+
+    /**
+     * Vérifie la valeur d'une image clé.
+     *
+     * @param valeur La valeur.
+     */
+    private static void verifier(double valeur) {
+        if (Double.isNaN(valeur) || Double.isInfinite(valeur)) {
+            throw new IllegalArgumentException("Valeur invalide : " + valeur);
+        }
+    }
+
+    /**
+     * Écrit les images clés gardées après réduction (balises
+     * {@code <keyframe>}).
+     *
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public synchronized void writeTo(XmlSink sink) throws IOException {
+        for (int indice : this.reduites()) {
+            sink.ouvre("keyframe");
+            sink.element("when", this.images[indice]);
+            sink.element("value", nombre(this.valeurs[indice]));
+            sink.ferme("keyframe");
+        }
+    }
+}
@@ -1,9 +1,174 @@
 package com.phenix.xmlfcp7.effect;
 
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import com.phenix.xmlfcp7.XmlSink;
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
- * Les effets un peu particulier dans l'XML.
+ * Les effets un peu particulier dans l'XML. Chaque type d'effet est écrit
+ * par son serializer (voir {@link EffectSerializers}).<br>
+ * Un paramètre peut être animé par une {@link Courbe} : son serializer écrit
+ * alors les images clés de la courbe à la place de la valeur fixe.
  *
  * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
  */
 public abstract class Effect {
+
+    /**
+     * Augmente à chaque modification de l'effet : les timelines qui
+     * l'utilisent seront rendues de nouveau à l'export suivant.
+     */
+    private long version;
+
+    /**
+     * Nom des paramètres animés.
+     */
+    private String[] parametres = new String[0];
+
+    /**
+     * Courbe de chaque paramètre animé.
+     */
+    private Courbe[] courbes = new Courbe[0];
+
+    /**
+     * Version de chaque courbe à la dernière lecture de la version de
+     * l'effet.
+     */
+    private long[] versions_courbes = new long[0];
+
+    /**
+     * Retourne la courbe d'un paramètre animé, si elle a des images clés.
+     *
+     * @param parametre Nom du paramètre.
+     * @return La courbe, {@code null} si le paramètre n'est pas animé.
+     */
+    protected final Courbe courbe(String parametre) {
+        Courbe courbe = this.getCourbe(parametre);
+        return (courbe != null && courbe.getTaille() > 0) ? courbe : null;
+    }
+
+    /**
+     * Retourne la courbe d'un paramètre animé.
+     *
+     * @param parametre Nom du paramètre (voir les constantes de chaque
+     * effet).
+     * @return La courbe, {@code null} si le paramètre n'est pas animé.
+     */
+    public final synchronized Courbe getCourbe(String parametre) {
+        int indice = this.indice(parametre);
+        return (indice >= 0) ? this.courbes[indice] : null;
+    }
+
+    /**
+     * Retourne la version de l'effet. Une courbe modifiée compte comme une
+     * modification de l'effet.
+     *
+     * @return Nombre de modifications.
+     */
+    public final synchronized long getVersion() {
+        for (int i = 0; i < this.courbes.length; i++) {
+            long version_courbe = this.courbes[i].getVersion();
+
+            if (version_courbe != this.versions_courbes[i]) {
+                this.versions_courbes[i] = version_courbe;
+                this.version++;
+            }
+        }
+
+        return this.version;
+    }
+
+    /**
+     * Retourne l'indice d'un paramètre animé.
+     *
+     * @param parametre Nom du paramètre.
+     * @return Indice, {@code -1} si le paramètre n'est pas animé.
+     */
+    private int indice(String parametre) {
+        for (int i = 0; i < this.parametres.length; i++) {
+            if (this.parametres[i].equals(parametre)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Indique que l'effet a été modifié (à appeler dans chaque setter).
+     */
+    protected final synchronized void modifie() {
+        this.version++;
+    }
+
+    /**
+     * Anime un paramètre.
+     *
+     * @param parametre Nom du paramètre (voir les constantes de chaque
+     * effet).
+     * @param courbe La courbe, {@code null} (ou vide) pour revenir à la
+     * valeur fixe.
+     */
+    public final synchronized void setCourbe(String parametre, Courbe courbe) {
+        int indice = this.indice(parametre);
+
+        if (courbe == null) {
+            if (indice < 0) {
+                return;
+            }
+
+            // Le dernier paramètre prend la place de celui retiré.
+            int dernier = this.parametres.length - 1;
+            this.parametres[indice] = this.parametres[dernier];
+            this.courbes[indice] = this.courbes[dernier];
+            this.versions_courbes[indice] = this.versions_courbes[dernier];
+            this.parametres = Arrays.copyOf(this.parametres, dernier);
+            this.courbes = Arrays.copyOf(this.courbes, dernier);
+            this.versions_courbes = Arrays.copyOf(this.versions_courbes, dernier);
+        } else {
+            if (indice < 0) {
+                indice = this.parametres.length;
+                this.parametres = Arrays.copyOf(this.parametres, indice + 1);
+                this.courbes = Arrays.copyOf(this.courbes, indice + 1);
+                this.versions_courbes = Arrays.copyOf(this.versions_courbes, indice + 1);
+                this.parametres[indice] = parametre;
+            }
+
+            this.courbes[indice] = courbe;
+            this.versions_courbes[indice] = courbe.getVersion();
+        }
+
+        this.modifie();
+    }
+
+    /**
+     * Écrit le code XML de l'effet (balise {@code <filter>}) pour Adobe
+     * Premiere, en dehors d'un clip, avec le serializer enregistré (voir
+     * {@link EffectSerializers}). Un effet sans serializer peut redéfinir
+     * cette méthode.
+     *
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    @SuppressWarnings("unchecked")
+    public void writeTo(XmlSink sink) throws IOException {
+        EffectSerializer<Effect> serializer = (EffectSerializer<Effect>) EffectSerializers.get(this.getClass(), Logiciel.PREMIERE);
+
+        if (serializer == null) {
+            throw new IllegalStateException("Aucun serializer pour l'effet " + this.getClass().getName());
+        }
+
+        serializer.writeTo(this, null, null, sink);
+    }
+
+    /**
+     * Code XML de l'effet.
+     *
+     * @return Code XML.
+     */
+    @Override
+    public String toString() {
+        return XmlSink.enChaine(this::writeTo);
+    }
 }
@@ -0,0 +1,30 @@
+package com.phenix.xmlfcp7.effect;
+
+import com.phenix.xmlfcp7.Media;
+import com.phenix.xmlfcp7.Timeline;
+import com.phenix.xmlfcp7.XmlSink;
+import java.io.IOException;
+
+/**
+ * Écrit le code XML d'un type d'effet (balise {@code <filter>}) pour un
+ * logiciel. Les serializers sont enregistrés dans {@link EffectSerializers},
+ * en général avec un {@link ModeleXml} précompilé.
+ *
+ * @param <E> Type d'effet.
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+@FunctionalInterface
+public interface EffectSerializer<E extends Effect> {
+
+    /**
+     * Écrit un effet.
+     *
+     * @param effet L'effet.
+     * @param clip Le média du clip qui porte l'effet ({@code null} en dehors
+     * d'un clip, par exemple pour {@link Effect#toString() toString}).
+     * @param timeline La timeline du clip ({@code null} en dehors d'un clip).
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    void writeTo(E effet, Media clip, Timeline timeline, XmlSink sink) throws IOException;
+}
@@ -0,0 +1,138 @@
+package com.phenix.xmlfcp7.effect;
+
+import com.phenix.xmlfcp7.Media;
+import com.phenix.xmlfcp7.Timeline;
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import com.phenix.xmlfcp7.XmlSink;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Les serializers des effets, par type d'effet et par logiciel. Pour écrire
+ * un effet, on cherche le serializer de sa classe, puis celui de ses classes
+ * parentes : un nouvel effet s'ajoute en enregistrant son serializer, sans
+ * toucher à {@link Timeline}.<br>
+ * Les effets de la bibliothèque ({@link Lumetri}, {@link Mouvement},
+ * {@link RemappageTemps} et {@link TexteGraphique}) sont enregistrés
+ * d'office ; on peut les remplacer.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class EffectSerializers {
+
+    /**
+     * Serializer de chaque type d'effet, par logiciel (indice :
+     * {@link Logiciel#ordinal() ordinal}). Les tableaux ne sont jamais
+     * modifiés : ils sont remplacés.
+     */
+    private static final ConcurrentHashMap<Class<?>, EffectSerializer<?>[]> SERIALIZERS = new ConcurrentHashMap<Class<?>, EffectSerializer<?>[]>();
+
+    /**
+     * Augmente à chaque enregistrement : les timelines déjà rendues le seront
+     * de nouveau à l'export suivant.
+     */
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    static {
+        enregistrer(Lumetri.class, Lumetri.SERIALIZER);
+        enregistrer(Mouvement.class, Logiciel.PREMIERE, Mouvement.SERIALIZER_PREMIERE);
+        enregistrer(Mouvement.class, Logiciel.RESOLVE, Mouvement.SERIALIZER_RESOLVE);
+        enregistrer(RemappageTemps.class, RemappageTemps.SERIALIZER);
+        enregistrer(TexteGraphique.class, TexteGraphique.SERIALIZER);
+    }
+
+    /**
+     * Pas d'instance.
+     */
+    private EffectSerializers() {
+    }
+
+    /**
+     * Enregistre le serializer d'un type d'effet pour tous les logiciels.
+     *
+     * @param <E> Type d'effet.
+     * @param type Classe de l'effet (et de ses sous-classes sans serializer).
+     * @param serializer Le serializer.
+     */
+    public static <E extends Effect> void enregistrer(Class<E> type, EffectSerializer<? super E> serializer) {
+        for (Logiciel logiciel : Logiciel.values()) {
+            enregistrer(type, logiciel, serializer);
+        }
+    }
+
+    /**
+     * Enregistre le serializer d'un type d'effet pour un logiciel (remplace
+     * celui déjà enregistré).
+     *
+     * @param <E> Type d'effet.
+     * @param type Classe de l'effet (et de ses sous-classes sans serializer).
+     * @param logiciel Le logiciel.
+     * @param serializer Le serializer.
+     */
+    public static <E extends Effect> void enregistrer(Class<E> type, Logiciel logiciel, EffectSerializer<? super E> serializer) {
+        if (serializer == null) {
+            throw new IllegalArgumentException("Le serializer est obligatoire.");
+        }
+
+        SERIALIZERS.compute(type, (cle, serializers) -> {
+            EffectSerializer<?>[] copie = (serializers != null) ? serializers.clone() : new EffectSerializer<?>[Logiciel.values().length];
+            copie[logiciel.ordinal()] = serializer;
+            return copie;
+        });
+
+        VERSION.incrementAndGet();
+    }
+
+    /**
+     * Retourne le serializer d'un type d'effet pour un logiciel : celui de la
+     * classe, sinon celui de la classe parente la plus proche.
+     *
+     * @param type Classe de l'effet.
+     * @param logiciel Le logiciel.
+     * @return Le serializer, {@code null} s'il n'y en a pas.
+     */
+    public static EffectSerializer<?> get(Class<? extends Effect> type, Logiciel logiciel) {
+        for (Class<?> classe = type; classe != null && classe != Object.class; classe = classe.getSuperclass()) {
+            EffectSerializer<?>[] serializers = SERIALIZERS.get(classe);
+
+            if (serializers != null && serializers[logiciel.ordinal()] != null) {
+                return serializers[logiciel.ordinal()];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Retourne la version des serializers.
+     *
+     * @return Nombre d'enregistrements.
+     */
+    public static long getVersion() {
+        return VERSION.get();
+    }
+
+    /**
+     * Écrit un effet avec son serializer. Sans serializer, l'effet s'écrit
+     * lui-même ({@link Effect#writeTo(XmlSink) writeTo}).
+     *
+     * @param effet L'effet.
+     * @param logiciel Logiciel de destination.
+     * @param clip Le média du clip qui porte l'effet ({@code null} en dehors
+     * d'un clip).
+     * @param timeline La timeline du clip ({@code null} en dehors d'un clip).
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    @SuppressWarnings("unchecked")
+    public static void writeTo(Effect effet, Logiciel logiciel, Media clip, Timeline timeline, XmlSink sink) throws IOException {
+        EffectSerializer<Effect> serializer = (EffectSerializer<Effect>) get(effet.getClass(), logiciel);
+
+        if (serializer == null) {
+            effet.writeTo(sink);
+        } else {
+            serializer.writeTo(effet, clip, timeline, sink);
+        }
+    }
+}
@@ -1,12 +1,40 @@
 package com.phenix.xmlfcp7.effect;
 
+import com.phenix.xmlfcp7.XmlSink;
+import java.io.IOException;
+
 /**
- * Effet Lumetri.
+ * Effet Lumetri. Le blanc peut être animé (voir {@link #BLANC}).
  *
  * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
  */
 public final class Lumetri extends Effect {
 
+    /**
+     * Nom du paramètre blanc (voir {@link #setCourbe(String, Courbe)
+     * setCourbe}).
+     */
+    public static final String BLANC = "blanc";
+
+    /**
+     * Modèle de l'effet sans animation : la valeur du blanc est
+     * l'emplacement 0.
+     */
+    private static final ModeleXml MODELE = new ModeleXml(sink -> ecrire(sink, null));
+
+    /**
+     * Serializer de l'effet (le même pour tous les logiciels).
+     */
+    static final EffectSerializer<Lumetri> SERIALIZER = (effet, clip, timeline, sink) -> {
+        Courbe blanc = effet.courbe(BLANC);
+
+        if (blanc == null) {
+            MODELE.writeTo(sink, (emplacement, s) -> s.texte(effet.blanc));
+        } else {
+            ecrire(sink, blanc);
+        }
+    };
+
     /**
      * Valeur du blanc.
      */
@@ -19,6 +47,49 @@ public final class Lumetri extends Effect {
         this.blanc = 0;
     }
 
+    /**
+     * Écrit l'effet.
+     *
+     * @param sink Où écrire l'XML.
+     * @param blanc Courbe du blanc ({@code null} : valeur fixe, à
+     * l'emplacement 0).
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private static void ecrire(XmlSink sink, Courbe blanc) throws IOException {
+        sink.ouvre("filter");
+        sink.ouvre("effect");
+        sink.element("name", "");
+        sink.element("effectid", "Lumetri");
+        sink.element("effecttype", "filter");
+        sink.element("mediatype", "video");
+        sink.element("pproBypass", "false");
+        sink.debutBalise("parameter").attribut("authoringApp", "PremierePro").finBalise();
+        sink.element("parameterid", 1);
+        sink.element("name", "Blob");
+        sink.element("hash", "63866a15-9327-e4cb-ff31-c9ea0000000e");
+        sink.element("value", "/v4=");
+        sink.ferme("parameter");
+        sink.debutBalise("parameter").attribut("authoringApp", "PremierePro").finBalise();
+        sink.element("parameterid", 15);
+        sink.element("name", "Blancs");
+        sink.element("IsTimeVarying", (blanc != null) ? "true" : "false");
+        sink.element("ParameterControlType", 8);
+        sink.element("LowerBound", -150);
+        sink.element("UpperBound", 150);
+        sink.element("LowerUIBound", -100);
+        sink.element("UpperUIBound", 100);
+
+        if (blanc != null) {
+            blanc.writeTo(sink);
+        } else {
+            sink.element("value", "-91445760000000000," + ModeleXml.emplacement(0) + ".,0,0,0,0,0,0");
+        }
+
+        sink.ferme("parameter");
+        sink.ferme("effect");
+        sink.ferme("filter");
+    }
+
     /**
      * Retourne le blanc.
      *
@@ -35,35 +106,6 @@ public final class Lumetri extends Effect {
      */
     public void setBlanc(int blanc) {
         this.blanc = blanc;
-    }
-
-    @Override
-    public String toString() {
-        return "<filter>\n"
-                + "<effect>\n"
-                + "	<name></name>\n"
-                + "	<effectid>Lumetri</effectid>\n"
-                + "	<effecttype>filter</effecttype>\n"
-                + "	<mediatype>video</mediatype>\n"
-                + "	<pproBypass>false</pproBypass>\n"
-                + "	<parameter authoringApp=\"PremierePro\">\n"
-                + "		<parameterid>1</parameterid>\n"
-                + "		<name>Blob</name>\n"
-                + "		<hash>63866a15-9327-e4cb-ff31-c9ea0000000e</hash>\n"
-                + "		<value>/v4=</value>\n"
-                + "	</parameter>\n"
-                + "	<parameter authoringApp=\"PremierePro\">\n"
-                + "		<parameterid>15</parameterid>\n"
-                + "		<name>Blancs</name>\n"
-                + "		<IsTimeVarying>false</IsTimeVarying>\n"
-                + "		<ParameterControlType>8</ParameterControlType>\n"
-                + "		<LowerBound>-150</LowerBound>\n"
-                + "		<UpperBound>150</UpperBound>\n"
-                + "		<LowerUIBound>-100</LowerUIBound>\n"
-                + "		<UpperUIBound>100</UpperUIBound>\n"
-                + "		<value>-91445760000000000," + blanc + ".,0,0,0,0,0,0</value>\n"
-                + "	</parameter>\n"
-                + "</effect>\n"
-                + "</filter>\n";
+        this.modifie();
     }
 }
@@ -0,0 +1,210 @@
+package com.phenix.xmlfcp7.effect;
+
+import com.phenix.xmlfcp7.XmlSink;
+import com.phenix.xmlfcp7.enums.PrettyPrint;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Modèle XML précompilé : le code XML d'un effet est écrit une fois, avec des
+ * emplacements ({@link #emplacement(int) emplacement}) à la place des valeurs
+ * des paramètres, puis découpé en segments constants. Écrire le modèle ne
+ * coûte ensuite que l'écriture des segments et la mise en forme des
+ * valeurs.<br>
+ * Les segments dépendent de l'indentation : ils sont rendus une fois par
+ * profondeur et par mise en forme, à la première utilisation. Le modèle doit
+ * fermer toutes les balises qu'il ouvre. Un emplacement ne peut être que dans
+ * le texte d'un élément (pas dans un attribut).
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class ModeleXml {
+
+    /**
+     * Écrit la valeur d'un emplacement.
+     */
+    @FunctionalInterface
+    public interface Parametres {
+
+        /**
+         * Écrit la valeur d'un emplacement (par exemple avec
+         * {@link XmlSink#texte(String) texte}).
+         *
+         * @param emplacement Numéro de l'emplacement.
+         * @param sink Où écrire la valeur.
+         * @throws IOException Erreur d'écriture dans la sortie.
+         */
+        void writeTo(int emplacement, XmlSink sink) throws IOException;
+    }
+
+    /**
+     * Le modèle rendu à une profondeur et avec une mise en forme.
+     */
+    private static final class Rendu {
+
+        /**
+         * Les segments constants, un de plus que d'emplacements.
+         */
+        private final String[] segments;
+
+        /**
+         * Numéro de chaque emplacement, entre deux segments.
+         */
+        private final int[] emplacements;
+
+        /**
+         * Construit un rendu.
+         *
+         * @param segments Les segments constants.
+         * @param emplacements Numéro de chaque emplacement.
+         */
+        private Rendu(String[] segments, int[] emplacements) {
+            this.segments = segments;
+            this.emplacements = emplacements;
+        }
+    }
+
+    /**
+     * Caractère du premier emplacement (zone à usage privé d'Unicode).
+     */
+    private static final char EMPLACEMENT = '\uE000';
+
+    /**
+     * Nombre maximum d'emplacements.
+     */
+    private static final int EMPLACEMENTS_MAX = 256;
+
+    /**
+     * Nombre de mises en forme.
+     */
+    private static final int MISES_EN_FORME = PrettyPrint.values().length;
+
+    /**
+     * Ce qui écrit le modèle.
+     */
+    private final XmlSink.Ecriture ecriture;
+
+    /**
+     * Rendu du modèle par profondeur et mise en forme.
+     */
+    private final ConcurrentHashMap<Integer, Rendu> rendus = new ConcurrentHashMap<Integer, Rendu>();
+
+    /**
+     * Construit un modèle. Il est compilé tout de suite une fois, pour
+     * vérifier qu'il ferme ses balises.
+     *
+     * @param ecriture Ce qui écrit le modèle, avec des
+     * {@link #emplacement(int) emplacement} à la place des valeurs.
+     */
+    public ModeleXml(XmlSink.Ecriture ecriture) {
+        this.ecriture = ecriture;
+        this.rendu(0, PrettyPrint.TABS);
+    }
+
+    /**
+     * Retourne le texte d'un emplacement, à écrire dans le modèle à la place
+     * d'une valeur.
+     *
+     * @param numero Numéro de l'emplacement (de 0 à 255).
+     * @return Texte de l'emplacement.
+     */
+    public static String emplacement(int numero) {
+        if (numero < 0 || numero >= EMPLACEMENTS_MAX) {
+            throw new IllegalArgumentException("Emplacement invalide : " + numero);
+        }
+
+        return String.valueOf((char) (EMPLACEMENT + numero));
+    }
+
+    /**
+     * Écrit le modèle à une profondeur et le découpe en segments.
+     *
+     * @param profondeur Profondeur (indentation) de départ.
+     * @param mise_en_forme Mise en forme de l'XML.
+     * @return Le rendu.
+     */
+    private Rendu compiler(int profondeur, PrettyPrint mise_en_forme) {
+        StringBuilder xml = new StringBuilder();
+        XmlSink sink = new XmlSink(xml, profondeur, mise_en_forme);
+
+        try {
+            this.ecriture.writeTo(sink);
+        } catch (IOException exception) {
+            // Un StringBuilder ne lève jamais d'IOException.
+            throw new UncheckedIOException(exception);
+        }
+
+        if (sink.getProfondeur() != profondeur) {
+            throw new IllegalArgumentException("Le modèle doit fermer toutes les balises qu'il ouvre.");
+        }
+
+        ArrayList<String> segments = new ArrayList<String>();
+        ArrayList<Integer> emplacements = new ArrayList<Integer>();
+        int debut = 0;
+
+        for (int i = 0; i < xml.length(); i++) {
+            int numero = xml.charAt(i) - EMPLACEMENT;
+
+            if (numero >= 0 && numero < EMPLACEMENTS_MAX) {
+                segments.add(xml.substring(debut, i));
+                emplacements.add(numero);
+                debut = i + 1;
+            }
+        }
+
+        segments.add(xml.substring(debut));
+
+        int[] numeros = new int[emplacements.size()];
+
+        for (int i = 0; i < numeros.length; i++) {
+            numeros[i] = emplacements.get(i);
+        }
+
+        return new Rendu(segments.toArray(new String[0]), numeros);
+    }
+
+    /**
+     * Retourne le rendu du modèle à une profondeur (compilé à la première
+     * utilisation).
+     *
+     * @param profondeur Profondeur (indentation) de départ.
+     * @param mise_en_forme Mise en forme de l'XML.
+     * @return Le rendu.
+     */
+    private Rendu rendu(int profondeur, PrettyPrint mise_en_forme) {
+        Integer cle = profondeur * MISES_EN_FORME + mise_en_forme.ordinal();
+        Rendu rendu = this.rendus.get(cle);
+
+        if (rendu == null) {
+            rendu = this.compiler(profondeur, mise_en_forme);
+
+            Rendu existant = this.rendus.putIfAbsent(cle, rendu);
+
+            if (existant != null) {
+                rendu = existant;
+            }
+        }
+
+        return rendu;
+    }
+
+    /**
+     * Écrit le modèle à la profondeur actuelle d'un {@code XmlSink}.
+     *
+     * @param sink Où écrire l'XML.
+     * @param parametres Ce qui écrit la valeur de chaque emplacement.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    public void writeTo(XmlSink sink, Parametres parametres) throws IOException {
+        Rendu rendu = this.rendu(sink.getProfondeur(), sink.getMiseEnForme());
+
+        sink.inclure(rendu.segments[0]);
+
+        for (int i = 0; i < rendu.emplacements.length; i++) {
+            parametres.writeTo(rendu.emplacements[i], sink);
+            sink.inclure(rendu.segments[i + 1]);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.phenix.xmlfcp7.effect;
+
+import com.phenix.xmlfcp7.Media;
+import com.phenix.xmlfcp7.MediaVideo;
+import com.phenix.xmlfcp7.Timeline;
+import com.phenix.xmlfcp7.XmlSink;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Effet {@code Basic Motion} (échelle et position) écrit sur chaque clip
+ * vidéo. Les valeurs viennent du clip ({@link MediaVideo#getEchelle()
+ * getEchelle} et sa position dans l'image de la timeline).<br>
+ * Un {@code Mouvement} ajouté au clip ({@link Media#addEffect(Effect)
+ * addEffect}) remplace celui écrit d'office : ses courbes ({@link #ECHELLE},
+ * {@link #HORIZONTALE} et {@link #VERTICALE}) animent l'échelle et la
+ * position, dans les unités de l'XML (position : 0 = centre).
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class Mouvement extends Effect {
+
+    /**
+     * Nom du paramètre échelle (100 = 100%, voir
+     * {@link #setCourbe(String, Courbe) setCourbe}).
+     */
+    public static final String ECHELLE = "scale";
+
+    /**
+     * Nom du paramètre position horizontale.
+     */
+    public static final String HORIZONTALE = "horiz";
+
+    /**
+     * Nom du paramètre position verticale.
+     */
+    public static final String VERTICALE = "vert";
+
+    /**
+     * Emplacement de l'échelle.
+     */
+    private static final int EMPLACEMENT_ECHELLE = 0;
+
+    /**
+     * Emplacement de la position horizontale.
+     */
+    private static final int EMPLACEMENT_HORIZONTALE = 1;
+
+    /**
+     * Emplacement de la position verticale.
+     */
+    private static final int EMPLACEMENT_VERTICALE = 2;
+
+    /**
+     * Emplacement de l'image de début du filtre (DaVinci Resolve).
+     */
+    private static final int EMPLACEMENT_DEBUT = 3;
+
+    /**
+     * Emplacement de l'image de fin du filtre (DaVinci Resolve).
+     */
+    private static final int EMPLACEMENT_FIN = 4;
+
+    /**
+     * Format des positions pour Adobe Premiere (un par thread :
+     * {@link DecimalFormat} n'est pas thread-safe).
+     */
+    private static final ThreadLocal<DecimalFormat> FORMAT_PREMIERE = ThreadLocal.withInitial(() -> new DecimalFormat("#.#########", new DecimalFormatSymbols(Locale.ENGLISH)));
+
+    /**
+     * Modèle de l'effet sans animation pour Adobe Premiere.
+     */
+    private static final ModeleXml MODELE_PREMIERE = modele(false);
+
+    /**
+     * Modèle de l'effet sans animation pour DaVinci Resolve.
+     */
+    private static final ModeleXml MODELE_RESOLVE = modele(true);
+
+    /**
+     * Serializer de l'effet pour Adobe Premiere.
+     */
+    static final EffectSerializer<Mouvement> SERIALIZER_PREMIERE = (effet, clip, timeline, sink) -> ecrire(MODELE_PREMIERE, false, effet, clip, timeline, sink);
+
+    /**
+     * Serializer de l'effet pour DaVinci Resolve.
+     */
+    static final EffectSerializer<Mouvement> SERIALIZER_RESOLVE = (effet, clip, timeline, sink) -> ecrire(MODELE_RESOLVE, true, effet, clip, timeline, sink);
+
+    /**
+     * Construit l'effet {@code Basic Motion}.
+     */
+    public Mouvement() {
+    }
+
+    /**
+     * Écrit l'effet d'un clip.
+     *
+     * @param modele Le modèle sans animation.
+     * @param resolve Si l'XML est pour DaVinci Resolve.
+     * @param effet L'effet.
+     * @param clip Le média du clip ({@code null} : valeurs par défaut).
+     * @param timeline La timeline du clip.
+     * @param sink Où écrire l'XML.
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private static void ecrire(ModeleXml modele, boolean resolve, Mouvement effet, Media clip, Timeline timeline, XmlSink sink) throws IOException {
+        MediaVideo video = (clip instanceof MediaVideo) ? (MediaVideo) clip : null;
+        boolean position = video != null && timeline != null;
+        double horizontale = position ? video.getPositionHorizontale(timeline.getLargeur(), timeline.getHauteur(), timeline.getPAR()) : 0;
+        double verticale = position ? video.getPositionVerticale(timeline.getLargeur(), timeline.getHauteur(), timeline.getPAR()) : 0;
+        long debut = (clip != null) ? clip.getImageStart() : 0;
+
+        ModeleXml.Parametres valeurs = (emplacement, s) -> {
+            switch (emplacement) {
+                case EMPLACEMENT_ECHELLE:
+                    s.texte((video != null) ? video.getEchelle() : 100);
+                    break;
+                case EMPLACEMENT_HORIZONTALE:
+                    s.texte(position(horizontale, resolve));
+                    break;
+                case EMPLACEMENT_VERTICALE:
+                    s.texte(position(verticale, resolve));
+                    break;
+                case EMPLACEMENT_DEBUT:
+                    s.texte(debut);
+                    break;
+                default:
+                    s.texte(debut + ((clip != null) ? clip.getImageDuree() : 0));
+                    break;
+            }
+        };
+
+        Courbe courbe_echelle = effet.courbe(ECHELLE);
+        Courbe courbe_horizontale = effet.courbe(HORIZONTALE);
+        Courbe courbe_verticale = effet.courbe(VERTICALE);
+
+        if (courbe_echelle == null && courbe_horizontale == null && courbe_verticale == null) {
+            modele.writeTo(sink, valeurs);
+            return;
+        }
+
+        // Animé : les valeurs fixes sont mises en forme comme dans le modèle.
+        ecrireFiltre(sink, resolve, texte(valeurs, EMPLACEMENT_DEBUT), texte(valeurs, EMPLACEMENT_FIN),
+                texte(valeurs, EMPLACEMENT_ECHELLE), texte(valeurs, EMPLACEMENT_HORIZONTALE), texte(valeurs, EMPLACEMENT_VERTICALE),
+                courbe_echelle, courbe_horizontale, courbe_verticale);
+    }
+
+    /**
+     * Écrit le filtre, avec ou sans animation.
+     *
+     * @param sink Où écrire l'XML.
+     * @param resolve Si l'XML est pour DaVinci Resolve.
+     * @param debut Image de début du filtre (DaVinci Resolve).
+     * @param fin Image de fin du filtre (DaVinci Resolve).
+     * @param echelle Échelle fixe.
+     * @param horizontale Position horizontale fixe (si elle n'est pas animée).
+     * @param verticale Position verticale fixe (si elle n'est pas animée).
+     * @param courbe_echelle Courbe de l'échelle ({@code null} : fixe).
+     * @param courbe_horizontale Courbe de la position horizontale
+     * ({@code null} : fixe).
+     * @param courbe_verticale Courbe de la position verticale ({@code null} :
+     * fixe).
+     * @throws IOException Erreur d'écriture dans la sortie.
+     */
+    private static void ecrireFiltre(XmlSink sink, boolean resolve, String debut, String fin, String echelle, String horizontale, String verticale,
+            Courbe courbe_echelle, Courbe courbe_horizontale, Courbe courbe_verticale) throws IOException {
+        sink.ouvre("filter");
+
+        if (resolve) {
+            sink.element("enabled", "TRUE");
+            sink.element("start", debut);
+            sink.element("end", fin);
+        }
+
+        sink.ouvre("effect");
+        sink.element("name", "Basic Motion");
+        sink.element("effectid", "basic");
+        sink.element("effectcategory", "motion");
+        sink.element("effecttype", "motion");
+        sink.element("mediatype", "video");
+        sink.element("pproBypass", "false");
+        sink.debutBalise("parameter").attribut("authoringApp", "PremierePro").finBalise();
+        sink.element("parameterid", "scale");
+        sink.element("name", "Scale");
+        sink.element("valuemin", 0);
+        sink.element("valuemax", 1000);
+
+        if (courbe_echelle != null) {
+            courbe_echelle.writeTo(sink);
+        } else {
+            sink.element("value", echelle);
+        }
+
+        sink.ferme("parameter");
+        sink.debutBalise("parameter").attribut("authoringApp", "PremierePro").finBalise();
+        sink.element("parameterid", "rotation");
+        sink.element("name", "Rotation");
+        // Rotation ?
+        sink.element("valuemin", -8640);
+        // Rotation ?
+        sink.element("valuemax", 8640);
+        sink.element("value", 0);
+        sink.ferme("parameter");
+        sink.debutBalise("parameter").attribut("authoringApp", "PremierePro").finBalise();
+        sink.element("parameterid", "center");
+        sink.element("name", "Center");
+
+        if (courbe_horizontale != null || courbe_verticale != null) {
+            // Une image clé à chaque image clé de l'une ou l'autre courbe.
+            for (long image : fusionner(courbe_horizontale, courbe_verticale)) {
+                sink.ouvre("keyframe");
+                sink.element("when", image);
+                sink.ouvre("value");
+                sink.element("horiz", (courbe_horizontale != null) ? position(courbe_horizontale.valeur(image), resolve) : horizontale);
+                sink.element("vert", (courbe_verticale != null) ? position(courbe_verticale.valeur(image), resolve) : verticale);
+                sink.ferme("value");
+                sink.ferme("keyframe");
+            }
+        } else {
+            sink.ouvre("value");
+            // Position en X et en Y : 0 = centre.
+            sink.element("horiz", horizontale);
+            sink.element("vert", verticale);
+            sink.ferme("value");
+        }
+
+        sink.ferme("parameter");
+        sink.debutBalise("parameter").attribut("authoringApp", "PremierePro").finBalise();
+        sink.element("parameterid", "centerOffset");
+        sink.element("name", "Anchor Point");
+        sink.ouvre("value");
+        // Point d'ancrage ?
+        sink.element("horiz", 0);
+        // Point d'ancrage ?
+        sink.element("vert", 0);
+        sink.ferme("value");
+        sink.ferme("parameter");
+        sink.ferme("effect");
+        sink.ferme("filter");
+    }
+
+    /**
+     * Retourne les images clés (après réduction) de deux courbes, sans
+     * doublon.
+     *
+     * @param a Première courbe ({@code null} : aucune).
+     * @param b Deuxième courbe ({@code null} : aucune).
+     * @return Les images, triées.
+     */
+    private static long[] fusionner(Courbe a, Courbe b) {
+        long[] images_a = images(a);
+        long[] images_b = images(b);
+        long[] images = new long[images_a.length + images_b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+
+        while (i < images_a.length || j < images_b.length) {
+            long image;
+
+            if (j == images_b.length || (i < images_a.length && images_a[i] < images_b[j])) {
+                image = images_a[i++];
+            } else if (i == images_a.length || images_b[j] < images_a[i]) {
+                image = images_b[j++];
+            } else {
+                image = images_a[i++];
+                j++;
+            }
+
+            images[n++] = image;
+        }
+
+        return Arrays.copyOf(images, n);
+    }
+
+    /**
+     * Retourne les images clés d'une courbe après réduction.
+     *
+     * @param courbe La courbe ({@code null} : aucune).
+     * @return Les images, triées.
+     */
+    private static long[] images(Courbe courbe) {
+        if (courbe == null) {
+            return new long[0];
+        }
+
+        synchronized (courbe) {
+            int[] indices = courbe.reduites();
+            long[] images = new long[indices.length];
+
+            for (int i = 0; i < indices.length; i++) {
+                images[i] = courbe.getImage(indices[i]);
+            }
+
+            return images;
+        }
+    }
+
+    /**
+     * Construit le modèle de l'effet sans animation.
+     *
+     * @param resolve Si l'XML est pour DaVinci Resolve.
+     * @return Le modèle.
+     */
+    private static ModeleXml modele(boolean resolve) {
+        return new ModeleXml(sink -> ecrireFiltre(sink, resolve,
+                ModeleXml.emplacement(EMPLACEMENT_DEBUT), ModeleXml.emplacement(EMPLACEMENT_FIN), ModeleXml.emplacement(EMPLACEMENT_ECHELLE),
+                ModeleXml.emplacement(EMPLACEMENT_HORIZONTALE), ModeleXml.emplacement(EMPLACEMENT_VERTICALE), null, null, null));
+    }
+
+    /**
+     * Met en forme une position.
+     *
+     * @param position La position (0 = centre).
+     * @param resolve Si l'XML est pour DaVinci Resolve.
+     * @return La position telle qu'écrite dans l'XML.
+     */
+    private static String position(double position, boolean resolve) {
+        return resolve ? String.valueOf(position) : FORMAT_PREMIERE.get().format(position);
+    }
+
+    /**
+     * Retourne la valeur d'un emplacement mise en forme.
+     *
+     * @param valeurs Ce qui écrit les valeurs.
+     * @param emplacement Numéro de l'emplacement.
+     * @return La valeur.
+     */
+    private static String texte(ModeleXml.Parametres valeurs, int emplacement) {
+        return XmlSink.enChaine(sink -> valeurs.writeTo(emplacement, sink));
+    }
+}
@@ -0,0 +1,97 @@
+package com.phenix.xmlfcp7.effect;
+
+/**
+ * Effet {@code Time Remap} qui fige l'image d'un clip (image fixe dans
+ * DaVinci Resolve, voir {@link com.phenix.xmlfcp7.MediaVideo#isFreeze()
+ * isFreeze}).
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class RemappageTemps extends Effect {
+
+    /**
+     * Modèle de l'effet (sans paramètre).
+     */
+    private static final ModeleXml MODELE = new ModeleXml(sink -> {
+        sink.ouvre("filter");
+        sink.element("enabled", "TRUE");
+        sink.element("start", -1);
+        sink.element("end", -1);
+        sink.ouvre("effect");
+        sink.element("name", "Time Remap");
+        sink.element("effectid", "timeremap");
+        sink.element("effecttype", "motion");
+        sink.element("mediatype", "video");
+        sink.element("effectcategory", "motion");
+        sink.ouvre("parameter");
+        sink.element("name", "speed");
+        sink.element("parameterid", "speed");
+        sink.element("value", 0);
+        sink.element("valuemin", -10000);
+        sink.element("valuemax", 10000);
+        sink.ferme("parameter");
+        sink.ouvre("parameter");
+        sink.element("name", "reverse");
+        sink.element("parameterid", "reverse");
+        sink.element("value", "FALSE");
+        sink.ferme("parameter");
+        sink.ouvre("parameter");
+        sink.element("name", "frameblending");
+        sink.element("parameterid", "frameblending");
+        sink.element("value", "FALSE");
+        sink.ferme("parameter");
+        sink.ouvre("parameter");
+        sink.element("name", "variablespeed");
+        sink.element("parameterid", "variablespeed");
+        sink.element("value", 0);
+        sink.element("valuemin", 0);
+        sink.element("valuemax", 1);
+        sink.ferme("parameter");
+        sink.ouvre("parameter");
+        sink.element("name", "graphdict");
+        sink.element("parameterid", "graphdict");
+        sink.ouvre("keyframe");
+        sink.element("when", 0);
+        sink.element("value", 0);
+        sink.element("speedvirtualkf", "TRUE");
+        sink.element("speedkfstart", "TRUE");
+        sink.ferme("keyframe");
+        sink.ouvre("keyframe");
+        sink.element("when", 86400);
+        sink.element("value", 0);
+        sink.element("speedvirtualkf", "TRUE");
+        sink.element("speedkfin", "TRUE");
+        sink.ferme("keyframe");
+        sink.ouvre("keyframe");
+        sink.element("when", 86520);
+        sink.element("value", 0);
+        sink.element("speedvirtualkf", "TRUE");
+        sink.element("speedkfout", "TRUE");
+        sink.ferme("keyframe");
+        sink.ouvre("keyframe");
+        sink.element("when", 1440001);
+        sink.element("value", 1);
+        sink.element("speedvirtualkf", "TRUE");
+        sink.element("speedkfend", "TRUE");
+        sink.ferme("keyframe");
+        sink.element("valuemin", 0);
+        sink.element("valuemax", 0);
+        sink.ouvre("interpolation");
+        sink.element("name", "FCPCurve");
+        sink.ferme("interpolation");
+        sink.ferme("parameter");
+        sink.ferme("effect");
+        sink.ferme("filter");
+    });
+
+    /**
+     * Serializer de l'effet (le même pour tous les logiciels).
+     */
+    static final EffectSerializer<RemappageTemps> SERIALIZER = (effet, clip, timeline, sink) -> MODELE.writeTo(sink, null);
+
+    /**
+     * Construit l'effet {@code Time Remap}.
+     */
+    public RemappageTemps() {
+    }
+}
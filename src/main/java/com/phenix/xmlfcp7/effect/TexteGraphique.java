@@ -0,0 +1,94 @@
+package com.phenix.xmlfcp7.effect;
+
+import com.phenix.xmlfcp7.MediaTexte;
+
+/**
+ * Effet texte d'Adobe CC2023 ({@code GraphicAndType}) écrit sur chaque clip
+ * {@link MediaTexte} : son nom est le texte du clip.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public final class TexteGraphique extends Effect {
+
+    /**
+     * Paramètres de l'effet texte d'Adobe CC2023 (sauf le texte source) :
+     * identifiant, nom, type de contrôle, borne inférieure, borne supérieure et
+     * valeur. Le type de contrôle et les bornes sont à {@code null} quand le
+     * paramètre n'en a pas.
+     */
+    private static final String[][] PARAMETRES = {
+        {"2", "Transformation", "11", "false", "false", "-91445760000000000,false,0,0,0,0,0,0"},
+        {"3", "Position", null, null, null, "-91445760000000000,0.5:0.5,0,0,0,0,0,0,5,4,0,0,0,0"},
+        {"4", "Echelle", "2", "0", "4000", "-91445760000000000,100.,0,0,0,0,0,0"},
+        {"5", "Echelle horizontale", "2", "0", "4000", "-91445760000000000,100.,0,0,0,0,0,0"},
+        {"6", " ", "4", "false", "true", "-91445760000000000,true,0,0,0,0,0,0"},
+        {"7", "Rotation", "3", "-32768", "32767", "-91445760000000000,0.,0,0,0,0,0,0"},
+        {"8", "Opacité", "2", "0", "100", "-91445760000000000,100.,0,0,0,0,0,0"},
+        {"9", "Point d'ancrage", null, null, null, "-91445760000000000,0:0,0,0,0,0,0,0,5,4,0,0,0,0"},
+        {"10", "", "12", "false", "false", "-91445760000000000,false,0,0,0,0,0,0"},
+        {"11", " ", "8", "0", "32768", "-91445760000000000,0.,0,0,0,0,0,0"},
+        {"12", " ", "8", "0", "32768", "-91445760000000000,0.,0,0,0,0,0,0"},
+        {"13", "start", "8", "-100", "1000000000", "-91445760000000000,8.,0,0,0,0,0,0"},
+        {"14", "end", "8", "-100", "1000000000", "-91445760000000000,8.,0,0,0,0,0,0"},
+        {"15", " ", "4", "false", "true", "-91445760000000000,false,0,0,0,0,0,0"},
+        {"16", " ", "4", "false", "true", "-91445760000000000,false,0,0,0,0,0,0"},
+        {"17", " ", "4", "false", "true", "-91445760000000000,false,0,0,0,0,0,0"},
+        {"18", " ", "4", "false", "true", "-91445760000000000,false,0,0,0,0,0,0"},
+        {"19", "Largeur du parent", "2", "0", "20000", "-91445760000000000,0.,0,0,0,0,0,0"},
+        {"20", "Hauteur du parent", "2", "0", "20000", "-91445760000000000,0.,0,0,0,0,0,0"},
+        {"21", "Rotation du parent", "3", "-32768", "32767", "-91445760000000000,0.,0,0,0,0,0,0"},
+        {"22", " ", "4", "false", "true", "-91445760000000000,false,0,0,0,0,0,0"}
+    };
+
+    /**
+     * Modèle de l'effet : le texte est l'emplacement 0.
+     */
+    private static final ModeleXml MODELE = new ModeleXml(sink -> {
+        sink.ouvre("filter");
+        sink.ouvre("effect");
+        sink.element("name", ModeleXml.emplacement(0));
+        sink.element("effectid", "GraphicAndType");
+        sink.element("effectcategory", "graphic");
+        sink.element("effecttype", "filter");
+        sink.element("mediatype", "video");
+        sink.element("pproBypass", "false");
+        sink.debutBalise("parameter").attribut("authoringApp", "PremierePro").finBalise();
+        sink.element("parameterid", 1);
+        sink.element("name", "Texte source");
+        sink.element("hash", "2d03c7ab-2985-2ec9-45bf-033100000154");
+        sink.element("value", "PAEAAAAAAABEMyIRDAAAAAAABgAKAAQABgAAAGQAAAAAAF4AGAAQAAwAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAFgAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAgAAAAAABcABwBeAAAAAAAAARAAAAAcAAAALAAAAAAAAQBo////bP///3D///90////AQAAAAQAAAAGAAAAVGFob21hAAABAAAADAAAAAgADgAEAAgACAAAAGgAAAA8AAAAAAA2ABQAAAAAAAAAAAAAAAAAEAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAADAAAAAgABAA2AAAAAgAAAAwAAAAMAAAAAACAQPT////4/////P///wQABAAEAAAACAAAAEJvbmpvdXINAAAAAA==");
+        sink.ferme("parameter");
+
+        for (String[] parametre : PARAMETRES) {
+            sink.debutBalise("parameter").attribut("authoringApp", "PremierePro").finBalise();
+            sink.element("parameterid", parametre[0]);
+            sink.element("name", parametre[1]);
+            sink.element("IsTimeVarying", "false");
+
+            // Certains paramètres n'ont ni type de contrôle ni bornes.
+            if (parametre[2] != null) {
+                sink.element("ParameterControlType", parametre[2]);
+                sink.element("LowerBound", parametre[3]);
+                sink.element("UpperBound", parametre[4]);
+            }
+
+            sink.element("value", parametre[5]);
+            sink.ferme("parameter");
+        }
+
+        sink.ferme("effect");
+        sink.ferme("filter");
+    });
+
+    /**
+     * Serializer de l'effet (le même pour tous les logiciels).
+     */
+    static final EffectSerializer<TexteGraphique> SERIALIZER = (effet, clip, timeline, sink) -> MODELE.writeTo(sink,
+            (emplacement, s) -> s.texte((clip instanceof MediaTexte) ? ((MediaTexte) clip).getTexte() : ""));
+
+    /**
+     * Construit l'effet texte.
+     */
+    public TexteGraphique() {
+    }
+}
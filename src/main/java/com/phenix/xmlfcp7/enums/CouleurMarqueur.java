@@ -140,6 +140,25 @@ public enum CouleurMarqueur {
         return null;
     }
 
+    /**
+     * Retourne une couleur de marqueur selon ses canaux (cas de DaVinci
+     * Resolve).
+     *
+     * @param rouge Valeur du canal rouge.
+     * @param vert Valeur du canal vert.
+     * @param bleu Valeur du canal bleu.
+     * @return La couleur ou {@code null} si elle n'est pas connue.
+     */
+    public static CouleurMarqueur fromCanaux(int rouge, int vert, int bleu) {
+        for (CouleurMarqueur couleur : values()) {
+            if (couleur.canal_rouge == rouge && couleur.canal_vert == vert && couleur.canal_bleu == bleu) {
+                return couleur;
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Afficher la couleur c'est afficher la valeur d'Adobe Premiere.
      *
@@ -34,6 +34,22 @@ public enum CouleurMedia {
         this.couleur_premiere = couleur_premiere;
     }
 
+    /**
+     * Retourne une couleur de média selon la couleur d'Adobe Premiere.
+     *
+     * @param couleur_premiere Couleur Adobe Premiere.
+     * @return La couleur ou {@code null} si elle n'est pas connue.
+     */
+    public static CouleurMedia fromCouleurPremiere(String couleur_premiere) {
+        for (CouleurMedia couleur : values()) {
+            if (couleur.couleur_premiere.equals(couleur_premiere)) {
+                return couleur;
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Retourne la valeur de la couleur pour Adobe Premiere.
      *
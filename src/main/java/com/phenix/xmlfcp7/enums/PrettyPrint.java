@@ -0,0 +1,20 @@
+package com.phenix.xmlfcp7.enums;
+
+/**
+ * Mise en forme de l'XML écrit.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+public enum PrettyPrint {
+
+    /**
+     * Aucune mise en forme : ni indentation ni retour à la ligne. Pour les
+     * échanges entre logiciels, l'XML est plus petit et plus rapide à écrire
+     * et à lire.
+     */
+    NONE,
+    /**
+     * Une balise par ligne, indentée avec des tabulations.
+     */
+    TABS;
+}
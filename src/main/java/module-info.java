@@ -3,6 +3,7 @@
  */
 module com.phenix.xmlfcp7 {
     requires com.phenix.timecode;
+    requires java.xml;
 
     exports com.phenix.xmlfcp7;
     exports com.phenix.xmlfcp7.enums;
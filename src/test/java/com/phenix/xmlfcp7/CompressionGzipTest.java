@@ -0,0 +1,125 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Export compressé en gzip et relecture des fichiers compressés.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class CompressionGzipTest {
+
+    /**
+     * Exporte un projet en mémoire, sans ses identifiants uniques.
+     *
+     * @param projet Le projet.
+     * @return L'XML.
+     * @throws IOException Erreur d'écriture.
+     */
+    private static String exporter(XMLFCP7 projet) throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        projet.exporter(sortie);
+        return sortie.toString(StandardCharsets.UTF_8).replaceAll("(?m)^.*<uuid>.*</uuid>\\R", "");
+    }
+
+    /**
+     * Construit un projet avec un dossier et une timeline.
+     *
+     * @return Le projet.
+     */
+    private static XMLFCP7 projet() {
+        XMLFCP7 projet = new XMLFCP7(Logiciel.PREMIERE);
+        Timeline timeline = new Timeline("Montage", 25);
+        timeline.setDimension(1920, 1080);
+
+        for (int i = 0; i < 200; i++) {
+            MediaVideo video = new MediaVideo("plan" + (i % 9) + ".mov", 25);
+            video.setLocalisation("file://localhost/plan" + (i % 9) + ".mov");
+            video.setStart(new Timecode(0, 25));
+            video.setIn(new Timecode(0, 25));
+            video.setOut(new Timecode(24, 25));
+            video.setDimension(1920, 1080);
+            timeline.addMedia(1, video, new Timecode(i * 25, 25), new Timecode(i * 25 + 24, 25), true);
+        }
+
+        projet.addTimeline(timeline);
+        projet.addDossier(new Dossier("Rushes"));
+        return projet;
+    }
+
+    /**
+     * Un projet exporté dans un fichier {@code .gz} est compressé, et sa
+     * relecture donne le même projet que celle du fichier non compressé.
+     *
+     * @param dossier Dossier temporaire.
+     * @throws IOException Erreur d'écriture ou de lecture.
+     * @throws XMLStreamException XML mal formé.
+     */
+    @Test
+    void relitUnFichierCompresse(@TempDir Path dossier) throws IOException, XMLStreamException {
+        XMLFCP7 projet = projet();
+        Path compresse = dossier.resolve("projet.xml.gz");
+        Path simple = dossier.resolve("projet.xml");
+        projet.exporter(compresse);
+        projet.exporter(simple);
+
+        byte[] octets = Files.readAllBytes(compresse);
+        Assertions.assertEquals(0x1f, octets[0] & 0xff);
+        Assertions.assertEquals(0x8b, octets[1] & 0xff);
+        Assertions.assertTrue(octets.length < Files.size(simple));
+
+        try (InputStream entree = new GZIPInputStream(new ByteArrayInputStream(octets))) {
+            Assertions.assertArrayEquals(Files.readAllBytes(simple), entree.readAllBytes());
+        }
+
+        XMLFCP7 relu = XMLFCP7.lire(compresse);
+        Assertions.assertEquals(1, relu.getListeTimeline().size());
+        Assertions.assertEquals("Montage", relu.getListeTimeline().get(0).getNom());
+        Assertions.assertEquals(200, relu.getListeTimeline().get(0).getClipsVideo().getTaille());
+        Assertions.assertEquals("Rushes", relu.getListeDossier().get(0).getNom());
+        Assertions.assertEquals(exporter(XMLFCP7.lire(simple)), exporter(relu));
+    }
+
+    /**
+     * Exporter en gzip dans un canal termine le gzip sans fermer le canal.
+     *
+     * @throws IOException Erreur d'écriture ou de lecture.
+     */
+    @Test
+    void laisseLeCanalOuvert() throws IOException {
+        XMLFCP7 projet = projet();
+        ByteArrayOutputStream simple = new ByteArrayOutputStream();
+        projet.exporter(simple);
+
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        WritableByteChannel canal = Channels.newChannel(sortie);
+        projet.setCompressionGzip(true);
+        projet.exporter(canal);
+
+        Assertions.assertTrue(canal.isOpen());
+
+        try (InputStream entree = new GZIPInputStream(new ByteArrayInputStream(sortie.toByteArray()))) {
+            Assertions.assertArrayEquals(simple.toByteArray(), entree.readAllBytes());
+        }
+
+        // Le canal sert encore après l'export.
+        projet.exporter(canal);
+        Assertions.assertTrue(canal.isOpen());
+        canal.close();
+    }
+}
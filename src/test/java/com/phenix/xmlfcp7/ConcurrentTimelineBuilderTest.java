@@ -0,0 +1,166 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import com.phenix.xmlfcp7.enums.Alpha;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * La timeline construite ne dépend pas de l'ordre dans lequel les threads
+ * ont ajouté les clips.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class ConcurrentTimelineBuilderTest {
+
+    /**
+     * Construit les clips : beaucoup commencent à la même image, sur la même
+     * piste, avec la même fin, et ne diffèrent que par leur média (nom ou
+     * points in et out).
+     *
+     * @return Les clips.
+     */
+    private static List<ClipSpec> clips() {
+        ArrayList<ClipSpec> clips = new ArrayList<ClipSpec>();
+
+        for (int i = 0; i < 400; i++) {
+            MediaVideo video = new MediaVideo("plan" + (i % 5) + ".mov", 25);
+            video.setLocalisation("file://localhost/plan" + (i % 5) + ".mov");
+            video.setImageIn(i % 7);
+            video.setImageOut(100 + i % 7);
+            video.setDimension(1920, 1080);
+
+            long debut = (i / 20) * 50L;
+            clips.add(new ClipSpec(video, 1, debut, debut + 49, i % 3 != 0));
+        }
+
+        return clips;
+    }
+
+    /**
+     * Construit une vidéo que le tri des clips ne distingue que par ce que
+     * l'export écrit d'elle (bobine, type d'alpha).
+     *
+     * @param bobine Nom de la bobine.
+     * @param alpha Type d'alpha.
+     * @return La vidéo.
+     */
+    private static MediaVideo collision(String bobine, Alpha alpha) {
+        MediaVideo video = new MediaVideo("plan.mov", 25);
+        video.setLocalisation("file://localhost/plan.mov");
+        video.setImageIn(0);
+        video.setImageOut(49);
+        video.setDimension(1920, 1080);
+        video.setNomBobine(bobine);
+        video.setAlpha(alpha);
+        return video;
+    }
+
+    /**
+     * Exporte une timeline seule, sans ses identifiants uniques.
+     *
+     * @param timeline La timeline.
+     * @return L'XML.
+     * @throws IOException Erreur d'écriture.
+     */
+    private static String exporter(Timeline timeline) throws IOException {
+        XMLFCP7 projet = new XMLFCP7(Logiciel.PREMIERE);
+        timeline.setDimension(1920, 1080);
+        projet.addTimeline(timeline);
+
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        projet.exporter(sortie);
+        return sortie.toString(StandardCharsets.UTF_8).replaceAll("(?m)^.*<uuid>.*</uuid>\\R", "");
+    }
+
+    /**
+     * Ajouter les mêmes clips dans n'importe quel ordre, depuis un ou
+     * plusieurs threads, donne le même XML.
+     *
+     * @throws Exception Erreur d'écriture ou d'un thread.
+     */
+    @Test
+    void memeTimelineQuelQueSoitLOrdre() throws Exception {
+        List<ClipSpec> clips = clips();
+
+        ConcurrentTimelineBuilder reference = new ConcurrentTimelineBuilder("Lot", 25);
+
+        for (ClipSpec clip : clips) {
+            reference.addMedia(clip.getPiste(), clip.getMedia(), clip.getIn(), clip.getOut(), clip.isActive());
+        }
+
+        String attendu = exporter(reference.build());
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+
+        try {
+            for (int essai = 0; essai < 10; essai++) {
+                ArrayList<ClipSpec> melange = new ArrayList<ClipSpec>(clips);
+                Collections.shuffle(melange, new Random(essai));
+                ConcurrentTimelineBuilder builder = new ConcurrentTimelineBuilder("Lot", 25);
+                ArrayList<Future<?>> taches = new ArrayList<Future<?>>();
+
+                for (int t = 0; t < 4; t++) {
+                    List<ClipSpec> part = melange.subList(t * 100, (t + 1) * 100);
+                    taches.add(threads.submit(() -> {
+                        for (ClipSpec clip : part) {
+                            builder.addMedia(clip.getPiste(), clip.getMedia(), clip.getIn(), clip.getOut(), clip.isActive());
+                        }
+                    }));
+                }
+
+                for (Future<?> tache : taches) {
+                    tache.get();
+                }
+
+                Assertions.assertEquals(attendu, exporter(builder.build()), "Essai " + essai);
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    /**
+     * Deux médias égaux pour tout sauf leur bobine (ou leur type d'alpha),
+     * ajoutés par deux threads au même début, sur la même piste et avec la
+     * même fin, sont placés de la même façon quel que soit le thread qui
+     * ajoute en premier.
+     *
+     * @throws Exception Erreur d'écriture ou d'un thread.
+     */
+    @Test
+    void departageLesMediasParLeurXml() throws Exception {
+        List<MediaVideo> medias = List.of(collision("A002", Alpha.NONE), collision("A001", Alpha.NONE), collision("A001", Alpha.STRAIGHT));
+        String attendu = null;
+
+        for (int essai = 0; essai < 6; essai++) {
+            ArrayList<MediaVideo> melange = new ArrayList<MediaVideo>(medias);
+            Collections.shuffle(melange, new Random(essai));
+            ConcurrentTimelineBuilder builder = new ConcurrentTimelineBuilder("Lot", 25);
+
+            // Un thread par média, l'un après l'autre : l'ordre des tampons est celui du mélange.
+            for (MediaVideo video : melange) {
+                Thread thread = new Thread(() -> builder.addMedia(1, video, 0, 49, true));
+                thread.start();
+                thread.join();
+            }
+
+            String xml = exporter(builder.build());
+
+            if (attendu == null) {
+                attendu = xml;
+            }
+
+            Assertions.assertEquals(attendu, xml, "Essai " + essai);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Aller-retour entre l'écrivain et le lecteur d'EDL CMX3600.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class EdlTest {
+
+    /**
+     * Lit une EDL.
+     *
+     * @param edl Le texte de l'EDL.
+     * @param rate Framerate de l'EDL.
+     * @return La timeline.
+     * @throws IOException Erreur de lecture.
+     */
+    private static Timeline lire(String edl, RateInfo rate) throws IOException {
+        return new LecteurEDL(new BufferedReader(new StringReader(edl)), "Sans titre", rate).lire();
+    }
+
+    /**
+     * Écrit la piste vidéo 1 et les pistes audio d'une timeline en EDL.
+     *
+     * @param timeline La timeline.
+     * @return Le texte de l'EDL.
+     * @throws IOException Erreur d'écriture.
+     */
+    private static String ecrire(Timeline timeline) throws IOException {
+        StringBuilder edl = new StringBuilder();
+        timeline.writeEdlTo(edl, 1);
+        return edl.toString();
+    }
+
+    /**
+     * Construit un média d'une durée donnée, qui commence à une image source.
+     *
+     * @param media Le média.
+     * @param source Première image source.
+     * @param duree Durée en image.
+     * @param bobine Nom de bobine.
+     * @return Le média.
+     */
+    private static Media media(Media media, long source, long duree, String bobine) {
+        media.setRate(RateInfo.IMAGES_29_97_DF);
+        media.setImageStart(source);
+        media.setImageIn(0);
+        media.setImageOut(duree - 1);
+        media.setNomBobine(bobine);
+        return media;
+    }
+
+    /**
+     * Une timeline écrite en EDL, relue puis écrite à nouveau, donne la même
+     * EDL, avec les clips aux mêmes positions (en 29,97 drop-frame, autour
+     * d'une limite de 10 minutes).
+     *
+     * @throws IOException Erreur d'écriture ou de lecture.
+     */
+    @Test
+    void relitSonPropreTexte() throws IOException {
+        RateInfo rate = RateInfo.IMAGES_29_97_DF;
+        long heure = rate.image("01;00;00;00");
+        Timeline timeline = new Timeline("Aller-retour", 30, new Timecode(0, 30));
+        timeline.setRate(rate);
+
+        timeline.addMedia(1, media(new MediaVideo("plan1.mov"), rate.image("10;09;58;00"), 120, "A001"), heure, heure + 119, true);
+        timeline.addMedia(1, media(new MediaVideo("plan2.mov"), 5000, 300, "A002"), heure + 120, heure + 419, true);
+        timeline.addMedia(1, media(new MediaAudio("son1.wav"), rate.image("10;09;58;00"), 120, "A001"), heure, heure + 119, true);
+        timeline.addMedia(2, media(new MediaAudio("son2.wav"), 0, 420, "MUSIQUE"), heure, heure + 419, true);
+
+        Marqueur marqueur = new Marqueur("", heure + 200, heure + 200, 30);
+        marqueur.setNom("Raccord");
+        marqueur.setCouleur(CouleurMarqueur.ROUGE);
+        timeline.addMarqueur(marqueur);
+
+        String edl = ecrire(timeline);
+        Timeline relue = lire(edl, RateInfo.IMAGES_29_97);
+
+        Assertions.assertEquals("Aller-retour", relue.getNom());
+        Assertions.assertTrue(relue.getRate().isDropFrame());
+        Assertions.assertEquals(2, relue.getClipsVideo().getTaille());
+        Assertions.assertEquals(2, relue.getClipsAudio().getTaille());
+
+        TableClips video = relue.getClipsVideo();
+        int second = video.getClipSuivant(video.getPremierClip(1));
+        Assertions.assertEquals(heure + 120, video.getDebut(second));
+        Assertions.assertEquals(heure + 419, video.getFin(second));
+        Assertions.assertEquals("A002", video.getMedia(second).getNomBobine());
+        Assertions.assertEquals(5000, video.getMedia(second).getImageStart());
+
+        Assertions.assertEquals(1, relue.getListeMarqueur().size());
+        Assertions.assertEquals(heure + 200, relue.getListeMarqueur().get(0).getImageIn());
+        Assertions.assertEquals(CouleurMarqueur.ROUGE, relue.getListeMarqueur().get(0).getCouleur());
+
+        Assertions.assertEquals(edl, ecrire(relue));
+    }
+
+    /**
+     * Un clip plus court ou plus long dans la timeline que ses points in et
+     * out est écrit avec sa durée dans la timeline, pour la source comme pour
+     * l'enregistrement : les événements se suivent sans chevauchement ni trou.
+     *
+     * @throws IOException Erreur d'écriture ou de lecture.
+     */
+    @Test
+    void ecritLaDureeDuClipDansLaTimeline() throws IOException {
+        Timeline timeline = new Timeline("Durées", 25);
+        timeline.setRate(RateInfo.IMAGES_25);
+
+        MediaVideo plan_court = new MediaVideo("court.mov", 25);
+        plan_court.setImageStart(1000);
+        plan_court.setImageIn(0);
+        plan_court.setImageOut(99);
+        plan_court.setNomBobine("A001");
+        timeline.addMedia(1, plan_court, 0, 49, true);
+
+        MediaVideo plan_long = new MediaVideo("long.mov", 25);
+        plan_long.setImageStart(2000);
+        plan_long.setImageIn(10);
+        plan_long.setImageOut(59);
+        plan_long.setNomBobine("A002");
+        timeline.addMedia(1, plan_long, 50, 149, true);
+
+        String edl = ecrire(timeline);
+
+        Assertions.assertEquals("TITLE: Durées\n"
+                + "FCM: NON-DROP FRAME\n"
+                + "\n"
+                + "001  A001     V     C        00:00:40:00 00:00:42:00 00:00:00:00 00:00:02:00\n"
+                + "* FROM CLIP NAME: court.mov\n"
+                + "002  A002     V     C        00:01:20:10 00:01:24:10 00:00:02:00 00:00:06:00\n"
+                + "* FROM CLIP NAME: long.mov\n", edl);
+
+        TableClips video = lire(edl, RateInfo.IMAGES_25).getClipsVideo();
+        int premier = video.getPremierClip(1);
+        Assertions.assertEquals(49, video.getFin(premier));
+        Assertions.assertEquals(149, video.getFin(video.getClipSuivant(premier)));
+    }
+
+    /**
+     * Une EDL avec un fondu et du noir est relue puis écrite en coupes
+     * franches : le clip entrant garde toute sa durée, le noir disparaît.
+     *
+     * @throws IOException Erreur d'écriture ou de lecture.
+     */
+    @Test
+    void ecritUneEdlLueEnCoupesFranches() throws IOException {
+        String edl = "TITLE: Fondu\n"
+                + "FCM: NON-DROP FRAME\n"
+                + "\n"
+                + "001  BL       V     C        00:00:00:00 00:00:01:00 01:00:00:00 01:00:01:00\n"
+                + "002  A001     V     C        00:00:10:00 00:00:10:00 01:00:01:00 01:00:01:00\n"
+                + "002  A002     V     D    025 00:00:20:00 00:00:22:00 01:00:01:00 01:00:03:00\n"
+                + "* FROM CLIP NAME: sortant.mov\n"
+                + "* TO CLIP NAME: entrant.mov\n"
+                + "* LOC: 01:00:02:00 BLUE    Milieu\n";
+
+        Timeline timeline = lire(edl, RateInfo.IMAGES_25);
+
+        Assertions.assertEquals("TITLE: Fondu\n"
+                + "FCM: NON-DROP FRAME\n"
+                + "\n"
+                + "001  A002     V     C        00:00:20:00 00:00:22:00 01:00:01:00 01:00:03:00\n"
+                + "* FROM CLIP NAME: entrant.mov\n"
+                + "* LOC: 01:00:02:00 BLUE    Milieu\n", ecrire(timeline));
+        Assertions.assertEquals(ecrire(timeline), ecrire(lire(ecrire(timeline), RateInfo.IMAGES_25)));
+    }
+}
@@ -0,0 +1,173 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * L'export en parallèle donne exactement les mêmes octets que l'export sur un
+ * seul thread.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class ExportParalleleTest {
+
+    /**
+     * Construit une vidéo de 25 images.
+     *
+     * @param fichier Nom du fichier.
+     * @return La vidéo.
+     */
+    private static MediaVideo video(String fichier) {
+        MediaVideo video = new MediaVideo(fichier, 25);
+        video.setLocalisation("file://localhost/" + fichier);
+        video.setImageStart(0);
+        video.setImageIn(0);
+        video.setImageOut(24);
+        video.setDimension(1920, 1080);
+        return video;
+    }
+
+    /**
+     * Construit une timeline dont les clips utilisent des fichiers partagés
+     * avec les autres timelines et les dossiers.
+     *
+     * @param nom Nom de la timeline.
+     * @param clips Nombre de clips.
+     * @return La timeline.
+     */
+    private static Timeline timeline(String nom, int clips) {
+        Timeline timeline = new Timeline(nom, 25);
+        timeline.setDimension(1920, 1080);
+
+        for (int i = 0; i < clips; i++) {
+            timeline.addMedia(1 + i % 3, video("plan" + (i % 7) + ".mov"), i * 10L, i * 10L + 24, true);
+        }
+
+        return timeline;
+    }
+
+    /**
+     * Construit un projet avec des dossiers imbriqués, des timelines à la
+     * racine et dans les dossiers, et des médias partagés.
+     *
+     * @param logiciel Logiciel de destination.
+     * @return Le projet.
+     */
+    private static XMLFCP7 projet(Logiciel logiciel) {
+        XMLFCP7 projet = new XMLFCP7(logiciel);
+
+        for (int d = 0; d < 6; d++) {
+            Dossier dossier = new Dossier("Dossier " + d);
+            Dossier sous_dossier = new Dossier("Sous-dossier " + d);
+
+            for (int m = 0; m < 5; m++) {
+                dossier.addMedia(video("plan" + ((d + m) % 7) + ".mov"));
+                sous_dossier.addMedia(video("rush" + d + "_" + m + ".mov"));
+            }
+
+            sous_dossier.addTimeline(timeline("Bout à bout " + d, 20));
+            dossier.addDossier(sous_dossier);
+            projet.addDossier(dossier);
+        }
+
+        for (int t = 0; t < 6; t++) {
+            projet.addTimeline(timeline("Montage " + t, 40));
+        }
+
+        projet.addMediaVideo(video("plan0.mov"));
+        projet.addMediaVideo(video("seul.mov"));
+        return projet;
+    }
+
+    /**
+     * Exporte un projet en mémoire.
+     *
+     * @param projet Le projet.
+     * @return Les octets exportés.
+     * @throws IOException Erreur d'écriture.
+     */
+    private static byte[] exporter(XMLFCP7 projet) throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        projet.exporter(sortie);
+        return sortie.toByteArray();
+    }
+
+    /**
+     * Oublie les rendus gardés de tous les dossiers et timelines du projet
+     * (en les marquant modifiés) : l'export suivant les rend à nouveau.
+     *
+     * @param projet Le projet.
+     * @param logiciel Logiciel de destination du projet.
+     */
+    private static void invalider(XMLFCP7 projet, Logiciel logiciel) {
+        ArrayDeque<Dossier> pile = new ArrayDeque<Dossier>(projet.getListeDossier());
+
+        while (!pile.isEmpty()) {
+            Dossier dossier = pile.pop();
+            dossier.setNom(dossier.getNom());
+            pile.addAll(dossier.getListeDossier());
+
+            for (Timeline timeline : dossier.getListeTimeline()) {
+                timeline.setLogicielDestination(logiciel);
+            }
+        }
+
+        for (Timeline timeline : projet.getListeTimeline()) {
+            timeline.setLogicielDestination(logiciel);
+        }
+    }
+
+    /**
+     * Le même projet, rendu à nouveau à chaque fois, donne les mêmes octets
+     * sur un thread et en parallèle, pour les deux logiciels.
+     *
+     * @throws IOException Erreur d'écriture.
+     */
+    @Test
+    void memesOctetsQueSurUnThread() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (Logiciel logiciel : Logiciel.values()) {
+                XMLFCP7 projet = projet(logiciel);
+                byte[] serie = exporter(projet);
+
+                projet.setExportParallele(pool);
+
+                for (int essai = 0; essai < 10; essai++) {
+                    invalider(projet, logiciel);
+                    Assertions.assertArrayEquals(serie, exporter(projet), logiciel + ", essai " + essai);
+                }
+
+                // Avec les rendus gardés de l'export précédent.
+                Assertions.assertArrayEquals(serie, exporter(projet), logiciel + ", rendus gardés");
+
+                projet.setExportParallele((ForkJoinPool) null);
+                Assertions.assertArrayEquals(serie, exporter(projet), logiciel + ", de nouveau sur un thread");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Une fois figé, l'allocateur du projet refuse d'attribuer un ID.
+     */
+    @Test
+    void allocateurFigeNeFaitQueLire() {
+        IdAllocator ids = new IdAllocator();
+        MediaVideo reserve = video("reserve.mov");
+        int id = ids.getIdMedia(reserve);
+        ids.figer();
+
+        Assertions.assertEquals(id, ids.getIdMedia(video("reserve.mov")));
+        Assertions.assertThrows(IllegalStateException.class, () -> ids.getIdMedia(video("inconnu.mov")));
+        Assertions.assertThrows(IllegalStateException.class, () -> ids.reserverMasterclip(reserve));
+        Assertions.assertThrows(IllegalStateException.class, ids::nouveauClipitem);
+    }
+}
@@ -0,0 +1,112 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Export d'un projet dans un flux, un canal ou un fichier.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class ExportTest {
+
+    /**
+     * Exporte un projet en mémoire.
+     *
+     * @param projet Le projet.
+     * @return Les octets exportés.
+     * @throws IOException Erreur d'écriture.
+     */
+    private static byte[] exporter(XMLFCP7 projet) throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        projet.exporter(sortie);
+        return sortie.toByteArray();
+    }
+
+    /**
+     * Construit un projet avec un dossier, une timeline à la racine et une
+     * dans le dossier, et des médias partagés.
+     *
+     * @return Le projet.
+     */
+    private static XMLFCP7 projet() {
+        XMLFCP7 projet = new XMLFCP7(Logiciel.PREMIERE);
+        Dossier dossier = new Dossier("Rushes");
+
+        for (int t = 0; t < 2; t++) {
+            Timeline timeline = new Timeline("Montage " + t, 25);
+            timeline.setDimension(1920, 1080);
+
+            for (int i = 0; i < 6; i++) {
+                timeline.addMedia(1 + i % 2, video("plan" + (i % 3) + ".mov"), new Timecode(i * 10, 25), new Timecode(i * 10 + 24, 25), true);
+            }
+
+            if (t == 0) {
+                projet.addTimeline(timeline);
+            } else {
+                dossier.addTimeline(timeline);
+            }
+        }
+
+        dossier.addMedia(video("plan0.mov"));
+        projet.addDossier(dossier);
+        projet.addMediaVideo(video("seul.mov"));
+        return projet;
+    }
+
+    /**
+     * Construit une vidéo de 25 images.
+     *
+     * @param fichier Nom du fichier.
+     * @return La vidéo.
+     */
+    private static MediaVideo video(String fichier) {
+        MediaVideo video = new MediaVideo(fichier, 25);
+        video.setLocalisation("file://localhost/" + fichier);
+        video.setStart(new Timecode(0, 25));
+        video.setIn(new Timecode(0, 25));
+        video.setOut(new Timecode(24, 25));
+        video.setDimension(1920, 1080);
+        return video;
+    }
+
+    /**
+     * Exporter deux fois de suite le même projet donne les mêmes octets :
+     * les IDs repartent de 1 et l'UUID des séquences ne change pas.
+     *
+     * @throws IOException Erreur d'écriture.
+     */
+    @Test
+    void deuxExportsDonnentLesMemesOctets() throws IOException {
+        XMLFCP7 projet = projet();
+        byte[] premier = exporter(projet);
+
+        Assertions.assertArrayEquals(premier, exporter(projet));
+    }
+
+    /**
+     * Un fichier exporté contient les mêmes octets que le flux, et un
+     * fichier plus long déjà présent est remplacé.
+     *
+     * @param dossier Dossier temporaire.
+     * @throws IOException Erreur d'écriture ou de lecture.
+     */
+    @Test
+    void exporteDansUnFichier(@TempDir Path dossier) throws IOException {
+        XMLFCP7 projet = projet();
+        Path fichier = dossier.resolve("projet.xml");
+        byte[] attendu = exporter(projet);
+        Files.write(fichier, new byte[attendu.length + 1000]);
+
+        projet.exporter(fichier);
+
+        Assertions.assertArrayEquals(attendu, Files.readAllBytes(fichier));
+    }
+}
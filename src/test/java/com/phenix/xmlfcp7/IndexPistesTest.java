@@ -0,0 +1,98 @@
+package com.phenix.xmlfcp7;
+
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Placement des clips sur la première piste libre et ordre des clips de
+ * chaque piste.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class IndexPistesTest {
+
+    /**
+     * Placement de référence : essaie les pistes une à une.
+     *
+     * @param occupations Occupation de chaque piste.
+     * @param piste Première piste essayée.
+     * @param debut Première image du clip.
+     * @param fin Dernière image du clip.
+     * @return La piste où le clip est placé.
+     */
+    private static int placerUneAUne(HashMap<Integer, OccupationPiste> occupations, int piste, int debut, int fin) {
+        while (occupations.containsKey(piste) && !occupations.get(piste).estLibre(debut, fin)) {
+            piste++;
+        }
+
+        occupations.computeIfAbsent(piste, p -> new OccupationPiste()).ajouter(debut, fin);
+        return piste;
+    }
+
+    /**
+     * Des clips ajoutés dans l'ordre puis dans le désordre vont sur la même
+     * piste qu'avec une recherche piste par piste, y compris au-delà de la
+     * capacité de départ de l'index.
+     */
+    @Test
+    void placeCommeUneRecherchePisteParPiste() {
+        Random hasard = new Random(42);
+
+        for (boolean ordre : new boolean[] {true, false}) {
+            IndexPistes index = new IndexPistes();
+            HashMap<Integer, OccupationPiste> reference = new HashMap<Integer, OccupationPiste>();
+
+            for (int i = 0; i < 5000; i++) {
+                int debut = ordre ? i * 3 : hasard.nextInt(20000);
+                int fin = debut + hasard.nextInt(200);
+                int piste = 1 + hasard.nextInt(3);
+
+                Assertions.assertEquals(placerUneAUne(reference, piste, debut, fin), index.placer(piste, debut, fin));
+            }
+
+            Assertions.assertTrue(index.get(17) != null);
+        }
+    }
+
+    /**
+     * Un numéro de piste négatif est refusé.
+     */
+    @Test
+    void refuseUnePisteNegative() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new IndexPistes().placer(-1, 0, 10));
+    }
+
+    /**
+     * Les clips d'une piste sont parcourus par image de début, quel que soit
+     * l'ordre d'ajout.
+     */
+    @Test
+    void chaineLesClipsParDebut() {
+        Timeline timeline = new Timeline("Désordre", 25);
+        Random hasard = new Random(7);
+
+        for (int i = 0; i < 2000; i++) {
+            int debut = hasard.nextInt(100000);
+            timeline.addMedia(1 + hasard.nextInt(2), new MediaVideo("v" + i + ".mov", 25), debut, debut + 10, true);
+        }
+
+        TableClips clips = timeline.getClipsVideo();
+        int total = 0;
+
+        for (int piste = 1; piste <= clips.getPisteMax(); piste++) {
+            int fin_precedente = Integer.MIN_VALUE;
+
+            for (int j = clips.getPremierClip(piste); j >= 0; j = clips.getClipSuivant(j)) {
+                // Triés et sans chevauchement : chaque clip commence après la fin du précédent.
+                Assertions.assertEquals(piste, clips.getPiste(j));
+                Assertions.assertTrue(clips.getDebut(j) > fin_precedente);
+                fin_precedente = clips.getFin(j);
+                total++;
+            }
+        }
+
+        Assertions.assertEquals(2000, total);
+    }
+}
@@ -0,0 +1,151 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.enums.CouleurMarqueur;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Lecture des rapports CSV de marqueurs : guillemets, guillemets doublés et
+ * retours à la ligne entre guillemets.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class LecteurMarqueursCSVTest {
+
+    /**
+     * Un rapport avec en-tête, marque d'ordre des octets, guillemets,
+     * séparateur et guillemets doublés entre guillemets, retours à la ligne
+     * entre guillemets, fins de ligne Windows, ligne invalide et dernière
+     * ligne sans retour à la ligne.
+     */
+    private static final String RAPPORT = "\uFEFFTimecode,Durée,Sévérité,Nom,Note\r\n"
+            + "00:00:01:00,25,Erreur,\"Pixel mort, en haut\",\"Il dit \"\"stop\"\"\"\r\n"
+            + "# commentaire sans timecode\r\n"
+            + "00:00:02:00,00:00:00:10,warning,Son,\"Première ligne\r\nDeuxième ligne, \"\"citée\"\"\"\r\n"
+            + "\r\n"
+            + "  00:00:00:05 , 1 , Info ,  Espaces  ,\"\"\r\n"
+            + "00:00:03:00,,inconnue,Dernier,\"Sans fin de ligne\"";
+
+    /**
+     * Lit un rapport dans une timeline à 25 images par seconde.
+     *
+     * @param lecteur Le rapport.
+     * @param format Format du rapport.
+     * @return La timeline.
+     * @throws IOException Erreur de lecture.
+     */
+    private static Timeline lire(Reader lecteur, FormatMarqueursCSV format) throws IOException {
+        Timeline timeline = new Timeline("Rapport", 25);
+        timeline.importerMarqueurs(lecteur, format);
+        return timeline;
+    }
+
+    /**
+     * Format du rapport : colonnes par défaut et deux sévérités connues.
+     *
+     * @return Le format.
+     */
+    private static FormatMarqueursCSV format() {
+        FormatMarqueursCSV format = new FormatMarqueursCSV(',');
+        format.setCouleur("Erreur", CouleurMarqueur.ROUGE);
+        format.setCouleur("Warning", CouleurMarqueur.JAUNE);
+        format.setCouleurDefaut(CouleurMarqueur.BLEU);
+        return format;
+    }
+
+    /**
+     * Vérifie les marqueurs lus dans {@link #RAPPORT}.
+     *
+     * @param timeline La timeline.
+     */
+    private static void verifier(Timeline timeline) {
+        TableMarqueurs marqueurs = timeline.getMarqueurs();
+        Assertions.assertEquals(4, marqueurs.getTaille());
+
+        Marqueur espaces = marqueurs.getMarqueur(0);
+        Assertions.assertEquals(5, espaces.getImageIn());
+        Assertions.assertEquals(5, espaces.getImageOut());
+        Assertions.assertEquals("Espaces", espaces.getNom());
+        Assertions.assertEquals("", espaces.getNote());
+        Assertions.assertEquals(CouleurMarqueur.BLEU, espaces.getCouleur());
+
+        Marqueur pixel = marqueurs.getMarqueur(1);
+        Assertions.assertEquals(25, pixel.getImageIn());
+        Assertions.assertEquals(49, pixel.getImageOut());
+        Assertions.assertEquals("Pixel mort, en haut", pixel.getNom());
+        Assertions.assertEquals("Il dit \"stop\"", pixel.getNote());
+        Assertions.assertEquals(CouleurMarqueur.ROUGE, pixel.getCouleur());
+
+        Marqueur son = marqueurs.getMarqueur(2);
+        Assertions.assertEquals(50, son.getImageIn());
+        Assertions.assertEquals(59, son.getImageOut());
+        Assertions.assertEquals("Première ligne\r\nDeuxième ligne, \"citée\"", son.getNote());
+        Assertions.assertEquals(CouleurMarqueur.JAUNE, son.getCouleur());
+
+        Marqueur dernier = marqueurs.getMarqueur(3);
+        Assertions.assertEquals(75, dernier.getImageIn());
+        Assertions.assertEquals(75, dernier.getImageOut());
+        Assertions.assertEquals("Sans fin de ligne", dernier.getNote());
+        Assertions.assertEquals(CouleurMarqueur.BLEU, dernier.getCouleur());
+    }
+
+    /**
+     * Les colonnes entre guillemets gardent leurs séparateurs, guillemets
+     * doublés et retours à la ligne.
+     *
+     * @throws IOException Erreur de lecture.
+     */
+    @Test
+    void litLesColonnesEntreGuillemets() throws IOException {
+        verifier(lire(new StringReader(RAPPORT), format()));
+    }
+
+    /**
+     * Le résultat est le même quand le flux ne donne qu'un caractère à la
+     * fois : une ligne (et une colonne entre guillemets) est coupée à chaque
+     * lecture.
+     *
+     * @throws IOException Erreur de lecture.
+     */
+    @Test
+    void litUnCaractereALaFois() throws IOException {
+        Reader goutte_a_goutte = new FilterReader(new StringReader(RAPPORT)) {
+            @Override
+            public int read(char[] tampon, int debut, int longueur) throws IOException {
+                return super.read(tampon, debut, Math.min(longueur, 1));
+            }
+        };
+
+        verifier(lire(goutte_a_goutte, format()));
+    }
+
+    /**
+     * Une note entre guillemets plus longue que le tampon de lecture, avec
+     * des retours à la ligne, est lue en entier.
+     *
+     * @throws IOException Erreur de lecture.
+     */
+    @Test
+    void litUneNotePlusLongueQueLeTampon() throws IOException {
+        StringBuilder note = new StringBuilder();
+
+        while (note.length() < 200_000) {
+            note.append("ligne \"\"").append(note.length()).append("\"\"\n");
+        }
+
+        String rapport = "00:00:04:00\t2\t\tLongue\t\"" + note + "\"\n00:00:05:00\t\t\tSuivant\t\n";
+        FormatMarqueursCSV format = new FormatMarqueursCSV('\t');
+        format.setEntete(false);
+
+        Timeline timeline = lire(new StringReader(rapport), format);
+
+        Assertions.assertEquals(2, timeline.getMarqueurs().getTaille());
+        Assertions.assertEquals(note.toString().replace("\"\"", "\""), timeline.getMarqueurs().getMarqueur(0).getNote());
+        Assertions.assertEquals(101, timeline.getMarqueurs().getMarqueur(0).getImageOut());
+        Assertions.assertEquals("Suivant", timeline.getMarqueurs().getMarqueur(1).getNom());
+    }
+}
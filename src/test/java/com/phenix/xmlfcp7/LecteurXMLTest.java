@@ -0,0 +1,138 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Lecture des XML écrits par la librairie, et erreurs de lecture.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class LecteurXMLTest {
+
+    /**
+     * Dossier temporaire des tests.
+     */
+    @TempDir
+    Path dossier;
+
+    /**
+     * Construit une vidéo de 50 images.
+     *
+     * @param fichier Nom du fichier.
+     * @return La vidéo.
+     */
+    private static MediaVideo video(String fichier) {
+        MediaVideo video = new MediaVideo(fichier, 25);
+        video.setLocalisation("file://localhost/" + fichier);
+        video.setImageStart(0);
+        video.setImageIn(0);
+        video.setImageOut(49);
+        video.setDimension(1920, 1080);
+        return video;
+    }
+
+    /**
+     * Construit un projet avec un dossier, une timeline et des marqueurs.
+     *
+     * @return Le projet.
+     */
+    private static XMLFCP7 projet() {
+        XMLFCP7 projet = new XMLFCP7(Logiciel.PREMIERE);
+        projet.setTitreProjet("Aller-retour");
+
+        Timeline timeline = new Timeline("Montage", 25);
+        timeline.setDimension(1920, 1080);
+        timeline.addMedia(1, video("a.mov"), 0, 49, true);
+        timeline.addMedia(1, video("b.mov"), 50, 99, true);
+        timeline.addMedia(2, video("a.mov"), 25, 74, true);
+        timeline.addMarqueur(new Marqueur("Début", 0, 0, 25));
+        timeline.addMarqueur(new Marqueur("Plan B", 50, 74, 25));
+
+        Dossier dossier = new Dossier("Rushes");
+        dossier.addMedia(video("c.mov"));
+        projet.addDossier(dossier);
+        projet.addMediaVideo(video("a.mov"));
+        projet.addTimeline(timeline);
+        return projet;
+    }
+
+    /**
+     * Retire les lignes des identifiants uniques (tirés au hasard par
+     * timeline).
+     *
+     * @param xml L'XML.
+     * @return L'XML sans les uuid.
+     */
+    private static String sansUuid(String xml) {
+        return xml.replaceAll("(?m)^.*<uuid>.*</uuid>\\R", "");
+    }
+
+    /**
+     * Un projet lu puis écrit à nouveau donne le même XML.
+     *
+     * @throws IOException Erreur d'écriture ou de lecture.
+     * @throws XMLStreamException XML mal formé.
+     */
+    @Test
+    void relitSonPropreXml() throws IOException, XMLStreamException {
+        Path fichier = this.dossier.resolve("projet.xml");
+        projet().exporter(fichier);
+        String xml = Files.readString(fichier, StandardCharsets.UTF_8);
+
+        XMLFCP7 lu = XMLFCP7.lire(fichier);
+
+        Assertions.assertEquals("Aller-retour", lu.getTitreProjet());
+        Assertions.assertEquals(1, lu.getListeDossier().size());
+        Assertions.assertEquals("Rushes", lu.getListeDossier().get(0).getNom());
+        Assertions.assertEquals(1, lu.getListeTimeline().size());
+
+        Timeline timeline = lu.getListeTimeline().get(0);
+        Assertions.assertEquals("Montage", timeline.getNom());
+        Assertions.assertEquals(2, timeline.getMarqueurs().getTaille());
+        Assertions.assertEquals("Plan B", timeline.getMarqueurs().getMarqueur(1).getNote());
+        Assertions.assertEquals(74, timeline.getMarqueurs().getMarqueur(1).getImageOut());
+
+        Path copie = this.dossier.resolve("copie.xml");
+        lu.exporter(copie);
+        Assertions.assertEquals(sansUuid(xml), sansUuid(Files.readString(copie, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Un XML mal formé fait échouer la lecture au lieu de donner un projet
+     * vide.
+     *
+     * @throws IOException Erreur d'écriture du fichier de test.
+     */
+    @Test
+    void refuseUnXmlMalForme() throws IOException {
+        Path fichier = this.dossier.resolve("tronque.xml");
+        Files.writeString(fichier, "<?xml version=\"1.0\"?>\n<xmeml version=\"5\"><project><name>X</name><children>",
+                StandardCharsets.UTF_8);
+
+        Assertions.assertThrows(XMLStreamException.class, () -> XMLFCP7.lire(fichier));
+
+        UncheckedIOException exception = Assertions.assertThrows(UncheckedIOException.class,
+                () -> new XMLFCP7(fichier.toFile(), XMLFCP7.Mode.LECTURE));
+        Assertions.assertTrue(exception.getCause().getCause() instanceof XMLStreamException);
+    }
+
+    /**
+     * Un fichier absent fait échouer la lecture.
+     */
+    @Test
+    void refuseUnFichierAbsent() {
+        Path fichier = this.dossier.resolve("absent.xml");
+
+        Assertions.assertThrows(IOException.class, () -> XMLFCP7.lire(fichier));
+        Assertions.assertThrows(UncheckedIOException.class, () -> new XMLFCP7(fichier.toFile(), XMLFCP7.Mode.LECTURE));
+    }
+}
@@ -0,0 +1,102 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Export des médias qui ne sont ni des vidéos ni des audios (images, médias
+ * génériques).
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class MediaImageTest {
+
+    /**
+     * Dossier temporaire des tests.
+     */
+    @TempDir
+    Path dossier;
+
+    /**
+     * Exporte un projet en mémoire.
+     *
+     * @param projet Le projet.
+     * @return L'XML.
+     * @throws IOException Erreur d'écriture.
+     */
+    private static String exporter(XMLFCP7 projet) throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        projet.exporter(sortie);
+        return sortie.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Une image à la racine du projet est écrite avec son fichier.
+     *
+     * @throws IOException Erreur d'écriture.
+     */
+    @Test
+    void exporteUneImage() throws IOException {
+        File fichier = this.dossier.resolve("projet.xml").toFile();
+        XMLFCP7 projet = new XMLFCP7(fichier, XMLFCP7.Mode.ECRITURE);
+        MediaImage image = new MediaImage("C:/x/logo.png");
+        image.setLocalisation("file://localhost/C%3a/x/logo.png");
+        projet.addMediaImage(image);
+        projet.close();
+
+        String xml = Files.readString(fichier.toPath());
+
+        Assertions.assertTrue(xml.contains("<name>logo.png</name>"), xml);
+        Assertions.assertTrue(xml.contains("<pathurl>file://localhost/C%3a/x/logo.png</pathurl>"), xml);
+        Assertions.assertTrue(xml.contains("<file id=\"file-"), xml);
+        Assertions.assertTrue(xml.contains("<fielddominance>none</fielddominance>"), xml);
+    }
+
+    /**
+     * Un média générique dans un dossier est écrit avec son fichier, pour les
+     * deux logiciels.
+     *
+     * @throws IOException Erreur d'écriture.
+     */
+    @Test
+    void exporteUnMediaGeneriqueDansUnDossier() throws IOException {
+        for (Logiciel logiciel : Logiciel.values()) {
+            XMLFCP7 projet = new XMLFCP7(logiciel);
+            Dossier rangement = new Dossier("Rangement");
+            rangement.addMedia(new Media("D:/sons/ambiance.bwf", 25));
+            projet.addDossier(rangement);
+
+            String xml = exporter(projet);
+
+            Assertions.assertTrue(xml.contains("<name>ambiance.bwf</name>"), xml);
+            Assertions.assertTrue(xml.contains("</file>"), xml);
+        }
+    }
+
+    /**
+     * Une image posée dans une timeline ne bloque pas l'export.
+     *
+     * @throws IOException Erreur d'écriture.
+     */
+    @Test
+    void exporteUneTimelineAvecUneImage() throws IOException {
+        XMLFCP7 projet = new XMLFCP7(Logiciel.PREMIERE);
+        MediaImage image = projet.addMediaImage(new MediaImage("C:/x/logo.png"));
+        Timeline timeline = new Timeline("Montage", 25);
+        timeline.addMedia(1, image, 0, 49, true);
+        projet.addTimeline(timeline);
+
+        String xml = exporter(projet);
+
+        Assertions.assertTrue(xml.contains("<name>Montage</name>"), xml);
+        Assertions.assertTrue(xml.contains("<name>logo.png</name>"), xml);
+    }
+}
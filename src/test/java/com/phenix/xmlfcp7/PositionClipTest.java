@@ -0,0 +1,60 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.timecode.Timecode;
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Position des clips écrite dans la séquence.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class PositionClipTest {
+
+    /**
+     * Les clips vidéos et audios d'une séquence qui ne commence pas à zéro
+     * sont écrits par rapport au début de la séquence.
+     *
+     * @throws IOException Erreur d'écriture.
+     */
+    @Test
+    void ecritLesClipsAudiosParRapportAuDebut() throws IOException {
+        Timeline timeline = new Timeline("Une heure", 25, new Timecode("01:00:00:00"));
+        timeline.setDimension(1920, 1080);
+        long debut = 90000 + 10;
+
+        MediaVideo video = new MediaVideo("plan.mov", 25);
+        video.setImageIn(0);
+        video.setImageOut(49);
+        video.setDimension(1920, 1080);
+        timeline.addMedia(1, video, debut, debut + 49, true);
+
+        MediaAudio audio = new MediaAudio("son.wav");
+        audio.setImageIn(0);
+        audio.setImageOut(49);
+        timeline.addMedia(1, audio, debut, debut + 49, true);
+
+        XMLFCP7 projet = new XMLFCP7(Logiciel.PREMIERE);
+        projet.addTimeline(timeline);
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        projet.exporter(sortie);
+        String xml = sortie.toString(StandardCharsets.UTF_8);
+
+        Matcher clipitem = Pattern.compile("<clipitem [^>]*>.*?<start>(-?\\d+)</start>\\s*<end>(-?\\d+)</end>", Pattern.DOTALL).matcher(xml);
+        int clipitems = 0;
+
+        while (clipitem.find()) {
+            Assertions.assertEquals("10", clipitem.group(1), xml);
+            Assertions.assertEquals("59", clipitem.group(2), xml);
+            clipitems++;
+        }
+
+        Assertions.assertEquals(2, clipitems, xml);
+    }
+}
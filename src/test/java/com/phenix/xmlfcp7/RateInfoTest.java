@@ -0,0 +1,111 @@
+package com.phenix.xmlfcp7;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Timecodes (drop-frame compris) et ticks Premiere.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class RateInfoTest {
+
+    /**
+     * Vérifie que chaque image d'une journée donne un timecode qui redonne
+     * l'image, et que les timecodes se suivent sans jamais utiliser un numéro
+     * sauté.
+     *
+     * @param rate Le framerate drop-frame.
+     */
+    private static void allerRetourSurUneJournee(RateInfo rate) {
+        int sautees = rate.getTimebase() / 15;
+        long images = 24L * 3600 * rate.getTimebase() - 24 * 60 * sautees + 24 * 6 * sautees;
+        String precedent = null;
+
+        for (long image = 0; image < images; image++) {
+            String timecode = rate.timecode(image);
+            Assertions.assertEquals(image, rate.image(timecode), timecode);
+
+            // Les numéros 0 à sautees - 1 n'existent pas à la seconde 0 des minutes qui ne sont pas des dizaines.
+            int minute = Integer.parseInt(timecode.substring(3, 5));
+            int seconde = Integer.parseInt(timecode.substring(6, 8));
+            int numero = Integer.parseInt(timecode.substring(9, 11));
+            Assertions.assertFalse(seconde == 0 && minute % 10 != 0 && numero < sautees, timecode);
+
+            if (precedent != null) {
+                Assertions.assertTrue(precedent.compareTo(timecode) < 0, precedent + " puis " + timecode);
+            }
+
+            precedent = timecode;
+        }
+
+        Assertions.assertEquals("23;59;59;" + (rate.getTimebase() - 1), precedent);
+    }
+
+    /**
+     * En 29,97 drop-frame, les numéros 0 et 1 sont sautés chaque minute sauf
+     * toutes les 10 minutes.
+     */
+    @Test
+    void dropFrame2997() {
+        RateInfo rate = RateInfo.IMAGES_29_97_DF;
+
+        Assertions.assertEquals("00;00;59;29", rate.timecode(1799));
+        Assertions.assertEquals("00;01;00;02", rate.timecode(1800));
+        Assertions.assertEquals("00;09;59;29", rate.timecode(17981));
+        Assertions.assertEquals("00;10;00;00", rate.timecode(17982));
+        Assertions.assertEquals("00;10;00;01", rate.timecode(17983));
+        Assertions.assertEquals("00;11;00;02", rate.timecode(17982 + 1800));
+        Assertions.assertEquals("01;00;00;00", rate.timecode(107892));
+        Assertions.assertEquals(107892, rate.image("01:00:00:00"));
+        Assertions.assertEquals(1800, rate.image("00;01;00;02"));
+
+        allerRetourSurUneJournee(rate);
+    }
+
+    /**
+     * En 59,94 drop-frame, les numéros 0 à 3 sont sautés chaque minute sauf
+     * toutes les 10 minutes.
+     */
+    @Test
+    void dropFrame5994() {
+        RateInfo rate = RateInfo.IMAGES_59_94_DF;
+
+        Assertions.assertEquals("00;00;59;59", rate.timecode(3599));
+        Assertions.assertEquals("00;01;00;04", rate.timecode(3600));
+        Assertions.assertEquals("00;09;59;59", rate.timecode(35963));
+        Assertions.assertEquals("00;10;00;00", rate.timecode(35964));
+        Assertions.assertEquals("00;10;00;03", rate.timecode(35967));
+        Assertions.assertEquals("00;11;00;04", rate.timecode(35964 + 3600));
+        Assertions.assertEquals("01;00;00;00", rate.timecode(215784));
+        Assertions.assertEquals(215784, rate.image("01;00;00;00"));
+
+        allerRetourSurUneJournee(rate);
+    }
+
+    /**
+     * Sans drop-frame, le timecode compte les images sans en sauter.
+     */
+    @Test
+    void sansDropFrame() {
+        Assertions.assertEquals("00:01:00:00", RateInfo.IMAGES_29_97.timecode(1800));
+        Assertions.assertEquals("01:00:00:00", RateInfo.IMAGES_25.timecode(90000));
+        Assertions.assertEquals(90010, RateInfo.IMAGES_25.image("01:00:00:10"));
+        Assertions.assertEquals("-00:00:01:00", RateInfo.IMAGES_25.timecode(-25));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RateInfo.IMAGES_25.image("1:00:00:00"));
+    }
+
+    /**
+     * Les ticks Premiere sont exacts en 23,976 (1001 / 24000 s par image).
+     */
+    @Test
+    void ticks23976() {
+        RateInfo rate = RateInfo.IMAGES_23_976;
+
+        Assertions.assertEquals(10594584000L, rate.ticks(1));
+        Assertions.assertEquals(RateInfo.TICKS_PAR_SECONDE * 1001, rate.ticks(24000));
+        Assertions.assertEquals(10594584000L * 1_000_000, rate.ticks(1_000_000));
+        Assertions.assertEquals(RateInfo.TICKS_PAR_SECONDE / 25, RateInfo.IMAGES_25.ticks(1));
+        Assertions.assertEquals(RateInfo.TICKS_PAR_SECONDE * 1001 / 30000, RateInfo.IMAGES_29_97_DF.ticks(1));
+    }
+}
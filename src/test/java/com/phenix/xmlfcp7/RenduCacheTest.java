@@ -0,0 +1,147 @@
+package com.phenix.xmlfcp7;
+
+import com.phenix.xmlfcp7.XMLFCP7.Logiciel;
+import com.phenix.xmlfcp7.effect.Effect;
+import com.phenix.xmlfcp7.effect.EffectSerializers;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Le rendu gardé d'une timeline ou d'un dossier n'est pas réutilisé après
+ * une modification de ce dont il dépend.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class RenduCacheTest {
+
+    /**
+     * Effet sans serializer de la bibliothèque.
+     */
+    private static final class EffetEssai extends Effect {
+    }
+
+    /**
+     * Le projet, sa vidéo et son marqueur.
+     */
+    private static final class Projet {
+
+        /**
+         * Le projet.
+         */
+        private final XMLFCP7 projet = new XMLFCP7(Logiciel.PREMIERE);
+
+        /**
+         * La vidéo, utilisée par la timeline à la racine et par celle du
+         * dossier.
+         */
+        private final MediaVideo video = new MediaVideo("plan.mov", 25);
+
+        /**
+         * Le marqueur de la timeline à la racine.
+         */
+        private final Marqueur marqueur = new Marqueur("Note", 10, 10, 25);
+
+        /**
+         * Construit le projet : une timeline à la racine et une dans un
+         * dossier, qui utilisent la même vidéo.
+         *
+         * @param nom_video Nom de la vidéo.
+         * @param nom_marqueur Nom du marqueur.
+         */
+        private Projet(String nom_video, String nom_marqueur) {
+            this.video.setNom(nom_video);
+            this.video.setLocalisation("file://localhost/plan.mov");
+            this.video.setImageIn(0);
+            this.video.setImageOut(49);
+            this.video.setDimension(1920, 1080);
+            this.marqueur.setNom(nom_marqueur);
+
+            Timeline timeline = new Timeline("Montage", 25);
+            timeline.setDimension(1920, 1080);
+            timeline.addMedia(1, this.video, 0, 49, true);
+            timeline.addMarqueur(this.marqueur);
+            this.projet.addTimeline(timeline);
+
+            Timeline timeline_dossier = new Timeline("Bout à bout", 25);
+            timeline_dossier.setDimension(1920, 1080);
+            timeline_dossier.addMedia(1, this.video, 0, 49, true);
+            Dossier dossier = new Dossier("Dossier");
+            dossier.addTimeline(timeline_dossier);
+            this.projet.addDossier(dossier);
+        }
+
+        /**
+         * Exporte le projet, sans ses identifiants uniques.
+         *
+         * @return L'XML.
+         * @throws IOException Erreur d'écriture.
+         */
+        private String exporter() throws IOException {
+            ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+            this.projet.exporter(sortie);
+            return sortie.toString(StandardCharsets.UTF_8).replaceAll("(?m)^.*<uuid>.*</uuid>\\R", "");
+        }
+    }
+
+    /**
+     * Changer le nom d'une vidéo après un export change l'XML des deux
+     * timelines (à la racine et dans le dossier) à l'export suivant.
+     *
+     * @throws IOException Erreur d'écriture.
+     */
+    @Test
+    void invalideApresUnSetterDeMedia() throws IOException {
+        Projet projet = new Projet("Avant", "Repère");
+        Assertions.assertEquals(new Projet("Avant", "Repère").exporter(), projet.exporter());
+        Assertions.assertEquals(new Projet("Avant", "Repère").exporter(), projet.exporter());
+
+        projet.video.setNom("Après");
+
+        String xml = projet.exporter();
+        Assertions.assertEquals(new Projet("Après", "Repère").exporter(), xml);
+        Assertions.assertFalse(xml.contains("Avant"), xml);
+    }
+
+    /**
+     * Changer le nom d'un marqueur après un export change l'XML de la
+     * timeline à l'export suivant.
+     *
+     * @throws IOException Erreur d'écriture.
+     */
+    @Test
+    void invalideApresUnSetterDeMarqueur() throws IOException {
+        Projet projet = new Projet("Plan", "Avant");
+        Assertions.assertEquals(new Projet("Plan", "Avant").exporter(), projet.exporter());
+
+        projet.marqueur.setNom("Après");
+
+        String xml = projet.exporter();
+        Assertions.assertEquals(new Projet("Plan", "Après").exporter(), xml);
+        Assertions.assertFalse(xml.contains("Avant"), xml);
+    }
+
+    /**
+     * Enregistrer un nouveau serializer après un export change l'XML des
+     * effets à l'export suivant, même si aucun média n'a changé.
+     *
+     * @throws IOException Erreur d'écriture.
+     */
+    @Test
+    void invalideApresUnEnregistrementDeSerializer() throws IOException {
+        Projet projet = new Projet("Plan", "Repère");
+        projet.video.addEffect(new EffetEssai());
+
+        EffectSerializers.enregistrer(EffetEssai.class, (effet, clip, timeline, sink) -> sink.ouvre("filter").element("name", "Avant").ferme("filter"));
+        String avant = projet.exporter();
+        Assertions.assertTrue(avant.contains("<name>Avant</name>"), avant);
+        Assertions.assertEquals(avant, projet.exporter());
+
+        EffectSerializers.enregistrer(EffetEssai.class, (effet, clip, timeline, sink) -> sink.ouvre("filter").element("name", "Après").ferme("filter"));
+
+        String xml = projet.exporter();
+        Assertions.assertEquals(avant.replace("<name>Avant</name>", "<name>Après</name>"), xml);
+    }
+}
@@ -0,0 +1,135 @@
+package com.phenix.xmlfcp7;
+
+import java.util.ArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tri, recherche par intervalle et doublons de la table des marqueurs.
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class TableMarqueursTest {
+
+    /**
+     * Construit un marqueur d'une image à 25 i/s.
+     *
+     * @param note Description.
+     * @param in Point in en image.
+     * @return Le marqueur.
+     */
+    private static Marqueur marqueur(String note, long in) {
+        return new Marqueur(note, in, in, 25);
+    }
+
+    /**
+     * Retourne l'image in de chaque marqueur de la table.
+     *
+     * @param table La table.
+     * @return Les images in, dans l'ordre de la table.
+     */
+    private static long[] images(TableMarqueurs table) {
+        ArrayList<Marqueur> marqueurs = table.toList();
+        long[] images = new long[marqueurs.size()];
+
+        for (int i = 0; i < images.length; i++) {
+            images[i] = marqueurs.get(i).getImageIn();
+        }
+
+        return images;
+    }
+
+    /**
+     * Les marqueurs ajoutés dans le désordre sont lus triés, et la recherche
+     * par intervalle inclut ses deux bornes.
+     */
+    @Test
+    void chercheParIntervalle() {
+        TableMarqueurs table = new TableMarqueurs();
+
+        for (long in : new long[] {50, 10, 40, 20, 30, 0}) {
+            table.ajouter(marqueur("m" + in, in));
+        }
+
+        Assertions.assertArrayEquals(new long[] {0, 10, 20, 30, 40, 50}, images(table));
+        Assertions.assertEquals(3, table.getMarqueurs(10, 30).size());
+        Assertions.assertEquals(20, table.getMarqueurs(11, 29).get(0).getImageIn());
+        Assertions.assertTrue(table.getMarqueurs(51, 100).isEmpty());
+        Assertions.assertTrue(table.getMarqueurs(30, 10).isEmpty());
+        Assertions.assertEquals(6, table.getMarqueurs(Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+        // Un ajout après la lecture (avant puis après le dernier).
+        table.ajouter(marqueur("m25", 25));
+        table.ajouter(marqueur("m60", 60));
+        Assertions.assertArrayEquals(new long[] {0, 10, 20, 25, 30, 40, 50, 60}, images(table));
+    }
+
+    /**
+     * Un marqueur identique à un marqueur déjà dans la table n'est pas gardé,
+     * qu'il soit ajouté dans l'ordre ou non.
+     */
+    @Test
+    void retireLesDoublonsAjoutes() {
+        TableMarqueurs table = new TableMarqueurs();
+        Marqueur premier = marqueur("a", 10);
+        table.ajouter(premier);
+        table.ajouter(marqueur("a", 10));
+        table.ajouter(marqueur("b", 10));
+        table.ajouter(marqueur("a", 5));
+        table.ajouter(marqueur("a", 5));
+        table.ajouter(premier);
+
+        Assertions.assertEquals(3, table.getTaille());
+        Assertions.assertSame(premier, table.getMarqueurs(10, 10).get(0));
+
+        table.ajouter(marqueur("b", 10));
+        Assertions.assertEquals(3, table.getTaille());
+    }
+
+    /**
+     * Un marqueur modifié pour devenir identique à un autre reste dans la
+     * table, et la table est triée à nouveau.
+     */
+    @Test
+    void garderUnMarqueurModifie() {
+        TableMarqueurs table = new TableMarqueurs();
+        Marqueur a = marqueur("a", 10);
+        Marqueur b = marqueur("a", 20);
+        table.ajouter(a);
+        table.ajouter(b);
+        Assertions.assertEquals(2, table.getTaille());
+
+        b.setImageIn(10);
+        b.setImageOut(10);
+        Assertions.assertEquals(2, table.getTaille());
+        Assertions.assertEquals(2, table.getMarqueurs(10, 10).size());
+
+        // Modifier à nouveau le marqueur ne le retire pas non plus.
+        b.setImageIn(0);
+        b.setImageOut(0);
+        Assertions.assertArrayEquals(new long[] {0, 10}, images(table));
+        Assertions.assertSame(b, table.getMarqueur(0));
+    }
+
+    /**
+     * Un marqueur gardé par deux tables les fait trier toutes les deux
+     * quand il est modifié.
+     */
+    @Test
+    void trieChaqueTableDuMarqueur() {
+        TableMarqueurs table1 = new TableMarqueurs();
+        TableMarqueurs table2 = new TableMarqueurs();
+        Marqueur commun = marqueur("c", 30);
+
+        table1.ajouter(marqueur("x", 20));
+        table1.ajouter(commun);
+        table2.ajouter(commun);
+        table2.ajouter(marqueur("y", 10));
+        Assertions.assertArrayEquals(new long[] {20, 30}, images(table1));
+        Assertions.assertArrayEquals(new long[] {10, 30}, images(table2));
+
+        commun.setImageIn(5);
+        Assertions.assertArrayEquals(new long[] {5, 20}, images(table1));
+        Assertions.assertArrayEquals(new long[] {5, 10}, images(table2));
+    }
+}
@@ -0,0 +1,184 @@
+package com.phenix.xmlfcp7.effect;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Réduction des images clés d'une courbe (Ramer-Douglas-Peucker).
+ *
+ * @author <a href="mailto:edouard128@hotmail.com">Edouard Jeanjean</a>
+ */
+class CourbeTest {
+
+    /**
+     * Indique si une image fait partie des images clés gardées.
+     *
+     * @param courbe La courbe.
+     * @param gardees Indice des images clés gardées.
+     * @param image L'image.
+     * @return {@code true} si elle est gardée.
+     */
+    private static boolean contient(Courbe courbe, int[] gardees, long image) {
+        for (int indice : gardees) {
+            if (courbe.getImage(indice) == image) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Construit la courbe écrite : seulement les images clés gardées.
+     *
+     * @param courbe La courbe.
+     * @return La courbe réduite.
+     */
+    private static Courbe reduite(Courbe courbe) {
+        Courbe reduite = new Courbe();
+
+        for (int indice : courbe.reduites()) {
+            reduite.ajouter(courbe.getImage(indice), courbe.getValeur(indice));
+        }
+
+        return reduite;
+    }
+
+    /**
+     * Vérifie que la courbe réduite ne s'écarte de la courbe d'origine de
+     * plus d'un écart à aucune image clé d'origine.
+     *
+     * @param courbe La courbe d'origine.
+     * @param ecart Écart maximum.
+     */
+    private static void verifierEcart(Courbe courbe, double ecart) {
+        Courbe reduite = reduite(courbe);
+
+        for (int i = 0; i < courbe.getTaille(); i++) {
+            double attendue = courbe.getValeur(i);
+            Assertions.assertEquals(attendue, reduite.valeur(courbe.getImage(i)), ecart, "Image " + courbe.getImage(i));
+        }
+    }
+
+    /**
+     * Une rampe linéaire n'a besoin que de ses deux extrémités, même avec des
+     * valeurs qui ne tombent pas juste en binaire, et la courbe écrite est la
+     * même.
+     */
+    @Test
+    void reduitUneRampeSansPerte() {
+        Courbe courbe = new Courbe();
+        double[] valeurs = new double[1001];
+
+        for (int i = 0; i < valeurs.length; i++) {
+            valeurs[i] = 12.5 + 0.1 * i;
+        }
+
+        courbe.ajouter(100, valeurs);
+
+        Assertions.assertArrayEquals(new int[] {0, 1000}, courbe.reduites());
+        verifierEcart(courbe, 1e-9);
+    }
+
+    /**
+     * Une suite de rampes garde exactement ses angles (images clés espacées
+     * irrégulièrement).
+     */
+    @Test
+    void gardeLesAnglesDesRampes() {
+        Courbe courbe = new Courbe();
+        long[] angles = {0, 37, 90, 91, 400};
+        double[] valeurs_angles = {0, 74, -32, 100, 100};
+
+        for (int a = 0; a + 1 < angles.length; a++) {
+            double pente = (valeurs_angles[a + 1] - valeurs_angles[a]) / (angles[a + 1] - angles[a]);
+
+            for (long image = angles[a]; image < angles[a + 1]; image += 3) {
+                courbe.ajouter(image, valeurs_angles[a] + pente * (image - angles[a]));
+            }
+
+            courbe.ajouter(angles[a + 1], valeurs_angles[a + 1]);
+        }
+
+        int[] gardees = courbe.reduites();
+        Assertions.assertEquals(angles.length, gardees.length);
+
+        for (int a = 0; a < angles.length; a++) {
+            Assertions.assertEquals(angles[a], courbe.getImage(gardees[a]));
+            Assertions.assertEquals(valeurs_angles[a], courbe.getValeur(gardees[a]));
+        }
+
+        verifierEcart(courbe, 1e-9);
+    }
+
+    /**
+     * Sans tolérance, une image clé qui n'est pas alignée est gardée, même
+     * très peu écartée.
+     */
+    @Test
+    void gardeUnPointNonAligneSansTolerance() {
+        Courbe courbe = new Courbe();
+        courbe.ajouter(0, 0);
+        courbe.ajouter(10, 1.0001);
+        courbe.ajouter(20, 2);
+
+        Assertions.assertArrayEquals(new int[] {0, 1, 2}, courbe.reduites());
+    }
+
+    /**
+     * Avec une tolérance, une image clé plus écartée que la tolérance est
+     * gardée, une image clé moins écartée est retirée, et la courbe réduite
+     * ne s'écarte jamais de plus que la tolérance.
+     */
+    @Test
+    void respecteLaTolerance() {
+        Courbe courbe = new Courbe();
+
+        for (int i = 0; i <= 100; i++) {
+            courbe.ajouter(i, i);
+        }
+
+        courbe.ajouter(30, 30.4);
+        courbe.ajouter(70, 75);
+        courbe.setTolerance(0.5);
+
+        int[] gardees = courbe.reduites();
+        Assertions.assertTrue(gardees.length >= 3);
+        Assertions.assertFalse(contient(courbe, gardees, 30), "30 est à 0,4 de la rampe");
+        Assertions.assertTrue(contient(courbe, gardees, 70), "70 est à 5 de la rampe");
+        verifierEcart(courbe, 0.5);
+
+        // Un bruit aléatoire : l'écart reste sous la tolérance, et il reste moins d'images clés.
+        Courbe bruit = new Courbe();
+        Random hasard = new Random(3);
+        double valeur = 0;
+
+        for (int i = 0; i < 5000; i++) {
+            valeur += hasard.nextGaussian();
+            bruit.ajouter(i, valeur);
+        }
+
+        bruit.setTolerance(2);
+        Assertions.assertTrue(bruit.reduites().length < 5000);
+        verifierEcart(bruit, 2);
+    }
+
+    /**
+     * Les images clés gardées sont recalculées quand la courbe change.
+     */
+    @Test
+    void recalculeApresUneModification() {
+        Courbe courbe = new Courbe();
+        courbe.ajouter(0, 0);
+        courbe.ajouter(1, 1);
+        courbe.ajouter(2, 2);
+        Assertions.assertEquals(2, courbe.reduites().length);
+
+        courbe.ajouter(1, 5);
+        Assertions.assertEquals(3, courbe.reduites().length);
+
+        courbe.setTolerance(10);
+        Assertions.assertEquals(2, courbe.reduites().length);
+    }
+}